@@ -0,0 +1,220 @@
+package code;
+
+/**
+ * <h1>ActionGenerator</h1>
+ * Lists every legal action of the current turn of a {@code Position}, in one place and without
+ * allocating. An action is a whole turn's choice: how many times to rotate the free tile clockwise,
+ * which shift to make, and which cell to end the turn on. The rules it applies are those of
+ * {@code Game}: every shift except the one undoing the previous turn's ({@code Board.isShiftable()}
+ * and the reverse-shift checks of {@code Game.shiftBoard*()}); any cell the player can walk to
+ * after the shift, one step at a time through matching paths ({@code Player.move()}); and, since a
+ * player who moves may not end on the tile they started from ({@code Game.nextTurn()}), the start
+ * cell only by not moving at all.
+ * <p>
+ * Rotations giving the same orientation of the free tile (turning a straight tile twice, see
+ * {@code Position.orientations()}) lead to the same positions, so by default only the first of
+ * them is generated; the actions skipped are counted by {@code getPruned()}. Every position
+ * reachable in one turn is still reached by some generated action.
+ * <p>
+ * An action is packed into an {@code int}: the destination cell in bits 0-5, the shift code in
+ * bits 6-9 and the rotation in bits 10-11 (see {@code action()}), so a list of actions is a plain
+ * {@code int[]} the caller provides and reuses. A generator keeps its own scratch position and
+ * search queue, so generating allocates nothing; it is not thread-safe, and each thread should
+ * have its own.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code Position}: _rotated - the position with its free tile rotated by the rotation being generated
+ * {@code Position}: _shifted - the rotated position after the shift being generated
+ * {@code int[]}: _queue - the cells reached by the search, in the order they were reached
+ * {@code boolean}: _deduplicate - whether equivalent rotations are skipped
+ * {@code long}: _pruned - the number of actions skipped as equivalent to one generated
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class ActionGenerator {
+
+	/**
+	 * The number of distinct rotations of the free tile.
+	 */
+	public static final int ROTATIONS = 4;
+	/**
+	 * The most actions a turn can have, and so the smallest buffer {@code generate()} accepts.
+	 */
+	public static final int MAX_ACTIONS = ROTATIONS * Board.SHIFTS * Position.CELLS;
+
+	private final Position _rotated;
+	private final Position _shifted;
+	private final int[] _queue;
+	private final boolean _deduplicate;
+	private long _pruned;
+
+	/**
+	 * Creates a generator skipping equivalent rotations.
+	 */
+	public ActionGenerator() {
+		this(true);
+	}
+
+	/**
+	 * Creates a generator.
+	 *
+	 * @param deduplicate	whether rotations giving the same orientation of the free tile are skipped
+	 */
+	public ActionGenerator(boolean deduplicate) {
+		_rotated = new Position(4);
+		_shifted = new Position(4);
+		_queue = new int[Position.CELLS];
+		_deduplicate = deduplicate;
+		_pruned = 0;
+	}
+
+	/**
+	 * Packs an action into an {@code int}.
+	 *
+	 * @param rotation		the number of clockwise rotations of the free tile (0-3)
+	 * @param shift			the shift code
+	 * @param destination	the cell the player ends the turn on
+	 * @return				the action
+	 */
+	public static int action(int rotation, int shift, int destination) {
+		return rotation << 10 | shift << 6 | destination;
+	}
+
+	/**
+	 * Returns the number of clockwise rotations of the free tile of the specified action.
+	 * @param action - the action
+	 * @return the rotation (0-3)
+	 */
+	public static int rotationOf(int action) {
+		return action >>> 10 & 3;
+	}
+
+	/**
+	 * Returns the shift code of the specified action.
+	 * @param action - the action
+	 * @return the shift code
+	 */
+	public static int shiftOf(int action) {
+		return action >>> 6 & 15;
+	}
+
+	/**
+	 * Returns the cell the specified action ends the turn on.
+	 * @param action - the action
+	 * @return the destination cell
+	 */
+	public static int destinationOf(int action) {
+		return action & 63;
+	}
+
+	/**
+	 * Writes every legal action of the current turn of the specified position into the specified
+	 * buffer, rotation by rotation, then shift by shift, then in the order the destinations are
+	 * reached from the player's cell (the player's own cell first).
+	 *
+	 * @param position	the position, which is left unchanged
+	 * @param actions	the buffer, which must hold at least {@code MAX_ACTIONS} actions
+	 * @return			the number of actions written
+	 */
+	public int generate(Position position, int[] actions) {
+		if (actions.length < MAX_ACTIONS) {
+			throw new IllegalArgumentException("The buffer must hold " + MAX_ACTIONS + " actions.");
+		}
+		int seat = position.getCurrentSeat();
+		int count = 0;
+		int rotations = _deduplicate ? Position.orientations(position.getMask(Position.FREE)) : ROTATIONS;
+		_rotated.copyFrom(position);
+		for (int rotation = 0; rotation < rotations; rotation++) {
+			for (int shift = 0; shift < Board.SHIFTS; shift++) {
+				if (!position.isLegalShift(shift)) {
+					continue;
+				}
+				_shifted.copyFrom(_rotated);
+				_shifted.shift(shift);
+				int reached = reachable(_shifted, _shifted.getPlayerCell(seat));
+				int base = action(rotation, shift, 0);
+				for (int index = 0; index < reached; index++) {
+					actions[count++] = base | _queue[index];
+				}
+			}
+			_rotated.rotateFreeTile();
+		}
+		_pruned += (long) count * (ROTATIONS / rotations - 1);
+		return count;
+	}
+
+	/**
+	 * Returns the number of actions skipped so far as equivalent to one generated.
+	 * @return the number of actions pruned
+	 */
+	public long getPruned() {
+		return _pruned;
+	}
+
+	/**
+	 * Finds every cell a player on the specified cell can walk to, by a breadth-first search.
+	 *
+	 * @return the number of cells found, which are in {@code _queue} starting with the specified cell
+	 */
+	private int reachable(Position position, int start) {
+		long seen = 1L << start;
+		_queue[0] = start;
+		int reached = 1;
+		for (int head = 0; head < reached; head++) {
+			int cell = _queue[head];
+			for (int direction = 0; direction < 4; direction++) {
+				if (position.canStep(cell, direction)) {
+					int next = Position.neighbour(cell, direction);
+					if ((seen & 1L << next) == 0) {
+						seen |= 1L << next;
+						_queue[reached++] = next;
+					}
+				}
+			}
+		}
+		return reached;
+	}
+
+	/**
+	 * Plays the specified action on the specified position: rotates the free tile, shifts and moves
+	 * the current player to the destination. Collecting a token and ending the turn are left to the
+	 * caller.
+	 *
+	 * @param position	the position
+	 * @param action	a legal action of its current turn
+	 */
+	public static void apply(Position position, int action) {
+		for (int turn = rotationOf(action); turn > 0; turn--) {
+			position.rotateFreeTile();
+		}
+		position.shift(shiftOf(action));
+		position.setPlayerCell(position.getCurrentSeat(), destinationOf(action));
+	}
+
+	/**
+	 * Plays the whole turn of the specified action on the specified position: applies it, collects
+	 * the next token if the player moved onto it (as {@code Game.collectToken()} allows only after a
+	 * move), and passes the turn to the next seat.
+	 *
+	 * @param position	the position
+	 * @param action	a legal action of its current turn
+	 */
+	public static void play(Position position, int action) {
+		int seat = position.getCurrentSeat();
+		for (int turn = rotationOf(action); turn > 0; turn--) {
+			position.rotateFreeTile();
+		}
+		position.shift(shiftOf(action));
+		int destination = destinationOf(action);
+		int token = position.getNextToken();
+		if (destination != position.getPlayerCell(seat) && position.getToken(destination) == token) {
+			position.setToken(destination, 0);
+			position.setScore(seat, position.getScore(seat) + token);
+			position.setNextToken(Token.following(token));
+		}
+		position.setPlayerCell(seat, destination);
+		position.setCurrentSeat((seat + 1) % position.getPlayerCount());
+	}
+}
@@ -0,0 +1,172 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import code.ActionGenerator;
+import code.Board;
+import code.Game;
+import code.GameState;
+import code.Position;
+import code.Tile;
+
+public class ActionGeneratorTests {
+
+	private static final String[] PLAYERS = {"Ann", "Bob", "Cat"};
+
+	/**
+	 * Returns the cells a player on the specified tile of the specified game can walk to, found
+	 * with {@code Tile.checkAdjTile()} rather than {@code Position}.
+	 */
+	private static Set<Integer> walkable(Game game, Tile start) {
+		Set<Integer> cells = new HashSet<Integer>();
+		ArrayDeque<Tile> queue = new ArrayDeque<Tile>();
+		cells.add(Position.cell(start.getRow(), start.getColumn()));
+		queue.add(start);
+		while (!queue.isEmpty()) {
+			Tile tile = queue.poll();
+			for (int row = 0; row < 7; row++) {
+				for (int column = 0; column < 7; column++) {
+					Tile next = game.getTile(row, column);
+					if (tile.checkAdjTile(next) && cells.add(Position.cell(row, column))) {
+						queue.add(next);
+					}
+				}
+			}
+		}
+		return cells;
+	}
+
+	@Test public void matchesGameTest() {
+		ActionGenerator generator = new ActionGenerator(false);
+		int[] actions = new int[ActionGenerator.MAX_ACTIONS];
+		for (long seed = 0; seed < 10; seed++) {
+			Game game = new Game(PLAYERS, seed);
+			if (seed % 2 == 1) {
+				assertTrue(game.shiftBoard(Board.shiftCode(Tile.EAST, 3)));
+				game.nextTurn();
+			}
+			Position position = Position.of(game);
+			int count = generator.generate(position, actions);
+			assertEquals(position, Position.of(game));
+
+			Set<Integer> expected = new HashSet<Integer>();
+			for (int rotation = 0; rotation < ActionGenerator.ROTATIONS; rotation++) {
+				for (int shift = 0; shift < Board.SHIFTS; shift++) {
+					Game copy = GameState.of(game).toGame();
+					for (int turn = 0; turn < rotation; turn++) {
+						copy.rotateFreeTileClockWise();
+					}
+					if (copy.shiftBoard(shift)) {
+						for (int cell : walkable(copy, copy.getCurrentPlayer().getTile())) {
+							expected.add(ActionGenerator.action(rotation, shift, cell));
+						}
+					}
+				}
+			}
+			Set<Integer> generated = new HashSet<Integer>();
+			for (int index = 0; index < count; index++) {
+				generated.add(actions[index]);
+			}
+			assertEquals(count, generated.size());
+			assertEquals(expected, generated);
+		}
+	}
+
+	@Test public void orientationsTest() {
+		assertEquals(2, Position.orientations(1 << Tile.NORTH | 1 << Tile.SOUTH));
+		assertEquals(2, Position.orientations(1 << Tile.EAST | 1 << Tile.WEST));
+		assertEquals(4, Position.orientations(1 << Tile.NORTH | 1 << Tile.EAST));
+		assertEquals(4, Position.orientations(1 << Tile.NORTH | 1 << Tile.EAST | 1 << Tile.WEST));
+	}
+
+	@Test public void deduplicateTest() {
+		ActionGenerator all = new ActionGenerator(false);
+		ActionGenerator deduplicated = new ActionGenerator();
+		int[] actions = new int[ActionGenerator.MAX_ACTIONS];
+		long pruned = 0;
+		for (long seed = 0; seed < 20; seed++) {
+			Position position = Position.of(new Game(PLAYERS, seed));
+			Set<Position> expected = new HashSet<Position>();
+			int total = all.generate(position, actions);
+			for (int index = 0; index < total; index++) {
+				Position played = new Position(position);
+				ActionGenerator.apply(played, actions[index]);
+				expected.add(played);
+			}
+			Set<Position> reached = new HashSet<Position>();
+			int count = deduplicated.generate(position, actions);
+			for (int index = 0; index < count; index++) {
+				Position played = new Position(position);
+				ActionGenerator.apply(played, actions[index]);
+				reached.add(played);
+			}
+			assertEquals(expected, reached);
+			int distinct = Position.orientations(position.getMask(Position.FREE));
+			assertEquals(total, count * ActionGenerator.ROTATIONS / distinct);
+			pruned += total - count;
+		}
+		assertEquals(0, all.getPruned());
+		assertEquals(pruned, deduplicated.getPruned());
+		assertTrue(pruned > 0);
+	}
+
+	@Test public void reverseShiftTest() {
+		Game game = new Game(PLAYERS, 5);
+		int code = Board.shiftCode(Tile.NORTH, 5);
+		assertTrue(game.shiftBoard(code));
+		game.nextTurn();
+		int[] actions = new int[ActionGenerator.MAX_ACTIONS];
+		int count = new ActionGenerator().generate(Position.of(game), actions);
+		for (int index = 0; index < count; index++) {
+			assertTrue(ActionGenerator.shiftOf(actions[index]) != Board.reverseShift(code));
+		}
+	}
+
+	@Test public void applyTest() {
+		Position position = Position.of(new Game(PLAYERS, 2));
+		int[] actions = new int[ActionGenerator.MAX_ACTIONS];
+		int count = new ActionGenerator().generate(position, actions);
+		int action = actions[count - 1];
+		Position played = new Position(position);
+		ActionGenerator.apply(played, action);
+		assertEquals(ActionGenerator.shiftOf(action), played.getLastShift());
+		assertEquals(ActionGenerator.destinationOf(action), played.getPlayerCell(0));
+		assertEquals(action, ActionGenerator.action(ActionGenerator.rotationOf(action), ActionGenerator.shiftOf(action),
+				ActionGenerator.destinationOf(action)));
+	}
+
+	@Test(expected = IllegalArgumentException.class) public void bufferTest() {
+		new ActionGenerator().generate(Position.of(new Game(PLAYERS, 1)), new int[100]);
+	}
+
+	@Test public void allocationTest() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+			return;
+		}
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		ActionGenerator generator = new ActionGenerator();
+		Position position = Position.of(new Game(PLAYERS, 9));
+		int[] actions = new int[ActionGenerator.MAX_ACTIONS];
+		long total = 0;
+		for (int warmup = 0; warmup < 20000; warmup++) {
+			total += generator.generate(position, actions);
+		}
+		long id = Thread.currentThread().getId();
+		long before = allocations.getThreadAllocatedBytes(id);
+		for (int run = 0; run < 10000; run++) {
+			total += generator.generate(position, actions);
+		}
+		long allocated = allocations.getThreadAllocatedBytes(id) - before;
+		assertTrue(total > 0);
+		assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+	}
+}
@@ -0,0 +1,253 @@
+package code;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+/**
+ * <h1>ArchiveStats</h1>
+ * Aggregate statistics over a stream of {@code GameRecord}s, computed in a single pass with a
+ * fixed amount of memory however many games are streamed. Instances are mutable accumulators which
+ * can be combined, so a (parallel) stream is reduced with
+ * {@code stream.collect(ArchiveStats::new, ArchiveStats::accept, ArchiveStats::combine)}, which is
+ * what {@link #of(Stream)} does.
+ * <p>
+ * Player positions are tracked from each seat's starting tile (the cell of the record's starting
+ * position if it has one) using only the recorded shifts and paths (see {@code Board.shiftCell()}),
+ * so no board is ever built.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code long}: _games - the number of games accumulated
+ * {@code long}: _finishedGames - the number of those games with a winner
+ * {@code long}: _turns - the number of turns accumulated
+ * {@code long[]}: _seatGames - the number of finished games each seat took part in
+ * {@code long[]}: _seatWins - the number of finished games each seat won
+ * {@code long[]}: _tokenTurns - the sum, over games, of the turn number at which each token was collected
+ * {@code long[]}: _tokenCollections - the number of games in which each token was collected
+ * {@code long[]}: _shifts - the number of times each shift code was chosen
+ * {@code long[]}: _winnerCells - the number of turns which ended with the eventual winner on each cell
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class ArchiveStats {
+
+	private long _games;
+	private long _finishedGames;
+	private long _turns;
+	private long[] _seatGames;
+	private long[] _seatWins;
+	private long[] _tokenTurns;
+	private long[] _tokenCollections;
+	private long[] _shifts;
+	private long[] _winnerCells;
+
+	/**
+	 * Creates empty statistics.
+	 */
+	public ArchiveStats() {
+		_seatGames = new long[4];
+		_seatWins = new long[4];
+		_tokenTurns = new long[26];
+		_tokenCollections = new long[26];
+		_shifts = new long[Board.SHIFTS];
+		_winnerCells = new long[49];
+	}
+
+	/**
+	 * Computes the statistics of every record in the specified stream; the stream is consumed.
+	 *
+	 * @param records	the records to be accumulated (sequential or parallel)
+	 * @return			the statistics
+	 */
+	public static ArchiveStats of(Stream<GameRecord> records) {
+		return records.collect(ArchiveStats::new, ArchiveStats::accept, ArchiveStats::combine);
+	}
+
+	/**
+	 * Adds one game to these statistics.
+	 *
+	 * @param record	the game to be added
+	 */
+	public void accept(GameRecord record) {
+		int players = record.getPlayerCount();
+		int winner = record.getWinner();
+		_games++;
+		if (winner >= 0) {
+			_finishedGames++;
+			for (int seat = 0; seat < players; seat++) {
+				_seatGames[seat]++;
+			}
+			_seatWins[winner]++;
+		}
+
+		int[] cells = new int[players];
+		Position start = record.getStart();
+		for (int seat = 0; seat < players; seat++) {
+			cells[seat] = start != null ? start.getPlayerCell(seat) : Position.START_CELLS[seat];
+		}
+		int turnNumber = 0;
+		for (GameRecord.Turn turn : record.getTurns()) {
+			turnNumber++;
+			int shift = turn.getShift();
+			_shifts[shift]++;
+			for (int seat = 0; seat < players; seat++) {
+				cells[seat] = Board.shiftCell(shift, cells[seat] / 7, cells[seat] % 7);
+			}
+			int cell = cells[turn.getSeat()];
+			for (byte step : turn.getPath()) {
+				cell = step(cell, step);
+			}
+			cells[turn.getSeat()] = cell;
+			if (turn.getToken() > 0) {
+				_tokenTurns[turn.getToken()] += turnNumber;
+				_tokenCollections[turn.getToken()]++;
+			}
+			if (winner >= 0) {
+				_winnerCells[cells[winner]]++;
+			}
+		}
+		_turns += turnNumber;
+	}
+
+	/**
+	 * Returns the cell reached by taking one step in the specified direction from the specified cell.
+	 */
+	private static int step(int cell, int direction) {
+		switch (direction) {
+		case Tile.NORTH:
+			return cell - 7;
+		case Tile.SOUTH:
+			return cell + 7;
+		case Tile.WEST:
+			return cell - 1;
+		default:
+			return cell + 1;
+		}
+	}
+
+	/**
+	 * Adds all of the specified statistics into these statistics.
+	 *
+	 * @param other	the statistics to be merged in
+	 */
+	public void combine(ArchiveStats other) {
+		_games += other._games;
+		_finishedGames += other._finishedGames;
+		_turns += other._turns;
+		add(_seatGames, other._seatGames);
+		add(_seatWins, other._seatWins);
+		add(_tokenTurns, other._tokenTurns);
+		add(_tokenCollections, other._tokenCollections);
+		add(_shifts, other._shifts);
+		add(_winnerCells, other._winnerCells);
+	}
+
+	private static void add(long[] into, long[] from) {
+		for (int index = 0; index < into.length; index++) {
+			into[index] += from[index];
+		}
+	}
+
+	/**
+	 * Returns the number of games accumulated.
+	 * @return the number of games
+	 */
+	public long getGames() {
+		return _games;
+	}
+
+	/**
+	 * Returns the number of turns accumulated.
+	 * @return the number of turns
+	 */
+	public long getTurns() {
+		return _turns;
+	}
+
+	/**
+	 * Returns the fraction of finished games the specified seat took part in which it won.
+	 *
+	 * @param seat	the seat (0-3)
+	 * @return		the win rate, or 0 if the seat never played a finished game
+	 */
+	public double winRate(int seat) {
+		return _seatGames[seat] == 0 ? 0 : (double) _seatWins[seat] / _seatGames[seat];
+	}
+
+	/**
+	 * Returns the average turn number (counting every player's turns from 1) at which the
+	 * specified token was collected, over the games in which it was collected.
+	 *
+	 * @param token	the token number (1-20 or 25)
+	 * @return		the average turn number, or 0 if it was never collected
+	 */
+	public double averageTurnsToToken(int token) {
+		return _tokenCollections[token] == 0 ? 0 : (double) _tokenTurns[token] / _tokenCollections[token];
+	}
+
+	/**
+	 * Returns the fraction of all turns in which the specified shift was chosen.
+	 *
+	 * @param shift	the shift code
+	 * @return		the fraction of turns
+	 */
+	public double shiftShare(int shift) {
+		return _turns == 0 ? 0 : (double) _shifts[shift] / _turns;
+	}
+
+	/**
+	 * Returns the fraction of turns in finished games which ended with the eventual winner on the
+	 * tile at the specified position.
+	 *
+	 * @param row		the row of the board
+	 * @param column	the column of the board
+	 * @return			the fraction of turns
+	 */
+	public double winnerOccupancy(int row, int column) {
+		long total = 0;
+		for (long count : _winnerCells) {
+			total += count;
+		}
+		return total == 0 ? 0 : (double) _winnerCells[row * 7 + column] / total;
+	}
+
+	/**
+	 * Returns a multi-line, human-readable report of these statistics.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		report.append("Games: ").append(_games).append(" (").append(_finishedGames).append(" finished), turns: ").append(_turns).append('\n');
+		for (int seat = 0; seat < 4; seat++) {
+			report.append(String.format("Seat %d win rate: %.3f%n", seat + 1, winRate(seat)));
+		}
+		for (int token = 1; token <= 25; token++) {
+			if (token <= 20 || token == 25) {
+				report.append(String.format("Token %d collected on average at turn %.1f%n", token, averageTurnsToToken(token)));
+			}
+		}
+		for (int shift = 0; shift < Board.SHIFTS; shift++) {
+			report.append(String.format("Shift %d/%d: %.3f%n", Board.shiftDirection(shift), Board.shiftIndex(shift), shiftShare(shift)));
+		}
+		report.append("Winner occupancy by tile:\n");
+		for (int row = 0; row < 7; row++) {
+			for (int column = 0; column < 7; column++) {
+				report.append(String.format("%6.3f", winnerOccupancy(row, column)));
+			}
+			report.append('\n');
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Prints the statistics of the archive named by the first argument, reading it in parallel.
+	 * @param args - the path of the archive
+	 */
+	public static void main(String[] args) throws IOException {
+		try (GameArchive archive = new GameArchive(Paths.get(args[0]))) {
+			System.out.print(of(archive.records(true)));
+		}
+	}
+}
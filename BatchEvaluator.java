@@ -0,0 +1,402 @@
+package code;
+
+/**
+ * <h1>BatchEvaluator</h1>
+ * Evaluates every way the current player of a {@code Position} can rotate the free tile and shift
+ * the board (up to {@code MAX_VARIANTS} of them) at once: for each, the cells the player can then
+ * walk to, how far they are from the next token and a value weighing the two, as
+ * {@code LinearEvaluator} measures the {@code DISTANCE} and {@code REGION} of a single seat.
+ * <p>
+ * The variants are laid out as structure of arrays: lane {@code v} of {@code _east} holds the
+ * cells of variant {@code v} from which the player may step east, as a bitboard with bit
+ * <code> row * 7 + column </code> per cell, and so on for every direction. A shift changes one row
+ * or column, so each variant's bitboards are the position's with that line moved along by a bit
+ * shift and the free tile's paths put in at the end. Reachability is then a flood fill run on
+ * every lane together: each pass widens every lane's reached cells by one step with a few shifts
+ * and masks, until no lane changes, so the number of passes before a lane reaches the token is
+ * the player's distance from it. A lane which never reaches it is measured by widening the token's
+ * cell over the whole grid until it meets the reached cells. Every pass is the same branch-free
+ * loop over the lanes, which the JIT compiler can turn into SIMD instructions.
+ * <p>
+ * {@code evaluateScalar()} computes the same results one variant at a time, with a
+ * {@code Position} and a breadth-first search; it is the fallback and the reference the lanes are
+ * checked against. An evaluator keeps all its lanes and scratch space, so neither path allocates;
+ * it is not thread-safe, and each thread should have its own.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code int}: _distanceWeight - the weight of the distance from the token
+ * {@code int}: _regionWeight - the weight of the number of cells reached
+ * {@code int}: _count - the number of variants of the last position evaluated
+ * {@code int[]}: _rotations - the rotation of the free tile of each variant
+ * {@code int[]}: _shifts - the shift code of each variant
+ * {@code long[]}: _north / _west / _south / _east - the cells of each variant from which a step
+ * in that direction is possible
+ * {@code long[]}: _token - the cell of the next token in each variant, or 0 if it has been collected
+ * {@code long[]}: _reach - the cells the player can walk to in each variant
+ * {@code int[]}: _distances - the distance of the player from the next token in each variant
+ * {@code int[]}: _values - the value of each variant
+ * {@code long[]}: _lines - the bitboard of paths in each direction of the position being evaluated
+ * {@code Position}: _scratch - the variant being evaluated by the scalar path
+ * {@code int[]}: _queue - the cells reached by the scalar search
+ * {@code int[]}: _depths - the number of steps to each cell reached by the scalar search
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class BatchEvaluator {
+
+	/**
+	 * The most variants a position can have.
+	 */
+	public static final int MAX_VARIANTS = ActionGenerator.ROTATIONS * Board.SHIFTS;
+
+	private static final long BOARD = (1L << Position.CELLS) - 1;
+	private static final long COLUMN_0 = 0x0040810204081L;
+	private static final long NOT_COLUMN_0 = BOARD & ~COLUMN_0;
+	private static final long NOT_COLUMN_6 = BOARD & ~(COLUMN_0 << 6);
+
+	private final int _distanceWeight;
+	private final int _regionWeight;
+	private int _count;
+	private final int[] _rotations;
+	private final int[] _shifts;
+	private final long[] _north;
+	private final long[] _west;
+	private final long[] _south;
+	private final long[] _east;
+	private final long[] _token;
+	private final long[] _reach;
+	private final int[] _distances;
+	private final int[] _values;
+	private final long[] _lines;
+	private final Position _scratch;
+	private final int[] _queue;
+	private final int[] _depths;
+
+	/**
+	 * Creates an evaluator with the distance and region weights of {@code LinearEvaluator}.
+	 */
+	public BatchEvaluator() {
+		this(LinearEvaluator.DEFAULT_WEIGHTS[LinearEvaluator.DISTANCE], LinearEvaluator.DEFAULT_WEIGHTS[LinearEvaluator.REGION]);
+	}
+
+	/**
+	 * Creates an evaluator with the specified weights.
+	 *
+	 * @param distanceWeight	the weight of the distance from the next token
+	 * @param regionWeight		the weight of the number of cells the player can walk to
+	 */
+	public BatchEvaluator(int distanceWeight, int regionWeight) {
+		_distanceWeight = distanceWeight;
+		_regionWeight = regionWeight;
+		_rotations = new int[MAX_VARIANTS];
+		_shifts = new int[MAX_VARIANTS];
+		_north = new long[MAX_VARIANTS];
+		_west = new long[MAX_VARIANTS];
+		_south = new long[MAX_VARIANTS];
+		_east = new long[MAX_VARIANTS];
+		_token = new long[MAX_VARIANTS];
+		_reach = new long[MAX_VARIANTS];
+		_distances = new int[MAX_VARIANTS];
+		_values = new int[MAX_VARIANTS];
+		_lines = new long[4];
+		_scratch = new Position(4);
+		_queue = new int[Position.CELLS];
+		_depths = new int[Position.CELLS];
+	}
+
+	/**
+	 * Evaluates every variant of the current turn of the specified position, all lanes together.
+	 *
+	 * @param position	the position, which is left unchanged
+	 * @return			the number of variants, each rotation (of a distinct orientation) then each legal shift
+	 */
+	public int evaluate(Position position) {
+		int count = layOut(position);
+		long[] north = _north;
+		long[] west = _west;
+		long[] south = _south;
+		long[] east = _east;
+		long[] token = _token;
+		long[] reach = _reach;
+		int[] distances = _distances;
+		long changed;
+		do {
+			changed = 0;
+			for (int lane = 0; lane < count; lane++) {
+				long reached = reach[lane];
+				distances[lane] += (int) (((reached & token[lane]) - 1) >>> 63);
+				long next = reached | (reached & east[lane]) << 1 | (reached & west[lane]) >>> 1
+						| (reached & south[lane]) << 7 | (reached & north[lane]) >>> 7;
+				changed |= next ^ reached;
+				reach[lane] = next;
+			}
+		} while (changed != 0);
+		for (int lane = 0; lane < count; lane++) {
+			if (token[lane] != 0 && (reach[lane] & token[lane]) == 0) {
+				distances[lane] = Position.CELLS + apart(reach[lane], token[lane]);
+			} else if (token[lane] == 0) {
+				distances[lane] = 0;
+			}
+			_values[lane] = _distanceWeight * distances[lane] + _regionWeight * Long.bitCount(reach[lane]);
+		}
+		_count = count;
+		return count;
+	}
+
+	/**
+	 * Fills the lanes with every variant of the current turn of the specified position, each with
+	 * only the player's own cell reached.
+	 *
+	 * @return the number of variants
+	 */
+	private int layOut(Position position) {
+		for (int direction = 0; direction < 4; direction++) {
+			_lines[direction] = 0;
+		}
+		for (int cell = 0; cell < Position.CELLS; cell++) {
+			int mask = position.getMask(cell);
+			for (int direction = 0; direction < 4; direction++) {
+				_lines[direction] |= (long) (mask >> direction & 1) << cell;
+			}
+		}
+		int seat = position.getCurrentSeat();
+		int player = position.getPlayerCell(seat);
+		int next = position.findToken(position.getNextToken());
+		int free = position.getMask(Position.FREE);
+		int rotations = Position.orientations(free);
+		int count = 0;
+		for (int rotation = 0; rotation < rotations; rotation++) {
+			for (int shift = 0; shift < Board.SHIFTS; shift++) {
+				if (!position.isLegalShift(shift)) {
+					continue;
+				}
+				_rotations[count] = rotation;
+				_shifts[count] = shift;
+				_north[count] = shifted(_lines[Tile.NORTH], shift, free >> Tile.NORTH & 1);
+				_west[count] = shifted(_lines[Tile.WEST], shift, free >> Tile.WEST & 1);
+				_south[count] = shifted(_lines[Tile.SOUTH], shift, free >> Tile.SOUTH & 1);
+				_east[count] = shifted(_lines[Tile.EAST], shift, free >> Tile.EAST & 1);
+				count++;
+			}
+			free = Position.rotateMask(free);
+		}
+		for (int lane = 0; lane < count; lane++) {
+			long north = _north[lane];
+			long west = _west[lane];
+			long south = _south[lane];
+			long east = _east[lane];
+			_north[lane] = north & south << 7;
+			_south[lane] = south & north >>> 7;
+			_west[lane] = west & east << 1 & NOT_COLUMN_0;
+			_east[lane] = east & west >>> 1 & NOT_COLUMN_6;
+			int shift = _shifts[lane];
+			_reach[lane] = 1L << Board.shiftCell(shift, player / 7, player % 7);
+			if (next == Position.FREE) {
+				// the token on the free tile goes onto the board, unless the tile pushed off carries one
+				int end = Board.insertedCell(shift);
+				int pushed = Board.shiftDirection(shift) == Tile.NORTH || Board.shiftDirection(shift) == Tile.SOUTH
+						? Position.cell(6 - end / 7, end % 7) : Position.cell(end / 7, 6 - end % 7);
+				_token[lane] = position.getToken(pushed) != 0 ? 0 : 1L << end;
+			} else {
+				_token[lane] = next < 0 ? 0 : 1L << Board.shiftCell(shift, next / 7, next % 7);
+			}
+			_distances[lane] = 0;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the specified bitboard of paths in one direction after the specified shift, with
+	 * the specified bit of the free tile's paths put in.
+	 */
+	private static long shifted(long line, int shift, int free) {
+		int index = Board.shiftIndex(shift);
+		long moved;
+		long mask;
+		switch (Board.shiftDirection(shift)) {
+		case Tile.NORTH:
+			mask = COLUMN_0 << index;
+			moved = (line & mask) >>> 7;
+			break;
+		case Tile.SOUTH:
+			mask = COLUMN_0 << index;
+			moved = (line & mask) << 7 & mask;
+			break;
+		case Tile.WEST:
+			mask = 0x7FL << 7 * index;
+			moved = (line & mask) >>> 1 & mask;
+			break;
+		default:
+			mask = 0x7FL << 7 * index;
+			moved = (line & mask) << 1 & mask;
+			break;
+		}
+		return line & ~mask | moved | (long) free << Board.insertedCell(shift);
+	}
+
+	/**
+	 * Returns the specified cells and every cell next to one of them.
+	 */
+	private static long widen(long cells) {
+		return cells | (cells & NOT_COLUMN_6) << 1 | (cells & NOT_COLUMN_0) >>> 1 | (cells << 7 & BOARD) | cells >>> 7;
+	}
+
+	/**
+	 * Returns the fewest rows and columns between the specified cells and the specified cell, by
+	 * widening the latter one step in every direction at a time.
+	 */
+	private static int apart(long cells, long target) {
+		int steps = 0;
+		while ((cells & target) == 0) {
+			target = widen(target);
+			steps++;
+		}
+		return steps;
+	}
+
+	/**
+	 * Evaluates every variant of the current turn of the specified position one at a time, with
+	 * the same results as {@code evaluate()}.
+	 *
+	 * @param position	the position, which is left unchanged
+	 * @return			the number of variants
+	 */
+	public int evaluateScalar(Position position) {
+		int seat = position.getCurrentSeat();
+		int rotations = Position.orientations(position.getMask(Position.FREE));
+		int count = 0;
+		for (int rotation = 0; rotation < rotations; rotation++) {
+			for (int shift = 0; shift < Board.SHIFTS; shift++) {
+				if (!position.isLegalShift(shift)) {
+					continue;
+				}
+				_scratch.copyFrom(position);
+				for (int turn = 0; turn < rotation; turn++) {
+					_scratch.rotateFreeTile();
+				}
+				_scratch.shift(shift);
+				int token = _scratch.findToken(_scratch.getNextToken());
+				int reached = reachable(_scratch, _scratch.getPlayerCell(seat));
+				long cells = 0;
+				int distance = token < 0 ? 0 : -1;
+				int closest = Integer.MAX_VALUE;
+				for (int index = 0; index < reached; index++) {
+					int cell = _queue[index];
+					cells |= 1L << cell;
+					if (cell == token) {
+						distance = _depths[index];
+					}
+					if (token >= 0) {
+						closest = Math.min(closest, Math.abs(cell / 7 - token / 7) + Math.abs(cell % 7 - token % 7));
+					}
+				}
+				_rotations[count] = rotation;
+				_shifts[count] = shift;
+				_reach[count] = cells;
+				_distances[count] = distance >= 0 ? distance : Position.CELLS + closest;
+				_values[count] = _distanceWeight * _distances[count] + _regionWeight * reached;
+				count++;
+			}
+		}
+		_count = count;
+		return count;
+	}
+
+	/**
+	 * Finds every cell a player on the specified cell can walk to, by a breadth-first search.
+	 *
+	 * @return the number of cells found, which are in {@code _queue}, with the number of steps to
+	 *         each in {@code _depths}
+	 */
+	private int reachable(Position position, int start) {
+		long seen = 1L << start;
+		_queue[0] = start;
+		_depths[0] = 0;
+		int reached = 1;
+		for (int head = 0; head < reached; head++) {
+			int cell = _queue[head];
+			for (int direction = 0; direction < 4; direction++) {
+				if (position.canStep(cell, direction)) {
+					int next = Position.neighbour(cell, direction);
+					if ((seen & 1L << next) == 0) {
+						seen |= 1L << next;
+						_depths[reached] = _depths[head] + 1;
+						_queue[reached++] = next;
+					}
+				}
+			}
+		}
+		return reached;
+	}
+
+	/**
+	 * Returns the variant of the last position evaluated with the highest value (the first of
+	 * equals).
+	 * @return the variant
+	 */
+	public int getBest() {
+		int best = 0;
+		for (int variant = 1; variant < _count; variant++) {
+			if (_values[variant] > _values[best]) {
+				best = variant;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the number of variants of the last position evaluated.
+	 * @return the variant count
+	 */
+	public int getCount() {
+		return _count;
+	}
+
+	/**
+	 * Returns the number of clockwise rotations of the free tile of the specified variant.
+	 * @param variant - the variant
+	 * @return the rotation
+	 */
+	public int getRotation(int variant) {
+		return _rotations[variant];
+	}
+
+	/**
+	 * Returns the shift code of the specified variant.
+	 * @param variant - the variant
+	 * @return the shift code
+	 */
+	public int getShift(int variant) {
+		return _shifts[variant];
+	}
+
+	/**
+	 * Returns the cells the player can walk to in the specified variant.
+	 * @param variant - the variant
+	 * @return a bitboard with bit <code> row * 7 + column </code> set for each cell
+	 */
+	public long getReach(int variant) {
+		return _reach[variant];
+	}
+
+	/**
+	 * Returns the distance of the player from the next token in the specified variant, as
+	 * {@code LinearEvaluator} measures it.
+	 * @param variant - the variant
+	 * @return the distance
+	 */
+	public int getDistance(int variant) {
+		return _distances[variant];
+	}
+
+	/**
+	 * Returns the value of the specified variant.
+	 * @param variant - the variant
+	 * @return the value, higher being better for the player
+	 */
+	public int getValue(int variant) {
+		return _values[variant];
+	}
+}
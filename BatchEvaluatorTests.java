@@ -0,0 +1,87 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import code.ActionGenerator;
+import code.BatchEvaluator;
+import code.Game;
+import code.LinearEvaluator;
+import code.Position;
+
+public class BatchEvaluatorTests {
+
+	private static final String[] PLAYERS = {"Ann", "Bob", "Cat"};
+
+	@Test public void matchesScalarTest() {
+		BatchEvaluator lanes = new BatchEvaluator();
+		BatchEvaluator scalar = new BatchEvaluator();
+		int[] actions = new int[ActionGenerator.MAX_ACTIONS];
+		Random random = new Random(3);
+		for (long seed = 0; seed < 20; seed++) {
+			Position position = Position.of(new Game(PLAYERS, seed));
+			for (int turn = 0; turn < 30 && position.getNextToken() <= 25; turn++) {
+				int count = lanes.evaluate(position);
+				assertEquals(count, scalar.evaluateScalar(position));
+				for (int variant = 0; variant < count; variant++) {
+					assertEquals(scalar.getRotation(variant), lanes.getRotation(variant));
+					assertEquals(scalar.getShift(variant), lanes.getShift(variant));
+					assertEquals(scalar.getReach(variant), lanes.getReach(variant));
+					assertEquals(scalar.getDistance(variant), lanes.getDistance(variant));
+					assertEquals(scalar.getValue(variant), lanes.getValue(variant));
+				}
+				assertEquals(scalar.getBest(), lanes.getBest());
+				int played = new ActionGenerator().generate(position, actions);
+				ActionGenerator.play(position, actions[random.nextInt(played)]);
+			}
+		}
+	}
+
+	@Test public void matchesGeneratorTest() {
+		BatchEvaluator lanes = new BatchEvaluator();
+		int[] actions = new int[ActionGenerator.MAX_ACTIONS];
+		for (long seed = 0; seed < 10; seed++) {
+			Position position = Position.of(new Game(PLAYERS, seed));
+			int count = new ActionGenerator().generate(position, actions);
+			int variants = lanes.evaluate(position);
+			long[] reach = new long[variants];
+			int variant = -1;
+			for (int index = 0; index < count; index++) {
+				int action = actions[index];
+				if (index == 0 || action >>> 6 != actions[index - 1] >>> 6) {
+					variant++;
+					assertEquals(ActionGenerator.rotationOf(action), lanes.getRotation(variant));
+					assertEquals(ActionGenerator.shiftOf(action), lanes.getShift(variant));
+				}
+				reach[variant] |= 1L << ActionGenerator.destinationOf(action);
+			}
+			assertEquals(variants, variant + 1);
+			for (variant = 0; variant < variants; variant++) {
+				assertEquals(reach[variant], lanes.getReach(variant));
+			}
+		}
+	}
+
+	@Test public void matchesLinearTest() {
+		BatchEvaluator lanes = new BatchEvaluator();
+		LinearEvaluator linear = new LinearEvaluator();
+		int[] features = new int[LinearEvaluator.FEATURES];
+		Position position = Position.of(new Game(new String[] {"Ann"}, 8));
+		int count = lanes.evaluate(position);
+		for (int variant = 0; variant < count; variant++) {
+			Position shifted = new Position(position);
+			for (int turn = 0; turn < lanes.getRotation(variant); turn++) {
+				shifted.rotateFreeTile();
+			}
+			shifted.shift(lanes.getShift(variant));
+			linear.features(shifted, 0, features);
+			assertEquals(features[LinearEvaluator.DISTANCE], lanes.getDistance(variant));
+			assertEquals(features[LinearEvaluator.REGION], Long.bitCount(lanes.getReach(variant)));
+		}
+		assertTrue(count > 0);
+	}
+}
@@ -0,0 +1,504 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import code.Game;
+
+/**
+ * <h1>BlockingGameServer</h1>
+ * An alternative to {@code GameServer} that speaks the same {@code Protocol} with a thread per
+ * connection and ordinary blocking socket I/O instead of hand-written event loops.
+ * <p>
+ * With {@code withVirtualThreads()} every connection runs on its own virtual thread, so idle
+ * connections cost a parked virtual thread and two small buffers rather than an OS thread. With
+ * {@code withThreadPool()} connections run on a fixed pool of platform threads instead, for
+ * comparison (see {@code ServerLoadTest}); each connection then holds a pool thread for as long as
+ * it is open, so the pool size caps the number of connections served at once.
+ * <p>
+ * Games stay single-writer however many connections play in them: each session's requests are
+ * run one at a time by its own {@code SerialExecutor} mailbox, on the actor executor, while the
+ * requesting connection's thread waits for the result. A mailbox never writes to a socket: the
+ * frames it sends are queued on each member's connection and written by a task of the writer
+ * executor, so a member which stops reading cannot hold up its session. A connection with more
+ * than {@code getMaxQueuedBytes()} waiting to be written is disconnected as too slow.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code ServerSocketChannel}: _server - the listening socket
+ * {@code ExecutorService}: _connections - the executor each connection is run on
+ * {@code ExecutorService}: _actors - the executor session mailboxes run their tasks on
+ * {@code ExecutorService}: _writers - the executor the queued frames of the connections are written on
+ * {@code Thread}: _acceptor - the thread accepting connections
+ * {@code Map<Integer, Session>}: _sessions - every open session, by id
+ * {@code AtomicInteger}: _nextId - the id of the next session to be opened
+ * {@code AtomicInteger}: _connectionCount - the number of open connections
+ * {@code int}: _maxQueuedBytes - the most bytes a connection may have waiting to be written
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class BlockingGameServer implements Closeable {
+
+	/**
+	 * The most bytes a connection may have waiting to be written unless set otherwise.
+	 */
+	public static final int DEFAULT_MAX_QUEUED_BYTES = 1 << 16;
+
+	private final ServerSocketChannel _server;
+	private final ExecutorService _connections;
+	private final ExecutorService _actors;
+	private final ExecutorService _writers;
+	private final Thread _acceptor;
+	private final Map<Integer, Session> _sessions;
+	private final AtomicInteger _nextId;
+	private final AtomicInteger _connectionCount;
+	private volatile int _maxQueuedBytes;
+
+	/**
+	 * Starts a server listening on the specified address.
+	 *
+	 * @param address		the address to listen on (port 0 for any free port)
+	 * @param connections	the executor each connection is run on; it must be able to run as many
+	 *						tasks at once as there are to be open connections
+	 * @param actors		the executor session mailboxes run their tasks on
+	 * @param writers		the executor queued frames are written on; it must be able to run a task
+	 *						at once for every connection being written to
+	 * @throws IOException if the socket cannot be bound
+	 */
+	public BlockingGameServer(InetSocketAddress address, ExecutorService connections, ExecutorService actors,
+			ExecutorService writers) throws IOException {
+		_connections = connections;
+		_actors = actors;
+		_writers = writers;
+		_sessions = new ConcurrentHashMap<Integer, Session>();
+		_nextId = new AtomicInteger(1);
+		_connectionCount = new AtomicInteger(0);
+		_maxQueuedBytes = DEFAULT_MAX_QUEUED_BYTES;
+		_server = ServerSocketChannel.open();
+		_server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		_server.bind(address, 1024);
+		_acceptor = new Thread(this::accept, "labyrinth-accept");
+		_acceptor.start();
+	}
+
+	/**
+	 * Starts a server running every connection, session mailbox and write on virtual threads.
+	 *
+	 * @param address	the address to listen on
+	 * @return			the server
+	 * @throws IOException if the socket cannot be bound
+	 * @throws UnsupportedOperationException if the JVM has no virtual threads
+	 */
+	public static BlockingGameServer withVirtualThreads(InetSocketAddress address) throws IOException {
+		return new BlockingGameServer(address, newVirtualThreadExecutor(), newVirtualThreadExecutor(), newVirtualThreadExecutor());
+	}
+
+	/**
+	 * Starts a server running connections on a fixed pool of platform threads, session mailboxes
+	 * on a pool with one thread per core, and writes on a cached pool (one thread per connection
+	 * being written to at once).
+	 *
+	 * @param address	the address to listen on
+	 * @param threads	the number of connection threads, and so the most connections served at once
+	 * @return			the server
+	 * @throws IOException if the socket cannot be bound
+	 */
+	public static BlockingGameServer withThreadPool(InetSocketAddress address, int threads) throws IOException {
+		return new BlockingGameServer(address, Executors.newFixedThreadPool(threads),
+				Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()), Executors.newCachedThreadPool());
+	}
+
+	/**
+	 * Returns whether the running JVM supports virtual threads (Java 21 or later).
+	 * @return true if {@code withVirtualThreads()} can be used
+	 */
+	public static boolean hasVirtualThreads() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns a new executor starting a virtual thread per task. Looked up reflectively so that
+	 * the server still builds and runs (in thread pool mode) on Java 17.
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Virtual threads need Java 21 or later.", e);
+		}
+	}
+
+	/**
+	 * Accepts connections until the server is closed, running each on the connection executor. A
+	 * connection which fails before it is handed over is closed, and the next one accepted; so is
+	 * one the executor cannot run, as when a pool cannot start another thread.
+	 */
+	private void accept() {
+		while (_server.isOpen()) {
+			SocketChannel channel;
+			try {
+				channel = _server.accept();
+			} catch (IOException e) {
+				// the server socket has been closed, or could not accept this time
+				if (_server.isOpen()) {
+					GameServer.pause(GameServer.ACCEPT_RETRY_MILLIS);
+				}
+				continue;
+			}
+			try {
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			} catch (IOException e) {
+				GameServer.close(channel);
+				continue;
+			}
+			_connectionCount.incrementAndGet();
+			try {
+				_connections.execute(new BlockingConnection(channel));
+			} catch (RuntimeException | OutOfMemoryError e) {
+				// rejected, or no thread could be started for it: the client sees the connection close
+				_connectionCount.decrementAndGet();
+				GameServer.close(channel);
+			}
+		}
+	}
+
+	/**
+	 * Returns the port the server is listening on.
+	 * @return the port
+	 */
+	public int getPort() {
+		return _server.socket().getLocalPort();
+	}
+
+	/**
+	 * Returns the number of open sessions.
+	 * @return the session count
+	 */
+	public int getSessionCount() {
+		return _sessions.size();
+	}
+
+	/**
+	 * Returns the number of open connections, including any waiting for a pool thread.
+	 * @return the connection count
+	 */
+	public int getConnectionCount() {
+		return _connectionCount.get();
+	}
+
+	/**
+	 * Returns the most bytes a connection may have waiting to be written before it is disconnected.
+	 * @return the byte count
+	 */
+	public int getMaxQueuedBytes() {
+		return _maxQueuedBytes;
+	}
+
+	/**
+	 * Sets the most bytes a connection may have waiting to be written before it is disconnected.
+	 * @param bytes - the byte count
+	 */
+	public void setMaxQueuedBytes(int bytes) {
+		if (bytes <= 0) {
+			throw new IllegalArgumentException("The queue limit must be positive.");
+		}
+		_maxQueuedBytes = bytes;
+	}
+
+	/**
+	 * Stops accepting connections, closes every connection and stops the executors.
+	 */
+	@Override
+	public void close() throws IOException {
+		_server.close();
+		try {
+			_acceptor.join();
+			_connections.shutdownNow();
+			_connections.awaitTermination(10, TimeUnit.SECONDS);
+			_actors.shutdown();
+			_actors.awaitTermination(10, TimeUnit.SECONDS);
+			_writers.shutdownNow();
+			_writers.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		_sessions.clear();
+	}
+
+	/**
+	 * <h1>BlockingConnection</h1>
+	 * One client connection, read with blocking I/O by the thread running it. Requests which
+	 * touch a game are handed to the session's mailbox and waited for. Answers and sync frames are
+	 * copied, in order, onto a queue which one task of the writer executor at a time writes to the
+	 * socket; whoever queues never waits for the socket. Queueing more than
+	 * {@code _maxQueuedBytes} closes the connection instead.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code SocketChannel}: _channel - the client socket
+	 * {@code ByteBuffer}: _in - the bytes read but not yet decoded (in write mode)
+	 * {@code ByteBuffer}: _out - the answers not yet queued (in write mode)
+	 * {@code Session}: _session - the session the connection plays in, or null
+	 * {@code ArrayDeque<ByteBuffer>}: _queue - the frames waiting to be written, in order
+	 * {@code int}: _queuedBytes - the number of bytes in {@code _queue}
+	 * {@code boolean}: _writing - whether a writer task is draining {@code _queue}
+	 */
+	private class BlockingConnection implements Runnable, Session.Member {
+
+		private final SocketChannel _channel;
+		private final ByteBuffer _in;
+		private final ByteBuffer _out;
+		private Session _session;
+		private final ArrayDeque<ByteBuffer> _queue;
+		private int _queuedBytes;
+		private boolean _writing;
+
+		BlockingConnection(SocketChannel channel) {
+			_channel = channel;
+			_in = ByteBuffer.allocate(Protocol.HEADER_BYTES + Protocol.MAX_PAYLOAD);
+			_out = ByteBuffer.allocate(Protocol.HEADER_BYTES + Protocol.MAX_PAYLOAD);
+			_queue = new ArrayDeque<ByteBuffer>();
+			_queuedBytes = 0;
+			_writing = false;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (_channel.read(_in) >= 0) {
+					_in.flip();
+					int length;
+					while ((length = Protocol.frameLength(_in)) >= 0) {
+						int end = _in.position() + length;
+						int limit = _in.limit();
+						byte type = _in.get(_in.position() + 2);
+						_in.position(_in.position() + Protocol.HEADER_BYTES).limit(end);
+						handle(type, _in);
+						_in.limit(limit).position(end);
+					}
+					_in.compact();
+					synchronized (_out) {
+						flush();
+					}
+				}
+			} catch (IOException | IllegalArgumentException e) {
+				// the client disconnected, the server is closing or the client broke the protocol
+			} finally {
+				leaveSession();
+				_connectionCount.decrementAndGet();
+				try {
+					_channel.close();
+				} catch (IOException e) {
+					// nothing more can be done
+				}
+			}
+		}
+
+		/**
+		 * Carries out one request, queueing its answer.
+		 */
+		private void handle(byte type, ByteBuffer payload) {
+			try {
+				switch (type) {
+				case Protocol.OPEN:
+					long seed = payload.getLong();
+					String[] names = Protocol.getNames(payload);
+					leaveSession();
+					Session opened = new Session(_nextId.getAndIncrement(), new Game(names, seed), new SerialExecutor(_actors), this);
+					_sessions.put(opened.getId(), opened);
+					_session = opened;
+					reply(type, Protocol.OK, opened.getId());
+					break;
+				case Protocol.RESYNC:
+					Session synced = _session;
+					if (synced == null) {
+						reply(type, Protocol.NO_SESSION, 0);
+					} else {
+						reply(type, call(synced, () -> synced.resync(this)), 0);
+					}
+					break;
+				case Protocol.WATCH:
+					// spectators are fanned out to with non-blocking writes, which only GameServer makes
+					reply(type, Protocol.REJECTED, payload.getInt());
+					break;
+				case Protocol.QUEUE:
+					// the matchmaking lobby places games on event loops, which only GameServer has
+					reply(type, Protocol.REJECTED, 0);
+					break;
+				case Protocol.JOIN:
+					int id = payload.getInt();
+					int seat = payload.get();
+					Session session = _sessions.get(id);
+					if (session == null) {
+						reply(type, Protocol.NO_SESSION, id);
+						break;
+					}
+					if (session != _session) {
+						leaveSession();
+					}
+					byte status = call(session, () -> session.join(this, seat));
+					if (status == Protocol.OK) {
+						_session = session;
+					}
+					reply(type, status, id);
+					break;
+				default:
+					Session current = _session;
+					if (current == null) {
+						reply(type, Protocol.NO_SESSION, 0);
+						break;
+					}
+					int[] turn = new int[1];
+					byte result = call(current, () -> {
+						byte executed = current.execute(this, type, payload);
+						turn[0] = current.getGame().getTurnNumber();
+						return executed;
+					});
+					reply(type, result, turn[0]);
+				}
+			} catch (BufferUnderflowException | IllegalArgumentException e) {
+				reply(type, Protocol.BAD_MESSAGE, 0);
+			}
+		}
+
+		/**
+		 * Adds a {@code RESULT} frame to the answers, queueing those already there first if there
+		 * is no room.
+		 */
+		private void reply(byte request, byte status, int value) {
+			synchronized (_out) {
+				if (_out.remaining() < Protocol.HEADER_BYTES + 6) {
+					flush();
+				}
+				Protocol.putResult(_out, request, status, value);
+			}
+		}
+
+		/**
+		 * Runs the specified request in the session's mailbox and waits for its status.
+		 */
+		private byte call(Session session, Supplier<Byte> request) {
+			return CompletableFuture.supplyAsync(request, session.getExecutor()).join();
+		}
+
+		/**
+		 * Leaves the current session, if any, closing it if this was its last member.
+		 */
+		private void leaveSession() {
+			Session session = _session;
+			if (session != null) {
+				session.getExecutor().execute(() -> {
+					if (session.leave(this)) {
+						_sessions.remove(session.getId());
+					}
+				});
+				_session = null;
+			}
+		}
+
+		/**
+		 * Queues the specified frames to be written, after any answers not yet queued, without
+		 * waiting for the socket.
+		 */
+		@Override
+		public void send(ByteBuffer frames) {
+			synchronized (_out) {
+				flush();
+				enqueue(frames);
+			}
+		}
+
+		/**
+		 * Queues every answer not yet queued. Must be called holding the lock on {@code _out}.
+		 */
+		private void flush() {
+			_out.flip();
+			enqueue(_out);
+			_out.clear();
+		}
+
+		/**
+		 * Copies the specified frames onto the queue and starts a writer task if none is running;
+		 * closes the connection instead if that would queue more than {@code _maxQueuedBytes}.
+		 */
+		private void enqueue(ByteBuffer frames) {
+			int length = frames.remaining();
+			if (length == 0) {
+				return;
+			}
+			synchronized (_queue) {
+				if (!_channel.isOpen()) {
+					frames.position(frames.limit());
+					return;
+				}
+				if (_queuedBytes + length > _maxQueuedBytes) {
+					// the client is not reading: the connection's own thread finds out when it next reads
+					frames.position(frames.limit());
+					GameServer.close(_channel);
+					return;
+				}
+				_queue.add(ByteBuffer.allocate(length).put(frames).flip());
+				_queuedBytes += length;
+				if (!_writing) {
+					try {
+						_writers.execute(this::drain);
+						_writing = true;
+					} catch (RejectedExecutionException e) {
+						// the server is closing
+						GameServer.close(_channel);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Writes the queue to the socket until it is empty; run by one writer task at a time.
+		 */
+		private void drain() {
+			try {
+				while (true) {
+					ByteBuffer frames;
+					synchronized (_queue) {
+						frames = _queue.peek();
+						if (frames == null) {
+							_writing = false;
+							return;
+						}
+					}
+					while (frames.hasRemaining()) {
+						_channel.write(frames);
+					}
+					synchronized (_queue) {
+						_queue.poll();
+						_queuedBytes -= frames.limit();
+					}
+				}
+			} catch (IOException e) {
+				// the connection's own thread finds out when it next reads
+				GameServer.close(_channel);
+			}
+		}
+	}
+}
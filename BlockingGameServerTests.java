@@ -0,0 +1,113 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import code.Board;
+import code.Tile;
+import server.BlockingGameServer;
+import server.GameClient;
+import server.Protocol;
+
+public class BlockingGameServerTests {
+
+	private static final InetSocketAddress ANY = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+	private void playTurns(BlockingGameServer server) throws IOException {
+		InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+		try (GameClient first = new GameClient(address); GameClient second = new GameClient(address)) {
+			assertEquals(Protocol.NO_SESSION, first.endTurn());
+			assertEquals(Protocol.OK, first.open(3, "Ann", "Bob"));
+			int session = first.getValue();
+			assertEquals(Protocol.OK, second.join(session, 1));
+			assertEquals(Protocol.NOT_YOUR_TURN, second.shift(0));
+			assertEquals(Protocol.OK, first.shift(Board.shiftCode(Tile.SOUTH, 5)));
+			assertEquals(Protocol.OK, first.endTurn());
+			assertEquals(Protocol.REJECTED, second.shift(Board.shiftCode(Tile.NORTH, 5)));
+			assertEquals(Protocol.OK, second.shift(Board.shiftCode(Tile.NORTH, 1)));
+			assertEquals(Protocol.OK, second.endTurn());
+			assertEquals(2, second.getValue());
+		}
+	}
+
+	@Test public void threadPoolTest() throws IOException {
+		try (BlockingGameServer server = BlockingGameServer.withThreadPool(ANY, 4)) {
+			playTurns(server);
+		}
+	}
+
+	@Test public void virtualThreadTest() throws IOException {
+		if (BlockingGameServer.hasVirtualThreads()) {
+			try (BlockingGameServer server = BlockingGameServer.withVirtualThreads(ANY)) {
+				playTurns(server);
+			}
+		}
+	}
+
+	@Test public void slowMemberTest() throws IOException {
+		try (BlockingGameServer server = BlockingGameServer.withThreadPool(ANY, 4)) {
+			server.setMaxQueuedBytes(1024);
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+			try (GameClient player = new GameClient(address); SocketChannel slow = SocketChannel.open()) {
+				assertEquals(Protocol.OK, player.open(6, "Ann", "Bob"));
+				// a member which joins and then never reads what it is sent
+				slow.setOption(StandardSocketOptions.SO_RCVBUF, 1024);
+				slow.connect(address);
+				ByteBuffer join = ByteBuffer.allocate(Protocol.HEADER_BYTES + 5);
+				Protocol.putJoin(join, player.getValue(), 1);
+				slow.write(join.flip());
+				for (int rotation = 0; rotation < 200000 && server.getConnectionCount() > 1; rotation++) {
+					assertEquals(Protocol.OK, player.rotate(true));
+				}
+				assertEquals(1, server.getConnectionCount());
+				assertEquals(Protocol.OK, player.rotate(true));
+			}
+		}
+	}
+
+	@Test public void rejectedTest() throws IOException, InterruptedException {
+		// one connection thread and no queue, so a second connection at once is rejected
+		ThreadPoolExecutor connections = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+		try (BlockingGameServer server = new BlockingGameServer(ANY, connections,
+				Executors.newSingleThreadExecutor(), Executors.newCachedThreadPool())) {
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+			try (GameClient first = new GameClient(address)) {
+				assertEquals(Protocol.OK, first.open(3, "Ann", "Bob"));
+				try (GameClient second = new GameClient(address)) {
+					second.open(4, "Cat", "Dan");
+					fail("The rejected connection was answered.");
+				} catch (IOException e) {
+					// closed by the server
+				}
+				assertEquals(1, server.getConnectionCount());
+			}
+			for (int wait = 0; wait < 100 && server.getConnectionCount() > 0; wait++) {
+				Thread.sleep(10);
+			}
+			// the acceptor is still running
+			try (GameClient third = new GameClient(address)) {
+				assertEquals(Protocol.OK, third.open(5, "Eve", "Fay"));
+			}
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class) public void noVirtualThreadsTest() throws IOException {
+		if (BlockingGameServer.hasVirtualThreads()) {
+			throw new UnsupportedOperationException();
+		}
+		BlockingGameServer.withVirtualThreads(ANY).close();
+	}
+}
@@ -26,7 +26,14 @@ import java.util.Random;
  * @since S.1
  */
 public class Board {
-	
+
+	/**
+	 * The number of distinct shifts available on a board: each of the 3 shiftable
+	 * rows/columns in each of the 4 directions. A shift is identified by a shift code
+	 * in the range [0, SHIFTS), see {@link #shiftCode(int, int)}.
+	 */
+	public static final int SHIFTS = 12;
+
 	private static Random r = new Random();
 
 	private Tile[][] _board;
@@ -43,45 +50,121 @@ public class Board {
 	 * is instantiated for the board's <code> _freeTile </code>.
 	 */
 	public Board(ArrayList<Player> players) {
+		this(players, r);
+	}
+	
+	/**
+	 * Initializes a Board exactly like <code> Board(ArrayList) </code>, but draws every random
+	 * choice (tile types, tile orientations and token placement) from a Random object seeded with
+	 * the specified seed, so that the same seed always regenerates the same board.
+	 * 
+	 * @param players	the players to be placed on the board
+	 * @param seed		the seed the board is generated from
+	 */
+	public Board(ArrayList<Player> players, long seed) {
+		this(players, new Random(seed));
+	}
+	
+	/**
+	 * Initializes a Board, drawing every random choice from the specified Random object.
+	 */
+	private Board(ArrayList<Player> players, Random random) {
 		_board = new Tile[7][7];
 		numS = 0;
 		numL = 0;
 		numT = 0;
 		
 		setFixedTiles();
-		populateBoard();
+		populateBoard(random);
 		placePlayers(players);
-		placeTokens();
+		placeTokens(random);
 	}
-	
+
+	/**
+	 * Rebuilds a Board from a <code> Position </code>: every tile (and the free tile) gets the
+	 * paths, texture and token stored in the position, and each of the specified players is
+	 * placed on the cell the position has for their seat.
+	 *
+	 * @param position	the position to be rebuilt
+	 * @param players	the players to be placed on the board, or null for none
+	 */
+	public Board(Position position, ArrayList<Player> players) {
+		_board = new Tile[7][7];
+		numS = 0;
+		numL = 0;
+		numT = 0;
+
+		for (int row = 0; row < 7; row++) {
+			for (int column = 0; column < 7; column++) {
+				_board[row][column] = createTile(position, Position.cell(row, column), row, column);
+			}
+		}
+		_freeTile = createTile(position, Position.FREE, -1, -1);
+
+		if (players != null) {
+			for (Player player : players) {
+				int cell = position.getPlayerCell(player.getNumber());
+				player.setTile(_board[cell / 7][cell % 7]);
+			}
+		}
+	}
+
+	/**
+	 * Creates the tile stored at the specified cell of a position and, unless it is one of the
+	 * fixed tiles, counts its type.
+	 */
+	private Tile createTile(Position position, int cell, int row, int column) {
+		int mask = position.getMask(cell);
+		boolean north = (mask & (1 << Tile.NORTH)) != 0;
+		boolean south = (mask & (1 << Tile.SOUTH)) != 0;
+		boolean east = (mask & (1 << Tile.EAST)) != 0;
+		boolean west = (mask & (1 << Tile.WEST)) != 0;
+		Tile tile = new Tile(north, south, east, west, row, column, Tile.iconPath(north, south, east, west));
+		if (row % 2 != 0 || column % 2 != 0) {
+			if (tile.getPathNumber() == 3) {
+				numT++;
+			} else if (north == south) {
+				numS++;
+			} else {
+				numL++;
+			}
+		}
+		if (position.getToken(cell) != 0) {
+			tile.setToken(new Token(position.getToken(cell)));
+		}
+		return tile;
+	}
+
 	/**
 	 * Places tiles with randomized path options at all positions on the board not
 	 * already occupied by non-shiftable tiles, as initialized in the <code> setFixedTiles() </code>
 	 * method.
+	 * 
+	 * @param random	the source of randomness for tile types and orientations
 	 */
-	private void populateBoard() {
+	private void populateBoard(Random random) {
 		for (int row = 0; row < 7; row++) {
 			for (int column = 0; column < 7; column++) {
 				do {
 					if (_board[row][column] == null) {
 						
-						int i = r.nextInt(3);
+						int i = random.nextInt(3);
 						if(i==0){
 							if(numS<13){
 								numS++;
-								_board[row][column] = new Tile(row, column, 'S');
+								_board[row][column] = new Tile(row, column, 'S', random);
 							}
 						}
 						else if(i==1){
 							if(numL<15){
 								numL++;
-							_board[row][column] = new Tile(row, column, 'L');
+							_board[row][column] = new Tile(row, column, 'L', random);
 							}
 						}
 						else{
 							if(numT <6){
 								numT++;
-							_board[row][column] = new Tile(row, column, 'T');
+							_board[row][column] = new Tile(row, column, 'T', random);
 							}
 						}
 					}
@@ -89,15 +172,15 @@ public class Board {
 			}
 		}
 		if (numS != 13) {
-			_freeTile = new Tile(-1, -1, 'S');
+			_freeTile = new Tile(-1, -1, 'S', random);
 			numS++;
 		}
 		else if (numL != 15) {
-			_freeTile = new Tile(-1, -1, 'L');
+			_freeTile = new Tile(-1, -1, 'L', random);
 			numL++;
 		}
 		else {
-			_freeTile = new Tile (-1, -1, 'T');
+			_freeTile = new Tile (-1, -1, 'T', random);
 			numT++;
 		}
 	}
@@ -183,15 +266,17 @@ public class Board {
 	 * Places the tokens randomly across the middle section of the board (leaves outer rim alone).
 	 * The 21 tokens are added to an ArrayList, and then are shuffled using the Collections.shuffle() method.
 	 * Then, they are placed in the middle 5x5 section of the board one by one until there are no tokens left to place.
+	 * 
+	 * @param random	the source of randomness for the shuffle
 	 */
-	private void placeTokens() {
+	private void placeTokens(Random random) {
 		
 		ArrayList<Token> tokens = new ArrayList<Token>();
 		for (int number = 1; number <= 20; number++) {
 			tokens.add(new Token(number));
 		}
 		tokens.add(new Token(25));
-		Collections.shuffle(tokens);
+		Collections.shuffle(tokens, random);
 		
 		int counter = 0;
 		for (int row = 1; row <= 5; row++) {
@@ -401,6 +486,138 @@ public class Board {
 	public boolean isShiftable(int index) {
 		return (index == 1 || index == 3 || index == 5);
 	}
+
+	/**
+	 * Shifts the board according to the specified shift code, dispatching to
+	 * <code> shiftUp() </code>, <code> shiftDown() </code>, <code> shiftLeft() </code>
+	 * or <code> shiftRight() </code>.
+	 *
+	 * @param	code	the shift code, as returned by <code> shiftCode() </code>
+	 * @return	boolean	<code> true </code> if the shift was successful;
+	 * 					<code> false </code> otherwise
+	 */
+	public boolean shift(int code) {
+		int index = shiftIndex(code);
+		switch (shiftDirection(code)) {
+		case Tile.NORTH:
+			return shiftUp(index);
+		case Tile.SOUTH:
+			return shiftDown(index);
+		case Tile.WEST:
+			return shiftLeft(index);
+		case Tile.EAST:
+			return shiftRight(index);
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the shift code for a shift in the specified direction at the specified index.
+	 * The direction is the one the tiles travel in, using the same convention as
+	 * <code> Game </code>: <code> Tile.NORTH </code> for <code> shiftUp() </code>,
+	 * <code> Tile.SOUTH </code> for <code> shiftDown() </code>, <code> Tile.WEST </code> for
+	 * <code> shiftLeft() </code> and <code> Tile.EAST </code> for <code> shiftRight() </code>.
+	 *
+	 * @param direction	the direction the tiles travel in
+	 * @param index		the shiftable row/column (1, 3 or 5)
+	 * @return			a code in the range [0, SHIFTS)
+	 */
+	public static int shiftCode(int direction, int index) {
+		return direction * 3 + index / 2;
+	}
+
+	/**
+	 * Returns the direction of the shift with the specified code.
+	 *
+	 * @param code	the shift code
+	 * @return		one of <code> Tile.NORTH </code>, <code> Tile.WEST </code>, <code> Tile.SOUTH </code> or <code> Tile.EAST </code>
+	 */
+	public static int shiftDirection(int code) {
+		return code / 3;
+	}
+
+	/**
+	 * Returns the row/column index of the shift with the specified code.
+	 *
+	 * @param code	the shift code
+	 * @return		1, 3 or 5
+	 */
+	public static int shiftIndex(int code) {
+		return (code % 3) * 2 + 1;
+	}
+
+	/**
+	 * Returns the code of the shift which would undo the shift with the specified code
+	 * (ie. the same row/column in the opposite direction), which the rules forbid
+	 * immediately after it.
+	 *
+	 * @param code	the shift code
+	 * @return		the code of the reverse shift
+	 */
+	public static int reverseShift(int code) {
+		return ((shiftDirection(code) + 2) % 4) * 3 + code % 3;
+	}
+
+	/**
+	 * Returns where a player standing on the specified cell ends up after the shift with the
+	 * specified code, as a cell index <code> row * 7 + column </code>. Players on the tile that
+	 * is pushed off the board wrap around onto the newly-inserted tile, exactly as in
+	 * <code> shiftUp() </code> and friends; players outside the shifted row/column do not move.
+	 *
+	 * @param code		the shift code
+	 * @param row		the row the player is on
+	 * @param column	the column the player is on
+	 * @return			the cell index the player is on after the shift
+	 */
+	public static int shiftCell(int code, int row, int column) {
+		int index = shiftIndex(code);
+		switch (shiftDirection(code)) {
+		case Tile.NORTH:
+			if (column == index) {
+				row = (row == 0) ? 6 : row - 1;
+			}
+			break;
+		case Tile.SOUTH:
+			if (column == index) {
+				row = (row == 6) ? 0 : row + 1;
+			}
+			break;
+		case Tile.WEST:
+			if (row == index) {
+				column = (column == 0) ? 6 : column - 1;
+			}
+			break;
+		case Tile.EAST:
+			if (row == index) {
+				column = (column == 6) ? 0 : column + 1;
+			}
+			break;
+		}
+		return row * 7 + column;
+	}
+
+	/**
+	 * Returns the cell the free tile is inserted on by the shift with the specified code, as a
+	 * cell index <code> row * 7 + column </code>: the far end of the shifted row/column from the
+	 * tile pushed off.
+	 *
+	 * @param code	the shift code
+	 * @return		the cell index of the inserted tile
+	 */
+	public static int insertedCell(int code) {
+		int index = shiftIndex(code);
+		switch (shiftDirection(code)) {
+		case Tile.NORTH:
+			return 6 * 7 + index;
+		case Tile.SOUTH:
+			return index;
+		case Tile.WEST:
+			return index * 7 + 6;
+		default:
+			return index * 7;
+		}
+	}
 	
 	/**
 	 * Makes a copy of an array for that row that is specified by the index.
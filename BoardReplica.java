@@ -0,0 +1,125 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import code.Position;
+import code.PositionCodec;
+
+/**
+ * <h1>BoardReplica</h1>
+ * A remote client's copy of a hosted game, kept up to date by the {@code Protocol} sync frames a
+ * {@code SyncEncoder} sends. A replica starts out of sync and becomes synced on the first snapshot;
+ * it falls out of sync again if a frame is missing (a sequence gap), if a shift does not produce
+ * the free tile the server reports, or if a checksum does not match. While out of sync it ignores
+ * every change until the next snapshot, which the client asks for with a {@code RESYNC} request.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code Position}: _position - the replicated position, or null before the first snapshot
+ * {@code int}: _expected - the sequence number of the next frame
+ * {@code boolean}: _synced - whether the position is known to match the server's
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class BoardReplica {
+
+	private Position _position;
+	private int _expected;
+	private boolean _synced;
+
+	/**
+	 * Creates a replica waiting for its first snapshot.
+	 */
+	public BoardReplica() {
+		_position = null;
+		_expected = 0;
+		_synced = false;
+	}
+
+	/**
+	 * Returns the CRC-32 of the {@code PositionCodec} encoding of the specified position, as
+	 * carried by {@code SYNC_CHECKSUM} frames.
+	 *
+	 * @param position	the position
+	 * @return			the checksum
+	 */
+	public static int checksum(Position position) {
+		CRC32 crc = new CRC32();
+		crc.update(PositionCodec.encode(position));
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Applies one sync frame.
+	 *
+	 * @param type		the frame type (one of the {@code Protocol.SYNC_*} types)
+	 * @param payload	the payload of the frame, which is consumed
+	 * @return			whether the replica is in sync afterwards
+	 */
+	public boolean apply(byte type, ByteBuffer payload) {
+		int sequence = payload.getShort() & 0xFFFF;
+		if (type == Protocol.SYNC_SNAPSHOT) {
+			byte[] bytes = new byte[PositionCodec.BYTES];
+			payload.get(bytes);
+			_position = PositionCodec.decode(bytes, 0);
+			_expected = sequence;
+			_synced = true;
+			return true;
+		}
+		if (!_synced) {
+			return false;
+		}
+		if (sequence != _expected) {
+			_synced = false;
+			return false;
+		}
+		_expected = (_expected + 1) & 0xFFFF;
+		switch (type) {
+		case Protocol.SYNC_SHIFT:
+			_position.shift(payload.get());
+			_synced = _position.getMask(Position.FREE) == payload.get();
+			break;
+		case Protocol.SYNC_ROTATE:
+			_position.setMask(Position.FREE, payload.get());
+			break;
+		case Protocol.SYNC_MOVE:
+			int seat = payload.get();
+			_position.setPlayerCell(seat, payload.get());
+			break;
+		case Protocol.SYNC_TOKEN:
+			int collector = payload.get();
+			int token = payload.get();
+			_position.setToken(_position.getPlayerCell(collector), 0);
+			_position.setScore(collector, _position.getScore(collector) + token);
+			_position.setNextToken(payload.get());
+			break;
+		case Protocol.SYNC_TURN:
+			_position.setCurrentSeat(payload.get());
+			break;
+		case Protocol.SYNC_CHECKSUM:
+			_synced = checksum(_position) == payload.getInt();
+			break;
+		default:
+			break;
+		}
+		return _synced;
+	}
+
+	/**
+	 * Returns whether the replica is known to match the server's game.
+	 * @return true if in sync
+	 */
+	public boolean isSynced() {
+		return _synced;
+	}
+
+	/**
+	 * Returns the replicated position, which is only trustworthy while {@code isSynced()}.
+	 * @return the position, or null before the first snapshot
+	 */
+	public Position getPosition() {
+		return _position;
+	}
+}
@@ -0,0 +1,519 @@
+package server;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import code.Game;
+
+/**
+ * <h1>Connection</h1>
+ * One client connection of a {@code GameServer}, confined to the {@code EventLoop} it is
+ * registered with. Requests are decoded straight out of the read buffer and answered into the
+ * write buffer, which is flushed once per read, so pipelined requests cost one write between them.
+ * Sync frames from the connection's session are added to the same write buffer.
+ * <p>
+ * A connection watching a session as a spectator is fed by the session's {@code SpectatorChannel}
+ * instead: its answers are queued behind the shared frames there rather than written directly.
+ * <p>
+ * A connection always lives on the loop of the session it plays in or watches: joining or watching
+ * a session opened on another loop moves the connection to that loop before the request is
+ * carried out.
+ * <p>
+ * A misbehaving client can neither exhaust the heap nor starve the other connections of its loop.
+ * Every request takes a token from the connection's {@code TokenBucket}, and is answered
+ * {@code RATE_LIMITED} without being carried out if there is none. Once more than
+ * {@code HIGH_WATER} bytes are queued for a client which is not reading them, its requests stop
+ * being carried out and its socket stops being read (so TCP pushes back on it) until the queue has
+ * drained to {@code LOW_WATER}; and a member whose queue of sync frames grows past
+ * {@code MAX_QUEUED_BYTES} is disconnected, as it cannot keep up with its game.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code GameServer}: _server - the server the connection belongs to
+ * {@code SocketChannel}: _channel - the client socket
+ * {@code EventLoop}: _loop - the loop the connection is registered with
+ * {@code SelectionKey}: _key - the connection's key with its loop's selector
+ * {@code ByteBuffer}: _in - the bytes read but not yet decoded (in write mode)
+ * {@code ByteBuffer}: _out - the bytes not yet written (in write mode)
+ * {@code Session}: _session - the session the connection plays in, or null
+ * {@code Session}: _watched - the session the connection watches, or null
+ * {@code SpectatorChannel.Spectator}: _spectator - the connection's spectator in {@code _watched}
+ * {@code MatchmakingLobby.Ticket<Connection>}: _ticket - the connection's place in the lobby, or null
+ * {@code EventLoop}: _queuedLoop - the loop the connection was on when it last queued in the lobby
+ * {@code Session}: _joining - the session on another loop the connection is about to join, or null
+ * {@code int}: _joiningSeat - the seat the connection is about to take over in {@code _joining}, or
+ * {@code WATCHING} to watch it
+ * {@code boolean}: _processing - whether the connection's requests are being carried out, so that
+ * its write buffer will be flushed anyway
+ * {@code TokenBucket}: _limiter - the rate limiter of the connection's requests
+ * {@code boolean}: _suspended - whether reading is suspended until the queued bytes drain
+ * {@code boolean}: _writeBlocked - whether a spectator's queue is waiting for the socket
+ *
+ * @version S.3
+ * @since S.3
+ */
+class Connection implements Session.Member, SpectatorChannel.Viewer {
+
+	private static final int BUFFER_BYTES = Protocol.HEADER_BYTES + Protocol.MAX_PAYLOAD;
+	private static final int WATCHING = -1;
+
+	/**
+	 * The number of queued bytes above which reading is suspended.
+	 */
+	static final int HIGH_WATER = 1 << 15;
+	/**
+	 * The number of queued bytes at or below which reading resumes.
+	 */
+	static final int LOW_WATER = 1 << 13;
+	/**
+	 * The most bytes which may be queued for a member before it is disconnected.
+	 */
+	static final int MAX_QUEUED_BYTES = 1 << 18;
+
+	private final GameServer _server;
+	private final SocketChannel _channel;
+	private EventLoop _loop;
+	private SelectionKey _key;
+	private final ByteBuffer _in;
+	private ByteBuffer _out;
+	private Session _session;
+	private Session _watched;
+	private SpectatorChannel.Spectator _spectator;
+	private MatchmakingLobby.Ticket<Connection> _ticket;
+	private EventLoop _queuedLoop;
+	private Session _joining;
+	private int _joiningSeat;
+	private boolean _processing;
+	private final TokenBucket _limiter;
+	private boolean _suspended;
+	private boolean _writeBlocked;
+
+	/**
+	 * Creates a connection for the specified (non-blocking) socket; it must then be registered.
+	 */
+	Connection(GameServer server, SocketChannel channel) {
+		_server = server;
+		_channel = channel;
+		_in = ByteBuffer.allocate(BUFFER_BYTES);
+		_out = ByteBuffer.allocate(64);
+		_limiter = new TokenBucket(server.getActionRate(), server.getActionBurst(), System.nanoTime());
+		_suspended = false;
+		_writeBlocked = false;
+	}
+
+	/**
+	 * Registers the connection with the specified loop. Must be called from that loop.
+	 */
+	void register(EventLoop loop) {
+		try {
+			_key = _channel.register(loop.selector(), SelectionKey.OP_READ, this);
+			_loop = loop;
+			_loop.addConnections(1);
+		} catch (ClosedChannelException e) {
+			close();
+		}
+	}
+
+	/**
+	 * Reads what the client has sent and carries out every complete request.
+	 */
+	void onReadable() {
+		try {
+			if (_channel.read(_in) < 0) {
+				close();
+				return;
+			}
+		} catch (IOException e) {
+			close();
+			return;
+		}
+		process();
+	}
+
+	/**
+	 * Carries out every complete request in the read buffer, then flushes the answers; unless too
+	 * much is queued for the client, in which case the rest wait until it has drained.
+	 */
+	private void process() {
+		while (true) {
+			_in.flip();
+			_processing = true;
+			boolean more;
+			try {
+				int length;
+				while (queuedBytes() <= HIGH_WATER && (length = Protocol.frameLength(_in)) >= 0) {
+					int end = _in.position() + length;
+					int limit = _in.limit();
+					byte type = _in.get(_in.position() + 2);
+					_in.position(_in.position() + Protocol.HEADER_BYTES).limit(end);
+					long start = System.nanoTime();
+					boolean stay = handle(type, _in, start);
+					_server.getMetrics().recordRequest(_loop.index(), type, System.nanoTime() - start);
+					_in.limit(limit).position(end);
+					if (!stay) {
+						_in.compact();
+						_processing = false;
+						Session session = _joining;
+						int seat = _joiningSeat;
+						_joining = null;
+						moveTo((EventLoop) session.getExecutor(), () -> {
+							if (_key.isValid()) {
+								if (seat == WATCHING) {
+									watch(session);
+								} else {
+									join(session, seat);
+								}
+								process();
+							}
+						});
+						return;
+					}
+				}
+				more = Protocol.frameLength(_in) >= 0;
+			} catch (IllegalArgumentException e) {
+				_processing = false;
+				close();
+				return;
+			}
+			_processing = false;
+			_in.compact();
+			flush();
+			if (!more || _suspended || !_key.isValid()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Carries out one request, started at the specified time (in {@code System.nanoTime()} terms).
+	 *
+	 * @return false if the connection is to move to the loop of {@code _joining}, which will carry on processing
+	 */
+	private boolean handle(byte type, ByteBuffer payload, long now) {
+		if (!_limiter.tryTake(now)) {
+			reply(type, Protocol.RATE_LIMITED, 0);
+			return true;
+		}
+		try {
+			switch (type) {
+			case Protocol.OPEN:
+				long seed = payload.getLong();
+				String[] names = Protocol.getNames(payload);
+				leaveSession();
+				stopWatching();
+				leaveQueue();
+				_session = _server.openSession(new Game(names, seed), _loop, this);
+				reply(type, Protocol.OK, _session.getId());
+				return true;
+			case Protocol.JOIN:
+				int id = payload.getInt();
+				int seat = payload.get();
+				Session session = _server.getSession(id);
+				if (session == null) {
+					reply(type, Protocol.NO_SESSION, id);
+					return true;
+				}
+				if (session != _session) {
+					leaveSession();
+				}
+				stopWatching();
+				leaveQueue();
+				if (session.getExecutor() == _loop) {
+					join(session, seat);
+					return true;
+				}
+				_joining = session;
+				_joiningSeat = seat;
+				return false;
+			case Protocol.WATCH:
+				int watched = payload.getInt();
+				Session target = _server.getSession(watched);
+				if (target == null) {
+					reply(type, Protocol.NO_SESSION, watched);
+					return true;
+				}
+				leaveSession();
+				stopWatching();
+				leaveQueue();
+				if (target.getExecutor() == _loop) {
+					watch(target);
+					return true;
+				}
+				_joining = target;
+				_joiningSeat = WATCHING;
+				return false;
+			case Protocol.QUEUE:
+				int players = payload.get();
+				String name = Protocol.getName(payload);
+				leaveSession();
+				stopWatching();
+				leaveQueue();
+				_queuedLoop = _loop;
+				_ticket = _server.getLobby().enqueue(this, name, players);
+				reply(type, Protocol.OK, _server.getLobby().getWaiting());
+				return true;
+			case Protocol.RESYNC:
+				Session synced = _session != null ? _session : _watched;
+				if (synced == null) {
+					reply(type, Protocol.NO_SESSION, 0);
+				} else {
+					reply(type, synced.resync(this), synced.getGame().getTurnNumber());
+				}
+				return true;
+			default:
+				if (_session == null) {
+					reply(type, Protocol.NO_SESSION, 0);
+				} else {
+					reply(type, _session.execute(this, type, payload), _session.getGame().getTurnNumber());
+				}
+				return true;
+			}
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			reply(type, Protocol.BAD_MESSAGE, 0);
+			return true;
+		}
+	}
+
+	private void join(Session session, int seat) {
+		byte status = session.join(this, seat);
+		if (status == Protocol.OK) {
+			_session = session;
+		}
+		reply(Protocol.JOIN, status, session.getId());
+	}
+
+	private void watch(Session session) {
+		_spectator = session.watch(this);
+		if (_spectator == null) {
+			reply(Protocol.WATCH, Protocol.NO_SESSION, session.getId());
+			return;
+		}
+		_watched = session;
+		reply(Protocol.WATCH, Protocol.OK, session.getId());
+	}
+
+	/**
+	 * Moves this connection to the specified loop, then runs the specified task there (whether or
+	 * not the connection could be registered). Nothing on the connection may be touched on this
+	 * loop afterwards.
+	 */
+	private void moveTo(EventLoop loop, Runnable then) {
+		_key.cancel();
+		_loop.addConnections(-1);
+		loop.execute(() -> {
+			register(loop);
+			then.run();
+		});
+	}
+
+	/**
+	 * Hands this connection the seat the lobby has placed it in, moving it to the session's loop
+	 * first if need be; a connection which has left the queue or closed meanwhile is skipped.
+	 * Called from the session's loop, which runs {@code seated} once the seat is taken or skipped.
+	 */
+	void matched(Session session, int seat, MatchmakingLobby.Ticket<Connection> ticket, Runnable seated) {
+		EventLoop loop = (EventLoop) session.getExecutor();
+		_queuedLoop.execute(() -> {
+			if (_ticket != ticket || !_key.isValid()) {
+				loop.execute(seated);
+				return;
+			}
+			_ticket = null;
+			if (_loop == loop) {
+				match(session, seat);
+				seated.run();
+				return;
+			}
+			moveTo(loop, () -> {
+				if (_key.isValid()) {
+					match(session, seat);
+					process();
+				}
+				seated.run();
+			});
+		});
+	}
+
+	private void match(Session session, int seat) {
+		ensureCapacity(Protocol.HEADER_BYTES + 5);
+		Protocol.putMatched(_out, session.getId(), seat);
+		if (session.join(this, seat) == Protocol.OK) {
+			_session = session;
+		}
+		flush();
+	}
+
+	/**
+	 * Leaves the lobby, if queued in it.
+	 */
+	private void leaveQueue() {
+		if (_ticket != null) {
+			_ticket.cancel();
+			_ticket = null;
+		}
+	}
+
+	/**
+	 * Leaves the current session, if any, closing it if this was its last member.
+	 */
+	private void leaveSession() {
+		if (_session != null) {
+			if (_session.leave(this)) {
+				_server.closeSession(_session);
+			}
+			_session = null;
+		}
+	}
+
+	/**
+	 * Stops watching the watched session, if any.
+	 */
+	private void stopWatching() {
+		if (_watched != null) {
+			_watched.unwatch(_spectator);
+			_watched = null;
+			_spectator = null;
+		}
+	}
+
+	/**
+	 * Queues the specified frames, and writes them straight away unless this connection's own
+	 * requests are being carried out. A member with more than {@code MAX_QUEUED_BYTES} queued is
+	 * disconnected instead.
+	 */
+	@Override
+	public void send(ByteBuffer frames) {
+		if (!_channel.isOpen()) {
+			return;
+		}
+		if (queuedBytes() + frames.remaining() > MAX_QUEUED_BYTES) {
+			close();
+			return;
+		}
+		ensureCapacity(frames.remaining());
+		_out.put(frames);
+		if (!_processing) {
+			flush();
+		}
+	}
+
+	/**
+	 * Queues a {@code RESULT} frame, growing the write buffer if needed.
+	 */
+	private void reply(byte request, byte status, int value) {
+		ensureCapacity(Protocol.HEADER_BYTES + 6);
+		Protocol.putResult(_out, request, status, value);
+	}
+
+	private void ensureCapacity(int bytes) {
+		if (_out.remaining() < bytes) {
+			ByteBuffer bigger = ByteBuffer.allocate(Math.max(_out.capacity() * 2, _out.position() + bytes));
+			_out.flip();
+			bigger.put(_out);
+			_out = bigger;
+		}
+	}
+
+	/**
+	 * Writes as much of the write buffer as the socket takes, and asks to be told when it can take
+	 * the rest. A spectator's write buffer is moved to the back of its queue instead, and the queue
+	 * written.
+	 */
+	private void flush() {
+		if (_spectator != null) {
+			if (_out.position() > 0) {
+				_out.flip();
+				_spectator.enqueue(ByteBuffer.allocate(_out.remaining()).put(_out).flip());
+				_out.clear();
+			}
+			_spectator.flush();
+			return;
+		}
+		if (_out.position() == 0 || !_key.isValid()) {
+			return;
+		}
+		_out.flip();
+		try {
+			_channel.write(_out);
+		} catch (IOException e) {
+			close();
+			return;
+		}
+		_out.compact();
+		if (_out.position() == 0 && _out.capacity() > LOW_WATER) {
+			_out = ByteBuffer.allocate(64);
+		}
+		updateInterest();
+	}
+
+	/**
+	 * Writes what the socket now takes, and carries out the requests left waiting if that has
+	 * drained the queue enough to resume.
+	 */
+	void onWritable() {
+		boolean suspended = _suspended;
+		flush();
+		if (suspended && !_suspended && _key.isValid()) {
+			process();
+		}
+	}
+
+	/**
+	 * Returns the number of bytes queued for the client and not yet written.
+	 */
+	private long queuedBytes() {
+		return _out.position() + (_spectator != null ? _spectator.getQueuedBytes() : 0);
+	}
+
+	/**
+	 * Suspends or resumes reading according to the number of bytes queued, and asks to be told
+	 * when the socket can be written to if anything is left to write.
+	 */
+	private void updateInterest() {
+		if (!_key.isValid()) {
+			return;
+		}
+		long queued = queuedBytes();
+		if (queued > HIGH_WATER) {
+			_suspended = true;
+		} else if (queued <= LOW_WATER) {
+			_suspended = false;
+		}
+		boolean writing = _spectator != null ? _writeBlocked : _out.position() > 0;
+		_key.interestOps((_suspended ? 0 : SelectionKey.OP_READ) | (writing ? SelectionKey.OP_WRITE : 0));
+	}
+
+	@Override
+	public long write(ByteBuffer[] buffers, int offset, int length) throws IOException {
+		return _channel.write(buffers, offset, length);
+	}
+
+	@Override
+	public void setBlocked(boolean blocked) {
+		_writeBlocked = blocked;
+		updateInterest();
+	}
+
+	/**
+	 * Closes the connection and leaves its session, or stops watching it, or leaves the lobby.
+	 */
+	@Override
+	public void close() {
+		leaveSession();
+		stopWatching();
+		leaveQueue();
+		if (_key != null && _key.isValid()) {
+			_key.cancel();
+			_loop.addConnections(-1);
+		}
+		try {
+			_channel.close();
+		} catch (IOException e) {
+			// nothing more can be done
+		}
+	}
+}
@@ -0,0 +1,709 @@
+package code;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <h1>EndgameSolver</h1>
+ * Proves the outcome of the end of a game, once no more than the last tokens are left (from
+ * {@code FIRST_TOKEN} on): whether the seat to move can make sure of winning, whatever the other
+ * seats do. Since a game only ends when the last token is collected, this comes down to which
+ * seats collect the remaining tokens, and in which order.
+ * <p>
+ * The solver searches the turns as {@code ActionGenerator.play()} plays them, without an
+ * evaluator: a finished game is {@code WIN} if the seat solving has the highest score alone and
+ * {@code LOSS} otherwise (a tie for the highest score is not a win), and an unfinished one at the
+ * end of the search is {@code UNKNOWN}. The seat solving picks its best action and every other
+ * seat is taken to pick the worst action for it, so a {@code WIN} is a win against any opponents,
+ * and with two players the result is exact. As a game may go on for ever when nobody is willing
+ * to collect the next token, the search looks a bounded number of turns ahead, one turn further
+ * on each pass until the outcome is proven, the budget runs out or {@code MAX_TURNS} is reached;
+ * so the first win found is also the quickest. Each pass is two narrow searches, one asking only
+ * whether the position is a {@code WIN} and one whether it is a {@code LOSS}, so that any action
+ * settling that question cuts off the others.
+ * <p>
+ * Only the cells a player can reach and where the next token lies matter, so the search is pruned
+ * in three ways, none of which changes its result:
+ * <ul>
+ * <li>a turn collects one token at most, so once too few turns are left to collect the remaining
+ * tokens, every action which collects nothing is {@code UNKNOWN} without being searched, and a
+ * turn for which that already decides the outcome is not searched at all</li>
+ * <li>players never block one another, so where a player has no further turn within the search,
+ * all the cells it can walk to without collecting are one and the same: only staying put is
+ * searched, once for each rotation and shift</li>
+ * <li>the actions which collect the next token are searched first, straight from one flood fill
+ * per rotation and shift, so a turn which can end the game is decided before any other</li>
+ * </ul>
+ * <p>
+ * The results are memoised in a table of {@code TABLE_SLOTS} primitive slots, indexed by a 64 bit
+ * hash of the position and verified against its full key: every path, the cells of the players
+ * and of the remaining tokens, the seat to move, the previous shift and the seat which has
+ * collected a token since the scores the table was filled for. A slot holds the bounds found, how
+ * many turns ahead they hold and the best action found, which is searched first the next time; a
+ * result proven within some number of turns is reused by any search looking at least as far
+ * ahead, and an unproven one by any search looking no further. The
+ * table is kept from one call to {@code solve()} to the next while the seat solving and the scores
+ * stay the same, so the turns of one endgame build on each other, and it is only allocated by the
+ * first call.
+ * <p>
+ * A solver is not thread-safe, and each thread should have its own.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code Position[]}: _positions - the position at each turn of depth, the root at index 0
+ * {@code Position}: _shifted - the position after each rotation and shift, while it is flood filled
+ * {@code int[][]}: _variants - the rotation and shift of the variants of each turn, as an action with destination 0
+ * {@code long[][]}: _reach - the cells the player to move can reach after each variant, one bit each
+ * {@code int[][]}: _targets - the cell of the next token after each variant, or -1 if it cannot be collected
+ * {@code int[][]}: _starts - the cell of the player to move after each variant
+ * {@code int[]}: _queue - the cells waiting to be flood filled
+ * {@code long[]}: _losing - the root actions proven to lose by the last call to {@code solve()}, one bit each
+ * {@code long[]}: _keys - the full key of every slot, four longs each
+ * {@code int[]}: _entries - the bounds of every slot, packed by {@code entry()}, or 0 for an empty slot
+ * {@code long}: _key0, _key1, _key2, _key3 - the key of the position last looked up
+ * {@code int[]}: _scores - the score of every seat the table was filled for
+ * {@code int}: _players - the number of players the table was filled for, or 0 if it is empty
+ * {@code int}: _tableRoot - the seat the table was filled for
+ * {@code int}: _root - the seat solving
+ * {@code long}: _deadline - the {@code System.nanoTime()} at which solving stops
+ * {@code boolean}: _stopped - whether the deadline has passed
+ * {@code AtomicInteger}: _generation - the number of times another thread asked the solver to stop
+ * {@code int}: _solving - the generation the call to {@code solve()} running was made in
+ * {@code long}: _nodes - the number of positions searched
+ * {@code int}: _action - the best action of the seat solving, as far as it has been proven
+ * {@code int}: _turns - the number of turns the last completed pass looked ahead
+ * {@code long}: _elapsed - how long the last call to {@code solve()} took, in nanoseconds
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class EndgameSolver {
+
+	/**
+	 * The first token from which on the end of a game is solved.
+	 */
+	public static final int FIRST_TOKEN = 20;
+	/**
+	 * The furthest the solver looks ahead, in turns.
+	 */
+	public static final int MAX_TURNS = 16;
+	/**
+	 * The number of slots of the table, a power of two.
+	 */
+	public static final int TABLE_SLOTS = 1 << 18;
+	/**
+	 * The outcome of a position the seat solving can make sure of winning.
+	 */
+	public static final int WIN = 1;
+	/**
+	 * The outcome of a position which is not proven either way.
+	 */
+	public static final int UNKNOWN = 0;
+	/**
+	 * The outcome of a position in which the other seats can make sure the seat solving does not
+	 * win (it loses, or ties for the highest score).
+	 */
+	public static final int LOSS = -1;
+
+	private static final int VARIANTS = ActionGenerator.ROTATIONS * Board.SHIFTS;
+	private static final int PROBES = 4;
+
+	private final Position[] _positions;
+	private final Position _shifted;
+	private final int[][] _variants;
+	private final long[][] _reach;
+	private final int[][] _targets;
+	private final int[][] _starts;
+	private final int[] _queue;
+	private final long[] _losing;
+	private long[] _keys;
+	private int[] _entries;
+	private long _key0;
+	private long _key1;
+	private long _key2;
+	private long _key3;
+	private final int[] _scores;
+	private int _players;
+	private int _tableRoot;
+	private int _root;
+	private long _deadline;
+	private boolean _stopped;
+	private final AtomicInteger _generation;
+	private int _solving;
+	private long _nodes;
+	private int _action;
+	private int _turns;
+	private long _elapsed;
+
+	/**
+	 * Creates a solver.
+	 */
+	public EndgameSolver() {
+		_positions = new Position[MAX_TURNS + 1];
+		for (int ply = 0; ply <= MAX_TURNS; ply++) {
+			_positions[ply] = new Position(4);
+		}
+		_shifted = new Position(4);
+		_variants = new int[MAX_TURNS][VARIANTS];
+		_reach = new long[MAX_TURNS][VARIANTS];
+		_targets = new int[MAX_TURNS][VARIANTS];
+		_starts = new int[MAX_TURNS][VARIANTS];
+		_queue = new int[Position.CELLS];
+		_generation = new AtomicInteger();
+		// one long per rotation and shift, indexed by an action without its destination
+		_losing = new long[ActionGenerator.action(ActionGenerator.ROTATIONS, 0, 0) >> 6];
+		_scores = new int[4];
+		_players = 0;
+	}
+
+	/**
+	 * Returns whether the end of the specified game can be solved: no more than the tokens from
+	 * {@code FIRST_TOKEN} on are left, and the game is not over.
+	 *
+	 * @param position	the position
+	 * @return			whether the position is in the endgame
+	 */
+	public static boolean isEndgame(Position position) {
+		return position.getNextToken() >= FIRST_TOKEN && position.getNextToken() <= 25;
+	}
+
+	/**
+	 * Returns the number of tokens left to collect in the specified position.
+	 *
+	 * @param position	the position
+	 * @return			the tokens from the next one to 25, or 0 if the game is over
+	 */
+	public static int remaining(Position position) {
+		return remaining(position.getNextToken());
+	}
+
+	/**
+	 * Proves the outcome of the specified position for its current seat, looking as far ahead as
+	 * the specified budget allows. {@code getAction()} then returns the action to play.
+	 *
+	 * @param position		the position, which is left unchanged
+	 * @param budgetMillis	the time solving may take
+	 * @return				{@code WIN}, {@code LOSS} or {@code UNKNOWN}
+	 */
+	public int solve(Position position, long budgetMillis) {
+		return solve(position, budgetMillis, MAX_TURNS);
+	}
+
+	/**
+	 * Proves the outcome of the specified position for its current seat, looking as far ahead as
+	 * the specified budget allows but no further than the specified number of turns.
+	 *
+	 * @param position		the position, which is left unchanged
+	 * @param budgetMillis	the time solving may take
+	 * @param maxTurns		the furthest to look ahead (1 to {@code MAX_TURNS})
+	 * @return				{@code WIN}, {@code LOSS} or {@code UNKNOWN}
+	 */
+	public int solve(Position position, long budgetMillis, int maxTurns) {
+		return solve(position, budgetMillis, maxTurns, getGeneration());
+	}
+
+	/**
+	 * Proves the outcome of the specified position for its current seat as {@code solve()} does,
+	 * but stops at once if {@code cancel()} has been called since {@code getGeneration()} returned
+	 * the specified generation, so that a cancellation made before solving starts is not lost.
+	 *
+	 * @param position		the position, which is left unchanged
+	 * @param budgetMillis	the time solving may take
+	 * @param maxTurns		the furthest to look ahead (1 to {@code MAX_TURNS})
+	 * @param generation	the generation the request to solve was made in
+	 * @return				{@code WIN}, {@code LOSS} or {@code UNKNOWN}
+	 */
+	public int solve(Position position, long budgetMillis, int maxTurns, int generation) {
+		if (!isEndgame(position)) {
+			throw new IllegalArgumentException("Only the tokens from " + FIRST_TOKEN + " on may be left.");
+		}
+		if (maxTurns < 1 || maxTurns > MAX_TURNS) {
+			throw new IllegalArgumentException("The turns must be between 1 and " + MAX_TURNS + ".");
+		}
+		long start = System.nanoTime();
+		_deadline = start + budgetMillis * 1000000;
+		_stopped = _generation.get() != generation;
+		_solving = generation;
+		_nodes = 0;
+		Arrays.fill(_losing, 0);
+		_turns = 0;
+		_root = position.getCurrentSeat();
+		prepareTable(position);
+		_positions[0].copyFrom(position);
+		int outcome = UNKNOWN;
+		int best = -1;
+		for (int turns = 1; turns <= maxTurns && outcome == UNKNOWN; turns++) {
+			// one narrow search for a win, then one for a loss, cutting off every other action early
+			int found = solve(0, turns, UNKNOWN, WIN);
+			int action = _action;
+			if (!_stopped && found < WIN) {
+				found = solve(0, turns, LOSS, UNKNOWN) == LOSS ? LOSS : UNKNOWN;
+				action = _action;
+			}
+			if (_stopped) {
+				break;
+			}
+			outcome = found;
+			best = action;
+			_turns = turns;
+		}
+		_action = best;
+		_elapsed = System.nanoTime() - start;
+		return outcome;
+	}
+
+	/**
+	 * Asks the solver running on another thread to stop as if its deadline had passed. It stops
+	 * within {@code Searcher.CHECK_INTERVAL} nodes and returns the outcome of the last completed
+	 * pass. A call to {@code solve()} started after this call is not affected, unless it was made
+	 * with an earlier generation.
+	 */
+	public void cancel() {
+		_generation.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of times {@code cancel()} has been called, to pass to {@code solve()}.
+	 * @return the generation
+	 */
+	public int getGeneration() {
+		return _generation.get();
+	}
+
+	/**
+	 * Returns whether the last call to {@code solve()} proved that the specified action loses: the
+	 * other seats can then make sure the seat solving does not win within the turns searched. Only
+	 * the actions searched before the outcome was settled are known; every other action returns
+	 * false.
+	 *
+	 * @param action	an action of the position solved (see {@code ActionGenerator})
+	 * @return			whether the action is a proven {@code LOSS}
+	 */
+	public boolean isLosing(int action) {
+		return (_losing[action >> 6] & 1L << ActionGenerator.destinationOf(action)) != 0;
+	}
+
+	/**
+	 * Removes the actions the last call to {@code solve()} proved to lose from the specified
+	 * actions, keeping the order of the rest; if every action loses, none is removed.
+	 *
+	 * @param actions	the actions of the position solved
+	 * @param count		the number of actions
+	 * @return			the number of actions kept, at the front of the array
+	 */
+	public int prune(int[] actions, int count) {
+		int kept = 0;
+		for (int index = 0; index < count; index++) {
+			if (!isLosing(actions[index])) {
+				actions[kept++] = actions[index];
+			}
+		}
+		return kept == 0 ? count : kept;
+	}
+
+	/**
+	 * Marks the specified destinations of the specified rotation and shift of the root as losing.
+	 */
+	private void lose(int variant, long destinations) {
+		_losing[variant >> 6] |= destinations;
+	}
+
+	/**
+	 * Allocates the table on first use, and empties it if it was filled for another seat or other
+	 * scores than those of the specified position.
+	 */
+	private void prepareTable(Position position) {
+		if (_entries == null) {
+			_keys = new long[TABLE_SLOTS * 4];
+			_entries = new int[TABLE_SLOTS];
+		}
+		boolean same = _players == position.getPlayerCount() && _tableRoot == _root;
+		for (int seat = 0; same && seat < _players; seat++) {
+			same = _scores[seat] == position.getScore(seat);
+		}
+		if (!same) {
+			Arrays.fill(_entries, 0);
+			_players = position.getPlayerCount();
+			_tableRoot = _root;
+			for (int seat = 0; seat < _players; seat++) {
+				_scores[seat] = position.getScore(seat);
+			}
+		}
+	}
+
+	/**
+	 * Searches the position at the specified ply the specified number of turns ahead, recording the
+	 * best action of the root in {@code _action}.
+	 *
+	 * @return the outcome of the position, exact if it lies between alpha and beta and otherwise a
+	 *         bound on the side it fell
+	 */
+	private int solve(int ply, int turns, int alpha, int beta) {
+		Position position = _positions[ply];
+		if ((++_nodes & (Searcher.CHECK_INTERVAL - 1)) == 0
+				&& (System.nanoTime() - _deadline > 0 || _generation.get() != _solving)) {
+			_stopped = true;
+		}
+		if (_stopped) {
+			return UNKNOWN;
+		}
+		int token = position.getNextToken();
+		if (token > 25) {
+			return outcome(position);
+		}
+		int remaining = remaining(token);
+		if (turns < remaining) {
+			return UNKNOWN;
+		}
+		boolean maximizing = position.getCurrentSeat() == _root;
+		// staying put is always possible, and leaves too few turns if this is the last turn to spare
+		boolean stalls = turns - 1 < remaining;
+		if (stalls && ply > 0 && (maximizing ? UNKNOWN >= beta : UNKNOWN <= alpha)) {
+			return UNKNOWN;
+		}
+		int slot = probe(position);
+		int hint = -1;
+		int entry = _entries[slot];
+		if (entry != 0 && matches(slot)) {
+			int depth = entry >> 4 & 31;
+			int lower = (entry >> 2 & 3) - 1;
+			int upper = (entry & 3) - 1;
+			if (ply > 0) {
+				if (lower == WIN || upper == LOSS) {
+					if (depth <= turns) {
+						return lower;
+					}
+				} else if (depth >= turns && (lower >= beta || upper <= alpha || lower == upper)) {
+					return lower >= beta ? lower : upper;
+				}
+			}
+			hint = (entry >> 9) - 1;
+		}
+		int floor = alpha;
+		int ceiling = beta;
+		int best = maximizing ? LOSS : WIN;
+		int bestAction = -1;
+		int seat = position.getCurrentSeat();
+		Position child = _positions[ply + 1];
+		search:
+		{
+			// the best action of an earlier search of this position first
+			if (hint >= 0) {
+				child.copyFrom(position);
+				ActionGenerator.play(child, hint);
+				int value = solve(ply + 1, turns - 1, alpha, beta);
+				if (_stopped) {
+					return UNKNOWN;
+				}
+				if (ply == 0 && value == LOSS) {
+					lose(hint & ~63, 1L << ActionGenerator.destinationOf(hint));
+				}
+				best = value;
+				bestAction = hint;
+				if (maximizing) {
+					alpha = Math.max(alpha, value);
+				} else {
+					beta = Math.min(beta, value);
+				}
+				if (alpha >= beta) {
+					break search;
+				}
+			}
+			// then the actions collecting the next token, each variant flood filled as it comes
+			int[] variants = _variants[ply];
+			long[] reach = _reach[ply];
+			int[] targets = _targets[ply];
+			int[] starts = _starts[ply];
+			int count = 0;
+			int rotations = Position.orientations(position.getMask(Position.FREE));
+			for (int rotation = 0; rotation < rotations; rotation++) {
+				for (int shift = 0; shift < Board.SHIFTS; shift++) {
+					if (!position.isLegalShift(shift)) {
+						continue;
+					}
+					_shifted.copyFrom(position);
+					for (int turn = 0; turn < rotation; turn++) {
+						_shifted.rotateFreeTile();
+					}
+					_shifted.shift(shift);
+					int start = _shifted.getPlayerCell(seat);
+					long reached = flood(_shifted, start);
+					int target = _shifted.findToken(token);
+					if (target < 0 || target == Position.FREE || target == start || (reached & 1L << target) == 0) {
+						target = -1;
+					}
+					int variant = ActionGenerator.action(rotation, shift, 0);
+					variants[count] = variant;
+					reach[count] = reached;
+					targets[count] = target;
+					starts[count] = start;
+					count++;
+					if (target < 0 || (variant | target) == hint) {
+						continue;
+					}
+					child.copyFrom(position);
+					ActionGenerator.play(child, variant | target);
+					int value = solve(ply + 1, turns - 1, alpha, beta);
+					if (_stopped) {
+						return UNKNOWN;
+					}
+					if (ply == 0 && value == LOSS) {
+						lose(variant, 1L << target);
+					}
+					if (maximizing ? value > best : value < best) {
+						best = value;
+						bestAction = variant | target;
+					} else if (bestAction < 0) {
+						bestAction = variant | target;
+					}
+					if (maximizing) {
+						alpha = Math.max(alpha, value);
+					} else {
+						beta = Math.min(beta, value);
+					}
+					if (alpha >= beta) {
+						break search;
+					}
+				}
+			}
+			// then the actions collecting nothing
+			if (stalls) {
+				if (maximizing ? UNKNOWN > best : UNKNOWN < best) {
+					best = UNKNOWN;
+					bestAction = variants[0] | starts[0];
+				} else if (bestAction < 0) {
+					bestAction = variants[0] | starts[0];
+				}
+				break search;
+			}
+			boolean again = turns > position.getPlayerCount();
+			for (int index = 0; index < count; index++) {
+				long destinations = again ? reach[index] : 1L << starts[index];
+				if (targets[index] >= 0) {
+					destinations &= ~(1L << targets[index]);
+				}
+				for (; destinations != 0; destinations &= destinations - 1) {
+					int action = variants[index] | Long.numberOfTrailingZeros(destinations);
+					if (action == hint) {
+						continue;
+					}
+					child.copyFrom(position);
+					ActionGenerator.play(child, action);
+					int value = solve(ply + 1, turns - 1, alpha, beta);
+					if (_stopped) {
+						return UNKNOWN;
+					}
+					if (ply == 0 && value == LOSS) {
+						// staying put stands for every cell the player can walk to, as it has no further turn
+						long lost = again ? 1L << ActionGenerator.destinationOf(action) : reach[index];
+						lose(variants[index], targets[index] >= 0 ? lost & ~(1L << targets[index]) : lost);
+					}
+					if (maximizing ? value > best : value < best) {
+						best = value;
+						bestAction = action;
+					} else if (bestAction < 0) {
+						bestAction = action;
+					}
+					if (maximizing) {
+						alpha = Math.max(alpha, value);
+					} else {
+						beta = Math.min(beta, value);
+					}
+					if (alpha >= beta) {
+						break search;
+					}
+				}
+			}
+		}
+		int lower = best >= ceiling || best > floor ? best : LOSS;
+		int upper = best <= floor || best < ceiling ? best : WIN;
+		store(slot, entry(turns, lower, upper, bestAction));
+		if (ply == 0) {
+			_action = bestAction;
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the cells reachable from the specified cell of the specified position, one bit each.
+	 */
+	private long flood(Position position, int start) {
+		long seen = 1L << start;
+		_queue[0] = start;
+		int reached = 1;
+		for (int head = 0; head < reached; head++) {
+			int cell = _queue[head];
+			for (int direction = 0; direction < 4; direction++) {
+				if (position.canStep(cell, direction)) {
+					int next = Position.neighbour(cell, direction);
+					if ((seen & 1L << next) == 0) {
+						seen |= 1L << next;
+						_queue[reached++] = next;
+					}
+				}
+			}
+		}
+		return seen;
+	}
+
+	/**
+	 * Returns the number of tokens left from the specified token on.
+	 */
+	private static int remaining(int token) {
+		int count = 0;
+		for (; token <= 25; token = Token.following(token)) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Packs the bounds on the outcome of a position searched the specified number of turns ahead
+	 * and the best action found; never 0, which marks an empty slot.
+	 */
+	private static int entry(int turns, int lower, int upper, int action) {
+		return (action + 1) << 9 | turns << 4 | (lower + 1) << 2 | (upper + 1);
+	}
+
+	/**
+	 * Returns the outcome of a finished game for the seat solving.
+	 */
+	private int outcome(Position position) {
+		int own = position.getScore(_root);
+		for (int seat = 0; seat < position.getPlayerCount(); seat++) {
+			if (seat != _root && position.getScore(seat) >= own) {
+				return LOSS;
+			}
+		}
+		return WIN;
+	}
+
+	/**
+	 * Builds the key of the specified position into {@code _key0} to {@code _key3}, and returns the
+	 * slot holding it, or else the slot to store it in: the first empty slot probed, or the probed
+	 * slot looking least far ahead. The key is the path masks of cells 0-47, sixteen to a long, then
+	 * in the last long the masks of cell 48 and the free tile, six bits for the cell of every seat,
+	 * two for the seat to move, one for whether token 25 is next, six each for the cells of
+	 * {@code FIRST_TOKEN} and 25 (63 once collected), four for the previous shift and three for the
+	 * seat whose score has changed since the table was emptied (7 for none).
+	 */
+	private int probe(Position position) {
+		long key0 = 0;
+		long key1 = 0;
+		long key2 = 0;
+		long key3 = 0;
+		int first = 63;
+		int last = 63;
+		for (int cell = 0; cell <= Position.FREE; cell++) {
+			long mask = position.getMask(cell);
+			int shift = (cell & 15) << 2;
+			switch (cell >> 4) {
+			case 0:
+				key0 |= mask << shift;
+				break;
+			case 1:
+				key1 |= mask << shift;
+				break;
+			case 2:
+				key2 |= mask << shift;
+				break;
+			default:
+				key3 |= mask << shift;
+				break;
+			}
+			int token = position.getToken(cell);
+			if (token == FIRST_TOKEN) {
+				first = cell;
+			} else if (token == 25) {
+				last = cell;
+			}
+		}
+		int collector = 7;
+		for (int seat = 0; seat < position.getPlayerCount(); seat++) {
+			key3 |= (long) position.getPlayerCell(seat) << (8 + seat * 6);
+			if (position.getScore(seat) != _scores[seat]) {
+				collector = seat;
+			}
+		}
+		key3 |= (long) position.getCurrentSeat() << 32;
+		key3 |= (long) (position.getNextToken() == 25 ? 1 : 0) << 34;
+		key3 |= (long) first << 35 | (long) last << 41;
+		key3 |= (long) (position.getLastShift() + 1) << 47;
+		key3 |= (long) collector << 51;
+		_key0 = key0;
+		_key1 = key1;
+		_key2 = key2;
+		_key3 = key3;
+		long hash = key0 * 0x9E3779B97F4A7C15L;
+		hash = (hash ^ hash >>> 29 ^ key1) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ hash >>> 29 ^ key2) * 0x94D049BB133111EBL;
+		hash = (hash ^ hash >>> 29 ^ key3) * 0x9E3779B97F4A7C15L;
+		hash ^= hash >>> 32;
+		int home = (int) hash & (TABLE_SLOTS - 1);
+		int shallowest = home;
+		for (int probe = 0; probe < PROBES; probe++) {
+			int slot = (home + probe) & (TABLE_SLOTS - 1);
+			if (_entries[slot] == 0 || matches(slot)) {
+				return slot;
+			}
+			if ((_entries[slot] >> 4 & 31) < (_entries[shallowest] >> 4 & 31)) {
+				shallowest = slot;
+			}
+		}
+		return shallowest;
+	}
+
+	/**
+	 * Returns whether the specified slot holds the key last built by {@code probe()}.
+	 */
+	private boolean matches(int slot) {
+		int base = slot << 2;
+		return _keys[base] == _key0 && _keys[base + 1] == _key1 && _keys[base + 2] == _key2 && _keys[base + 3] == _key3;
+	}
+
+	/**
+	 * Stores the specified entry under the key last built by {@code probe()} in the specified slot.
+	 */
+	private void store(int slot, int entry) {
+		int base = slot << 2;
+		_keys[base] = _key0;
+		_keys[base + 1] = _key1;
+		_keys[base + 2] = _key2;
+		_keys[base + 3] = _key3;
+		_entries[slot] = entry;
+	}
+
+	/**
+	 * Returns the action to play found by the last call to {@code solve()}.
+	 * @return an action with the best outcome proven, so a winning action if the outcome was
+	 *         {@code WIN}, or -1 if not even one turn could be searched
+	 */
+	public int getAction() {
+		return _action;
+	}
+
+	/**
+	 * Returns how far ahead the last call to {@code solve()} looked.
+	 * @return the turns of its last completed pass, within which a {@code WIN} or {@code LOSS} is
+	 *         certain, or 0 if none was completed
+	 */
+	public int getTurns() {
+		return _turns;
+	}
+
+	/**
+	 * Returns the number of positions the last call to {@code solve()} searched.
+	 * @return the node count
+	 */
+	public long getNodes() {
+		return _nodes;
+	}
+
+	/**
+	 * Returns how long the last call to {@code solve()} took.
+	 * @return the time in milliseconds
+	 */
+	public double getElapsedMillis() {
+		return _elapsed / 1e6;
+	}
+}
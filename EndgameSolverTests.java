@@ -0,0 +1,101 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import code.ActionGenerator;
+import code.EndgameSolver;
+import code.LinearEvaluator;
+import code.Position;
+import code.Searcher;
+
+public class EndgameSolverTests {
+
+	private static final int CROSS = 15;
+
+	/**
+	 * Returns a two player position on a board of crossroads, where every player can reach every
+	 * cell, with the specified tokens left on the fixed corners 0,0 and 6,6.
+	 */
+	private static Position open(int nextToken, int score, int otherScore) {
+		Position position = new Position(2);
+		for (int cell = 0; cell <= Position.FREE; cell++) {
+			position.setMask(cell, CROSS);
+		}
+		if (nextToken == EndgameSolver.FIRST_TOKEN) {
+			position.setToken(Position.cell(0, 0), EndgameSolver.FIRST_TOKEN);
+		}
+		position.setToken(Position.cell(6, 6), 25);
+		position.setNextToken(nextToken);
+		position.setScore(0, score);
+		position.setScore(1, otherScore);
+		return position;
+	}
+
+	@Test public void winTest() {
+		Position position = open(25, 10, 20);
+		EndgameSolver solver = new EndgameSolver();
+		assertEquals(EndgameSolver.WIN, solver.solve(position, 10000));
+		assertEquals(1, solver.getTurns());
+		ActionGenerator.play(position, solver.getAction());
+		assertEquals(35, position.getScore(0));
+		assertEquals(26, position.getNextToken());
+	}
+
+	@Test public void lossTest() {
+		EndgameSolver solver = new EndgameSolver();
+		// the other seat collects token 25 unless seat 0 does, and either way seat 0 is behind
+		assertEquals(EndgameSolver.LOSS, solver.solve(open(25, 0, 200), 10000));
+		assertEquals(2, solver.getTurns());
+		// a tie for the highest score is not a win
+		assertEquals(EndgameSolver.LOSS, solver.solve(open(25, 0, 25), 10000));
+	}
+
+	@Test public void lastTwoTokensTest() {
+		// after collecting token 20, seat 0 is ahead even if the other seat collects token 25
+		Position position = open(EndgameSolver.FIRST_TOKEN, 110, 100);
+		EndgameSolver solver = new EndgameSolver();
+		assertEquals(EndgameSolver.WIN, solver.solve(position, 10000));
+		assertEquals(3, solver.getTurns());
+		assertTrue(solver.getElapsedMillis() < 10000);
+		ActionGenerator.play(position, solver.getAction());
+		assertEquals(130, position.getScore(0));
+	}
+
+	@Test public void searcherTest() {
+		Position position = open(EndgameSolver.FIRST_TOKEN, 110, 100);
+		Searcher searcher = new Searcher(new LinearEvaluator(), Searcher.MAX_N);
+		int action = searcher.search(position, 10000);
+		assertEquals(Searcher.WIN, searcher.getValue());
+		assertEquals(3, searcher.getDepth());
+		ActionGenerator.play(position, action);
+		assertEquals(25, position.getNextToken());
+	}
+
+	@Test public void losingTest() {
+		// whoever collects token 20 lets the other seat collect token 25 and win
+		Position position = open(EndgameSolver.FIRST_TOKEN, 0, 0);
+		EndgameSolver solver = new EndgameSolver();
+		assertEquals(EndgameSolver.UNKNOWN, solver.solve(position, 10000, 3));
+		assertTrue(solver.isLosing(ActionGenerator.action(0, 0, Position.cell(0, 0))));
+		int[] actions = new int[ActionGenerator.MAX_ACTIONS];
+		int count = new ActionGenerator().generate(position, actions);
+		int kept = solver.prune(actions, count);
+		assertTrue(kept > 0 && kept < count);
+		for (int index = 0; index < kept; index++) {
+			Position child = new Position(position);
+			ActionGenerator.play(child, actions[index]);
+			assertEquals(EndgameSolver.FIRST_TOKEN, child.getNextToken());
+		}
+		Searcher searcher = new Searcher(new LinearEvaluator());
+		ActionGenerator.play(position, searcher.search(position, 1600));
+		assertEquals(EndgameSolver.FIRST_TOKEN, position.getNextToken());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void middleGameTest() {
+		new EndgameSolver().solve(open(19, 0, 0), 1000);
+	}
+}
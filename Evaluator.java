@@ -0,0 +1,37 @@
+package code;
+
+/**
+ * <h1>Evaluator</h1>
+ * Scores a {@code Position} from the point of view of one seat, so that a bot can compare the
+ * positions its moves lead to without playing the game out. A higher value is better for the seat;
+ * values are only compared with values from the same evaluator. A {@code Game} is evaluated through
+ * {@code Position.of(game)}.
+ *
+ * @version S.3
+ * @since S.3
+ */
+public interface Evaluator {
+
+	/**
+	 * Returns the value of the specified position for the specified seat.
+	 *
+	 * @param position	the position, which is left unchanged
+	 * @param seat		the seat
+	 * @return			the value, higher being better for the seat
+	 */
+	int evaluate(Position position, int seat);
+
+	/**
+	 * Writes the value of the specified position for every seat into the specified array, for
+	 * searches which follow every player's interest at once. By default each seat is evaluated in
+	 * turn.
+	 *
+	 * @param position	the position, which is left unchanged
+	 * @param values	the array the values are written to, indexed by seat
+	 */
+	default void evaluateAll(Position position, int[] values) {
+		for (int seat = 0; seat < position.getPlayerCount(); seat++) {
+			values[seat] = evaluate(position, seat);
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <h1>EventLoop</h1>
+ * A single thread multiplexing many connections with one {@code Selector}. Every connection, and
+ * every session opened on one of its connections, is confined to the loop's thread; other threads
+ * hand work to the loop with {@code execute()}, which wakes the selector only if it is not already
+ * being woken.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code Selector}: _selector - the selector of every connection on this loop
+ * {@code Queue<Runnable>}: _tasks - the tasks handed to this loop by other threads
+ * {@code AtomicBoolean}: _wakeup - whether the selector has been woken and not yet returned
+ * {@code Thread}: _thread - the loop thread
+ * {@code int}: _index - the index of the loop among its server's loops
+ * {@code boolean}: _running - whether the loop should keep running
+ * {@code int}: _connections - the number of connections registered with this loop
+ * {@code AtomicInteger}: _sessions - the number of sessions open or being opened on this loop
+ * {@code SessionHibernator}: _hibernator - the hibernator of this loop's sessions, or null
+ *
+ * @version S.3
+ * @since S.3
+ */
+class EventLoop implements Executor, Runnable {
+
+	private final Selector _selector;
+	private final Queue<Runnable> _tasks;
+	private final AtomicBoolean _wakeup;
+	private final Thread _thread;
+	private final int _index;
+	private volatile boolean _running;
+	private volatile int _connections;
+	private final AtomicInteger _sessions;
+	private volatile SessionHibernator _hibernator;
+
+	/**
+	 * Creates (but does not start) an event loop.
+	 *
+	 * @param name		the name of the loop thread
+	 * @param index		the index of the loop among its server's loops
+	 * @throws IOException if the selector cannot be opened
+	 */
+	EventLoop(String name, int index) throws IOException {
+		_selector = Selector.open();
+		_tasks = new ConcurrentLinkedQueue<Runnable>();
+		_wakeup = new AtomicBoolean(false);
+		_thread = new Thread(this, name);
+		_index = index;
+		_running = true;
+		_connections = 0;
+		_sessions = new AtomicInteger(0);
+	}
+
+	void start() {
+		_thread.start();
+	}
+
+	/**
+	 * Returns the index of the loop among its server's loops.
+	 */
+	int index() {
+		return _index;
+	}
+
+	Selector selector() {
+		return _selector;
+	}
+
+	/**
+	 * Returns whether the calling thread is this loop's thread.
+	 */
+	boolean inLoop() {
+		return Thread.currentThread() == _thread;
+	}
+
+	/**
+	 * Returns the number of connections registered with this loop.
+	 */
+	int connections() {
+		return _connections;
+	}
+
+	/**
+	 * Records that a connection was registered with (1) or removed from (-1) this loop. Must be
+	 * called from the loop thread.
+	 */
+	void addConnections(int count) {
+		_connections += count;
+	}
+
+	/**
+	 * Returns the number of sessions open or being opened on this loop.
+	 */
+	int sessions() {
+		return _sessions.get();
+	}
+
+	/**
+	 * Records that a session is to be opened on (1) or has been closed on (-1) this loop. May be
+	 * called from any thread, so that a session placed on the loop counts before it is opened.
+	 */
+	void addSessions(int count) {
+		_sessions.addAndGet(count);
+	}
+
+	/**
+	 * Returns the hibernator of this loop's sessions, or null if they are never hibernated.
+	 */
+	SessionHibernator hibernator() {
+		return _hibernator;
+	}
+
+	void setHibernator(SessionHibernator hibernator) {
+		_hibernator = hibernator;
+	}
+
+	/**
+	 * Runs the specified task on the loop thread: immediately if called from it, otherwise as
+	 * soon as the loop next wakes.
+	 *
+	 * @param task	the task
+	 */
+	@Override
+	public void execute(Runnable task) {
+		if (inLoop()) {
+			task.run();
+			return;
+		}
+		schedule(task);
+	}
+
+	/**
+	 * Runs the specified task on the loop thread as soon as the loop next wakes, even if called
+	 * from it.
+	 *
+	 * @param task	the task
+	 */
+	void schedule(Runnable task) {
+		_tasks.add(task);
+		if (_wakeup.compareAndSet(false, true)) {
+			_selector.wakeup();
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (_running) {
+				_selector.select();
+				_wakeup.set(false);
+				Runnable task;
+				while ((task = _tasks.poll()) != null) {
+					task.run();
+				}
+				Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					Connection connection = (Connection) key.attachment();
+					if (key.isValid() && key.isReadable()) {
+						connection.onReadable();
+					}
+					if (key.isValid() && key.isWritable()) {
+						connection.onWritable();
+					}
+				}
+			}
+		} catch (IOException | ClosedSelectorException e) {
+			// the loop is being shut down
+		} finally {
+			for (SelectionKey key : _selector.keys()) {
+				if (key.isValid()) {
+					((Connection) key.attachment()).close();
+				}
+			}
+			try {
+				_selector.close();
+			} catch (IOException e) {
+				// nothing more can be done
+			}
+		}
+	}
+
+	/**
+	 * Stops the loop, closing every connection on it, and waits for the thread to finish.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	void shutdown() throws InterruptedException {
+		_running = false;
+		_selector.wakeup();
+		_thread.join();
+	}
+}
@@ -0,0 +1,132 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import org.junit.Test;
+
+import server.GameClient;
+import server.GameServer;
+import server.Protocol;
+import server.TokenBucket;
+
+public class FlowControlTests {
+
+	private static final String[] PLAYERS = {"Ann", "Bob"};
+
+	@Test public void bucketTest() {
+		TokenBucket bucket = new TokenBucket(10, 3, 0);
+		for (int take = 0; take < 3; take++) {
+			assertTrue(bucket.tryTake(0));
+		}
+		assertTrue(!bucket.tryTake(0));
+		assertTrue(!bucket.tryTake(99000000L));
+		assertTrue(bucket.tryTake(100000000L));
+		assertTrue(!bucket.tryTake(100000000L));
+
+		// an idle bucket fills up to its capacity and no further
+		for (int take = 0; take < 3; take++) {
+			assertTrue(bucket.tryTake(60000000000L));
+		}
+		assertTrue(!bucket.tryTake(60000000000L));
+	}
+
+	@Test(expected = IllegalArgumentException.class) public void bucketRateTest() {
+		new TokenBucket(0, 1, 0);
+	}
+
+	@Test public void rateLimitTest() throws IOException {
+		try (GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1)) {
+			server.setRateLimit(1, 20);
+			try (GameClient client = new GameClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()))) {
+				Protocol.putOpen(client.requests(), 3, PLAYERS);
+				for (int request = 0; request < 200; request++) {
+					Protocol.putRotate(client.requests(), true);
+				}
+				client.send();
+				assertEquals(Protocol.OK, client.readResult());
+				int accepted = 0;
+				for (int request = 0; request < 200; request++) {
+					byte status = client.readResult();
+					if (status == Protocol.OK) {
+						accepted++;
+					} else {
+						assertEquals(Protocol.RATE_LIMITED, status);
+					}
+				}
+				// the whole burst, and perhaps a token accrued on the way
+				assertTrue(accepted >= 19 && accepted <= 21);
+			}
+		}
+	}
+
+	/**
+	 * Floods a server with requests from a client which reads none of the replies, and checks
+	 * another client on the same loop is still answered promptly, and that the flooding client is
+	 * suspended rather than disconnected, so gets every reply once it reads them.
+	 */
+	@Test public void backpressureTest() throws IOException, InterruptedException {
+		try (GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1)) {
+			server.setRateLimit(1e9, 1 << 30);
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+			try (SocketChannel flood = SocketChannel.open(address); GameClient other = new GameClient(address)) {
+				ByteBuffer request = ByteBuffer.allocate(8192);
+				Protocol.putOpen(request, 1, PLAYERS);
+				request.flip();
+				while (request.hasRemaining()) {
+					flood.write(request);
+				}
+				flood.configureBlocking(false);
+				long written = 0;
+				int stalled = 0;
+				request.clear();
+				while (stalled < 50) {
+					// whatever part of a frame was not written goes first in the next write
+					while (request.remaining() >= Protocol.HEADER_BYTES) {
+						Protocol.putEmpty(request, Protocol.RESYNC);
+					}
+					request.flip();
+					int count = flood.write(request);
+					request.compact();
+					written += count;
+					if (count == 0) {
+						stalled++;
+						Thread.sleep(2);
+					} else {
+						stalled = 0;
+					}
+				}
+				long sent = 1 + written / Protocol.HEADER_BYTES;
+
+				long start = System.nanoTime();
+				assertEquals(Protocol.OK, other.open(2, PLAYERS));
+				assertEquals(Protocol.OK, other.rotate(true));
+				assertTrue(System.nanoTime() - start < 500000000L);
+				assertEquals(2, server.getConnectionCount());
+
+				flood.configureBlocking(true);
+				ByteBuffer in = ByteBuffer.allocate(1 << 16);
+				long results = 0;
+				while (results < sent) {
+					assertTrue(flood.read(in) >= 0);
+					in.flip();
+					int length;
+					while ((length = Protocol.frameLength(in)) >= 0) {
+						if (in.get(in.position() + 2) == Protocol.RESULT) {
+							results++;
+						}
+						in.position(in.position() + length);
+					}
+					in.compact();
+				}
+				assertEquals(sent, results);
+			}
+		}
+	}
+}
@@ -18,6 +18,13 @@ import gui.View;
  * the current player has moved during their turn. {@code int}: _turnNumber -
  * indicates which player's turn it currently is. {@code Tile} _startingTile -
  * the tile the current player is on prior to their movement to a new tile.
+ * {@code int}: _nextToken - the number of the token which may be collected next
+ * in this game. {@code boolean}: _gameOver - whether or not the last token has
+ * been collected. {@code ArrayList<GameListener>}: _listeners - the listeners
+ * told about every change to the game.
+ * <p>
+ * A Game may be played without a View (eg. when replaying or hosting games
+ * headless), in which case no GUI updates are made.
  * 
  * @author Michael Langaman
  * @author Tyler Barret
@@ -42,17 +49,102 @@ public class Game {
 	private int _lastShiftDirection;
 	private Tile _startingTile;
 
+	private int _nextToken;
+	private boolean _gameOver;
+	private ArrayList<GameListener> _listeners;
+
 	public Game(String[] args) {
+		createPlayers(args);
+		_board = new Board(_players);
+		setUp();
+	}
+
+	/**
+	 * Creates a game whose board is generated from the specified seed, so that
+	 * the same seed and player names always produce the same starting position.
+	 * 
+	 * @param args
+	 *            - the names of the players
+	 * @param seed
+	 *            - the seed the board is generated from
+	 */
+	public Game(String[] args, long seed) {
+		createPlayers(args);
+		_board = new Board(_players, seed);
+		setUp();
+	}
+
+	/**
+	 * Creates a game on the board of the specified starting position, with
+	 * each player on the cell the position has for their seat. The game starts
+	 * with the first player's turn and token 1, as every recorded game does.
+	 * 
+	 * @param args
+	 *            - the names of the players
+	 * @param start
+	 *            - the starting position, whose board and tokens are copied
+	 */
+	public Game(String[] args, Position start) {
+		createPlayers(args);
+		_board = new Board(start, _players);
+		setUp();
+	}
+
+	/**
+	 * Rebuilds a game from a captured <code> GameState </code>, mid-turn
+	 * included. The game has no view and no listeners.
+	 * 
+	 * @param state
+	 *            - the state to be rebuilt
+	 */
+	Game(GameState state) {
+		createPlayers(state.getNames());
+		Position position = state.getPosition();
+		_board = new Board(position, _players);
+		setUp();
+		_turnNumber = state.getTurnNumber();
+		_currentPlayer = _players.get(position.getCurrentSeat());
+		_nextToken = position.getNextToken();
+		_gameOver = state.isGameOver();
+		int lastShift = position.getLastShift();
+		if (lastShift >= 0) {
+			_lastShiftDirection = lastShift / 3;
+			_lastShiftIndex = lastShift % 3 * 2 + 1;
+		}
+		for (Player player : _players) {
+			int collected = state.getCollected(player.getNumber());
+			for (int token = 1; token <= 25; token++) {
+				if ((collected & (1 << token)) != 0) {
+					player.getTokens().add(new Token(token));
+				}
+			}
+		}
+		int start = state.getStartingCell();
+		_startingTile = start == Position.FREE ? _board.getFreeTile() : _board.getTile(start / 7, start % 7);
+		_boardShifted = state.isBoardShifted();
+		_currentPlayerHasMoved = state.hasMoved();
+	}
+
+	/**
+	 * Creates a player for each of the specified names, in seat order.
+	 */
+	private void createPlayers(String[] args) {
 		_players = new ArrayList<Player>();
 		for (int index = 0; index < args.length; index++) {
 			_players.add(new Player(args[index], index, null));
 		}
+	}
 
-		_board = new Board(_players);
-
+	/**
+	 * Sets up the turn state for the first player's turn.
+	 */
+	private void setUp() {
 		_turnNumber = 0;
 		_lastShiftIndex = -1;
 		_lastShiftDirection = -1;
+		_nextToken = 1;
+		_gameOver = false;
+		_listeners = new ArrayList<GameListener>();
 		_currentPlayer = _players.get(0);
 		setFlags();
 
@@ -75,21 +167,31 @@ public class Game {
 	 * <code> _currentPlayerHasMoved </code> is true. After the player ends
 	 * their turn, the <code> setFlags </code> method is called and resets these
 	 * values.
+	 * 
+	 * @return true if the turn was ended, false if the rules did not allow it.
 	 */
-	public void nextTurn() {
-		if (Token.getNextToken() > 25) {
+	public boolean nextTurn() {
+		if (_nextToken > 25) {
 			endGame();
 		}
 
 		if (_boardShifted == false) {
 			System.out.println("You must shift the board before ending your turn.");
+			return false;
 		} else if (_currentPlayerHasMoved && _currentPlayer.getTile() == _startingTile) {
 			System.out.println("You cannot end on the same tile you started from.");
+			return false;
 		} else {
 			_turnNumber++;
 			_currentPlayer = _players.get(_turnNumber % _players.size());
-			_view.updatePlayerInfo();
+			if (_view != null) {
+				_view.updatePlayerInfo();
+			}
 			setFlags();
+			for (GameListener listener : _listeners) {
+				listener.turnEnded(_currentPlayer);
+			}
+			return true;
 		}
 	}
 
@@ -97,7 +199,13 @@ public class Game {
 	 * Ends the game after all 25 tokens are collected.
 	 */
 	private void endGame() {
-		_view.endGame();
+		_gameOver = true;
+		if (_view != null) {
+			_view.endGame();
+		}
+		for (GameListener listener : _listeners) {
+			listener.gameEnded();
+		}
 	}
 
 	/**
@@ -110,6 +218,26 @@ public class Game {
 		_view = v;
 	}
 
+	/**
+	 * Adds a listener to be told about every change to this game.
+	 * 
+	 * @param listener
+	 *            - the listener
+	 */
+	public void addListener(GameListener listener) {
+		_listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener added with <code> addListener() </code>.
+	 * 
+	 * @param listener
+	 *            - the listener
+	 */
+	public void removeListener(GameListener listener) {
+		_listeners.remove(listener);
+	}
+
 	/**
 	 * Returns a tile specified by the parameter.
 	 * 
@@ -146,21 +274,52 @@ public class Game {
 	 * the board.
 	 */
 	public void refreshView() {
-		_view.refresh();
+		if (_view != null) {
+			_view.refresh();
+		}
 	}
 
 	/**
 	 * Moves the current player to specified destination tile and sets
-	 * <code> _currentPlayerHasMoved </code> to true.
+	 * <code> _currentPlayerHasMoved </code> to true if the move was valid.
 	 * 
 	 * @param destination
 	 *            refers to the tile the player wants to move to.
+	 * @return true if the player moved, false otherwise.
 	 */
-	public void move(Tile destination) {
-		if (_boardShifted) {
-			_currentPlayer.move(destination);
+	public boolean move(Tile destination) {
+		if (_boardShifted && _currentPlayer.move(destination)) {
 			_currentPlayerHasMoved = true;
-		} 
+			for (GameListener listener : _listeners) {
+				listener.playerMoved(_currentPlayer);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Shifts the board with the specified shift code (see
+	 * <code> Board.shiftCode() </code>) by calling the matching shift method.
+	 * 
+	 * @param code
+	 *            the shift code
+	 * @return true if the board was shifted, false otherwise.
+	 */
+	public boolean shiftBoard(int code) {
+		int index = Board.shiftIndex(code);
+		switch (Board.shiftDirection(code)) {
+		case Tile.NORTH:
+			return shiftBoardColumnUp(index);
+		case Tile.SOUTH:
+			return shiftBoardColumnDown(index);
+		case Tile.WEST:
+			return shiftBoardRowLeft(index);
+		case Tile.EAST:
+			return shiftBoardRowRight(index);
+		default:
+			return false;
+		}
 	}
 
 	/**
@@ -168,15 +327,21 @@ public class Game {
 	 * 
 	 * @param index
 	 *            the specific column that is going to be shifted.
+	 * @return true if the board was shifted, false otherwise.
 	 */
-	public void shiftBoardColumnUp(int index) {
-		if (_boardShifted == false && (_lastShiftIndex != index || _lastShiftDirection != Tile.SOUTH)) {
-			_board.shiftUp(index);
-			_view.updateBoardColumn(index);
+	public boolean shiftBoardColumnUp(int index) {
+		if (_boardShifted == false && (_lastShiftIndex != index || _lastShiftDirection != Tile.SOUTH)
+				&& _board.shiftUp(index)) {
+			if (_view != null) {
+				_view.updateBoardColumn(index);
+			}
 			_lastShiftIndex = index;
 			_lastShiftDirection = Tile.NORTH;
 			_boardShifted = true;
-		} 
+			shifted();
+			return true;
+		}
+		return false;
 	}
 
 	/**
@@ -185,15 +350,21 @@ public class Game {
 	 * 
 	 * @param index
 	 *            the specific column that is going to be shifted.
+	 * @return true if the board was shifted, false otherwise.
 	 */
-	public void shiftBoardColumnDown(int index) {
-		if (_boardShifted == false && (_lastShiftIndex != index || _lastShiftDirection != Tile.NORTH)) {
-			_board.shiftDown(index);
-			_view.updateBoardColumn(index);
+	public boolean shiftBoardColumnDown(int index) {
+		if (_boardShifted == false && (_lastShiftIndex != index || _lastShiftDirection != Tile.NORTH)
+				&& _board.shiftDown(index)) {
+			if (_view != null) {
+				_view.updateBoardColumn(index);
+			}
 			_lastShiftIndex = index;
 			_lastShiftDirection = Tile.SOUTH;
 			_boardShifted = true;
-		} 
+			shifted();
+			return true;
+		}
+		return false;
 	}
 
 	/**
@@ -202,15 +373,21 @@ public class Game {
 	 * 
 	 * @param index
 	 *            the specific row that is going to be shifted
+	 * @return true if the board was shifted, false otherwise.
 	 */
-	public void shiftBoardRowRight(int index) {
-		if (_boardShifted == false && (_lastShiftIndex != index || _lastShiftDirection != Tile.WEST)) {
-			_board.shiftRight(index);
-			_view.updateBoardRow(index);
+	public boolean shiftBoardRowRight(int index) {
+		if (_boardShifted == false && (_lastShiftIndex != index || _lastShiftDirection != Tile.WEST)
+				&& _board.shiftRight(index)) {
+			if (_view != null) {
+				_view.updateBoardRow(index);
+			}
 			_lastShiftIndex = index;
 			_lastShiftDirection = Tile.EAST;
 			_boardShifted = true;
+			shifted();
+			return true;
 		}
+		return false;
 	}
 
 	/**
@@ -219,14 +396,29 @@ public class Game {
 	 * 
 	 * @param index
 	 *            the specific row that is going to be shifted
+	 * @return true if the board was shifted, false otherwise.
 	 */
-	public void shiftBoardRowLeft(int index) {
-		if (_boardShifted == false && (_lastShiftIndex != index || _lastShiftDirection != Tile.EAST)) {
-			_board.shiftLeft(index);
-			_view.updateBoardRow(index);
+	public boolean shiftBoardRowLeft(int index) {
+		if (_boardShifted == false && (_lastShiftIndex != index || _lastShiftDirection != Tile.EAST)
+				&& _board.shiftLeft(index)) {
+			if (_view != null) {
+				_view.updateBoardRow(index);
+			}
 			_lastShiftIndex = index;
 			_lastShiftDirection = Tile.WEST;
 			_boardShifted = true;
+			shifted();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Tells every listener about the shift just made.
+	 */
+	private void shifted() {
+		for (GameListener listener : _listeners) {
+			listener.boardShifted(getLastShift());
 		}
 	}
 
@@ -237,7 +429,12 @@ public class Game {
 	public void rotateFreeTileClockWise() {
 		_board.getFreeTile().rotateIcon(Tile.CW);
 		_board.getFreeTile().rotateClockwise();
-		_view.updateFreeTile();
+		if (_view != null) {
+			_view.updateFreeTile();
+		}
+		for (GameListener listener : _listeners) {
+			listener.freeTileRotated(true);
+		}
 	}
 
 	/**
@@ -247,19 +444,84 @@ public class Game {
 	public void rotateFreeTileCounterClockWise() {
 		_board.getFreeTile().rotateIcon(Tile.CCW);
 		_board.getFreeTile().rotateCounterClockwise();
-		_view.updateFreeTile();
+		if (_view != null) {
+			_view.updateFreeTile();
+		}
+		for (GameListener listener : _listeners) {
+			listener.freeTileRotated(false);
+		}
 	}
 
 	/**
 	 * Current player collects the token and updates the graphical user
 	 * interface.
+	 * 
+	 * @return true if the token was collected, false otherwise.
 	 */
-	public void collectToken() {
-		if (_currentPlayerHasMoved && _currentPlayer.takeToken()) {
-			_view.updatePlayerInfo();
-			_view.updateToken(_currentPlayer.getTile().getRow(), _currentPlayer.getTile().getColumn());
+	public boolean collectToken() {
+		if (_currentPlayerHasMoved && _currentPlayer.takeToken(_nextToken)) {
+			int token = _nextToken;
+			_nextToken = Token.following(_nextToken);
+			if (_view != null) {
+				_view.updatePlayerInfo();
+				_view.updateToken(_currentPlayer.getTile().getRow(), _currentPlayer.getTile().getColumn());
+			}
+			for (GameListener listener : _listeners) {
+				listener.tokenCollected(_currentPlayer, token);
+			}
 			nextTurn();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of the token which may be collected next in this game.
+	 * 
+	 * @return the next token (26 once every token has been collected)
+	 */
+	public int getNextToken() {
+		return _nextToken;
+	}
+
+	/**
+	 * Returns whether or not the last token has been collected.
+	 * 
+	 * @return true if the game is over, false otherwise.
+	 */
+	public boolean isGameOver() {
+		return _gameOver;
+	}
+
+	/**
+	 * Returns the shift code (see <code> Board.shiftCode() </code>) of the most
+	 * recent shift, which the next shift may not undo.
+	 * 
+	 * @return the shift code, or -1 if the board has not been shifted yet
+	 */
+	public int getLastShift() {
+		if (_lastShiftIndex < 0) {
+			return -1;
 		}
+		return Board.shiftCode(_lastShiftDirection, _lastShiftIndex);
+	}
+
+	/**
+	 * Returns the tile the current player started their turn on.
+	 * 
+	 * @return the starting tile
+	 */
+	public Tile getStartingTile() {
+		return _startingTile;
+	}
+
+	/**
+	 * Returns the number of turns which have been ended so far.
+	 * 
+	 * @return the turn number, starting from 0
+	 */
+	public int getTurnNumber() {
+		return _turnNumber;
 	}
 	
 	/**
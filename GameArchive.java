@@ -0,0 +1,434 @@
+package code;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <h1>GameArchive</h1>
+ * A read-only, binary replay archive of {@code GameRecord}s on disk, which can be streamed
+ * sequentially or in parallel.
+ * <p>
+ * The file starts with a 6 byte header (the magic number and a format version) followed by
+ * blocks of up to {@code BLOCK_RECORDS} records each. From version 2 on, a record whose starting
+ * position is known explicitly (see {@code GameRecord.getStart()}) stores it after the scores, as
+ * its {@code PositionCodec} encoding behind a flag byte; version 1 archives, which only have the
+ * seed, are still read. Every block starts with its length in bytes
+ * and its record count, so opening an archive only has to hop from block header to block header
+ * to index it. Streams are backed by a {@code Spliterator} which splits on block boundaries and
+ * reads each block with a single positional read, so parallel streams decode disjoint parts of the
+ * file on separate threads and only ever hold one block per thread in memory.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code FileChannel}: _channel - the open archive file
+ * {@code long[]}: _blockOffsets - the file offset of every block header
+ * {@code int[]}: _blockLengths - the length in bytes of every block, excluding its header
+ * {@code long[]}: _blockStarts - the number of records before every block (with the total record count at the end)
+ * {@code int}: _blockCount - the number of blocks in the archive
+ * {@code int}: _version - the format version of the file
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class GameArchive implements Closeable {
+
+	/**
+	 * The magic number at the start of every archive file ("MLAR").
+	 */
+	public static final int MAGIC = 0x4D4C4152;
+	/**
+	 * The archive format version written by this class.
+	 */
+	public static final int VERSION = 2;
+	/**
+	 * The largest number of records a {@code Writer} puts in one block.
+	 */
+	public static final int BLOCK_RECORDS = 256;
+
+	private static final int HEADER_BYTES = 6;
+	private static final int BLOCK_HEADER_BYTES = 8;
+
+	private final FileChannel _channel;
+	private long[] _blockOffsets;
+	private int[] _blockLengths;
+	private long[] _blockStarts;
+	private int _blockCount;
+	private int _version;
+
+	/**
+	 * Opens the archive at the specified path and indexes its blocks.
+	 *
+	 * @param path	the archive file
+	 * @throws IOException if the file cannot be read or is not an archive
+	 */
+	public GameArchive(Path path) throws IOException {
+		_channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			index();
+		} catch (IOException e) {
+			_channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Checks the file header and records the offset and record count of every block.
+	 */
+	private void index() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+		header.limit(HEADER_BYTES);
+		readFully(header, 0);
+		_version = header.getShort(4);
+		if (header.getInt(0) != MAGIC || _version < 1 || _version > VERSION) {
+			throw new IOException("Not a version 1 to " + VERSION + " game archive.");
+		}
+
+		_blockOffsets = new long[16];
+		_blockLengths = new int[16];
+		_blockStarts = new long[17];
+		_blockCount = 0;
+		long size = _channel.size();
+		long position = HEADER_BYTES;
+		while (position < size) {
+			header.clear();
+			readFully(header, position);
+			int length = header.getInt(0);
+			int count = header.getInt(4);
+			if (length < 0 || count < 0 || position + BLOCK_HEADER_BYTES + length > size) {
+				throw new IOException("Corrupt block header at offset " + position + ".");
+			}
+			if (_blockCount == _blockOffsets.length) {
+				_blockOffsets = Arrays.copyOf(_blockOffsets, _blockCount * 2);
+				_blockLengths = Arrays.copyOf(_blockLengths, _blockCount * 2);
+				_blockStarts = Arrays.copyOf(_blockStarts, _blockCount * 2 + 1);
+			}
+			_blockOffsets[_blockCount] = position;
+			_blockLengths[_blockCount] = length;
+			_blockStarts[_blockCount + 1] = _blockStarts[_blockCount] + count;
+			_blockCount++;
+			position += BLOCK_HEADER_BYTES + length;
+		}
+	}
+
+	/**
+	 * Fills the specified buffer from the archive file, starting at the specified offset.
+	 */
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = _channel.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("Unexpected end of archive at offset " + position + ".");
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * Returns the total number of records in the archive.
+	 * @return the record count
+	 */
+	public long size() {
+		return _blockStarts[_blockCount];
+	}
+
+	/**
+	 * Returns a stream over every record in the archive, in file order.
+	 *
+	 * @param parallel	whether the stream should be parallel
+	 * @return			a stream of records, which fails with an {@code UncheckedIOException} on read errors
+	 */
+	public Stream<GameRecord> records(boolean parallel) {
+		return StreamSupport.stream(new BlockSpliterator(0, _blockCount), parallel);
+	}
+
+	/**
+	 * Closes the archive file; streams obtained from this archive may no longer be used.
+	 */
+	@Override
+	public void close() throws IOException {
+		_channel.close();
+	}
+
+	/**
+	 * Encodes a record into the specified stream in the archive's record format.
+	 *
+	 * @param record	the record to be encoded
+	 * @param out		the stream to write to
+	 * @throws IOException if the stream cannot be written
+	 */
+	static void encode(GameRecord record, DataOutputStream out) throws IOException {
+		out.writeLong(record.getSeed());
+		String[] players = record.getPlayers();
+		out.writeByte(players.length);
+		for (String player : players) {
+			byte[] name = player.getBytes(StandardCharsets.UTF_8);
+			out.writeShort(name.length);
+			out.write(name);
+		}
+		out.writeByte(record.getWinner());
+		for (int score : record.getScores()) {
+			out.writeShort(score);
+		}
+		Position start = record.getStart();
+		out.writeByte(start == null ? 0 : 1);
+		if (start != null) {
+			out.write(PositionCodec.encode(start));
+		}
+		out.writeInt(record.getTurns().size());
+		for (GameRecord.Turn turn : record.getTurns()) {
+			byte[] path = turn.getPath();
+			out.writeByte(turn.getSeat() | turn.getRotation() << 2);
+			out.writeByte(turn.getShift());
+			out.writeByte(turn.getToken());
+			out.writeByte(path.length);
+			for (int step = 0; step < path.length; step += 4) {
+				int packed = 0;
+				for (int i = step; i < step + 4 && i < path.length; i++) {
+					packed |= (path[i] & 3) << ((i - step) * 2);
+				}
+				out.writeByte(packed);
+			}
+		}
+	}
+
+	/**
+	 * Decodes one record of the current format version from the current position of the
+	 * specified buffer.
+	 *
+	 * @param in	the buffer to read from
+	 * @return		the decoded record
+	 */
+	static GameRecord decode(ByteBuffer in) {
+		return decode(in, VERSION);
+	}
+
+	/**
+	 * Decodes one record of the specified format version from the current position of the
+	 * specified buffer.
+	 *
+	 * @param in		the buffer to read from
+	 * @param version	the format version of the archive
+	 * @return			the decoded record
+	 * @throws IllegalArgumentException if the starting position stored is not valid
+	 */
+	static GameRecord decode(ByteBuffer in, int version) {
+		long seed = in.getLong();
+		String[] players = new String[in.get()];
+		for (int seat = 0; seat < players.length; seat++) {
+			byte[] name = new byte[in.getShort() & 0xFFFF];
+			in.get(name);
+			players[seat] = new String(name, StandardCharsets.UTF_8);
+		}
+		GameRecord record = new GameRecord(seed, players);
+		record.setWinner(in.get());
+		for (int seat = 0; seat < players.length; seat++) {
+			record.setScore(seat, in.getShort());
+		}
+		if (version >= 2 && in.get() != 0) {
+			byte[] start = new byte[PositionCodec.BYTES];
+			in.get(start);
+			record.setStart(PositionCodec.decode(start, 0));
+		}
+		int turns = in.getInt();
+		for (int index = 0; index < turns; index++) {
+			int seatAndRotation = in.get();
+			int shift = in.get();
+			int token = in.get();
+			byte[] path = new byte[in.get() & 0xFF];
+			for (int step = 0; step < path.length; step += 4) {
+				int packed = in.get();
+				for (int i = step; i < step + 4 && i < path.length; i++) {
+					path[i] = (byte) ((packed >> ((i - step) * 2)) & 3);
+				}
+			}
+			record.addTurn(new GameRecord.Turn(seatAndRotation & 3, shift, (seatAndRotation >> 2) & 3, path, token));
+		}
+		return record;
+	}
+
+	/**
+	 * <h1>BlockSpliterator</h1>
+	 * Splits an archive on block boundaries and decodes records one at a time from the current block.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code int}: _nextBlock - the next block to be read
+	 * {@code int}: _endBlock - one past the last block covered by this spliterator
+	 * {@code ByteBuffer}: _block - the current block's contents (reused between blocks)
+	 * {@code int}: _remaining - the number of records not yet decoded from the current block
+	 */
+	private class BlockSpliterator implements Spliterator<GameRecord> {
+
+		private int _nextBlock;
+		private int _endBlock;
+		private ByteBuffer _block;
+		private int _remaining;
+
+		BlockSpliterator(int startBlock, int endBlock) {
+			_nextBlock = startBlock;
+			_endBlock = endBlock;
+			_remaining = 0;
+		}
+
+		/**
+		 * Reads the next block into {@code _block}.
+		 *
+		 * @return {@code false} if there are no more blocks
+		 */
+		private boolean readBlock() {
+			if (_nextBlock >= _endBlock) {
+				return false;
+			}
+			int length = _blockLengths[_nextBlock];
+			if (_block == null || _block.capacity() < length) {
+				_block = ByteBuffer.allocate(Math.max(length, 1 << 16));
+			}
+			_block.clear().limit(length);
+			try {
+				readFully(_block, _blockOffsets[_nextBlock] + BLOCK_HEADER_BYTES);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			_block.flip();
+			_remaining = (int) (_blockStarts[_nextBlock + 1] - _blockStarts[_nextBlock]);
+			_nextBlock++;
+			return true;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super GameRecord> action) {
+			while (_remaining == 0) {
+				if (!readBlock()) {
+					return false;
+				}
+			}
+			_remaining--;
+			action.accept(decode(_block, _version));
+			return true;
+		}
+
+		@Override
+		public Spliterator<GameRecord> trySplit() {
+			int blocks = _endBlock - _nextBlock;
+			if (blocks < 2) {
+				return null;
+			}
+			int middle = _nextBlock + blocks / 2;
+			BlockSpliterator prefix = new BlockSpliterator(_nextBlock, middle);
+			prefix._block = _block;
+			prefix._remaining = _remaining;
+			_block = null;
+			_remaining = 0;
+			_nextBlock = middle;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return _remaining + _blockStarts[_endBlock] - _blockStarts[_nextBlock];
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
+		}
+	}
+
+	/**
+	 * Opens a {@code Writer} which creates (or replaces) the archive at the specified path.
+	 *
+	 * @param path	the archive file
+	 * @return		a writer, which must be closed to flush the last block
+	 * @throws IOException if the file cannot be created
+	 */
+	public static Writer create(Path path) throws IOException {
+		return new Writer(Files.newOutputStream(path));
+	}
+
+	/**
+	 * <h1>Writer</h1>
+	 * Appends records to a new archive, buffering them into blocks of {@code BLOCK_RECORDS} records.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code DataOutputStream}: _out - the archive file
+	 * {@code ByteArrayOutputStream}: _blockBytes - the encoded records of the current block
+	 * {@code DataOutputStream}: _block - a data stream over {@code _blockBytes}
+	 * {@code int}: _count - the number of records in the current block
+	 */
+	public static class Writer implements Closeable {
+
+		private final DataOutputStream _out;
+		private final ByteArrayOutputStream _blockBytes;
+		private final DataOutputStream _block;
+		private int _count;
+
+		/**
+		 * Starts an archive on the specified stream by writing the file header.
+		 *
+		 * @param out	the stream the archive is written to
+		 * @throws IOException if the stream cannot be written
+		 */
+		public Writer(OutputStream out) throws IOException {
+			_out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+			_blockBytes = new ByteArrayOutputStream(1 << 16);
+			_block = new DataOutputStream(_blockBytes);
+			_count = 0;
+			_out.writeInt(MAGIC);
+			_out.writeShort(VERSION);
+		}
+
+		/**
+		 * Appends a record to the archive.
+		 *
+		 * @param record	the record to be written
+		 * @throws IOException if the archive cannot be written
+		 */
+		public void write(GameRecord record) throws IOException {
+			encode(record, _block);
+			_count++;
+			if (_count == BLOCK_RECORDS) {
+				flushBlock();
+			}
+		}
+
+		/**
+		 * Writes the current block, if it has any records, to the archive.
+		 */
+		private void flushBlock() throws IOException {
+			if (_count > 0) {
+				_block.flush();
+				_out.writeInt(_blockBytes.size());
+				_out.writeInt(_count);
+				_blockBytes.writeTo(_out);
+				_blockBytes.reset();
+				_count = 0;
+			}
+		}
+
+		/**
+		 * Writes the last block and closes the archive.
+		 */
+		@Override
+		public void close() throws IOException {
+			flushBlock();
+			_out.close();
+		}
+	}
+}
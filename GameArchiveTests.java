@@ -0,0 +1,126 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import code.ArchiveStats;
+import code.Board;
+import code.GameArchive;
+import code.Game;
+import code.GameRecord;
+import code.Position;
+import code.Tile;
+
+public class GameArchiveTests {
+
+	private GameRecord createRecord(long seed) {
+		GameRecord record = new GameRecord(seed, new String[] {"p1", "p2"});
+		record.addTurn(new GameRecord.Turn(0, Board.shiftCode(Tile.NORTH, 3), 1, new byte[] {Tile.SOUTH, Tile.EAST}, 1));
+		record.addTurn(new GameRecord.Turn(1, Board.shiftCode(Tile.WEST, 5), 0, new byte[0], 0));
+		record.setWinner(0);
+		record.setScore(0, 1);
+		return record;
+	}
+
+	private Path writeArchive(int records) throws IOException {
+		Path path = Files.createTempFile("archive", ".mlar");
+		try (GameArchive.Writer writer = GameArchive.create(path)) {
+			for (int index = 0; index < records; index++) {
+				writer.write(createRecord(index));
+			}
+		}
+		return path;
+	}
+
+	@Test public void roundTripTest() throws IOException {
+		Path path = writeArchive(1);
+		try (GameArchive archive = new GameArchive(path)) {
+			assertEquals(1, archive.size());
+			GameRecord record = archive.records(false).findFirst().get();
+			assertEquals(0, record.getSeed());
+			assertEquals("p2", record.getPlayers()[1]);
+			assertEquals(0, record.getWinner());
+			assertEquals(1, record.getScores()[0]);
+			GameRecord.Turn turn = record.getTurns().get(0);
+			assertEquals(Board.shiftCode(Tile.NORTH, 3), turn.getShift());
+			assertEquals(1, turn.getRotation());
+			assertEquals(Tile.EAST, turn.getPath()[1]);
+			assertEquals(1, turn.getToken());
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test public void startTest() throws IOException {
+		Path path = Files.createTempFile("archive", ".mlar");
+		Position start = Position.of(new Game(new String[] {"p1", "p2"}, 99));
+		try {
+			try (GameArchive.Writer writer = GameArchive.create(path)) {
+				GameRecord record = createRecord(1);
+				record.setStart(start);
+				writer.write(record);
+				writer.write(createRecord(2));
+			}
+			try (GameArchive archive = new GameArchive(path)) {
+				List<GameRecord> records = archive.records(false).collect(Collectors.toList());
+				assertEquals(start, records.get(0).getStart());
+				assertEquals(1, records.get(0).getTurns().get(0).getRotation());
+				assertNull(records.get(1).getStart());
+				assertEquals(2, records.get(1).getSeed());
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test public void parallelStreamTest() throws IOException {
+		Path path = writeArchive(GameArchive.BLOCK_RECORDS * 5 + 3);
+		try (GameArchive archive = new GameArchive(path)) {
+			List<Long> seeds = archive.records(true).map(GameRecord::getSeed).collect(Collectors.toList());
+			assertEquals(GameArchive.BLOCK_RECORDS * 5 + 3, seeds.size());
+			for (int index = 0; index < seeds.size(); index++) {
+				assertTrue(seeds.get(index) == index);
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test public void statsTest() throws IOException {
+		Path path = writeArchive(10);
+		try (GameArchive archive = new GameArchive(path)) {
+			ArchiveStats stats = ArchiveStats.of(archive.records(true));
+			assertEquals(10, stats.getGames());
+			assertEquals(20, stats.getTurns());
+			assertTrue(stats.winRate(0) == 1.0);
+			assertTrue(stats.averageTurnsToToken(1) == 1.0);
+			assertTrue(stats.shiftShare(Board.shiftCode(Tile.WEST, 5)) == 0.5);
+			// player 1 starts on (2,2), column 3 shifts leave it there, then it walks south and east
+			assertTrue(stats.winnerOccupancy(3, 3) == 1.0);
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test public void startStatsTest() {
+		GameRecord record = new GameRecord(0, new String[] {"p1", "p2"});
+		Position start = new Position(2);
+		start.setPlayerCell(0, Position.cell(4, 4));
+		record.setStart(start);
+		record.addTurn(new GameRecord.Turn(0, Board.shiftCode(Tile.NORTH, 3), 0, new byte[] {Tile.SOUTH, Tile.EAST}, 0));
+		record.setWinner(0);
+		ArchiveStats stats = new ArchiveStats();
+		stats.accept(record);
+		// the walk starts from the recorded starting cell, not seat 0's usual one
+		assertTrue(stats.winnerOccupancy(5, 5) == 1.0);
+	}
+}
@@ -0,0 +1,303 @@
+package server;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * <h1>GameClient</h1>
+ * A minimal blocking client for a {@code GameServer}, for tests, bots and load generation. Each
+ * request method sends one request and waits for its {@code RESULT}, returning its status; the
+ * value of the last result (a session id or turn number) is available from {@code getValue()}.
+ * <p>
+ * Requests may also be pipelined: queue several with the {@code Protocol.put*()} methods on
+ * {@code requests()}, then {@code send()} them and read each answer with {@code readResult()}.
+ * <p>
+ * Sync frames received while waiting for a result are applied to the client's
+ * {@code BoardReplica}, which is therefore up to date with every request answered. A spectator,
+ * which makes no requests, follows its session with {@code readSync()} instead, and a player queued
+ * in the lobby waits for a game with {@code awaitMatch()}.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code SocketChannel}: _channel - the connection to the server
+ * {@code ByteBuffer}: _out - the requests not yet sent (in write mode)
+ * {@code ByteBuffer}: _in - the bytes received but not yet decoded (in write mode)
+ * {@code byte}: _status - the status of the last result read
+ * {@code int}: _value - the value of the last result read, or the session id of the last match
+ * {@code int}: _seat - the seat of the last match
+ * {@code BoardReplica}: _replica - the client's copy of its session's game
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class GameClient implements Closeable {
+
+	private final SocketChannel _channel;
+	private final ByteBuffer _out;
+	private final ByteBuffer _in;
+	private byte _status;
+	private int _value;
+	private int _seat;
+	private final BoardReplica _replica;
+
+	/**
+	 * Connects to the server at the specified address.
+	 *
+	 * @param address	the server address
+	 * @throws IOException if the connection cannot be made
+	 */
+	public GameClient(InetSocketAddress address) throws IOException {
+		_channel = SocketChannel.open(address);
+		_channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		_out = ByteBuffer.allocate(4 * (Protocol.HEADER_BYTES + Protocol.MAX_PAYLOAD));
+		_in = ByteBuffer.allocate(Protocol.HEADER_BYTES + Protocol.MAX_PAYLOAD);
+		_replica = new BoardReplica();
+	}
+
+	/**
+	 * Opens a session for a new game.
+	 *
+	 * @param seed	the seed of the game's board
+	 * @param names	the names of the players
+	 * @return		the status; on success {@code getValue()} is the session id
+	 * @throws IOException if the server cannot be reached
+	 */
+	public byte open(long seed, String... names) throws IOException {
+		Protocol.putOpen(_out, seed, names);
+		return request();
+	}
+
+	/**
+	 * Takes over a seat of an open session.
+	 *
+	 * @param session	the session id
+	 * @param seat		the seat
+	 * @return			the status
+	 * @throws IOException if the server cannot be reached
+	 */
+	public byte join(int session, int seat) throws IOException {
+		Protocol.putJoin(_out, session, seat);
+		return request();
+	}
+
+	/**
+	 * Watches an open session as a spectator.
+	 *
+	 * @param session	the session id
+	 * @return			the status
+	 * @throws IOException if the server cannot be reached
+	 */
+	public byte watch(int session) throws IOException {
+		Protocol.putWatch(_out, session);
+		return request();
+	}
+
+	/**
+	 * Queues in the server's lobby for a game.
+	 *
+	 * @param players	the size of game wanted (2-4), or 0 for any
+	 * @param name		the player's name
+	 * @return			the status; on success {@code getValue()} is the number of players waiting
+	 * @throws IOException if the server cannot be reached
+	 */
+	public byte queue(int players, String name) throws IOException {
+		Protocol.putQueue(_out, players, name);
+		return request();
+	}
+
+	/**
+	 * Waits until the lobby has placed this client in a game, applying sync frames meanwhile.
+	 *
+	 * @return the seat taken; {@code getValue()} is the session id
+	 * @throws IOException if the server cannot be reached or closes the connection
+	 */
+	public int awaitMatch() throws IOException {
+		while (readFrame() != Protocol.MATCHED) {
+			// results and sync frames are dealt with by readFrame()
+		}
+		return _seat;
+	}
+
+	/**
+	 * Shifts the board.
+	 *
+	 * @param code	the shift code
+	 * @return		the status
+	 * @throws IOException if the server cannot be reached
+	 */
+	public byte shift(int code) throws IOException {
+		Protocol.putShift(_out, code);
+		return request();
+	}
+
+	/**
+	 * Rotates the free tile.
+	 *
+	 * @param clockwise	whether to rotate clockwise
+	 * @return			the status
+	 * @throws IOException if the server cannot be reached
+	 */
+	public byte rotate(boolean clockwise) throws IOException {
+		Protocol.putRotate(_out, clockwise);
+		return request();
+	}
+
+	/**
+	 * Moves the current player to an adjacent tile.
+	 *
+	 * @param row		the row of the destination
+	 * @param column	the column of the destination
+	 * @return			the status
+	 * @throws IOException if the server cannot be reached
+	 */
+	public byte move(int row, int column) throws IOException {
+		Protocol.putMove(_out, row, column);
+		return request();
+	}
+
+	/**
+	 * Collects the token on the current player's tile.
+	 *
+	 * @return the status
+	 * @throws IOException if the server cannot be reached
+	 */
+	public byte collect() throws IOException {
+		Protocol.putEmpty(_out, Protocol.COLLECT);
+		return request();
+	}
+
+	/**
+	 * Ends the current player's turn.
+	 *
+	 * @return the status
+	 * @throws IOException if the server cannot be reached
+	 */
+	public byte endTurn() throws IOException {
+		Protocol.putEmpty(_out, Protocol.END_TURN);
+		return request();
+	}
+
+	/**
+	 * Asks for a snapshot of the session's game, to bring the replica back in sync.
+	 *
+	 * @return the status
+	 * @throws IOException if the server cannot be reached
+	 */
+	public byte resync() throws IOException {
+		Protocol.putEmpty(_out, Protocol.RESYNC);
+		return request();
+	}
+
+	/**
+	 * Returns the client's copy of its session's game.
+	 * @return the replica
+	 */
+	public BoardReplica getReplica() {
+		return _replica;
+	}
+
+	private byte request() throws IOException {
+		send();
+		return readResult();
+	}
+
+	/**
+	 * Returns the buffer requests are queued in by the {@code Protocol.put*()} methods.
+	 * @return the request buffer
+	 */
+	public ByteBuffer requests() {
+		return _out;
+	}
+
+	/**
+	 * Sends every queued request.
+	 *
+	 * @throws IOException if the server cannot be reached
+	 */
+	public void send() throws IOException {
+		_out.flip();
+		while (_out.hasRemaining()) {
+			_channel.write(_out);
+		}
+		_out.clear();
+	}
+
+	/**
+	 * Waits for the next {@code RESULT}, applying any sync frames before it to the replica.
+	 *
+	 * @return the status of the result; {@code getValue()} is its value
+	 * @throws IOException if the server cannot be reached or closes the connection
+	 */
+	public byte readResult() throws IOException {
+		while (readFrame() != Protocol.RESULT) {
+			// sync frames have been applied to the replica
+		}
+		return _status;
+	}
+
+	/**
+	 * Waits for the next sync frame and applies it to the replica. Results read on the way are
+	 * skipped, though the last one is still available from {@code getValue()}.
+	 *
+	 * @return the type of the sync frame
+	 * @throws IOException if the server cannot be reached or closes the connection
+	 */
+	public byte readSync() throws IOException {
+		byte type;
+		while ((type = readFrame()) == Protocol.RESULT || type == Protocol.MATCHED) {
+			// only sync frames are waited for
+		}
+		return type;
+	}
+
+	/**
+	 * Reads the next frame, applying it to the replica if it is a sync frame or keeping its status
+	 * and value if it is a result, or its session and seat if it is a match.
+	 */
+	private byte readFrame() throws IOException {
+		while (true) {
+			_in.flip();
+			int length = Protocol.frameLength(_in);
+			if (length >= 0) {
+				int start = _in.position();
+				int limit = _in.limit();
+				byte type = _in.get(start + 2);
+				if (type == Protocol.RESULT) {
+					_status = _in.get(start + Protocol.HEADER_BYTES + 1);
+					_value = _in.getInt(start + Protocol.HEADER_BYTES + 2);
+				} else if (type == Protocol.MATCHED) {
+					_value = _in.getInt(start + Protocol.HEADER_BYTES);
+					_seat = _in.get(start + Protocol.HEADER_BYTES + 4);
+				} else {
+					_in.position(start + Protocol.HEADER_BYTES).limit(start + length);
+					_replica.apply(type, _in);
+				}
+				_in.limit(limit).position(start + length);
+				_in.compact();
+				return type;
+			}
+			_in.compact();
+			if (_channel.read(_in) < 0) {
+				throw new EOFException("Server closed the connection.");
+			}
+		}
+	}
+
+	/**
+	 * Returns the value of the last result read.
+	 * @return the session id or turn number
+	 */
+	public int getValue() {
+		return _value;
+	}
+
+	@Override
+	public void close() throws IOException {
+		_channel.close();
+	}
+}
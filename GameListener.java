@@ -0,0 +1,61 @@
+package code;
+
+/**
+ * <h1>GameListener</h1>
+ * Receives every change a {@code Game} makes to its state, as it happens, so that other parts of
+ * a program (eg. a server keeping remote clients in sync) can follow a game without polling it.
+ * The events mirror the updates a {@code Game} makes to its {@code View}; every method does nothing
+ * by default.
+ *
+ * @version S.3
+ * @since S.3
+ */
+public interface GameListener {
+
+	/**
+	 * Called after the board was shifted.
+	 *
+	 * @param code	the shift code (see {@code Board.shiftCode()})
+	 */
+	default void boardShifted(int code) {
+	}
+
+	/**
+	 * Called after the free tile was rotated.
+	 *
+	 * @param clockwise	whether it was rotated clockwise
+	 */
+	default void freeTileRotated(boolean clockwise) {
+	}
+
+	/**
+	 * Called after a player moved to an adjacent tile.
+	 *
+	 * @param player	the player, now on their new tile
+	 */
+	default void playerMoved(Player player) {
+	}
+
+	/**
+	 * Called after a player collected the token on their tile.
+	 *
+	 * @param player	the player
+	 * @param token		the number of the token collected
+	 */
+	default void tokenCollected(Player player, int token) {
+	}
+
+	/**
+	 * Called after a turn ended.
+	 *
+	 * @param next	the player whose turn it now is
+	 */
+	default void turnEnded(Player next) {
+	}
+
+	/**
+	 * Called once every token has been collected and the game is over.
+	 */
+	default void gameEnded() {
+	}
+}
@@ -0,0 +1,223 @@
+package code;
+
+import java.util.ArrayList;
+
+/**
+ * <h1>GameRecord</h1>
+ * A compact, board-independent record of one finished (or abandoned) Master Labyrinth game, as
+ * stored in a {@code GameArchive}. The starting board is stored only if it is known explicitly (see
+ * {@code getStart()}), and otherwise only by the seed it was generated from; every turn is stored
+ * as the shift that was made, how often the free tile was rotated before it, the path the player
+ * walked tile by tile, and the token collected at the end of it (if any).
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code long}: _seed - the seed the starting board was generated from
+ * {@code String[]}: _players - the names of the players, indexed by seat
+ * {@code ArrayList<Turn>}: _turns - every turn of the game, in the order they were played
+ * {@code int}: _winner - the seat of the winning player, or -1 if the game did not finish
+ * {@code int[]}: _scores - the final score of each seat, as given by {@code Player.calculateScore()}
+ * {@code Position}: _start - the starting position, if it is known explicitly rather than only by its seed (otherwise null)
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class GameRecord {
+
+	/**
+	 * The largest supported number of steps in one turn's path.
+	 */
+	public static final int MAX_PATH = 255;
+
+	private long _seed;
+	private String[] _players;
+	private ArrayList<Turn> _turns;
+	private int _winner;
+	private int[] _scores;
+	private Position _start;
+
+	/**
+	 * Creates an empty record for a game between the specified players.
+	 *
+	 * @param seed		the seed the starting board was generated from
+	 * @param players	the names of the players, indexed by seat
+	 */
+	public GameRecord(long seed, String[] players) {
+		_seed = seed;
+		_players = players;
+		_turns = new ArrayList<Turn>();
+		_winner = -1;
+		_scores = new int[players.length];
+	}
+
+	/**
+	 * Appends a turn to the end of this record.
+	 *
+	 * @param turn	the turn to be added
+	 */
+	public void addTurn(Turn turn) {
+		_turns.add(turn);
+	}
+
+	/**
+	 * Returns the seed the starting board was generated from.
+	 * @return the board seed
+	 */
+	public long getSeed() {
+		return _seed;
+	}
+
+	/**
+	 * Returns the names of the players, indexed by seat.
+	 * @return the player names
+	 */
+	public String[] getPlayers() {
+		return _players;
+	}
+
+	/**
+	 * Returns the number of players (seats) in the game.
+	 * @return the number of players
+	 */
+	public int getPlayerCount() {
+		return _players.length;
+	}
+
+	/**
+	 * Returns the turns of the game in the order they were played.
+	 * @return the list of turns
+	 */
+	public ArrayList<Turn> getTurns() {
+		return _turns;
+	}
+
+	/**
+	 * Returns the seat of the winning player.
+	 * @return the winner's seat, or -1 if the game did not finish
+	 */
+	public int getWinner() {
+		return _winner;
+	}
+
+	/**
+	 * Sets the seat of the winning player.
+	 * @param winner - the winner's seat, or -1 if the game did not finish
+	 */
+	public void setWinner(int winner) {
+		_winner = winner;
+	}
+
+	/**
+	 * Returns the final score of each seat.
+	 * @return the final scores, indexed by seat
+	 */
+	public int[] getScores() {
+		return _scores;
+	}
+
+	/**
+	 * Sets the final score of the specified seat.
+	 * @param seat - the seat
+	 * @param score - that seat's final score
+	 */
+	public void setScore(int seat, int score) {
+		_scores[seat] = score;
+	}
+
+	/**
+	 * Returns the starting position, if it is known explicitly.
+	 * @return the starting position, or null if the board is only known by its seed
+	 */
+	public Position getStart() {
+		return _start;
+	}
+
+	/**
+	 * Sets the starting position.
+	 * @param start - the starting position, or null if the board is only known by its seed
+	 */
+	public void setStart(Position start) {
+		_start = start;
+	}
+
+	/**
+	 * <h1>Turn</h1>
+	 * One turn of a recorded game.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code int}: _seat - the seat of the player who took the turn
+	 * {@code int}: _shift - the shift code of the shift made, see {@code Board.shiftCode()}
+	 * {@code int}: _rotation - the number of clockwise quarter turns applied to the free tile before shifting (0-3)
+	 * {@code byte[]}: _path - the direction of each step walked after shifting ({@code Tile.NORTH}, {@code Tile.WEST}, ...)
+	 * {@code int}: _token - the number of the token collected at the end of the turn, or 0 if none was
+	 */
+	public static class Turn {
+
+		private int _seat;
+		private int _shift;
+		private int _rotation;
+		private byte[] _path;
+		private int _token;
+
+		/**
+		 * Creates a turn.
+		 *
+		 * @param seat		the seat of the player who took the turn
+		 * @param shift		the shift code of the shift made
+		 * @param rotation	the number of clockwise quarter turns applied to the free tile (0-3)
+		 * @param path		the direction of each step walked after shifting
+		 * @param token		the number of the token collected, or 0 if none was
+		 */
+		public Turn(int seat, int shift, int rotation, byte[] path, int token) {
+			if (path.length > MAX_PATH) {
+				throw new IllegalArgumentException("Path of " + path.length + " steps is longer than " + MAX_PATH + ".");
+			}
+			_seat = seat;
+			_shift = shift;
+			_rotation = rotation & 3;
+			_path = path;
+			_token = token;
+		}
+
+		/**
+		 * Returns the seat of the player who took the turn.
+		 * @return the seat
+		 */
+		public int getSeat() {
+			return _seat;
+		}
+
+		/**
+		 * Returns the shift code of the shift made.
+		 * @return the shift code
+		 */
+		public int getShift() {
+			return _shift;
+		}
+
+		/**
+		 * Returns the number of clockwise quarter turns applied to the free tile before shifting.
+		 * @return 0, 1, 2 or 3
+		 */
+		public int getRotation() {
+			return _rotation;
+		}
+
+		/**
+		 * Returns the direction of each step walked after shifting.
+		 * @return the path
+		 */
+		public byte[] getPath() {
+			return _path;
+		}
+
+		/**
+		 * Returns the number of the token collected at the end of the turn.
+		 * @return the token number, or 0 if none was collected
+		 */
+		public int getToken() {
+			return _token;
+		}
+	}
+}
@@ -0,0 +1,456 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import code.Game;
+
+/**
+ * <h1>GameServer</h1>
+ * A headless server hosting any number of concurrent {@code Game} sessions for remote clients
+ * speaking the {@code Protocol}.
+ * <p>
+ * Connections are accepted on their own thread and spread over a fixed set of {@code EventLoop}s
+ * (by default one per core), each multiplexing its connections with a non-blocking
+ * {@code Selector}. A session belongs to the loop it was opened on, and every connection playing in
+ * it is moved to that loop, so each game is only ever touched by one thread and needs no locks.
+ * <p>
+ * Players may also ask the server's {@code MatchmakingLobby} for a game. Each game it forms is
+ * placed on the loop hosting the fewest sessions (then the fewest connections), so that games, and
+ * the CPU time they take, stay spread evenly over the loops; the players are then moved there.
+ * <p>
+ * With {@code enableHibernation()}, each loop's {@code SessionHibernator} writes idle games to disk
+ * and drops them from the heap, so that the heap stays bounded however many sessions are open.
+ * <p>
+ * With {@code enableTurnClock()}, each player has a fixed time for each turn, the deadlines of every
+ * session kept by one {@code TimingWheel}; a player out of time has their turn ended for them. A
+ * game in which every player in a row ran out of time is taken as abandoned and its clock stopped,
+ * so that it is still hibernated.
+ * <p>
+ * Each connection's requests are rate limited by a {@code TokenBucket} (see {@code setRateLimit()}),
+ * and a client which stops reading its replies has its reads suspended, then is disconnected, so
+ * that no client can take more than its share of a loop or of the heap.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code ServerSocketChannel}: _server - the listening socket
+ * {@code EventLoop[]}: _loops - the event loops connections are spread over
+ * {@code Thread}: _acceptor - the thread accepting connections
+ * {@code Map<Integer, Session>}: _sessions - every open session, by id
+ * {@code AtomicInteger}: _nextId - the id of the next session to be opened
+ * {@code int}: _nextLoop - the loop the next connection is assigned to
+ * {@code MatchmakingLobby<Connection>}: _lobby - the lobby of players waiting for a game
+ * {@code ServerMetrics}: _metrics - the request counts, latencies and loop lags of the server
+ * {@code ScheduledExecutorService}: _sweeper - the thread having idle sessions hibernated, or null
+ * {@code TimingWheel}: _clock - the wheel turn deadlines are kept on, or null
+ * {@code long}: _turnMillis - the time each player has for a turn
+ * {@code double}: _actionRate - the requests per second each new connection may make on average
+ * {@code int}: _actionBurst - the most requests each new connection may make at once
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class GameServer implements Closeable {
+
+	/**
+	 * The port a server listens on if none is specified.
+	 */
+	public static final int DEFAULT_PORT = 7777;
+	/**
+	 * The length in milliseconds of a tick of the turn clock, ie. its precision.
+	 */
+	public static final long CLOCK_TICK_MILLIS = 10;
+	/**
+	 * The time the acceptor waits before accepting again after {@code accept()} failed, eg. because
+	 * the process ran out of file descriptors.
+	 */
+	public static final long ACCEPT_RETRY_MILLIS = 10;
+	/**
+	 * The requests per second a connection may make on average unless set otherwise.
+	 */
+	public static final double DEFAULT_ACTION_RATE = 100;
+	/**
+	 * The most requests a connection may make at once unless set otherwise.
+	 */
+	public static final int DEFAULT_ACTION_BURST = 200;
+
+	private final ServerSocketChannel _server;
+	private final EventLoop[] _loops;
+	private final Thread _acceptor;
+	private final Map<Integer, Session> _sessions;
+	private final AtomicInteger _nextId;
+	private int _nextLoop;
+	private final MatchmakingLobby<Connection> _lobby;
+	private final ServerMetrics _metrics;
+	private ScheduledExecutorService _sweeper;
+	private volatile TimingWheel _clock;
+	private volatile long _turnMillis;
+	private volatile double _actionRate;
+	private volatile int _actionBurst;
+
+	/**
+	 * Starts a server listening on the specified address.
+	 *
+	 * @param address	the address to listen on (port 0 for any free port)
+	 * @param loops		the number of event loops
+	 * @throws IOException if the socket cannot be bound
+	 */
+	public GameServer(InetSocketAddress address, int loops) throws IOException {
+		_sessions = new ConcurrentHashMap<Integer, Session>();
+		_nextId = new AtomicInteger(1);
+		_nextLoop = 0;
+		_actionRate = DEFAULT_ACTION_RATE;
+		_actionBurst = DEFAULT_ACTION_BURST;
+		_lobby = new MatchmakingLobby<Connection>(this::place);
+		_metrics = new ServerMetrics(loops);
+		_loops = new EventLoop[loops];
+		for (int index = 0; index < loops; index++) {
+			_loops[index] = new EventLoop("labyrinth-loop-" + index, index);
+		}
+		_server = ServerSocketChannel.open();
+		_server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		_server.bind(address, 1024);
+		for (EventLoop loop : _loops) {
+			loop.start();
+		}
+		_acceptor = new Thread(this::accept, "labyrinth-accept");
+		_acceptor.start();
+	}
+
+	/**
+	 * Accepts connections until the server is closed, handing each to the next loop in turn. A
+	 * connection which fails before it is handed over is closed, and the next one accepted.
+	 */
+	private void accept() {
+		while (_server.isOpen()) {
+			SocketChannel channel;
+			try {
+				channel = _server.accept();
+			} catch (IOException e) {
+				// the server socket has been closed, or could not accept this time
+				if (_server.isOpen()) {
+					pause(ACCEPT_RETRY_MILLIS);
+				}
+				continue;
+			}
+			try {
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				Connection connection = new Connection(this, channel);
+				EventLoop loop = _loops[_nextLoop];
+				_nextLoop = (_nextLoop + 1) % _loops.length;
+				loop.execute(() -> connection.register(loop));
+			} catch (IOException e) {
+				close(channel);
+			}
+		}
+	}
+
+	/**
+	 * Closes the specified channel, which has failed anyway.
+	 */
+	static void close(SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// nothing more can be done
+		}
+	}
+
+	/**
+	 * Waits the specified time before an acceptor tries again.
+	 */
+	static void pause(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the port the server is listening on.
+	 * @return the port
+	 */
+	public int getPort() {
+		return _server.socket().getLocalPort();
+	}
+
+	/**
+	 * Returns the number of open sessions.
+	 * @return the session count
+	 */
+	public int getSessionCount() {
+		return _sessions.size();
+	}
+
+	/**
+	 * Returns the number of open connections.
+	 * @return the connection count
+	 */
+	public int getConnectionCount() {
+		int count = 0;
+		for (EventLoop loop : _loops) {
+			count += loop.connections();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the server's metrics, which a {@code MetricsEndpoint} may publish.
+	 * @return the metrics
+	 */
+	public ServerMetrics getMetrics() {
+		return _metrics;
+	}
+
+	/**
+	 * Returns the event loops, for a {@code MetricsEndpoint} to measure their lag.
+	 */
+	EventLoop[] loops() {
+		return _loops;
+	}
+
+	/**
+	 * Returns the number of players waiting in the lobby.
+	 * @return the number of players queued and not yet placed
+	 */
+	public int getWaitingPlayers() {
+		return _lobby.getWaiting();
+	}
+
+	/**
+	 * Sets the rate limit of connections accepted from now on; requests over the limit are
+	 * answered with {@code Protocol.RATE_LIMITED} and not carried out.
+	 *
+	 * @param actionsPerSecond	the requests per second a connection may make on average
+	 * @param burst				the most requests a connection may make at once
+	 */
+	public void setRateLimit(double actionsPerSecond, int burst) {
+		if (actionsPerSecond <= 0 || burst < 1) {
+			throw new IllegalArgumentException("The rate and burst must be positive.");
+		}
+		_actionRate = actionsPerSecond;
+		_actionBurst = burst;
+	}
+
+	/**
+	 * Returns the requests per second a new connection may make on average.
+	 */
+	double getActionRate() {
+		return _actionRate;
+	}
+
+	/**
+	 * Returns the most requests a new connection may make at once.
+	 */
+	int getActionBurst() {
+		return _actionBurst;
+	}
+
+	/**
+	 * Starts hibernating the games of sessions opened from now on to the specified directory once
+	 * they have been idle for the specified time, or once a loop has more than its share of the
+	 * specified number of games in the heap.
+	 *
+	 * @param directory		the directory games are hibernated to, which must not be shared with another server
+	 * @param idleMillis	how long a session may go unused before it is hibernated
+	 * @param maxResident	the most games kept in the heap, over all the loops
+	 * @throws IOException if the directory cannot be created
+	 */
+	public synchronized void enableHibernation(Path directory, long idleMillis, int maxResident) throws IOException {
+		if (_sweeper != null) {
+			throw new IllegalStateException("Hibernation is already enabled.");
+		}
+		if (idleMillis <= 0 || maxResident <= 0) {
+			throw new IllegalArgumentException("The idle timeout and resident limit must be positive.");
+		}
+		Files.createDirectories(directory);
+		for (EventLoop loop : _loops) {
+			loop.setHibernator(new SessionHibernator(directory, TimeUnit.MILLISECONDS.toNanos(idleMillis),
+					Math.max(1, maxResident / _loops.length)));
+		}
+		_sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "labyrinth-hibernate");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(10, idleMillis / 4);
+		_sweeper.scheduleAtFixedRate(() -> {
+			for (EventLoop loop : _loops) {
+				loop.execute(loop.hibernator()::sweep);
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Gives each player of the sessions opened from now on the specified time for each turn, after
+	 * which the server shifts the board for them if need be and ends their turn.
+	 *
+	 * @param turnMillis	the time each player has for a turn
+	 */
+	public synchronized void enableTurnClock(long turnMillis) {
+		if (_clock != null) {
+			throw new IllegalStateException("The turn clock is already enabled.");
+		}
+		if (turnMillis <= 0) {
+			throw new IllegalArgumentException("The turn time must be positive.");
+		}
+		_turnMillis = turnMillis;
+		_clock = new TimingWheel(CLOCK_TICK_MILLIS, "labyrinth-clock");
+	}
+
+	/**
+	 * Returns the number of sessions whose game is hibernated.
+	 * @return the hibernated count
+	 */
+	public int getHibernatedCount() {
+		int count = 0;
+		for (EventLoop loop : _loops) {
+			SessionHibernator hibernator = loop.hibernator();
+			count += hibernator == null ? 0 : hibernator.hibernated();
+		}
+		return count;
+	}
+
+	/**
+	 * Opens a session for the specified game on the specified loop.
+	 */
+	Session openSession(Game game, EventLoop loop, Session.Member owner) {
+		loop.addSessions(1);
+		Session session = new Session(_nextId.getAndIncrement(), game, loop, owner);
+		register(session, loop);
+		return session;
+	}
+
+	/**
+	 * Makes an opened session known to clients, to its loop's hibernator and to the turn clock.
+	 */
+	private void register(Session session, EventLoop loop) {
+		_sessions.put(session.getId(), session);
+		if (loop.hibernator() != null) {
+			session.setHibernator(loop.hibernator());
+		}
+		TimingWheel clock = _clock;
+		if (clock != null) {
+			session.setTurnClock(clock, _turnMillis);
+		}
+	}
+
+	Session getSession(int id) {
+		return _sessions.get(id);
+	}
+
+	void closeSession(Session session) {
+		if (_sessions.remove(session.getId()) != null) {
+			EventLoop loop = (EventLoop) session.getExecutor();
+			loop.addSessions(-1);
+			if (loop.hibernator() != null) {
+				loop.hibernator().remove(session);
+			}
+		}
+	}
+
+	MatchmakingLobby<Connection> getLobby() {
+		return _lobby;
+	}
+
+	/**
+	 * Places a game formed by the lobby on the least loaded loop, and hands each player their seat.
+	 * The session is closed again if every player has left before taking their seat.
+	 */
+	private void place(List<MatchmakingLobby.Ticket<Connection>> players) {
+		EventLoop loop = leastLoaded();
+		loop.addSessions(1);
+		String[] names = new String[players.size()];
+		for (int seat = 0; seat < names.length; seat++) {
+			names[seat] = players.get(seat).getName();
+		}
+		long seed = ThreadLocalRandom.current().nextLong();
+		loop.schedule(() -> {
+			Session session = new Session(_nextId.getAndIncrement(), new Game(names, seed), loop, null);
+			register(session, loop);
+			int[] pending = {names.length};
+			Runnable seated = () -> {
+				if (--pending[0] == 0 && !session.hasMembers()) {
+					closeSession(session);
+				}
+			};
+			for (int seat = 0; seat < names.length; seat++) {
+				MatchmakingLobby.Ticket<Connection> ticket = players.get(seat);
+				ticket.getOwner().matched(session, seat, ticket, seated);
+			}
+		});
+	}
+
+	/**
+	 * Returns the loop hosting the fewest sessions, then the fewest connections.
+	 */
+	private EventLoop leastLoaded() {
+		EventLoop best = _loops[0];
+		for (EventLoop loop : _loops) {
+			if (loop.sessions() < best.sessions()
+					|| loop.sessions() == best.sessions() && loop.connections() < best.connections()) {
+				best = loop;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Stops accepting connections, closes every connection and stops the event loops.
+	 */
+	@Override
+	public void close() throws IOException {
+		_server.close();
+		synchronized (this) {
+			if (_sweeper != null) {
+				_sweeper.shutdownNow();
+			}
+			if (_clock != null) {
+				_clock.close();
+			}
+		}
+		try {
+			_acceptor.join();
+			for (EventLoop loop : _loops) {
+				loop.shutdown();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		_sessions.clear();
+	}
+
+	/**
+	 * Runs a server until the process is killed.
+	 * @param args - the port (default {@code DEFAULT_PORT}), the number of event loops (default one per core) and
+	 * the local port to serve metrics on (default none)
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int loops = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		GameServer server = new GameServer(new InetSocketAddress(port), loops);
+		System.out.println("Listening on port " + server.getPort() + " with " + loops + " event loops.");
+		if (args.length > 2) {
+			MetricsEndpoint metrics = new MetricsEndpoint(server,
+					new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[2])), 10000, System.out);
+			System.out.println("Serving metrics on http://localhost:" + metrics.getPort() + "/metrics");
+		}
+	}
+}
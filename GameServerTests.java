@@ -0,0 +1,79 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.junit.Test;
+
+import code.Board;
+import code.Tile;
+import server.GameClient;
+import server.GameServer;
+import server.Protocol;
+
+public class GameServerTests {
+
+	private GameServer start() throws IOException {
+		return new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+	}
+
+	private InetSocketAddress address(GameServer server) {
+		return new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+	}
+
+	@Test public void turnTest() throws IOException {
+		try (GameServer server = start();
+				GameClient first = new GameClient(address(server));
+				GameClient second = new GameClient(address(server))) {
+			assertEquals(Protocol.NO_SESSION, first.shift(0));
+			assertEquals(Protocol.OK, first.open(11, "Ann", "Bob"));
+			int session = first.getValue();
+			assertEquals(1, server.getSessionCount());
+
+			assertEquals(Protocol.REJECTED, first.endTurn());
+			assertEquals(Protocol.OK, first.rotate(true));
+			assertEquals(Protocol.OK, first.shift(Board.shiftCode(Tile.EAST, 3)));
+			assertEquals(Protocol.REJECTED, first.shift(Board.shiftCode(Tile.EAST, 1)));
+			assertEquals(Protocol.BAD_MESSAGE, first.move(9, 0));
+
+			assertEquals(Protocol.NO_SESSION, second.join(session + 1, 1));
+			assertEquals(Protocol.OK, second.join(session, 1));
+			assertEquals(Protocol.NOT_YOUR_TURN, second.shift(0));
+			assertEquals(Protocol.OK, first.endTurn());
+			assertEquals(1, first.getValue());
+
+			assertEquals(Protocol.NOT_YOUR_TURN, first.shift(0));
+			assertEquals(Protocol.REJECTED, second.shift(Board.shiftCode(Tile.WEST, 3)));
+			assertEquals(Protocol.OK, second.shift(Board.shiftCode(Tile.WEST, 5)));
+			assertEquals(Protocol.OK, second.endTurn());
+			assertEquals(2, second.getValue());
+		}
+	}
+
+	@Test public void pipelineTest() throws IOException {
+		try (GameServer server = start()) {
+			GameClient[] clients = new GameClient[20];
+			for (int index = 0; index < clients.length; index++) {
+				clients[index] = new GameClient(address(server));
+				Protocol.putOpen(clients[index].requests(), index, new String[] {"a", "b", "c"});
+				for (int turn = 0; turn < 6; turn++) {
+					Protocol.putShift(clients[index].requests(), turn * 2);
+					Protocol.putEmpty(clients[index].requests(), Protocol.END_TURN);
+				}
+				clients[index].send();
+			}
+			for (GameClient client : clients) {
+				assertEquals(Protocol.OK, client.readResult());
+				for (int turn = 0; turn < 6; turn++) {
+					assertEquals(Protocol.OK, client.readResult());
+					assertEquals(Protocol.OK, client.readResult());
+					assertEquals(turn + 1, client.getValue());
+				}
+				client.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package code;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * <h1>GameState</h1>
+ * Everything needed to rebuild a {@code Game} exactly as it was, mid-turn included: the
+ * {@code Position}, the player names, the turn number, the current turn's flags and which tokens
+ * each player holds (a {@code Position} only has their total). Used to hibernate idle games to
+ * disk and bring them back later; the rebuilt game has no view and no listeners.
+ * <p>
+ * The binary form starts with the magic number and a format version, then holds the names, the
+ * {@code PositionCodec} encoding of the position and the rest of the state, in about 60 bytes for
+ * a 4 player game.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code String[]}: _names - the names of the players, indexed by seat
+ * {@code Position}: _position - the board, players, scores, seat to play and next token
+ * {@code int}: _turnNumber - the number of turns ended so far
+ * {@code boolean}: _boardShifted - whether the board has been shifted this turn
+ * {@code boolean}: _moved - whether the current player has moved this turn
+ * {@code boolean}: _gameOver - whether the last token has been collected
+ * {@code int}: _startingCell - the cell the current player started the turn on, or {@code Position.FREE}
+ * if that tile has since been pushed off the board
+ * {@code int[]}: _collected - the tokens each seat holds, as a mask with bit {@code n} for token {@code n}
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class GameState {
+
+	/**
+	 * The magic number at the start of every encoded state ("MLGS").
+	 */
+	public static final int MAGIC = 0x4D4C4753;
+	/**
+	 * The format version written by this class.
+	 */
+	public static final int VERSION = 1;
+
+	private static final int SHIFTED = 1;
+	private static final int MOVED = 2;
+	private static final int OVER = 4;
+
+	private final String[] _names;
+	private final Position _position;
+	private final int _turnNumber;
+	private final boolean _boardShifted;
+	private final boolean _moved;
+	private final boolean _gameOver;
+	private final int _startingCell;
+	private final int[] _collected;
+
+	private GameState(String[] names, Position position, int turnNumber, int flags, int startingCell, int[] collected) {
+		_names = names;
+		_position = position;
+		_turnNumber = turnNumber;
+		_boardShifted = (flags & SHIFTED) != 0;
+		_moved = (flags & MOVED) != 0;
+		_gameOver = (flags & OVER) != 0;
+		_startingCell = startingCell;
+		_collected = collected;
+	}
+
+	/**
+	 * Captures the current state of the specified game.
+	 *
+	 * @param game	the game
+	 * @return		its state
+	 */
+	public static GameState of(Game game) {
+		String[] names = new String[game.getPlayers()];
+		int[] collected = new int[names.length];
+		for (Player player : game.getPlayerList()) {
+			names[player.getNumber()] = player.get_playerName();
+			for (Token token : player.getTokens()) {
+				collected[player.getNumber()] |= 1 << token.getNumber();
+			}
+		}
+		int flags = (game.boardHasShifted() ? SHIFTED : 0) | (game.currentPlayerHasMoved() ? MOVED : 0)
+				| (game.isGameOver() ? OVER : 0);
+		Tile start = game.getStartingTile();
+		int startingCell = start == game.getBoard().getFreeTile() ? Position.FREE
+				: Position.cell(start.getRow(), start.getColumn());
+		return new GameState(names, Position.of(game), game.getTurnNumber(), flags, startingCell, collected);
+	}
+
+	/**
+	 * Rebuilds the game.
+	 *
+	 * @return a new game in this state
+	 */
+	public Game toGame() {
+		return new Game(this);
+	}
+
+	/**
+	 * Writes this state.
+	 *
+	 * @param out	the output the state is written to
+	 * @throws IOException if the output cannot be written
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeByte(_names.length);
+		for (String name : _names) {
+			out.writeUTF(name);
+		}
+		out.write(PositionCodec.encode(_position));
+		out.writeInt(_turnNumber);
+		out.writeByte((_boardShifted ? SHIFTED : 0) | (_moved ? MOVED : 0) | (_gameOver ? OVER : 0));
+		out.writeByte(_startingCell);
+		for (int mask : _collected) {
+			out.writeInt(mask);
+		}
+	}
+
+	/**
+	 * Reads a state written by {@code write()}.
+	 *
+	 * @param in	the input the state is read from
+	 * @return		the state
+	 * @throws IOException if the input cannot be read or does not hold a valid state
+	 */
+	public static GameState read(DataInput in) throws IOException {
+		if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+			throw new IOException("Not a version " + VERSION + " game state.");
+		}
+		int count = in.readByte();
+		if (count < 1 || count > 4) {
+			throw new IOException("Invalid player count " + count + ".");
+		}
+		String[] names = new String[count];
+		for (int seat = 0; seat < count; seat++) {
+			names[seat] = in.readUTF();
+		}
+		byte[] bytes = new byte[PositionCodec.BYTES];
+		in.readFully(bytes);
+		Position position;
+		try {
+			position = PositionCodec.decode(bytes, 0);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+		if (position.getPlayerCount() != count) {
+			throw new IOException("Player count does not match the position.");
+		}
+		int turnNumber = in.readInt();
+		int flags = in.readByte();
+		int startingCell = in.readByte();
+		if (startingCell < 0 || startingCell > Position.FREE) {
+			throw new IOException("Invalid starting cell " + startingCell + ".");
+		}
+		int[] collected = new int[count];
+		for (int seat = 0; seat < count; seat++) {
+			collected[seat] = in.readInt();
+		}
+		return new GameState(names, position, turnNumber, flags, startingCell, collected);
+	}
+
+	/**
+	 * Returns the names of the players, indexed by seat.
+	 * @return the names
+	 */
+	public String[] getNames() {
+		return _names;
+	}
+
+	/**
+	 * Returns the position.
+	 * @return the position
+	 */
+	public Position getPosition() {
+		return _position;
+	}
+
+	/**
+	 * Returns the number of turns ended so far.
+	 * @return the turn number
+	 */
+	public int getTurnNumber() {
+		return _turnNumber;
+	}
+
+	/**
+	 * Returns whether the board has been shifted this turn.
+	 * @return true if shifted
+	 */
+	public boolean isBoardShifted() {
+		return _boardShifted;
+	}
+
+	/**
+	 * Returns whether the current player has moved this turn.
+	 * @return true if moved
+	 */
+	public boolean hasMoved() {
+		return _moved;
+	}
+
+	/**
+	 * Returns whether the last token has been collected.
+	 * @return true if the game is over
+	 */
+	public boolean isGameOver() {
+		return _gameOver;
+	}
+
+	/**
+	 * Returns the cell the current player started the turn on.
+	 * @return the cell, or {@code Position.FREE} if that tile has been pushed off the board
+	 */
+	public int getStartingCell() {
+		return _startingCell;
+	}
+
+	/**
+	 * Returns the tokens the specified seat holds.
+	 *
+	 * @param seat	the seat
+	 * @return		a mask with bit {@code n} set if the seat holds token {@code n}
+	 */
+	public int getCollected(int seat) {
+		return _collected[seat];
+	}
+}
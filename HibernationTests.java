@@ -0,0 +1,203 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import code.Board;
+import code.Game;
+import code.GameState;
+import code.Position;
+import code.Tile;
+import server.GameClient;
+import server.GameServer;
+import server.Protocol;
+
+public class HibernationTests {
+
+	private static final String[] PLAYERS = {"Ann", "Bob", "Cat"};
+
+	/**
+	 * Shifts the board and steps the current player wherever they can go, collecting the next
+	 * token if they land on it, and ends the turn if the rules allow.
+	 */
+	private static void playTurn(Game game, int turn) {
+		game.shiftBoard(Board.shiftCode(turn % 4, 1 + 2 * (turn % 3)));
+		Position position = Position.of(game);
+		int cell = position.getPlayerCell(position.getCurrentSeat());
+		for (int direction = 0; direction < 4; direction++) {
+			if (position.canStep(cell, direction)) {
+				int next = Position.neighbour(cell, direction);
+				game.move(game.getTile(next / 7, next % 7));
+				break;
+			}
+		}
+		if (!game.collectToken()) {
+			game.nextTurn();
+		}
+	}
+
+	private static GameState roundTrip(GameState state) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		state.write(new DataOutputStream(bytes));
+		return GameState.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+
+	@Test public void stateTest() throws IOException {
+		Game game = new Game(PLAYERS, 12);
+		for (int turn = 0; turn < 40; turn++) {
+			playTurn(game, turn);
+		}
+		assertTrue(game.shiftBoard(Board.shiftCode(Tile.WEST, 3)) || game.shiftBoard(Board.shiftCode(Tile.EAST, 3)));
+
+		Game restored = roundTrip(GameState.of(game)).toGame();
+		assertEquals(Position.of(game), Position.of(restored));
+		assertEquals(game.getTurnNumber(), restored.getTurnNumber());
+		assertTrue(restored.boardHasShifted());
+		assertEquals(game.getLastShift(), restored.getLastShift());
+		for (int seat = 0; seat < PLAYERS.length; seat++) {
+			assertEquals(game.getPlayerList().get(seat).getTokens().size(), restored.getPlayerList().get(seat).getTokens().size());
+			assertEquals(PLAYERS[seat], restored.getPlayerList().get(seat).get_playerName());
+		}
+
+		// both games carry on identically
+		for (int turn = 40; turn < 80; turn++) {
+			playTurn(game, turn);
+			playTurn(restored, turn);
+			assertEquals(Position.of(game), Position.of(restored));
+		}
+	}
+
+	/**
+	 * Returns the code of the shift pushing the tile on the specified cell off the board, or -1 if
+	 * no shift does.
+	 */
+	private static int pushOff(int cell) {
+		int row = cell / 7;
+		int column = cell % 7;
+		if (row % 2 == 1 && (column == 0 || column == 6)) {
+			return Board.shiftCode(column == 0 ? Tile.WEST : Tile.EAST, row);
+		}
+		if (column % 2 == 1 && (row == 0 || row == 6)) {
+			return Board.shiftCode(row == 0 ? Tile.NORTH : Tile.SOUTH, column);
+		}
+		return -1;
+	}
+
+	@Test public void startingTilePushedOffTest() throws IOException {
+		Game game = new Game(PLAYERS, 0);
+		for (int turn = 0; turn < 2000; turn++) {
+			Position position = Position.of(game);
+			int code = pushOff(position.getPlayerCell(position.getCurrentSeat()));
+			if (code >= 0 && game.shiftBoard(code)) {
+				assertTrue(game.getStartingTile() == game.getBoard().getFreeTile());
+				GameState state = roundTrip(GameState.of(game));
+				assertEquals(Position.FREE, state.getStartingCell());
+				Game restored = state.toGame();
+				assertTrue(restored.getStartingTile() == restored.getBoard().getFreeTile());
+				assertEquals(Position.of(game), Position.of(restored));
+				return;
+			}
+			playTurn(game, turn);
+		}
+		fail("The current player was never on a tile which could be pushed off.");
+	}
+
+	@Test(expected = IOException.class) public void corruptTest() throws IOException {
+		GameState.read(new DataInputStream(new ByteArrayInputStream(new byte[64])));
+	}
+
+	@Test public void idleTest() throws IOException, InterruptedException {
+		Path directory = Files.createTempDirectory("hibernate");
+		try (GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1)) {
+			server.enableHibernation(directory, 50, 100);
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+			try (GameClient client = new GameClient(address)) {
+				Game game = new Game(PLAYERS, 5);
+				assertEquals(Protocol.OK, client.open(5, PLAYERS));
+				int code = Board.shiftCode(Tile.SOUTH, 5);
+				assertTrue(game.shiftBoard(code));
+				assertEquals(Protocol.OK, client.shift(code));
+				for (int wait = 0; wait < 200 && server.getHibernatedCount() == 0; wait++) {
+					Thread.sleep(10);
+				}
+				assertEquals(1, server.getHibernatedCount());
+				assertEquals(1, directory.toFile().list().length);
+
+				// the next request brings the game back mid-turn
+				assertEquals(Protocol.REJECTED, client.shift(code));
+				assertEquals(Protocol.OK, client.resync());
+				assertEquals(Position.of(game), client.getReplica().getPosition());
+			}
+		}
+	}
+
+	@Test public void abandonedTest() throws IOException, InterruptedException {
+		Path directory = Files.createTempDirectory("hibernate");
+		try (GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1)) {
+			server.enableHibernation(directory, 200, 100);
+			server.enableTurnClock(50);
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+			try (GameClient client = new GameClient(address)) {
+				assertEquals(Protocol.OK, client.open(5, PLAYERS));
+				for (int wait = 0; wait < 300 && server.getHibernatedCount() == 0; wait++) {
+					Thread.sleep(10);
+				}
+				assertEquals(1, server.getHibernatedCount());
+
+				// every player ran out of time once, and then the clock stopped
+				assertEquals(Protocol.OK, client.resync());
+				assertEquals(PLAYERS.length, client.getValue());
+				Thread.sleep(150);
+				assertEquals(Protocol.OK, client.resync());
+				assertEquals(PLAYERS.length, client.getValue());
+
+				// a request starts it again
+				assertEquals(Protocol.OK, client.rotate(true));
+				while (client.readSync() != Protocol.SYNC_TURN) {
+					// the server ends the turn once its time is up
+				}
+				assertEquals(Protocol.OK, client.resync());
+				assertEquals(PLAYERS.length + 1, client.getValue());
+			}
+		}
+	}
+
+	@Test public void lruTest() throws IOException {
+		Path directory = Files.createTempDirectory("hibernate");
+		try (GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1)) {
+			server.enableHibernation(directory, 60000, 2);
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+			try (GameClient first = new GameClient(address); GameClient second = new GameClient(address);
+					GameClient third = new GameClient(address)) {
+				assertEquals(Protocol.OK, first.open(1, PLAYERS));
+				assertEquals(Protocol.OK, second.open(2, PLAYERS));
+				assertEquals(0, server.getHibernatedCount());
+				assertEquals(Protocol.OK, first.rotate(true));
+				assertEquals(Protocol.OK, third.open(3, PLAYERS));
+				assertEquals(1, server.getHibernatedCount());
+
+				// the second session was least recently used
+				assertEquals(Protocol.OK, second.rotate(false));
+				assertTrue(second.getReplica().isSynced());
+				assertEquals(1, server.getHibernatedCount());
+				assertEquals(Protocol.OK, first.resync());
+				Game game = new Game(PLAYERS, 1);
+				game.rotateFreeTileClockWise();
+				assertEquals(Position.of(game), first.getReplica().getPosition());
+			}
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package gui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JButton;
+import javax.swing.SwingUtilities;
+
+import code.Board;
+import code.Game;
+import code.GameListener;
+import code.HintEngine;
+import code.LinearEvaluator;
+import code.MoveHint;
+import code.Player;
+import code.Position;
+import code.Tile;
+
+/**
+ * <h1>HintButton</h1>
+ * Contains the variables and methods for a button suggesting a turn to the current player when
+ * pressed: the rotation of the free tile and the shift are given on the button, and the shift
+ * button and path are highlighted on the board by the {@code View}.
+ * <p>
+ * The search runs on the background thread of a {@code HintEngine} for up to {@code BUDGET_MILLIS},
+ * so the GUI never waits on it; while it runs the button reads "Thinking...". The hint is shown
+ * only if the game is still where it was when the button was pressed. As soon as the player acts
+ * (rotates, shifts, moves, collects or ends the turn) the search is cancelled; a hint shown is
+ * cleared then too, except by rotating the free tile, which following the hint starts with: the
+ * rotation left is shown instead, counting back rotations the other way. Hints are cached by
+ * position, so pressing the button again shows the hint at once. A hint is only offered before
+ * the board is shifted.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code Game}: _game - the instance of the {@code Game} currently being played
+ * {@code View}: _view - the view showing the hint over the board
+ * {@code HintEngine}: _engine - finds the hints in the background
+ * {@code Position}: _asked - the position the hint shown or being searched is for, or null
+ * {@code MoveHint}: _shown - the hint shown, or null
+ * {@code int}: _rotated - the clockwise rotations of the free tile made since the hint was shown,
+ * modulo its number of distinct orientations
+ * {@code int}: _orientations - the number of distinct orientations of the free tile (1, 2 or 4)
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class HintButton extends JButton {
+
+	/**
+	 * The time a hint may take to find.
+	 */
+	public static final long BUDGET_MILLIS = 1000;
+	/**
+	 * The most hints cached.
+	 */
+	public static final int CACHE_SIZE = 64;
+
+	private static final String TEXT = "Hint";
+
+	private Game _game;
+	private View _view;
+	private HintEngine _engine;
+	private Position _asked;
+	private MoveHint _shown;
+	private int _rotated;
+	private int _orientations;
+
+	/**
+	 * Initializes the button's {@code Game} and {@code View} references, sets its text and adds the
+	 * listeners which ask for a hint when it is clicked and drop the hint when the game changes.
+	 *
+	 * @param game	instance of the {@code Game} currently being played
+	 * @param view	the view to show hints over
+	 */
+	public HintButton(Game game, View view) {
+		_game = game;
+		_view = view;
+		_engine = new HintEngine(new LinearEvaluator(), BUDGET_MILLIS, CACHE_SIZE);
+		_asked = null;
+		_shown = null;
+		_rotated = 0;
+		this.setText(TEXT);
+		this.addActionListener(new HintListener());
+		_game.addListener(new GameListener() {
+			@Override
+			public void boardShifted(int code) {
+				reset();
+			}
+
+			@Override
+			public void freeTileRotated(boolean clockwise) {
+				if (_shown == null) {
+					reset();
+				} else {
+					rotated(clockwise);
+				}
+			}
+
+			@Override
+			public void playerMoved(Player player) {
+				reset();
+			}
+
+			@Override
+			public void tokenCollected(Player player, int token) {
+				reset();
+			}
+
+			@Override
+			public void turnEnded(Player next) {
+				reset();
+			}
+
+			@Override
+			public void gameEnded() {
+				_engine.close();
+			}
+		});
+	}
+
+	/**
+	 * Cancels the search running and clears the hint shown, as the game has changed.
+	 */
+	private void reset() {
+		if (_asked != null) {
+			_asked = null;
+			_engine.cancel();
+		}
+		if (_shown != null) {
+			_shown = null;
+			_view.clearHint();
+		}
+		this.setText(TEXT);
+	}
+
+	/**
+	 * Shows the rotation of the free tile left by the hint shown, once the player has rotated it. A
+	 * straight tile turned twice is back in the same orientation, so rotations are counted modulo
+	 * the tile's distinct orientations.
+	 */
+	private void rotated(boolean clockwise) {
+		_rotated = (_rotated + (clockwise ? 1 : _orientations - 1)) % _orientations;
+		int rotation = ((_shown.getRotation() - _rotated) % _orientations + _orientations) % _orientations;
+		this.setText(describe(_shown, rotation));
+		_view.showHint(_shown, rotation);
+	}
+
+	/**
+	 * Shows the specified hint, if the game is still in the position it is for.
+	 */
+	private void show(Position position, MoveHint hint) {
+		if (position != _asked) {
+			return;
+		}
+		this.setText(describe(hint, hint.getRotation()));
+		_view.showHint(hint);
+		_shown = hint;
+		_rotated = 0;
+		_orientations = Position.orientations(position.getMask(Position.FREE));
+	}
+
+	/**
+	 * Returns the text of the specified hint with the specified rotation left, eg. "Hint: rotate 1x,
+	 * push row 4 left".
+	 */
+	private static String describe(MoveHint hint, int rotation) {
+		int shift = hint.getShift();
+		int line = Board.shiftIndex(shift) + 1;
+		String push;
+		switch (Board.shiftDirection(shift)) {
+		case Tile.NORTH:
+			push = "push column " + line + " up";
+			break;
+		case Tile.SOUTH:
+			push = "push column " + line + " down";
+			break;
+		case Tile.WEST:
+			push = "push row " + line + " left";
+			break;
+		default:
+			push = "push row " + line + " right";
+			break;
+		}
+		return rotation == 0 ? "Hint: " + push : "Hint: rotate " + rotation + "x, " + push;
+	}
+
+	/**
+	 * Asks for a hint when the button is clicked: shown at once if cached, otherwise searched in the
+	 * background and shown on the event dispatch thread when found.
+	 */
+	private class HintListener implements ActionListener {
+		/**
+		 * Looks up or starts the search for a hint for the game's current position.
+		 *
+		 * @param e - unused, specified by ActionListener
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (_game.isGameOver()) {
+				return;
+			}
+			if (_game.boardHasShifted()) {
+				setText("No hint after shifting");
+				return;
+			}
+			Position position = Position.of(_game);
+			_asked = position;
+			MoveHint cached = _engine.getCached(position);
+			if (cached != null) {
+				show(position, cached);
+				return;
+			}
+			setText("Thinking...");
+			_engine.request(position, hint -> SwingUtilities.invokeLater(() -> show(position, hint)));
+		}
+	}
+}
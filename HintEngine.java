@@ -0,0 +1,149 @@
+package code;
+
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * <h1>HintEngine</h1>
+ * Finds the best turn for the current player of a position on a background thread, so that a user
+ * interface can offer hints without ever waiting on a search itself.
+ * <p>
+ * Each request is searched by a {@code Searcher} for a fixed budget on the engine's one worker
+ * thread, and the hint is handed to a callback on that thread; a request made while another is
+ * being searched waits its turn. {@code cancel()} drops every request made so far: a search
+ * already running stops within a few milliseconds, and neither it nor any waiting request hands
+ * anything on. Hints are cached by position, least recently used first out, so asking again for
+ * the same position answers at once.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code Searcher}: _searcher - searches the positions on the worker thread; its generation, the
+ * number of times requests were cancelled, is read when a request is made, and a request made
+ * before the last cancellation is dropped
+ * {@code long}: _budgetMillis - the time each search may take
+ * {@code ExecutorService}: _worker - the thread searching
+ * {@code Map<Position, MoveHint>}: _cache - the hints found, by position, in least recently used order
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class HintEngine implements Closeable {
+
+	private final Searcher _searcher;
+	private final long _budgetMillis;
+	private final ExecutorService _worker;
+	private final Map<Position, MoveHint> _cache;
+
+	/**
+	 * Creates an engine.
+	 *
+	 * @param evaluator		scores the positions searched (used on the worker thread only)
+	 * @param budgetMillis	the time each search may take
+	 * @param cacheSize		the most hints kept
+	 */
+	public HintEngine(Evaluator evaluator, long budgetMillis, int cacheSize) {
+		if (budgetMillis <= 0 || cacheSize <= 0) {
+			throw new IllegalArgumentException("The budget and cache size must be positive.");
+		}
+		_searcher = new Searcher(evaluator);
+		_budgetMillis = budgetMillis;
+		_worker = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "labyrinth-hint");
+			thread.setDaemon(true);
+			return thread;
+		});
+		_cache = new LinkedHashMap<Position, MoveHint>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Position, MoveHint> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached hint for the specified position.
+	 *
+	 * @param position	the position
+	 * @return			the hint, or null if none has been found
+	 */
+	public MoveHint getCached(Position position) {
+		synchronized (_cache) {
+			return _cache.get(position);
+		}
+	}
+
+	/**
+	 * Finds the best turn for the current player of the specified position in the background. The
+	 * callback is run on the engine's thread with the hint, unless the request is cancelled first;
+	 * a cached hint is handed on without searching.
+	 *
+	 * @param position	the position, which is copied, at the start of a turn and not finished
+	 * @param callback	receives the hint
+	 * @return			completes with the hint, or with null if the request was cancelled
+	 */
+	public CompletableFuture<MoveHint> request(Position position, Consumer<MoveHint> callback) {
+		Position copy = new Position(position);
+		int generation = _searcher.getGeneration();
+		CompletableFuture<MoveHint> result = new CompletableFuture<MoveHint>();
+		_worker.execute(() -> {
+			MoveHint hint = null;
+			try {
+				hint = find(copy, generation);
+			} finally {
+				result.complete(hint);
+			}
+			if (hint != null) {
+				callback.accept(hint);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Finds the hint for the specified position on the worker thread.
+	 *
+	 * @return the hint, or null if the request was cancelled
+	 */
+	private MoveHint find(Position position, int generation) {
+		if (generation != _searcher.getGeneration()) {
+			return null;
+		}
+		MoveHint hint = getCached(position);
+		if (hint != null) {
+			return hint;
+		}
+		// a cancellation made since the request stops the search, even one made before it starts
+		int action = _searcher.search(position, _budgetMillis, Searcher.MAX_DEPTH, generation);
+		if (generation != _searcher.getGeneration() || _searcher.getDepth() == 0) {
+			return null;
+		}
+		hint = MoveHint.of(position, action, _searcher.getValue(), _searcher.getDepth());
+		synchronized (_cache) {
+			_cache.put(position, hint);
+		}
+		return hint;
+	}
+
+	/**
+	 * Drops every request made so far, stopping the search running if there is one.
+	 */
+	public void cancel() {
+		_searcher.cancel();
+	}
+
+	/**
+	 * Stops the worker thread.
+	 */
+	@Override
+	public void close() {
+		cancel();
+		_worker.shutdown();
+	}
+}
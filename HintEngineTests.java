@@ -0,0 +1,85 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import code.ActionGenerator;
+import code.Board;
+import code.Game;
+import code.HintEngine;
+import code.LinearEvaluator;
+import code.MoveHint;
+import code.Position;
+import code.Tile;
+
+public class HintEngineTests {
+
+	private static final String[] PLAYERS = {"Ann", "Bob", "Cat"};
+
+	@Test public void requestTest() throws Exception {
+		try (HintEngine engine = new HintEngine(new LinearEvaluator(), 100, 4)) {
+			Position position = Position.of(new Game(PLAYERS, 6));
+			AtomicReference<MoveHint> delivered = new AtomicReference<MoveHint>();
+			MoveHint hint = engine.request(position, delivered::set).get(5, TimeUnit.SECONDS);
+			assertTrue(hint.getDepth() >= 1);
+			assertTrue(position.isLegalShift(hint.getShift()));
+			assertSame(hint, engine.getCached(Position.of(new Game(PLAYERS, 6))));
+			assertSame(hint, engine.request(position, delivered::set).get(1, TimeUnit.SECONDS));
+			for (int wait = 0; wait < 100 && delivered.get() == null; wait++) {
+				Thread.sleep(10);
+			}
+			assertSame(hint, delivered.get());
+		}
+	}
+
+	@Test public void pathTest() {
+		Position position = Position.of(new Game(PLAYERS, 2));
+		int[] actions = new int[ActionGenerator.MAX_ACTIONS];
+		int count = new ActionGenerator().generate(position, actions);
+		for (int index = 0; index < count; index++) {
+			MoveHint hint = MoveHint.of(position, actions[index], 0, 1);
+			Position shifted = new Position(position);
+			for (int turn = 0; turn < hint.getRotation(); turn++) {
+				shifted.rotateFreeTile();
+			}
+			shifted.shift(hint.getShift());
+			int[] path = hint.getPath();
+			assertEquals(shifted.getPlayerCell(0), path[0]);
+			assertEquals(hint.getDestination(), path[path.length - 1]);
+			for (int step = 1; step < path.length; step++) {
+				boolean stepped = false;
+				for (int direction = 0; direction < 4; direction++) {
+					stepped |= Position.neighbour(path[step - 1], direction) == path[step]
+							&& shifted.canStep(path[step - 1], direction);
+				}
+				assertTrue(stepped);
+			}
+		}
+		assertTrue(Board.insertedCell(Board.shiftCode(Tile.NORTH, 3)) == Position.cell(6, 3));
+	}
+
+	@Test public void cancelTest() throws Exception {
+		try (HintEngine engine = new HintEngine(new LinearEvaluator(), 60000, 4)) {
+			Position position = Position.of(new Game(new String[] {"Ann", "Bob", "Cat", "Dan"}, 9));
+			AtomicReference<MoveHint> delivered = new AtomicReference<MoveHint>();
+			CompletableFuture<MoveHint> running = engine.request(position, delivered::set);
+			CompletableFuture<MoveHint> waiting = engine.request(Position.of(new Game(PLAYERS, 1)), delivered::set);
+			Thread.sleep(300);
+			long start = System.nanoTime();
+			engine.cancel();
+			assertNull(running.get(5, TimeUnit.SECONDS));
+			assertNull(waiting.get(5, TimeUnit.SECONDS));
+			assertTrue((System.nanoTime() - start) / 1000000 < 1000);
+			assertNull(delivered.get());
+			assertNull(engine.getCached(position));
+		}
+	}
+}
@@ -0,0 +1,298 @@
+package code;
+
+/**
+ * <h1>LinearEvaluator</h1>
+ * An {@code Evaluator} which computes a few features of a position into an {@code int[]} and
+ * returns their sum weighted by a fixed {@code int[]} of weights. Every feature is relative: the
+ * seat's own figure against the best of its opponents', so that a position good for every player
+ * alike is worth nothing.
+ * <ul>
+ * <li>{@code DISTANCE} - how far each player is from the next token: the number of steps along
+ * the paths if they can walk to it, otherwise {@code Position.CELLS} plus the fewest rows and
+ * columns between the token and a cell they can walk to ({@code FREE_DISTANCE} if the token is on
+ * the free tile); the seat's distance less the smallest opponent's</li>
+ * <li>{@code REGION} - the number of cells each player can walk to; the seat's less the largest
+ * opponent's</li>
+ * <li>{@code CUTOFF} - the number of legal shifts (with the free tile as it is) after which the
+ * leader, who can walk to the next token now, no longer can; negative for the leader and positive
+ * for everyone else. The leader is the player with the highest score, then the one nearest the
+ * token, then the lowest seat</li>
+ * <li>{@code SCORE} - the seat's score ({@code Player.calculateScore()}) less the highest
+ * opponent's</li>
+ * </ul>
+ * Distance and region come from one breadth-first search per player; the cutoff count needs one
+ * search per shift and is by far the dearest, so a feature whose weight is 0 is not computed.
+ * An evaluator keeps its own scratch position and search buffers and allocates nothing; it is not
+ * thread-safe, and each thread should have its own.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code int[]}: _weights - the weight of each feature
+ * {@code int[]}: _features - the features of the position being evaluated
+ * {@code int[]}: _distances - the distance of each seat from the next token
+ * {@code int[]}: _regions - the region size of each seat
+ * {@code int[]}: _queue - the cells reached by the search, in the order they were reached
+ * {@code int[]}: _depths - the number of steps to each cell reached by the search
+ * {@code Position}: _shifted - the position after the shift being tried by the cutoff count
+ * {@code int}: _leader - the leading seat of the position being evaluated
+ * {@code int}: _cuts - the number of shifts cutting the leader off from the next token
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class LinearEvaluator implements Evaluator {
+
+	/**
+	 * The index of the distance feature.
+	 */
+	public static final int DISTANCE = 0;
+	/**
+	 * The index of the region feature.
+	 */
+	public static final int REGION = 1;
+	/**
+	 * The index of the cutoff feature.
+	 */
+	public static final int CUTOFF = 2;
+	/**
+	 * The index of the score feature.
+	 */
+	public static final int SCORE = 3;
+	/**
+	 * The number of features.
+	 */
+	public static final int FEATURES = 4;
+	/**
+	 * The distance of a token on the free tile.
+	 */
+	public static final int FREE_DISTANCE = Position.CELLS + 7;
+	/**
+	 * The weights {@code new LinearEvaluator()} uses.
+	 */
+	public static final int[] DEFAULT_WEIGHTS = {-3, 1, 4, 20};
+
+	private final int[] _weights;
+	private final int[] _features;
+	private final int[] _distances;
+	private final int[] _regions;
+	private final int[] _queue;
+	private final int[] _depths;
+	private final Position _shifted;
+	private int _leader;
+	private int _cuts;
+
+	/**
+	 * Creates an evaluator with the default weights.
+	 */
+	public LinearEvaluator() {
+		this(DEFAULT_WEIGHTS);
+	}
+
+	/**
+	 * Creates an evaluator with the specified weights.
+	 *
+	 * @param weights	the weight of each feature, indexed by {@code DISTANCE}, {@code REGION} and so on
+	 */
+	public LinearEvaluator(int[] weights) {
+		if (weights.length != FEATURES) {
+			throw new IllegalArgumentException("There must be " + FEATURES + " weights.");
+		}
+		_weights = weights.clone();
+		_features = new int[FEATURES];
+		_distances = new int[4];
+		_regions = new int[4];
+		_queue = new int[Position.CELLS];
+		_depths = new int[Position.CELLS];
+		_shifted = new Position(4);
+	}
+
+	/**
+	 * Returns the weight of the specified feature.
+	 * @param feature - the feature index
+	 * @return the weight
+	 */
+	public int getWeight(int feature) {
+		return _weights[feature];
+	}
+
+	@Override
+	public int evaluate(Position position, int seat) {
+		measure(position);
+		return weigh(position, seat);
+	}
+
+	/**
+	 * Evaluates the position for every seat at the cost of one: the searches are shared.
+	 */
+	@Override
+	public void evaluateAll(Position position, int[] values) {
+		measure(position);
+		for (int seat = 0; seat < position.getPlayerCount(); seat++) {
+			values[seat] = weigh(position, seat);
+		}
+	}
+
+	/**
+	 * Computes the features of the specified position for the specified seat. A feature whose
+	 * weight is 0 is left 0.
+	 *
+	 * @param position	the position, which is left unchanged
+	 * @param seat		the seat
+	 * @param features	the array the features are written to, indexed by {@code DISTANCE} and so on
+	 */
+	public void features(Position position, int seat, int[] features) {
+		measure(position);
+		relative(position, seat, features);
+	}
+
+	/**
+	 * Searches the position for every seat, and counts the leader's cutoffs, as far as the weights
+	 * need.
+	 */
+	private void measure(Position position) {
+		int players = position.getPlayerCount();
+		if (_weights[DISTANCE] != 0 || _weights[REGION] != 0 || _weights[CUTOFF] != 0) {
+			int token = position.findToken(position.getNextToken());
+			for (int seat = 0; seat < players; seat++) {
+				search(position, seat, token);
+			}
+		}
+		_cuts = 0;
+		if (_weights[CUTOFF] != 0) {
+			_leader = leader(position);
+			if (_distances[_leader] < Position.CELLS) {
+				_cuts = cuts(position, _leader);
+			}
+		}
+	}
+
+	private int weigh(Position position, int seat) {
+		relative(position, seat, _features);
+		int value = 0;
+		for (int feature = 0; feature < FEATURES; feature++) {
+			value += _weights[feature] * _features[feature];
+		}
+		return value;
+	}
+
+	/**
+	 * Computes the features of the measured position for the specified seat, relative to its
+	 * opponents.
+	 */
+	private void relative(Position position, int seat, int[] features) {
+		int players = position.getPlayerCount();
+		int nearest = Integer.MAX_VALUE;
+		int largest = 0;
+		int best = Integer.MIN_VALUE;
+		for (int other = 0; other < players; other++) {
+			if (other != seat) {
+				nearest = Math.min(nearest, _distances[other]);
+				largest = Math.max(largest, _regions[other]);
+				best = Math.max(best, position.getScore(other));
+			}
+		}
+		if (players == 1) {
+			nearest = 0;
+			best = 0;
+		}
+		features[DISTANCE] = _weights[DISTANCE] == 0 ? 0 : _distances[seat] - nearest;
+		features[REGION] = _weights[REGION] == 0 ? 0 : _regions[seat] - largest;
+		features[SCORE] = _weights[SCORE] == 0 ? 0 : position.getScore(seat) - best;
+		features[CUTOFF] = _weights[CUTOFF] == 0 ? 0 : _leader == seat ? -_cuts : _cuts;
+	}
+
+	/**
+	 * Searches the cells the specified seat can walk to, recording their number and the seat's
+	 * distance from the specified token cell.
+	 */
+	private void search(Position position, int seat, int token) {
+		int start = position.getPlayerCell(seat);
+		int reached = reachable(position, start);
+		_regions[seat] = reached;
+		if (token < 0) {
+			_distances[seat] = 0;
+			return;
+		}
+		if (token == Position.FREE) {
+			_distances[seat] = FREE_DISTANCE;
+			return;
+		}
+		int closest = Integer.MAX_VALUE;
+		for (int index = 0; index < reached; index++) {
+			int cell = _queue[index];
+			if (cell == token) {
+				_distances[seat] = _depths[index];
+				return;
+			}
+			closest = Math.min(closest, Math.abs(cell / 7 - token / 7) + Math.abs(cell % 7 - token % 7));
+		}
+		_distances[seat] = Position.CELLS + closest;
+	}
+
+	/**
+	 * Finds every cell a player on the specified cell can walk to, by a breadth-first search.
+	 *
+	 * @return the number of cells found, which are in {@code _queue} starting with the specified
+	 *         cell, with the number of steps to each in {@code _depths}
+	 */
+	private int reachable(Position position, int start) {
+		long seen = 1L << start;
+		_queue[0] = start;
+		_depths[0] = 0;
+		int reached = 1;
+		for (int head = 0; head < reached; head++) {
+			int cell = _queue[head];
+			for (int direction = 0; direction < 4; direction++) {
+				if (position.canStep(cell, direction)) {
+					int next = Position.neighbour(cell, direction);
+					if ((seen & 1L << next) == 0) {
+						seen |= 1L << next;
+						_depths[reached] = _depths[head] + 1;
+						_queue[reached++] = next;
+					}
+				}
+			}
+		}
+		return reached;
+	}
+
+	/**
+	 * Returns the leading seat: the highest score, then the smallest distance, then the lowest seat.
+	 */
+	private int leader(Position position) {
+		int leader = 0;
+		for (int seat = 1; seat < position.getPlayerCount(); seat++) {
+			int score = position.getScore(seat);
+			int best = position.getScore(leader);
+			if (score > best || score == best && _distances[seat] < _distances[leader]) {
+				leader = seat;
+			}
+		}
+		return leader;
+	}
+
+	/**
+	 * Returns the number of legal shifts after which the specified seat can no longer walk to the
+	 * next token.
+	 */
+	private int cuts(Position position, int seat) {
+		int cuts = 0;
+		for (int shift = 0; shift < Board.SHIFTS; shift++) {
+			if (!position.isLegalShift(shift)) {
+				continue;
+			}
+			_shifted.copyFrom(position);
+			_shifted.shift(shift);
+			int token = _shifted.findToken(_shifted.getNextToken());
+			int reached = reachable(_shifted, _shifted.getPlayerCell(seat));
+			boolean found = false;
+			for (int index = 0; index < reached && !found; index++) {
+				found = _queue[index] == token;
+			}
+			if (!found) {
+				cuts++;
+			}
+		}
+		return cuts;
+	}
+}
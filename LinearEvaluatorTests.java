@@ -0,0 +1,90 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import code.Game;
+import code.LinearEvaluator;
+import code.Position;
+import code.Tile;
+
+public class LinearEvaluatorTests {
+
+	private static final int ACROSS = 1 << Tile.EAST | 1 << Tile.WEST;
+
+	/**
+	 * Returns a two player position with a path along row 2 from seat 0 (on cell 2,2) to the
+	 * next token on cell 2,5, and seat 1 (on cell 4,4) shut in.
+	 */
+	private static Position corridor() {
+		Position position = new Position(2);
+		for (int column = 2; column <= 5; column++) {
+			position.setMask(Position.cell(2, column), ACROSS);
+		}
+		position.setToken(Position.cell(2, 5), 1);
+		position.setMask(Position.FREE, ACROSS);
+		return position;
+	}
+
+	@Test public void featuresTest() {
+		Position position = corridor();
+		LinearEvaluator evaluator = new LinearEvaluator();
+		int[] features = new int[LinearEvaluator.FEATURES];
+		evaluator.features(position, 0, features);
+		// seat 1 is on 4,4, two rows from the token and unable to move
+		assertEquals(3 - (Position.CELLS + 3), features[LinearEvaluator.DISTANCE]);
+		assertEquals(4 - 1, features[LinearEvaluator.REGION]);
+		assertEquals(0, features[LinearEvaluator.SCORE]);
+		assertTrue(features[LinearEvaluator.CUTOFF] < 0);
+
+		evaluator.features(position, 1, features);
+		assertEquals(Position.CELLS, features[LinearEvaluator.DISTANCE]);
+		assertEquals(-3, features[LinearEvaluator.REGION]);
+		assertTrue(features[LinearEvaluator.CUTOFF] > 0);
+	}
+
+	@Test public void cutoffTest() {
+		Position position = corridor();
+		LinearEvaluator evaluator = new LinearEvaluator(new int[] {0, 0, 1, 0});
+		int[] features = new int[LinearEvaluator.FEATURES];
+		evaluator.features(position, 1, features);
+		// shifting column 3 or 5 either way breaks the corridor; shifting row 2 carries it along
+		assertEquals(4, features[LinearEvaluator.CUTOFF]);
+
+		position.setScore(1, 3);
+		evaluator.features(position, 1, features);
+		assertEquals(0, features[LinearEvaluator.CUTOFF]);
+	}
+
+	@Test public void evaluateTest() {
+		Position position = corridor();
+		position.setScore(0, 5);
+		LinearEvaluator evaluator = new LinearEvaluator();
+		int[] features = new int[LinearEvaluator.FEATURES];
+		evaluator.features(position, 0, features);
+		int expected = 0;
+		for (int feature = 0; feature < LinearEvaluator.FEATURES; feature++) {
+			expected += evaluator.getWeight(feature) * features[feature];
+		}
+		assertEquals(expected, evaluator.evaluate(position, 0));
+		assertTrue(evaluator.evaluate(position, 0) > evaluator.evaluate(position, 1));
+		assertEquals(5, features[LinearEvaluator.SCORE]);
+	}
+
+	@Test public void gameTest() {
+		LinearEvaluator evaluator = new LinearEvaluator();
+		Position position = Position.of(new Game(new String[] {"Ann", "Bob", "Cat", "Dan"}, 3));
+		int[] features = new int[LinearEvaluator.FEATURES];
+		for (int seat = 0; seat < 4; seat++) {
+			evaluator.features(position, seat, features);
+			assertEquals(0, features[LinearEvaluator.SCORE]);
+			assertEquals(position, Position.of(new Game(new String[] {"Ann", "Bob", "Cat", "Dan"}, 3)));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class) public void weightsTest() {
+		new LinearEvaluator(new int[] {1, 2});
+	}
+}
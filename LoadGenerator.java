@@ -0,0 +1,424 @@
+package server;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import code.Board;
+import code.Position;
+
+/**
+ * <h1>LoadGenerator</h1>
+ * Loads a {@code GameServer} with any number of simulated players (bots), each on its own
+ * connection playing whole games of its own through the {@code Protocol}, and reports the
+ * throughput, the latency percentiles of their requests and the number of errors, every interval
+ * and overall. Used to find how many players a server node can take, and to catch performance
+ * regressions before a release.
+ * <p>
+ * A bot plays every seat of its game, and only legal moves, read from its {@code BoardReplica}:
+ * it looks for a rotation and shift of the free tile which opens a path to the next token, and
+ * walks there and collects it if one does; otherwise it makes a random legal shift and walks to a
+ * random reachable tile. Once its game is over it opens another. Any request refused is counted as
+ * an error, and the bot then starts a new game (or a new connection, if it lost its connection),
+ * so a server which plays by the rules should report none.
+ * <p>
+ * The bots are shared between a fixed number of threads, each playing a turn of each of its bots
+ * in turn; the bots on one thread wait for each other, so there should be enough threads to keep
+ * the server busy. Each bot needs two file descriptors when the server runs in the same JVM, so
+ * thousands of bots need a raised limit ({@code ulimit -n}). A server rate limits each connection
+ * (see {@code GameServer.setRateLimit()}), so with few bots and many threads some requests are
+ * counted as rate limited; a server started by {@code main()} has no limit.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code InetSocketAddress}: _address - the address of the server loaded
+ * {@code int}: _clients - the number of bots
+ * {@code int}: _threads - the number of threads the bots are shared between
+ * {@code LatencyHistogram}: _latencies - the latency of every request made
+ * {@code LatencyHistogram}: _interval - the latency of every request made this interval
+ * {@code LongAdder}: _errors - the number of requests refused or failed this interval
+ * {@code LongAdder}: _games - the number of games finished this interval
+ * {@code long}: _totalErrors - the number of requests refused or failed before this interval
+ * {@code long}: _totalGames - the number of games finished before this interval
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class LoadGenerator {
+
+	private static final String[] NAMES = {"bot0", "bot1", "bot2", "bot3"};
+
+	private final InetSocketAddress _address;
+	private final int _clients;
+	private final int _threads;
+	private final LatencyHistogram _latencies;
+	private volatile LatencyHistogram _interval;
+	private final LongAdder _errors;
+	private final LongAdder _games;
+	private long _totalErrors;
+	private long _totalGames;
+
+	/**
+	 * Creates a load generator.
+	 *
+	 * @param address	the address of the server to load
+	 * @param clients	the number of bots
+	 * @param threads	the number of threads the bots are shared between
+	 */
+	public LoadGenerator(InetSocketAddress address, int clients, int threads) {
+		if (clients < 1 || threads < 1) {
+			throw new IllegalArgumentException("There must be at least one client and one thread.");
+		}
+		_address = address;
+		_clients = clients;
+		_threads = Math.min(threads, clients);
+		_latencies = new LatencyHistogram();
+		_interval = new LatencyHistogram();
+		_errors = new LongAdder();
+		_games = new LongAdder();
+	}
+
+	/**
+	 * Runs the bots for the specified time, printing a line of figures every interval and a
+	 * summary at the end.
+	 *
+	 * @param millis			how long to run for
+	 * @param intervalMillis	how often to print the figures
+	 * @param out				where the figures are printed, or null
+	 * @return					the latency of every request made
+	 * @throws InterruptedException if interrupted while running
+	 */
+	public LatencyHistogram run(long millis, long intervalMillis, PrintStream out) throws InterruptedException {
+		long start = System.nanoTime();
+		long end = start + TimeUnit.MILLISECONDS.toNanos(millis);
+		Thread[] threads = new Thread[_threads];
+		for (int index = 0; index < _threads; index++) {
+			Bot[] bots = new Bot[(_clients - index + _threads - 1) / _threads];
+			for (int bot = 0; bot < bots.length; bot++) {
+				bots[bot] = new Bot(index + bot * _threads);
+			}
+			threads[index] = new Thread(() -> play(bots, end), "labyrinth-bots-" + index);
+			threads[index].start();
+		}
+		if (out != null) {
+			out.println("    time  actions/s      p50 us      p99 us     p999 us      max us  errors  games");
+		}
+		long next = start;
+		while (true) {
+			next += TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+			long wait = Math.min(next, end) - System.nanoTime();
+			if (wait > 0) {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			}
+			LatencyHistogram interval = _interval;
+			_interval = new LatencyHistogram();
+			long errors = _errors.sumThenReset();
+			long games = _games.sumThenReset();
+			_totalErrors += errors;
+			_totalGames += games;
+			if (out != null) {
+				print(out, String.format("%7.1fs", (System.nanoTime() - start) / 1e9), interval,
+						intervalMillis, errors, games);
+			}
+			if (next >= end) {
+				break;
+			}
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		_totalErrors += _errors.sumThenReset();
+		_totalGames += _games.sumThenReset();
+		if (out != null) {
+			print(out, "   total", _latencies, millis, _totalErrors, _totalGames);
+		}
+		return _latencies;
+	}
+
+	private static void print(PrintStream out, String time, LatencyHistogram latencies, long millis, long errors, long games) {
+		out.printf("%s %10.0f %11.1f %11.1f %11.1f %11.1f %7d %6d%n", time, latencies.getCount() * 1000.0 / millis,
+				latencies.getPercentile(50) / 1e3, latencies.getPercentile(99) / 1e3,
+				latencies.getPercentile(99.9) / 1e3, latencies.getMax() / 1e3, errors, games);
+	}
+
+	/**
+	 * Returns the number of requests refused or failed.
+	 * @return the error count
+	 */
+	public long getErrors() {
+		return _totalErrors;
+	}
+
+	/**
+	 * Returns the number of games played to the end.
+	 * @return the game count
+	 */
+	public long getGames() {
+		return _totalGames;
+	}
+
+	/**
+	 * Plays a turn of each of the specified bots in turn until the specified time.
+	 */
+	private void play(Bot[] bots, long end) {
+		try {
+			while (System.nanoTime() < end) {
+				for (Bot bot : bots) {
+					bot.playTurn();
+				}
+			}
+		} finally {
+			for (Bot bot : bots) {
+				bot.disconnect();
+			}
+		}
+	}
+
+	/**
+	 * <h1>Bot</h1>
+	 * A simulated player, playing every seat of a game of its own.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code Random}: _random - the source of the bot's choices
+	 * {@code GameClient}: _client - the bot's connection, or null when it has none
+	 * {@code boolean}: _playing - whether the bot has a game in progress
+	 * {@code Position}: _scratch - the position the bot tries out shifts on
+	 * {@code int[]}: _from - the cell each cell was first reached from by the last search, or -1
+	 * {@code int[]}: _queue - the cells in the order the last search reached them
+	 * {@code int}: _reached - the number of cells reached by the last search
+	 */
+	private final class Bot {
+
+		private final Random _random;
+		private GameClient _client;
+		private boolean _playing;
+		private final Position _scratch;
+		private final int[] _from;
+		private final int[] _queue;
+		private int _reached;
+
+		Bot(long seed) {
+			_random = new Random(seed);
+			_scratch = new Position(NAMES.length);
+			_from = new int[Position.CELLS];
+			_queue = new int[Position.CELLS];
+		}
+
+		/**
+		 * Plays the current seat's turn, first connecting and opening a game if need be.
+		 */
+		void playTurn() {
+			try {
+				if (_client == null) {
+					_client = new GameClient(_address);
+				}
+				if (!_playing) {
+					String[] names = new String[2 + _random.nextInt(3)];
+					System.arraycopy(NAMES, 0, names, 0, names.length);
+					_playing = send(Protocol.OPEN, names, _random.nextLong());
+					return;
+				}
+				if (!_client.getReplica().isSynced() && !send(Protocol.RESYNC, null, 0)) {
+					return;
+				}
+				Position position = _client.getReplica().getPosition();
+				int seat = position.getCurrentSeat();
+				int token = position.getNextToken();
+				int shift = chooseShift(position, seat, token);
+				for (int turn = shift / Board.SHIFTS; turn > 0; turn--) {
+					if (!send(Protocol.ROTATE, null, 1)) {
+						return;
+					}
+				}
+				if (!send(Protocol.SHIFT, null, shift % Board.SHIFTS)) {
+					return;
+				}
+				int start = position.getPlayerCell(seat);
+				int goal = position.findToken(token);
+				search(position, start);
+				if (goal < 0 || _from[goal] < 0) {
+					goal = _reached > 1 ? _queue[1 + _random.nextInt(_reached - 1)] : start;
+				}
+				if (!walk(goal)) {
+					return;
+				}
+				if (goal != start && position.findToken(token) == goal) {
+					if (!send(Protocol.COLLECT, null, 0)) {
+						return;
+					}
+					if (position.getNextToken() > 25) {
+						_games.increment();
+						_playing = false;
+					}
+				} else {
+					send(Protocol.END_TURN, null, 0);
+				}
+			} catch (IOException e) {
+				_errors.increment();
+				disconnect();
+			}
+		}
+
+		/**
+		 * Returns the number of clockwise rotations of the free tile times {@code Board.SHIFTS},
+		 * plus the shift code, of a legal shift opening a path from the seat to the token, or of a
+		 * random legal shift if none does.
+		 */
+		private int chooseShift(Position position, int seat, int token) {
+			int choices = Board.SHIFTS * Position.orientations(position.getMask(Position.FREE));
+			int offset = _random.nextInt(choices);
+			int fallback = -1;
+			for (int index = 0; index < choices; index++) {
+				int choice = (offset + index) % choices;
+				if (!position.isLegalShift(choice % Board.SHIFTS)) {
+					continue;
+				}
+				if (fallback < 0) {
+					fallback = choice;
+				}
+				_scratch.copyFrom(position);
+				for (int turn = choice / Board.SHIFTS; turn > 0; turn--) {
+					_scratch.rotateFreeTile();
+				}
+				_scratch.shift(choice % Board.SHIFTS);
+				int goal = _scratch.findToken(token);
+				if (goal >= 0 && goal < Position.CELLS) {
+					search(_scratch, _scratch.getPlayerCell(seat));
+					if (_from[goal] >= 0) {
+						return choice;
+					}
+				}
+			}
+			return fallback;
+		}
+
+		/**
+		 * Finds every cell reachable from the specified cell, and how, by a breadth-first search.
+		 */
+		private void search(Position position, int start) {
+			Arrays.fill(_from, -1);
+			_from[start] = start;
+			_queue[0] = start;
+			_reached = 1;
+			for (int head = 0; head < _reached; head++) {
+				int cell = _queue[head];
+				for (int direction = 0; direction < 4; direction++) {
+					int next = Position.neighbour(cell, direction);
+					if (next >= 0 && _from[next] < 0 && position.canStep(cell, direction)) {
+						_from[next] = cell;
+						_queue[_reached++] = next;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Steps along the path found by the last search to the specified cell.
+		 */
+		private boolean walk(int goal) throws IOException {
+			int steps = 0;
+			for (int cell = goal; _from[cell] != cell; cell = _from[cell]) {
+				_queue[steps++] = cell;
+			}
+			while (steps > 0) {
+				if (!send(Protocol.MOVE, null, _queue[--steps])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Makes a request and records its latency; a request refused is counted as an error and
+		 * ends the bot's game.
+		 *
+		 * @param type	the request type
+		 * @param names	the names of the players, for {@code OPEN}
+		 * @param value	the seed for {@code OPEN}, the direction for {@code ROTATE}, the shift code for
+		 * 				{@code SHIFT} or the cell for {@code MOVE}
+		 * @return		true if the request was carried out
+		 */
+		private boolean send(byte type, String[] names, long value) throws IOException {
+			long start = System.nanoTime();
+			byte status;
+			switch (type) {
+			case Protocol.OPEN:
+				status = _client.open(value, names);
+				break;
+			case Protocol.ROTATE:
+				status = _client.rotate(value != 0);
+				break;
+			case Protocol.SHIFT:
+				status = _client.shift((int) value);
+				break;
+			case Protocol.MOVE:
+				status = _client.move((int) value / 7, (int) value % 7);
+				break;
+			case Protocol.COLLECT:
+				status = _client.collect();
+				break;
+			case Protocol.END_TURN:
+				status = _client.endTurn();
+				break;
+			default:
+				status = _client.resync();
+				break;
+			}
+			long latency = System.nanoTime() - start;
+			_latencies.record(latency);
+			_interval.record(latency);
+			if (status != Protocol.OK) {
+				_errors.increment();
+				_playing = false;
+				return false;
+			}
+			return true;
+		}
+
+		void disconnect() {
+			_playing = false;
+			if (_client != null) {
+				try {
+					_client.close();
+				} catch (IOException e) {
+					// nothing more can be done
+				}
+				_client = null;
+			}
+		}
+	}
+
+	/**
+	 * Runs a load test, against a server started in this JVM unless a port is given.
+	 * @param args - the number of bots (default 1000), the seconds to run for (default 60), the
+	 * number of threads (default 64), and the port and host of the server (default none, localhost)
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+		int port = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+		InetAddress host = args.length > 4 ? InetAddress.getByName(args[4]) : InetAddress.getLoopbackAddress();
+		GameServer server = null;
+		if (port == 0) {
+			server = new GameServer(new InetSocketAddress(host, 0), Runtime.getRuntime().availableProcessors());
+			server.setRateLimit(1e9, 1 << 30);
+			port = server.getPort();
+		}
+		try {
+			System.out.printf("%d bots on %d threads against %s:%d for %d s%n", clients, threads, host.getHostAddress(), port, seconds);
+			LoadGenerator generator = new LoadGenerator(new InetSocketAddress(host, port), clients, threads);
+			generator.run(TimeUnit.SECONDS.toMillis(seconds), 1000, System.out);
+		} finally {
+			if (server != null) {
+				server.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.junit.Test;
+
+import server.GameServer;
+import server.LatencyHistogram;
+import server.LoadGenerator;
+
+public class LoadGeneratorTests {
+
+	@Test public void histogramTest() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(50));
+		for (long value = 1; value <= 100000; value++) {
+			histogram.record(value * 1000);
+		}
+		assertEquals(100000, histogram.getCount());
+		assertTrue(Math.abs(histogram.getPercentile(50) - 50000000L) < 50000000L / 60);
+		assertTrue(Math.abs(histogram.getPercentile(99.9) - 99900000L) < 99900000L / 60);
+		assertTrue(histogram.getMax() >= 100000000L && histogram.getMax() < 100000000L * 61 / 60);
+
+		LatencyHistogram small = new LatencyHistogram();
+		small.record(-5);
+		small.record(100);
+		assertEquals(0, small.getPercentile(50));
+		assertEquals(100, small.getMax());
+		histogram.add(small);
+		assertEquals(100002, histogram.getCount());
+	}
+
+	@Test public void botTest() throws IOException, InterruptedException {
+		try (GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2)) {
+			server.setRateLimit(1e9, 1 << 30);
+			LoadGenerator generator = new LoadGenerator(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()), 40, 8);
+			LatencyHistogram latencies = generator.run(2000, 500, null);
+			assertEquals(0, generator.getErrors());
+			assertTrue(latencies.getCount() > 1000);
+			assertTrue(generator.getGames() > 0);
+			assertTrue(latencies.getPercentile(50) <= latencies.getPercentile(99));
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * <h1>MatchmakingLobby</h1>
+ * Queues players waiting for a game and groups them into games of 2 to 4 players. A player asks
+ * either for a game of a given size, or for {@code ANY} size, in which case they are queued for the
+ * size closest to starting. A game is formed as soon as its queue holds enough players, by whichever
+ * thread queued the last of them, and handed to the placement callback; so a match costs a few
+ * queue operations however many players are waiting, and forms as fast as its last player arrives.
+ * <p>
+ * Players leave the queue with {@code Ticket.cancel()}, which takes their ticket out of its queue
+ * at once; a queue never holds more than one game's players, so this is as cheap as queueing, and
+ * a player queueing and cancelling over and over leaves nothing behind.
+ * <p>
+ * A lobby is thread-safe. The placement callback is called without holding the lobby's lock, so it
+ * may queue or cancel players itself.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code Consumer<List<Ticket<T>>>}: _placement - the callback each game formed is handed to
+ * {@code ArrayList<ArrayDeque<Ticket<T>>>}: _queues - the queue of tickets for each game size
+ * {@code int[]}: _waiting - the number of tickets in each queue
+ * {@code int}: _matches - the number of games formed
+ *
+ * @param <T> the type of the players queued, eg. connections
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class MatchmakingLobby<T> {
+
+	/**
+	 * The size asked for by a player who will play a game of any size.
+	 */
+	public static final int ANY = 0;
+
+	public static final int MIN_PLAYERS = 2;
+	public static final int MAX_PLAYERS = 4;
+
+	private final Consumer<List<Ticket<T>>> _placement;
+	private final ArrayList<ArrayDeque<Ticket<T>>> _queues;
+	private final int[] _waiting;
+	private long _matches;
+
+	/**
+	 * Creates an empty lobby.
+	 *
+	 * @param placement	the callback each game formed is handed to, with its players in seat order
+	 */
+	public MatchmakingLobby(Consumer<List<Ticket<T>>> placement) {
+		_placement = placement;
+		_queues = new ArrayList<ArrayDeque<Ticket<T>>>();
+		for (int size = 0; size <= MAX_PLAYERS; size++) {
+			_queues.add(new ArrayDeque<Ticket<T>>());
+		}
+		_waiting = new int[MAX_PLAYERS + 1];
+		_matches = 0;
+	}
+
+	/**
+	 * Queues a player, and forms a game if they complete one.
+	 *
+	 * @param owner		the player, handed back on the ticket
+	 * @param name		the player's name
+	 * @param players	the size of game wanted, or {@code ANY}
+	 * @return			the player's ticket
+	 * @throws IllegalArgumentException if the size is neither {@code ANY} nor from {@code MIN_PLAYERS}
+	 *			to {@code MAX_PLAYERS}
+	 */
+	public Ticket<T> enqueue(T owner, String name, int players) {
+		if (players != ANY && (players < MIN_PLAYERS || players > MAX_PLAYERS)) {
+			throw new IllegalArgumentException("A game has " + MIN_PLAYERS + " to " + MAX_PLAYERS + " players.");
+		}
+		Ticket<T> ticket;
+		List<Ticket<T>> match = null;
+		synchronized (this) {
+			int size = players == ANY ? closestToStarting() : players;
+			ticket = new Ticket<T>(this, owner, name, size);
+			_queues.get(size).add(ticket);
+			if (++_waiting[size] == size) {
+				match = take(size);
+			}
+		}
+		if (match != null) {
+			_placement.accept(match);
+		}
+		return ticket;
+	}
+
+	/**
+	 * Returns the game size missing the fewest players, preferring smaller games.
+	 */
+	private int closestToStarting() {
+		int best = MIN_PLAYERS;
+		for (int size = MIN_PLAYERS + 1; size <= MAX_PLAYERS; size++) {
+			if (size - _waiting[size] < best - _waiting[best]) {
+				best = size;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Takes the players of a full queue.
+	 */
+	private List<Ticket<T>> take(int size) {
+		ArrayDeque<Ticket<T>> queue = _queues.get(size);
+		List<Ticket<T>> match = new ArrayList<Ticket<T>>(size);
+		while (match.size() < size) {
+			Ticket<T> ticket = queue.poll();
+			ticket._placed = true;
+			match.add(ticket);
+		}
+		_waiting[size] = 0;
+		_matches++;
+		return match;
+	}
+
+	/**
+	 * Returns the number of players waiting.
+	 * @return the number of tickets neither placed nor cancelled
+	 */
+	public synchronized int getWaiting() {
+		int waiting = 0;
+		for (int count : _waiting) {
+			waiting += count;
+		}
+		return waiting;
+	}
+
+	/**
+	 * Returns the number of games formed so far.
+	 * @return the match count
+	 */
+	public synchronized long getMatches() {
+		return _matches;
+	}
+
+	private synchronized boolean cancel(Ticket<T> ticket) {
+		if (ticket._placed || ticket._cancelled) {
+			return false;
+		}
+		ticket._cancelled = true;
+		_queues.get(ticket._players).remove(ticket);
+		_waiting[ticket._players]--;
+		return true;
+	}
+
+	/**
+	 * <h1>Ticket</h1>
+	 * One player's place in the lobby. Its state is guarded by the lobby's lock.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code MatchmakingLobby<T>}: _lobby - the lobby the player is queued in
+	 * {@code T}: _owner - the player
+	 * {@code String}: _name - the player's name
+	 * {@code int}: _players - the size of game the player is queued for
+	 * {@code boolean}: _placed - whether the player has been placed in a game
+	 * {@code boolean}: _cancelled - whether the player has left the queue
+	 *
+	 * @param <T> the type of the player
+	 */
+	public static final class Ticket<T> {
+
+		private final MatchmakingLobby<T> _lobby;
+		private final T _owner;
+		private final String _name;
+		private final int _players;
+		private boolean _placed;
+		private boolean _cancelled;
+
+		private Ticket(MatchmakingLobby<T> lobby, T owner, String name, int players) {
+			_lobby = lobby;
+			_owner = owner;
+			_name = name;
+			_players = players;
+			_placed = false;
+			_cancelled = false;
+		}
+
+		/**
+		 * Returns the player.
+		 * @return the owner of the ticket
+		 */
+		public T getOwner() {
+			return _owner;
+		}
+
+		/**
+		 * Returns the player's name.
+		 * @return the name
+		 */
+		public String getName() {
+			return _name;
+		}
+
+		/**
+		 * Returns the size of game the player is queued for, which for {@code ANY} is the size
+		 * chosen on queueing.
+		 * @return the number of players
+		 */
+		public int getPlayers() {
+			return _players;
+		}
+
+		/**
+		 * Takes the player out of the queue, unless they have already been placed in a game.
+		 *
+		 * @return true if the player was still waiting
+		 */
+		public boolean cancel() {
+			return _lobby.cancel(this);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import code.Board;
+import code.Tile;
+import server.GameClient;
+import server.GameServer;
+import server.MatchmakingLobby;
+import server.Protocol;
+
+public class MatchmakingLobbyTests {
+
+	@Test public void groupingTest() {
+		List<List<MatchmakingLobby.Ticket<Integer>>> matches = new ArrayList<List<MatchmakingLobby.Ticket<Integer>>>();
+		MatchmakingLobby<Integer> lobby = new MatchmakingLobby<Integer>(matches::add);
+		lobby.enqueue(1, "a", 3);
+		MatchmakingLobby.Ticket<Integer> leaving = lobby.enqueue(2, "b", 3);
+		lobby.enqueue(3, "c", 2);
+		assertTrue(leaving.cancel());
+		assertTrue(!leaving.cancel());
+		assertEquals(2, lobby.getWaiting());
+
+		// the 2 player game is one player short, so it is the one ANY joins
+		lobby.enqueue(4, "d", MatchmakingLobby.ANY);
+		assertEquals(1, matches.size());
+		assertEquals(3, (int) matches.get(0).get(0).getOwner());
+		assertEquals("d", matches.get(0).get(1).getName());
+
+		lobby.enqueue(5, "e", 3);
+		MatchmakingLobby.Ticket<Integer> last = lobby.enqueue(6, "f", MatchmakingLobby.ANY);
+		assertEquals(3, last.getPlayers());
+		assertEquals(2, matches.size());
+		assertEquals(1, (int) matches.get(1).get(0).getOwner());
+		assertEquals(6, (int) matches.get(1).get(2).getOwner());
+		assertTrue(!last.cancel());
+		assertEquals(0, lobby.getWaiting());
+	}
+
+	@Test public void cancelTest() throws InterruptedException {
+		List<List<MatchmakingLobby.Ticket<Integer>>> matches = new ArrayList<List<MatchmakingLobby.Ticket<Integer>>>();
+		MatchmakingLobby<Integer> lobby = new MatchmakingLobby<Integer>(matches::add);
+		lobby.enqueue(1, "a", 3);
+		// a player queueing and cancelling over and over in the same queue leaves nothing behind
+		MatchmakingLobby.Ticket<Integer> ticket = lobby.enqueue(2, "b", 3);
+		WeakReference<MatchmakingLobby.Ticket<Integer>> first = new WeakReference<MatchmakingLobby.Ticket<Integer>>(ticket);
+		for (int attempt = 0; attempt < 1000; attempt++) {
+			assertTrue(ticket.cancel());
+			ticket = lobby.enqueue(2, "b", 3);
+		}
+		assertTrue(ticket.cancel());
+		ticket = null;
+		for (int attempt = 0; attempt < 50 && first.get() != null; attempt++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(first.get());
+		assertEquals(1, lobby.getWaiting());
+		lobby.enqueue(3, "c", 3);
+		lobby.enqueue(4, "d", 3);
+		assertEquals(1, matches.size());
+		assertEquals(1, (int) matches.get(0).get(0).getOwner());
+		assertEquals(3, (int) matches.get(0).get(1).getOwner());
+		assertEquals(4, (int) matches.get(0).get(2).getOwner());
+	}
+
+	@Test(expected = IllegalArgumentException.class) public void sizeTest() {
+		new MatchmakingLobby<Integer>(match -> { }).enqueue(1, "a", 5);
+	}
+
+	/**
+	 * Queues 10,000 players from several threads at once, and checks every one is placed exactly
+	 * once, each game within 100 ms of its last player queueing. Games form as their queues fill,
+	 * so only a few players wait at any time: this tests throughput under contention, not depth.
+	 */
+	@Test public void depthTest() throws InterruptedException {
+		int players = 10000;
+		long[] queued = new long[players];
+		AtomicLong slowest = new AtomicLong();
+		ConcurrentLinkedQueue<Integer> placed = new ConcurrentLinkedQueue<Integer>();
+		MatchmakingLobby<Integer> lobby = new MatchmakingLobby<Integer>(match -> {
+			long now = System.nanoTime();
+			long last = 0;
+			for (MatchmakingLobby.Ticket<Integer> ticket : match) {
+				placed.add(ticket.getOwner());
+				last = Math.max(last, queued[ticket.getOwner()]);
+			}
+			slowest.accumulateAndGet(now - last, Math::max);
+		});
+		Thread[] threads = new Thread[4];
+		for (int index = 0; index < threads.length; index++) {
+			int first = index;
+			threads[index] = new Thread(() -> {
+				for (int player = first; player < players; player += threads.length) {
+					queued[player] = System.nanoTime();
+					lobby.enqueue(player, "p" + player, player % 4 == 0 ? MatchmakingLobby.ANY : 2 + player % 3);
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(players, placed.size() + lobby.getWaiting());
+		assertTrue(lobby.getWaiting() < 2 + 3 + 4);
+		assertEquals(placed.size(), placed.stream().distinct().count());
+		assertTrue(slowest.get() < 100000000L);
+	}
+
+	@Test public void serverTest() throws IOException {
+		try (GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2)) {
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+			GameClient[] clients = new GameClient[4];
+			try {
+				for (int index = 0; index < clients.length; index++) {
+					clients[index] = new GameClient(address);
+					assertEquals(Protocol.OK, clients[index].queue(2, "p" + index));
+				}
+				int[] sessions = new int[clients.length];
+				for (int index = 0; index < clients.length; index++) {
+					assertEquals(index % 2, clients[index].awaitMatch());
+					sessions[index] = clients[index].getValue();
+				}
+				assertEquals(sessions[0], sessions[1]);
+				assertEquals(sessions[2], sessions[3]);
+				assertTrue(sessions[0] != sessions[2]);
+				assertEquals(2, server.getSessionCount());
+				assertEquals(0, server.getWaitingPlayers());
+
+				int code = Board.shiftCode(Tile.NORTH, 1);
+				assertEquals(Protocol.NOT_YOUR_TURN, clients[1].shift(code));
+				assertEquals(Protocol.OK, clients[0].shift(code));
+				assertTrue(clients[0].getReplica().isSynced());
+			} finally {
+				for (GameClient client : clients) {
+					if (client != null) {
+						client.close();
+					}
+				}
+			}
+		}
+	}
+}
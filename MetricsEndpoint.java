@@ -0,0 +1,245 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <h1>MetricsEndpoint</h1>
+ * Publishes the metrics of a {@code GameServer} over HTTP, and as a line logged every interval:
+ * the open sessions, connections and hibernated sessions, the requests per second of each game
+ * action with their latency percentiles, each event loop's lag, and the garbage collections.
+ * <p>
+ * {@code GET /metrics} answers in the Prometheus text format, eg.
+ * <code> labyrinth_action_latency_us{action="shift",quantile="0.99"} 12.5 </code>; action rates
+ * are over the last interval and latencies since the server started. {@code GET /health} answers
+ * 200 while every loop keeps up, and 503 once one has not run a task for {@code MAX_HEALTHY_LAG_MILLIS}.
+ * <p>
+ * Every interval the endpoint hands each loop a task timing how long it waited to run, which is
+ * the loop's lag: a loop busy with one slow request, or with more work than it can do, lags.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code GameServer}: _server - the server whose metrics are published
+ * {@code ServerMetrics}: _metrics - the server's metrics
+ * {@code PrintStream}: _log - where the line is logged every interval, or null
+ * {@code HttpServer}: _http - the HTTP server
+ * {@code ScheduledExecutorService}: _sampler - the thread sampling the figures
+ * {@code long[]}: _probes - when the lag probe still waiting on each loop was handed to it, or 0
+ * {@code long[]}: _counts - the request counts of each action at the last sample
+ * {@code double[]}: _rates - the requests per second of each action over the last interval
+ * {@code long}: _sampled - the time of the last sample
+ * {@code long}: _collections - the number of garbage collections at the last sample
+ * {@code long}: _collectionMillis - the garbage collection time at the last sample
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class MetricsEndpoint implements Closeable {
+
+	/**
+	 * The lag beyond which a loop is reported as unhealthy.
+	 */
+	public static final long MAX_HEALTHY_LAG_MILLIS = 1000;
+
+	private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+	private final GameServer _server;
+	private final ServerMetrics _metrics;
+	private final PrintStream _log;
+	private final HttpServer _http;
+	private final ScheduledExecutorService _sampler;
+	private final long[] _probes;
+	private final long[] _counts;
+	private final double[] _rates;
+	private long _sampled;
+	private long _collections;
+	private long _collectionMillis;
+
+	/**
+	 * Starts publishing the metrics of the specified server.
+	 *
+	 * @param server			the server
+	 * @param address			the address to serve HTTP on (port 0 for any free port), usually a loopback address
+	 * @param intervalMillis	how often the figures are sampled and logged
+	 * @param log				where a line of figures is logged every interval, or null
+	 * @throws IOException if the HTTP socket cannot be bound
+	 */
+	public MetricsEndpoint(GameServer server, InetSocketAddress address, long intervalMillis, PrintStream log) throws IOException {
+		if (intervalMillis <= 0) {
+			throw new IllegalArgumentException("The interval must be positive.");
+		}
+		_server = server;
+		_metrics = server.getMetrics();
+		_log = log;
+		_probes = new long[_metrics.getLoops()];
+		_counts = new long[ServerMetrics.ACTIONS.length];
+		_rates = new double[ServerMetrics.ACTIONS.length];
+		_sampled = System.nanoTime();
+		_collections = ServerMetrics.getCollections();
+		_collectionMillis = ServerMetrics.getCollectionMillis();
+		_sampler = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "labyrinth-metrics");
+			thread.setDaemon(true);
+			return thread;
+		});
+		_http = HttpServer.create(address, 0);
+		_http.setExecutor(_sampler);
+		_http.createContext("/metrics", exchange -> respond(exchange, 200, metrics()));
+		_http.createContext("/health", exchange -> {
+			boolean healthy = isHealthy();
+			respond(exchange, healthy ? 200 : 503, healthy ? "OK\n" : "SLOW\n");
+		});
+		_http.start();
+		_sampler.scheduleAtFixedRate(this::sample, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns the port HTTP is served on.
+	 * @return the port
+	 */
+	public int getPort() {
+		return _http.getAddress().getPort();
+	}
+
+	/**
+	 * Samples the action rates, probes the loops' lag and logs a line of figures.
+	 */
+	private synchronized void sample() {
+		long now = System.nanoTime();
+		double seconds = (now - _sampled) / 1e9;
+		for (int action = 0; action < _counts.length; action++) {
+			long count = _metrics.getRequests(ServerMetrics.ACTIONS[action]);
+			_rates[action] = (count - _counts[action]) / seconds;
+			_counts[action] = count;
+		}
+		_sampled = now;
+		EventLoop[] loops = _server.loops();
+		for (int index = 0; index < loops.length; index++) {
+			if (_probes[index] == 0) {
+				int loop = index;
+				long sent = System.nanoTime();
+				_probes[index] = sent;
+				loops[index].execute(() -> probed(loop, sent));
+			}
+		}
+		long collections = ServerMetrics.getCollections();
+		long collectionMillis = ServerMetrics.getCollectionMillis();
+		if (_log != null) {
+			StringBuilder line = new StringBuilder();
+			line.append(String.format(Locale.ROOT, "sessions %d connections %d hibernated %d actions/s", _server.getSessionCount(),
+					_server.getConnectionCount(), _server.getHibernatedCount()));
+			double total = 0;
+			for (int action = 0; action < _rates.length; action++) {
+				line.append(String.format(Locale.ROOT, " %s %.0f", ServerMetrics.nameOf(ServerMetrics.ACTIONS[action]), _rates[action]));
+				total += _rates[action];
+			}
+			LatencyHistogram all = new LatencyHistogram();
+			for (byte action : ServerMetrics.ACTIONS) {
+				all.add(_metrics.getLatencies(action));
+			}
+			line.append(String.format(Locale.ROOT, " total %.0f p99 %.1f us max lag %.1f ms gc %d (%d ms)", total,
+					all.getPercentile(99) / 1e3, maxLag() / 1e6, collections - _collections, collectionMillis - _collectionMillis));
+			_log.println(line);
+		}
+		_collections = collections;
+		_collectionMillis = collectionMillis;
+	}
+
+	private synchronized void probed(int loop, long sent) {
+		_metrics.recordLag(loop, System.nanoTime() - sent);
+		_probes[loop] = 0;
+	}
+
+	/**
+	 * Returns the lag of the specified loop: the lag last measured, or if the loop has not yet run
+	 * the last probe handed to it, how long that probe has waited.
+	 */
+	private synchronized long lagOf(int loop) {
+		long waiting = _probes[loop] == 0 ? 0 : System.nanoTime() - _probes[loop];
+		return Math.max(waiting, _metrics.getLag(loop));
+	}
+
+	private long maxLag() {
+		long lag = 0;
+		for (int loop = 0; loop < _probes.length; loop++) {
+			lag = Math.max(lag, lagOf(loop));
+		}
+		return lag;
+	}
+
+	/**
+	 * Returns whether every loop is keeping up.
+	 * @return true if no loop lags by {@code MAX_HEALTHY_LAG_MILLIS} or more
+	 */
+	public boolean isHealthy() {
+		return maxLag() < TimeUnit.MILLISECONDS.toNanos(MAX_HEALTHY_LAG_MILLIS);
+	}
+
+	/**
+	 * Returns every metric in the Prometheus text format.
+	 */
+	private String metrics() {
+		StringBuilder out = new StringBuilder();
+		out.append("labyrinth_sessions ").append(_server.getSessionCount()).append('\n');
+		out.append("labyrinth_connections ").append(_server.getConnectionCount()).append('\n');
+		out.append("labyrinth_hibernated_sessions ").append(_server.getHibernatedCount()).append('\n');
+		out.append("labyrinth_waiting_players ").append(_server.getWaitingPlayers()).append('\n');
+		for (byte type = Protocol.OPEN; type <= Protocol.QUEUE; type++) {
+			out.append("labyrinth_requests_total{type=\"").append(ServerMetrics.nameOf(type)).append("\"} ")
+					.append(_metrics.getRequests(type)).append('\n');
+		}
+		synchronized (this) {
+			for (int action = 0; action < _rates.length; action++) {
+				out.append(String.format(Locale.ROOT, "labyrinth_actions_per_second{action=\"%s\"} %.1f\n",
+						ServerMetrics.nameOf(ServerMetrics.ACTIONS[action]), _rates[action]));
+			}
+		}
+		for (byte action : ServerMetrics.ACTIONS) {
+			LatencyHistogram latencies = _metrics.getLatencies(action);
+			String name = ServerMetrics.nameOf(action);
+			for (double quantile : QUANTILES) {
+				out.append(String.format(Locale.ROOT, "labyrinth_action_latency_us{action=\"%s\",quantile=\"%s\"} %.1f\n",
+						name, quantile, latencies.getPercentile(quantile * 100) / 1e3));
+			}
+			out.append(String.format(Locale.ROOT, "labyrinth_action_latency_us_max{action=\"%s\"} %.1f\n",
+					name, latencies.getMax() / 1e3));
+			out.append(String.format(Locale.ROOT, "labyrinth_action_latency_us_count{action=\"%s\"} %d\n",
+					name, latencies.getCount()));
+		}
+		for (int loop = 0; loop < _probes.length; loop++) {
+			out.append(String.format(Locale.ROOT, "labyrinth_loop_lag_ms{loop=\"%d\"} %.3f\n", loop, lagOf(loop) / 1e6));
+		}
+		out.append("labyrinth_gc_collections_total ").append(ServerMetrics.getCollections()).append('\n');
+		out.append("labyrinth_gc_time_ms_total ").append(ServerMetrics.getCollectionMillis()).append('\n');
+		return out.toString();
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Stops serving HTTP and logging.
+	 */
+	@Override
+	public void close() {
+		_http.stop(0);
+		_sampler.shutdownNow();
+	}
+}
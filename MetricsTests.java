@@ -0,0 +1,85 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import org.junit.Test;
+
+import code.Board;
+import code.Tile;
+import server.GameClient;
+import server.GameServer;
+import server.MetricsEndpoint;
+import server.Protocol;
+import server.ServerMetrics;
+
+public class MetricsTests {
+
+	private static String get(int port, String path, int status) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+		assertEquals(status, connection.getResponseCode());
+		try (InputStream in = connection.getInputStream()) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test public void endpointTest() throws IOException, InterruptedException {
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		try (GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+				MetricsEndpoint endpoint = new MetricsEndpoint(server, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+						50, new PrintStream(log, true));
+				GameClient client = new GameClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()))) {
+			assertEquals(Protocol.OK, client.open(4, "Ann", "Bob"));
+			assertEquals(Protocol.OK, client.rotate(true));
+			assertEquals(Protocol.OK, client.shift(Board.shiftCode(Tile.NORTH, 3)));
+			assertEquals(Protocol.REJECTED, client.shift(Board.shiftCode(Tile.NORTH, 5)));
+			assertEquals(Protocol.OK, client.endTurn());
+
+			ServerMetrics metrics = server.getMetrics();
+			assertEquals(1, metrics.getRequests(Protocol.OPEN));
+			assertEquals(2, metrics.getRequests(Protocol.SHIFT));
+			assertEquals(2, metrics.getLatencies(Protocol.SHIFT).getCount());
+			assertEquals(1, metrics.getLatencies(Protocol.END_TURN).getCount());
+			assertEquals(0, metrics.getLatencies(Protocol.MOVE).getCount());
+
+			for (int wait = 0; wait < 200 && log.size() == 0; wait++) {
+				Thread.sleep(10);
+			}
+			assertTrue(log.toString().startsWith("sessions 1 connections 1 hibernated 0 actions/s shift "));
+
+			String text = get(endpoint.getPort(), "/metrics", 200);
+			assertTrue(text.contains("labyrinth_sessions 1\n"));
+			assertTrue(text.contains("labyrinth_requests_total{type=\"shift\"} 2\n"));
+			assertTrue(text.contains("labyrinth_action_latency_us_count{action=\"end_turn\"} 1\n"));
+			assertTrue(text.contains("labyrinth_loop_lag_ms{loop=\"1\"} "));
+			assertEquals("OK\n", get(endpoint.getPort(), "/health", 200));
+			assertTrue(endpoint.isHealthy());
+		}
+	}
+
+	@Test public void localeTest() throws IOException {
+		Locale locale = Locale.getDefault();
+		Locale.setDefault(Locale.GERMANY);
+		try (GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1);
+				MetricsEndpoint endpoint = new MetricsEndpoint(server, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+						50, null)) {
+			// every sample is written the same way whatever the default locale
+			for (String line : get(endpoint.getPort(), "/metrics", 200).split("\n")) {
+				assertTrue(line, line.matches("[a-z_]+(\\{[^}]*\\})? -?[0-9]+(\\.[0-9]+)?"));
+			}
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package code;
+
+import java.util.Arrays;
+
+/**
+ * <h1>MoveHint</h1>
+ * A suggested turn for the current player of a position, as a player would carry it out: how many
+ * times to rotate the free tile clockwise, which shift to make, and the path to walk after the
+ * shift, one cell at a time. Made by a {@code HintEngine}; a hint does not change once made.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code int}: _action - the suggested action (see {@code ActionGenerator})
+ * {@code int[]}: _path - the cells walked after the shift, from the player's cell to the destination
+ * {@code int}: _value - the value of the action for the player, as the search found it
+ * {@code int}: _depth - the number of turns the search looked ahead
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class MoveHint {
+
+	private final int _action;
+	private final int[] _path;
+	private final int _value;
+	private final int _depth;
+
+	private MoveHint(int action, int[] path, int value, int depth) {
+		_action = action;
+		_path = path;
+		_value = value;
+		_depth = depth;
+	}
+
+	/**
+	 * Creates the hint of the specified action of the current turn of the specified position,
+	 * finding the shortest path the player can walk to its destination.
+	 *
+	 * @param position	the position, which is left unchanged
+	 * @param action	a legal action of its current turn
+	 * @param value		the value of the action
+	 * @param depth		the number of turns searched
+	 * @return			the hint
+	 */
+	public static MoveHint of(Position position, int action, int value, int depth) {
+		Position shifted = new Position(position);
+		for (int turn = ActionGenerator.rotationOf(action); turn > 0; turn--) {
+			shifted.rotateFreeTile();
+		}
+		shifted.shift(ActionGenerator.shiftOf(action));
+		int start = shifted.getPlayerCell(shifted.getCurrentSeat());
+		int destination = ActionGenerator.destinationOf(action);
+		int[] previous = new int[Position.CELLS];
+		Arrays.fill(previous, -1);
+		previous[start] = start;
+		int[] queue = new int[Position.CELLS];
+		queue[0] = start;
+		int reached = 1;
+		for (int head = 0; head < reached && previous[destination] < 0; head++) {
+			int cell = queue[head];
+			for (int direction = 0; direction < 4; direction++) {
+				int next = Position.neighbour(cell, direction);
+				if (shifted.canStep(cell, direction) && previous[next] < 0) {
+					previous[next] = cell;
+					queue[reached++] = next;
+				}
+			}
+		}
+		if (previous[destination] < 0) {
+			throw new IllegalArgumentException("The destination cannot be reached.");
+		}
+		int length = 1;
+		for (int cell = destination; cell != start; cell = previous[cell]) {
+			length++;
+		}
+		int[] path = new int[length];
+		for (int cell = destination, index = length - 1; index >= 0; cell = previous[cell], index--) {
+			path[index] = cell;
+		}
+		return new MoveHint(action, path, value, depth);
+	}
+
+	/**
+	 * Returns the suggested action.
+	 * @return the action (see {@code ActionGenerator})
+	 */
+	public int getAction() {
+		return _action;
+	}
+
+	/**
+	 * Returns the number of times to rotate the free tile clockwise.
+	 * @return the rotation (0-3)
+	 */
+	public int getRotation() {
+		return ActionGenerator.rotationOf(_action);
+	}
+
+	/**
+	 * Returns the shift to make.
+	 * @return the shift code (see {@code Board.shiftCode()})
+	 */
+	public int getShift() {
+		return ActionGenerator.shiftOf(_action);
+	}
+
+	/**
+	 * Returns the path to walk after the shift.
+	 * @return the cells, from the player's cell after the shift to the destination
+	 */
+	public int[] getPath() {
+		return _path.clone();
+	}
+
+	/**
+	 * Returns the cell to end the turn on.
+	 * @return the destination cell
+	 */
+	public int getDestination() {
+		return ActionGenerator.destinationOf(_action);
+	}
+
+	/**
+	 * Returns the value of the suggested action for the player.
+	 * @return the value, as the search found it
+	 */
+	public int getValue() {
+		return _value;
+	}
+
+	/**
+	 * Returns the number of turns the search looked ahead.
+	 * @return the depth
+	 */
+	public int getDepth() {
+		return _depth;
+	}
+}
@@ -0,0 +1,669 @@
+package code;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * <h1>Notation</h1>
+ * Labyrinth Game Notation: a plain-text format for recorded games (in the spirit of PGN for chess)
+ * which can be diffed, grepped and edited by hand. A game is a block of tag lines followed by one
+ * line per turn, and games are separated by blank lines:
+ * <pre>
+ * [Seed "42"]
+ * [Players "Ann,Bob"]
+ * [Board "&#x250C;&#x252C;&#x2510;&#x2502;&#x252C;&#x2500;&#x2510;/ ... /&#x2514;&#x2534;&#x2510;&#x2534;&#x2534;&#x2500;&#x2518;"]
+ * [Free "&#x2502;"]
+ * [Tokens "1@13 2@35 3@15 ... 25@51"]
+ * [Scores "1 0"]
+ * [Winner "-"]
+ * 1. p1 C3&#x2191;+1 SSE x1
+ * 2. p2 R5&#x2190; -
+ * </pre>
+ * <p>
+ * A turn gives the seat (p1-p4), the shift, the clockwise quarter turns applied to the free tile
+ * before the shift (<code> +1 </code> to <code> +3 </code>, omitted for none), the path walked as
+ * one letter per step (N, E, S, W, or <code> - </code> for none) and, if a token was collected,
+ * <code> x </code> and its number. Shifts name the row or column by its board index and the
+ * direction the tiles travel: <code> C3&#x2191; </code> is <code> shiftUp(3) </code>,
+ * <code> C3&#x2193; </code> <code> shiftDown(3) </code>, <code> R1&#x2190; </code> <code> shiftLeft(1) </code>
+ * and <code> R1&#x2192; </code> <code> shiftRight(1) </code>; the ASCII arrows <code> ^ v &lt; &gt; </code>
+ * are accepted as well. Tiles are drawn with the box-drawing character matching their paths, row
+ * by row from the top, and cells are written as a row digit followed by a column digit. The Board,
+ * Free and Tokens tags are optional; without them the starting board is the one generated from the
+ * seed. Anything after a <code> ; </code> outside a quoted tag value is a comment.
+ * <p>
+ * {@code Reader} and {@code Writer} stream games one at a time and work on reused character
+ * buffers, so arbitrarily large exports are processed with a small, constant amount of memory.
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class Notation {
+
+	private static final char[] GLYPHS = {
+		'.', '\u2575', '\u2574', '\u2518', '\u2577', '\u2502', '\u2510', '\u2524', '\u2576', '\u2514', '\u2500', '\u2534', '\u250C', '\u251C', '\u252C', '\u253C'
+	};
+	private static final char[] STEPS = { 'N', 'W', 'S', 'E' };
+	private static final char[] ARROWS = { '\u2191', '\u2190', '\u2193', '\u2192' };
+	private static final char[] ASCII_ARROWS = { '^', '<', 'v', '>' };
+
+	/**
+	 * Returns the box-drawing character for a tile with the specified paths.
+	 *
+	 * @param mask	the path mask, see {@code Position}
+	 * @return		the character
+	 */
+	public static char glyph(int mask) {
+		return GLYPHS[mask & 0xF];
+	}
+
+	/**
+	 * Returns the path mask of the tile drawn with the specified character.
+	 *
+	 * @param glyph	the character
+	 * @return		the path mask, or -1 if the character does not draw a tile
+	 */
+	public static int mask(char glyph) {
+		for (int mask = 0; mask < GLYPHS.length; mask++) {
+			if (GLYPHS[mask] == glyph) {
+				return mask;
+			}
+		}
+		return -1;
+	}
+
+	private static int indexOf(char[] chars, char c) {
+		for (int index = 0; index < chars.length; index++) {
+			if (chars[index] == c) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * <h1>Writer</h1>
+	 * Writes games in Labyrinth Game Notation.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code java.io.Writer}: _out - the buffered destination
+	 */
+	public static class Writer implements Closeable, Flushable {
+
+		private final java.io.Writer _out;
+
+		/**
+		 * Creates a writer which writes to the specified destination.
+		 *
+		 * @param out	the destination
+		 */
+		public Writer(java.io.Writer out) {
+			_out = out instanceof BufferedWriter ? out : new BufferedWriter(out, 1 << 16);
+		}
+
+		/**
+		 * Writes one game, followed by a blank line. If the record has no starting position, the
+		 * board is generated from its seed.
+		 *
+		 * @param record	the game to be written
+		 * @throws IOException if the destination cannot be written
+		 */
+		public void write(GameRecord record) throws IOException {
+			Position start = record.getStart();
+			if (start == null) {
+				start = Position.of(new Board(null, record.getSeed()), record.getPlayerCount());
+			}
+
+			_out.write("[Seed \"");
+			writeNumber(record.getSeed());
+			_out.write("\"]\n[Players \"");
+			String[] players = record.getPlayers();
+			for (int seat = 0; seat < players.length; seat++) {
+				if (seat > 0) {
+					_out.write(',');
+				}
+				writeEscaped(players[seat]);
+			}
+			_out.write("\"]\n[Board \"");
+			for (int cell = 0; cell < Position.CELLS; cell++) {
+				if (cell > 0 && cell % 7 == 0) {
+					_out.write('/');
+				}
+				_out.write(glyph(start.getMask(cell)));
+			}
+			_out.write("\"]\n[Free \"");
+			_out.write(glyph(start.getMask(Position.FREE)));
+			_out.write("\"]\n[Tokens \"");
+			boolean first = true;
+			for (int token = 1; token <= 25; token++) {
+				int cell = start.findToken(token);
+				if (cell >= 0 && cell < Position.CELLS) {
+					if (!first) {
+						_out.write(' ');
+					}
+					first = false;
+					writeNumber(token);
+					_out.write('@');
+					_out.write('0' + cell / 7);
+					_out.write('0' + cell % 7);
+				}
+			}
+			_out.write("\"]\n[Scores \"");
+			int[] scores = record.getScores();
+			for (int seat = 0; seat < scores.length; seat++) {
+				if (seat > 0) {
+					_out.write(' ');
+				}
+				writeNumber(scores[seat]);
+			}
+			_out.write("\"]\n[Winner \"");
+			if (record.getWinner() >= 0) {
+				_out.write('p');
+				writeNumber(record.getWinner() + 1);
+			} else {
+				_out.write('-');
+			}
+			_out.write("\"]\n");
+
+			int number = 1;
+			for (GameRecord.Turn turn : record.getTurns()) {
+				writeTurn(number++, turn);
+			}
+			_out.write('\n');
+		}
+
+		private void writeTurn(int number, GameRecord.Turn turn) throws IOException {
+			writeNumber(number);
+			_out.write(". p");
+			writeNumber(turn.getSeat() + 1);
+			_out.write(' ');
+			int direction = Board.shiftDirection(turn.getShift());
+			_out.write(direction == Tile.NORTH || direction == Tile.SOUTH ? 'C' : 'R');
+			writeNumber(Board.shiftIndex(turn.getShift()));
+			_out.write(ARROWS[direction]);
+			if (turn.getRotation() > 0) {
+				_out.write('+');
+				writeNumber(turn.getRotation());
+			}
+			_out.write(' ');
+			byte[] path = turn.getPath();
+			if (path.length == 0) {
+				_out.write('-');
+			}
+			for (byte step : path) {
+				_out.write(STEPS[step]);
+			}
+			if (turn.getToken() > 0) {
+				_out.write(" x");
+				writeNumber(turn.getToken());
+			}
+			_out.write('\n');
+		}
+
+		/**
+		 * Writes the decimal digits of a number without creating a String.
+		 */
+		private void writeNumber(long value) throws IOException {
+			if (value < 0) {
+				_out.write('-');
+				value = -value;
+			}
+			long divisor = 1;
+			while (divisor <= value / 10) {
+				divisor *= 10;
+			}
+			for (; divisor > 0; divisor /= 10) {
+				_out.write((int) ('0' + (value / divisor) % 10));
+			}
+		}
+
+		private void writeEscaped(String name) throws IOException {
+			for (int index = 0; index < name.length(); index++) {
+				char c = name.charAt(index);
+				if (c == ',' || c == '"' || c == '\\') {
+					_out.write('\\');
+				}
+				_out.write(c);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			_out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			_out.close();
+		}
+	}
+
+	/**
+	 * <h1>Reader</h1>
+	 * Reads games in Labyrinth Game Notation, one at a time. Lines are read into a reused
+	 * character buffer and parsed in place; only the objects making up each {@code GameRecord}
+	 * (and the tag names) are allocated.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code java.io.Reader}: _in - the source
+	 * {@code char[]}: _buffer - characters read from the source but not yet split into lines
+	 * {@code int}: _bufferPosition - the next unconsumed character in {@code _buffer}
+	 * {@code int}: _bufferLength - the number of valid characters in {@code _buffer}
+	 * {@code char[]}: _line - the current line (grown as needed)
+	 * {@code int}: _length - the length of the current line
+	 * {@code int}: _position - the parse position within the current line
+	 * {@code int}: _lineNumber - the number of the current line, for error messages
+	 * {@code boolean}: _pending - whether the current line has been read but not yet consumed
+	 * {@code boolean}: _eof - whether the end of the source has been reached
+	 */
+	public static class Reader implements Closeable {
+
+		private final java.io.Reader _in;
+		private final char[] _buffer;
+		private int _bufferPosition;
+		private int _bufferLength;
+		private char[] _line;
+		private int _length;
+		private int _position;
+		private int _lineNumber;
+		private boolean _pending;
+		private boolean _eof;
+
+		/**
+		 * Creates a reader which reads from the specified source.
+		 *
+		 * @param in	the source
+		 */
+		public Reader(java.io.Reader in) {
+			_in = in;
+			_buffer = new char[1 << 16];
+			_bufferPosition = 0;
+			_bufferLength = 0;
+			_line = new char[256];
+			_lineNumber = 0;
+		}
+
+		/**
+		 * Reads the next line into {@code _line}, without its line terminator.
+		 *
+		 * @return false at the end of the source
+		 */
+		private boolean readLine() throws IOException {
+			if (_pending) {
+				_pending = false;
+				_position = 0;
+				return true;
+			}
+			if (_eof) {
+				return false;
+			}
+			_length = 0;
+			_position = 0;
+			int c;
+			while ((c = next()) >= 0 && c != '\n') {
+				if (_length == _line.length) {
+					char[] longer = new char[_line.length * 2];
+					System.arraycopy(_line, 0, longer, 0, _length);
+					_line = longer;
+				}
+				_line[_length++] = (char) c;
+			}
+			if (_length > 0 && _line[_length - 1] == '\r') {
+				_length--;
+			}
+			// a comment starts at the first ';' outside a quoted value, where names may hold one
+			boolean quoted = false;
+			for (int index = 0; index < _length; index++) {
+				if (_line[index] == '\\') {
+					index++;
+				} else if (_line[index] == '"') {
+					quoted = !quoted;
+				} else if (_line[index] == ';' && !quoted) {
+					_length = index;
+				}
+			}
+			_lineNumber++;
+			if (c < 0) {
+				_eof = true;
+				return _length > 0;
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the next character of the source, refilling {@code _buffer} as needed.
+		 *
+		 * @return the character, or -1 at the end of the source
+		 */
+		private int next() throws IOException {
+			if (_bufferPosition == _bufferLength) {
+				_bufferLength = _in.read(_buffer, 0, _buffer.length);
+				_bufferPosition = 0;
+				if (_bufferLength <= 0) {
+					_bufferLength = 0;
+					return -1;
+				}
+			}
+			return _buffer[_bufferPosition++];
+		}
+
+		private boolean isBlank() {
+			for (int index = 0; index < _length; index++) {
+				if (!Character.isWhitespace(_line[index])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private IOException error(String message) {
+			return new IOException("Line " + _lineNumber + ": " + message);
+		}
+
+		private void skipSpaces() {
+			while (_position < _length && _line[_position] == ' ') {
+				_position++;
+			}
+		}
+
+		private int readNumber() throws IOException {
+			int start = _position;
+			boolean negative = _position < _length && _line[_position] == '-';
+			if (negative) {
+				_position++;
+			}
+			long value = 0;
+			while (_position < _length && _line[_position] >= '0' && _line[_position] <= '9') {
+				value = value * 10 + (_line[_position++] - '0');
+			}
+			if (_position == start + (negative ? 1 : 0)) {
+				throw error("Number expected.");
+			}
+			return (int) (negative ? -value : value);
+		}
+
+		private void expect(char c) throws IOException {
+			if (_position >= _length || _line[_position] != c) {
+				throw error("'" + c + "' expected.");
+			}
+			_position++;
+		}
+
+		/**
+		 * Reads the next game.
+		 *
+		 * @return the game, or null at the end of the source
+		 * @throws IOException if the source cannot be read or is not valid notation
+		 */
+		public GameRecord read() throws IOException {
+			do {
+				if (!readLine()) {
+					return null;
+				}
+			} while (isBlank());
+
+			long seed = 0;
+			String[] players = null;
+			int[] masks = null;
+			int[] tokens = null;
+			int[] scores = null;
+			int winner = -1;
+			ArrayList<GameRecord.Turn> turns = new ArrayList<GameRecord.Turn>();
+
+			boolean separated = false;
+			do {
+				if (isBlank()) {
+					if (!turns.isEmpty()) {
+						break;
+					}
+					separated = true;
+					continue;
+				}
+				if (_line[0] == '[') {
+					if (!turns.isEmpty() || separated) {
+						_pending = true;
+						break;
+					}
+					_position = 1;
+					int nameStart = _position;
+					while (_position < _length && _line[_position] != ' ') {
+						_position++;
+					}
+					String name = new String(_line, nameStart, _position - nameStart);
+					skipSpaces();
+					expect('"');
+					int valueStart = _position;
+					int valueEnd = _length - 2;
+					if (valueEnd < valueStart || _line[valueEnd] != '"' || _line[valueEnd + 1] != ']') {
+						throw error("Tag value must be quoted and end with \"].");
+					}
+					switch (name) {
+					case "Seed":
+						try {
+							seed = Long.parseLong(new String(_line, valueStart, valueEnd - valueStart));
+						} catch (NumberFormatException e) {
+							throw error("Seed must be a number.");
+						}
+						break;
+					case "Players":
+						players = parsePlayers(valueStart, valueEnd);
+						break;
+					case "Board":
+						if (masks == null) {
+							masks = new int[Position.CELLS + 1];
+						}
+						parseBoard(valueStart, valueEnd, masks);
+						break;
+					case "Free":
+						if (masks == null) {
+							masks = new int[Position.CELLS + 1];
+						}
+						masks[Position.FREE] = valueEnd > valueStart ? mask(_line[valueStart]) : -1;
+						if (masks[Position.FREE] < 0 || valueEnd != valueStart + 1) {
+							throw error("Free tile expected.");
+						}
+						break;
+					case "Tokens":
+						tokens = parseTokens(valueStart, valueEnd);
+						break;
+					case "Scores":
+						scores = parseNumbers(valueStart, valueEnd);
+						break;
+					case "Winner":
+						_position = valueStart;
+						if (_line[_position] == 'p') {
+							_position++;
+							winner = readNumber() - 1;
+						}
+						break;
+					default:
+						break;
+					}
+				} else {
+					turns.add(parseTurn());
+				}
+			} while (readLine());
+
+			if (players == null) {
+				throw error("Game without a Players tag.");
+			}
+			GameRecord record = new GameRecord(seed, players);
+			for (GameRecord.Turn turn : turns) {
+				record.addTurn(turn);
+			}
+			record.setWinner(winner);
+			if (scores != null) {
+				for (int seat = 0; seat < scores.length && seat < players.length; seat++) {
+					record.setScore(seat, scores[seat]);
+				}
+			}
+			if (masks != null) {
+				Position start = new Position(players.length);
+				for (int cell = 0; cell <= Position.FREE; cell++) {
+					start.setMask(cell, masks[cell]);
+				}
+				if (tokens != null) {
+					for (int token = 1; token < tokens.length; token++) {
+						if (tokens[token] >= 0) {
+							start.setToken(tokens[token], token);
+						}
+					}
+				}
+				record.setStart(start);
+			}
+			return record;
+		}
+
+		private String[] parsePlayers(int start, int end) {
+			ArrayList<String> players = new ArrayList<String>(4);
+			StringBuilder name = new StringBuilder();
+			for (int index = start; index < end; index++) {
+				char c = _line[index];
+				if (c == '\\' && index + 1 < end) {
+					name.append(_line[++index]);
+				} else if (c == ',') {
+					players.add(name.toString());
+					name.setLength(0);
+				} else {
+					name.append(c);
+				}
+			}
+			players.add(name.toString());
+			return players.toArray(new String[players.size()]);
+		}
+
+		private void parseBoard(int start, int end, int[] masks) throws IOException {
+			int cell = 0;
+			for (int index = start; index < end; index++) {
+				if (_line[index] == '/') {
+					continue;
+				}
+				int mask = mask(_line[index]);
+				if (mask < 0 || cell == Position.CELLS) {
+					throw error("Invalid board at column " + (index + 1) + ".");
+				}
+				masks[cell++] = mask;
+			}
+			if (cell != Position.CELLS) {
+				throw error("Board has " + cell + " tiles, not " + Position.CELLS + ".");
+			}
+		}
+
+		private int[] parseTokens(int start, int end) throws IOException {
+			int[] tokens = new int[26];
+			Arrays.fill(tokens, -1);
+			_position = start;
+			while (_position < end) {
+				int token = readNumber();
+				expect('@');
+				if (token < 1 || token > 25 || _position + 2 > end) {
+					throw error("Invalid token placement.");
+				}
+				int row = _line[_position++] - '0';
+				int column = _line[_position++] - '0';
+				if (row < 0 || row > 6 || column < 0 || column > 6) {
+					throw error("Invalid cell for token " + token + ".");
+				}
+				tokens[token] = Position.cell(row, column);
+				skipSpaces();
+			}
+			return tokens;
+		}
+
+		private int[] parseNumbers(int start, int end) throws IOException {
+			int[] numbers = new int[4];
+			int count = 0;
+			_position = start;
+			while (_position < end && count < numbers.length) {
+				numbers[count++] = readNumber();
+				skipSpaces();
+			}
+			return Arrays.copyOf(numbers, count);
+		}
+
+		private GameRecord.Turn parseTurn() throws IOException {
+			_position = 0;
+			skipSpaces();
+			readNumber();
+			expect('.');
+			skipSpaces();
+			expect('p');
+			int seat = readNumber() - 1;
+			if (seat < 0 || seat > 3) {
+				throw error("Invalid seat.");
+			}
+			skipSpaces();
+
+			if (_position >= _length || (_line[_position] != 'C' && _line[_position] != 'R')) {
+				throw error("Shift expected.");
+			}
+			boolean column = _line[_position++] == 'C';
+			int index = readNumber();
+			if (_position >= _length) {
+				throw error("Shift direction expected.");
+			}
+			int direction = indexOf(ARROWS, _line[_position]);
+			if (direction < 0) {
+				direction = indexOf(ASCII_ARROWS, _line[_position]);
+			}
+			_position++;
+			boolean vertical = direction == Tile.NORTH || direction == Tile.SOUTH;
+			if (direction < 0 || vertical != column || (index != 1 && index != 3 && index != 5)) {
+				throw error("Invalid shift.");
+			}
+			int rotation = 0;
+			if (_position < _length && _line[_position] == '+') {
+				_position++;
+				rotation = readNumber();
+				if (rotation > 3) {
+					throw error("Invalid rotation.");
+				}
+			}
+			skipSpaces();
+
+			int pathStart = _position;
+			while (_position < _length && _line[_position] != ' ') {
+				_position++;
+			}
+			byte[] path;
+			if (_position - pathStart == 1 && _line[pathStart] == '-') {
+				path = new byte[0];
+			} else {
+				path = new byte[_position - pathStart];
+				for (int step = 0; step < path.length; step++) {
+					int stepDirection = indexOf(STEPS, _line[pathStart + step]);
+					if (stepDirection < 0) {
+						throw error("Invalid step '" + _line[pathStart + step] + "'.");
+					}
+					path[step] = (byte) stepDirection;
+				}
+				if (path.length > GameRecord.MAX_PATH) {
+					throw error("Path too long.");
+				}
+			}
+			skipSpaces();
+
+			int token = 0;
+			if (_position < _length && _line[_position] == 'x') {
+				_position++;
+				token = readNumber();
+			}
+			skipSpaces();
+			if (_position < _length) {
+				throw error("Unexpected text after turn.");
+			}
+			return new GameRecord.Turn(seat, Board.shiftCode(direction, index), rotation, path, token);
+		}
+
+		@Override
+		public void close() throws IOException {
+			_in.close();
+		}
+	}
+}
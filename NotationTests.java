@@ -0,0 +1,103 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import code.Board;
+import code.GameRecord;
+import code.Notation;
+import code.Position;
+import code.Tile;
+
+public class NotationTests {
+
+	private GameRecord createRecord() {
+		GameRecord record = new GameRecord(42, new String[] {"Ann", "Bob, Jr."});
+		record.addTurn(new GameRecord.Turn(0, Board.shiftCode(Tile.NORTH, 3), 1, new byte[] {Tile.SOUTH, Tile.SOUTH, Tile.EAST}, 1));
+		record.addTurn(new GameRecord.Turn(1, Board.shiftCode(Tile.WEST, 5), 0, new byte[0], 0));
+		record.setScore(0, 1);
+		return record;
+	}
+
+	private String write(GameRecord... records) throws IOException {
+		StringWriter text = new StringWriter();
+		Notation.Writer writer = new Notation.Writer(text);
+		for (GameRecord record : records) {
+			writer.write(record);
+		}
+		writer.flush();
+		return text.toString();
+	}
+
+	@Test public void writeTest() throws IOException {
+		String text = write(createRecord());
+		assertTrue(text.contains("[Seed \"42\"]"));
+		assertTrue(text.contains("[Players \"Ann,Bob\\, Jr.\"]"));
+		assertTrue(text.contains("1. p1 C3\u2191+1 SSE x1\n"));
+		assertTrue(text.contains("2. p2 R5\u2190 -\n"));
+	}
+
+	@Test public void roundTripTest() throws IOException {
+		Notation.Reader reader = new Notation.Reader(new StringReader(write(createRecord(), createRecord())));
+		for (int game = 0; game < 2; game++) {
+			GameRecord record = reader.read();
+			assertEquals(42, record.getSeed());
+			assertEquals("Bob, Jr.", record.getPlayers()[1]);
+			assertEquals(1, record.getScores()[0]);
+			assertEquals(-1, record.getWinner());
+			assertEquals(2, record.getTurns().size());
+			GameRecord.Turn turn = record.getTurns().get(0);
+			assertEquals(Board.shiftCode(Tile.NORTH, 3), turn.getShift());
+			assertEquals(1, turn.getRotation());
+			assertEquals(3, turn.getPath().length);
+			assertEquals(Tile.EAST, turn.getPath()[2]);
+			assertEquals(1, turn.getToken());
+			assertEquals(Position.of(new Board(null, 42), 2), record.getStart());
+		}
+		assertTrue(reader.read() == null);
+	}
+
+	@Test public void asciiArrowsTest() throws IOException {
+		String text = "[Seed \"7\"]\n[Players \"a,b\"]\n[Winner \"p2\"]\n\n1. p1 C1^ N ; comment\n2. p2 R3> -\n3. p1 C5v+3 WW\n4. p2 R1< E x2\n";
+		GameRecord record = new Notation.Reader(new StringReader(text)).read();
+		assertEquals(1, record.getWinner());
+		assertTrue(record.getStart() == null);
+		assertEquals(Board.shiftCode(Tile.NORTH, 1), record.getTurns().get(0).getShift());
+		assertEquals(Board.shiftCode(Tile.EAST, 3), record.getTurns().get(1).getShift());
+		assertEquals(Board.shiftCode(Tile.SOUTH, 5), record.getTurns().get(2).getShift());
+		assertEquals(3, record.getTurns().get(2).getRotation());
+		assertEquals(Board.shiftCode(Tile.WEST, 1), record.getTurns().get(3).getShift());
+		assertEquals(2, record.getTurns().get(3).getToken());
+	}
+
+	@Test public void semicolonTest() throws IOException {
+		GameRecord record = new GameRecord(7, new String[] {"a;b", "c\\", "\";d"});
+		record.addTurn(new GameRecord.Turn(0, Board.shiftCode(Tile.NORTH, 1), 0, new byte[0], 0));
+		String text = write(record) + "; a comment after the game\n";
+		GameRecord read = new Notation.Reader(new StringReader(text)).read();
+		assertEquals("a;b", read.getPlayers()[0]);
+		assertEquals("c\\", read.getPlayers()[1]);
+		assertEquals("\";d", read.getPlayers()[2]);
+		assertEquals(1, read.getTurns().size());
+	}
+
+	@Test public void invalidSeedTest() throws IOException {
+		try {
+			new Notation.Reader(new StringReader("[Seed \"4x2\"]\n[Players \"a,b\"]\n")).read();
+			fail("The seed was read.");
+		} catch (IOException e) {
+			assertEquals("Line 1: Seed must be a number.", e.getMessage());
+		}
+	}
+
+	@Test(expected = IOException.class) public void invalidShiftTest() throws IOException {
+		new Notation.Reader(new StringReader("[Players \"a\"]\n1. p1 C2^ -\n")).read();
+	}
+}
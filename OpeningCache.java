@@ -0,0 +1,264 @@
+package code;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <h1>OpeningCache</h1>
+ * The best first turn of games started on known boards, found ahead of time and kept in a local
+ * file, so that a bot playing a seeded board again (as in a tournament) makes its first move
+ * without searching. Only the first seat's first turn is cached: every later turn depends on the
+ * moves made before it.
+ * <p>
+ * Openings are keyed by the hash of the starting position (see {@code PositionStore.key()}),
+ * which covers the layout of the tiles and tokens and the number of players. {@code precompute()}
+ * queues a starting position to be searched by a {@code Searcher} for a fixed budget on the
+ * cache's one background thread; each opening found is added to the cache and the whole file is
+ * rewritten, through a temporary file which replaces it in one move so that a crash never leaves
+ * it half written. Lookups read a concurrent map and never wait, so any number of searchers may
+ * share one cache (see {@code Searcher.setOpenings()}).
+ * <p>
+ * The file starts with a magic number, the format version and the number of openings; each
+ * opening is then its key (8 bytes), action and value (4 bytes each) and search depth (1 byte).
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code Path}: _file - the cache file
+ * {@code Map<Long, Opening>}: _openings - the openings found, by key
+ * {@code Searcher}: _searcher - searches the starting positions, on the worker thread only
+ * {@code long}: _budgetMillis - the time each search may take
+ * {@code ExecutorService}: _worker - the thread searching
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class OpeningCache implements Closeable {
+
+	/**
+	 * The magic number ("MLOC") at the start of a cache file.
+	 */
+	public static final int MAGIC = 0x4D4C4F43;
+	/**
+	 * The cache format version written by this class.
+	 */
+	public static final int VERSION = 1;
+
+	private final Path _file;
+	private final Map<Long, Opening> _openings;
+	private final Searcher _searcher;
+	private final long _budgetMillis;
+	private final ExecutorService _worker;
+
+	/**
+	 * Opens the cache at the specified path, reading the openings already in the file if there is
+	 * one.
+	 *
+	 * @param file			the cache file
+	 * @param evaluator		scores the positions searched (used on the worker thread only)
+	 * @param budgetMillis	the time each search may take
+	 * @throws IOException if the file cannot be read or is not a cache
+	 */
+	public OpeningCache(Path file, Evaluator evaluator, long budgetMillis) throws IOException {
+		if (budgetMillis <= 0) {
+			throw new IllegalArgumentException("The budget must be positive.");
+		}
+		_file = file;
+		_openings = new ConcurrentHashMap<Long, Opening>();
+		if (Files.exists(file)) {
+			read();
+		}
+		_searcher = new Searcher(evaluator);
+		_budgetMillis = budgetMillis;
+		_worker = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "labyrinth-opening");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns whether the specified position is the start of a game: the first seat to move, no
+	 * token collected, no shift made and every player on their starting cell.
+	 *
+	 * @param position	the position
+	 * @return			whether it is a starting position
+	 */
+	public static boolean isOpening(Position position) {
+		if (position.getCurrentSeat() != 0 || position.getNextToken() != 1 || position.getLastShift() != -1) {
+			return false;
+		}
+		for (int seat = 0; seat < position.getPlayerCount(); seat++) {
+			if (position.getPlayerCell(seat) != Position.START_CELLS[seat] || position.getScore(seat) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the opening cached for the specified position, without waiting.
+	 *
+	 * @param position	the position
+	 * @return			the opening, or null if the position is not a cached starting position
+	 */
+	public Opening get(Position position) {
+		return isOpening(position) ? _openings.get(PositionStore.key(position)) : null;
+	}
+
+	/**
+	 * Returns the number of openings cached.
+	 * @return the size
+	 */
+	public int size() {
+		return _openings.size();
+	}
+
+	/**
+	 * Finds the opening of the specified starting position in the background, unless it is cached
+	 * already, and adds it to the cache and the file.
+	 *
+	 * @param position	the starting position, which is copied
+	 * @return			completes with the opening once it is cached, or exceptionally if the file
+	 *                  cannot be written (the opening is still cached in memory)
+	 */
+	public CompletableFuture<Opening> precompute(Position position) {
+		if (!isOpening(position)) {
+			throw new IllegalArgumentException("Only the start of a game can be cached.");
+		}
+		Position copy = new Position(position);
+		CompletableFuture<Opening> result = new CompletableFuture<Opening>();
+		_worker.execute(() -> {
+			try {
+				result.complete(find(copy));
+			} catch (IOException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Finds the opening of the specified starting position on the worker thread.
+	 */
+	private Opening find(Position position) throws IOException {
+		long key = PositionStore.key(position);
+		Opening opening = _openings.get(key);
+		if (opening != null) {
+			return opening;
+		}
+		int action = _searcher.search(position, _budgetMillis);
+		opening = new Opening(action, _searcher.getValue(), Math.min(255, _searcher.getDepth()));
+		_openings.put(key, opening);
+		write();
+		return opening;
+	}
+
+	/**
+	 * Reads every opening in the file into the map.
+	 */
+	private void read() throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(_file)))) {
+			if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+				throw new IOException("Not a version " + VERSION + " opening cache.");
+			}
+			int count = in.readInt();
+			if (count < 0) {
+				throw new IOException("Invalid opening count " + count + ".");
+			}
+			for (int index = 0; index < count; index++) {
+				long key = in.readLong();
+				int action = in.readInt();
+				int value = in.readInt();
+				int depth = in.readUnsignedByte();
+				_openings.put(key, new Opening(action, value, depth));
+			}
+		}
+	}
+
+	/**
+	 * Rewrites the file with every opening in the map, replacing it in one move.
+	 */
+	private void write() throws IOException {
+		Path temporary = _file.resolveSibling(_file.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeInt(_openings.size());
+			for (Map.Entry<Long, Opening> entry : _openings.entrySet()) {
+				Opening opening = entry.getValue();
+				out.writeLong(entry.getKey());
+				out.writeInt(opening._action);
+				out.writeInt(opening._value);
+				out.writeByte(opening._depth);
+			}
+		}
+		Files.move(temporary, _file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Stops accepting positions to precompute; those already queued are still searched and saved.
+	 */
+	@Override
+	public void close() {
+		_worker.shutdown();
+	}
+
+	/**
+	 * <h1>Opening</h1>
+	 * The best first turn found for one starting position.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code int}: _action - the action to play (see {@code ActionGenerator})
+	 * {@code int}: _value - the value of the action for the first seat, as the search found it
+	 * {@code int}: _depth - the number of turns the search looked ahead
+	 */
+	public static class Opening {
+
+		private final int _action;
+		private final int _value;
+		private final int _depth;
+
+		private Opening(int action, int value, int depth) {
+			_action = action;
+			_value = value;
+			_depth = depth;
+		}
+
+		/**
+		 * Returns the action to play.
+		 * @return the action (see {@code ActionGenerator})
+		 */
+		public int getAction() {
+			return _action;
+		}
+
+		/**
+		 * Returns the value of the action for the first seat.
+		 * @return the value, as a {@code PARANOID} search found it
+		 */
+		public int getValue() {
+			return _value;
+		}
+
+		/**
+		 * Returns the number of turns the search looked ahead.
+		 * @return the depth
+		 */
+		public int getDepth() {
+			return _depth;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import code.ActionGenerator;
+import code.Game;
+import code.LinearEvaluator;
+import code.OpeningCache;
+import code.Position;
+import code.Searcher;
+
+public class OpeningCacheTests {
+
+	private static final String[] PLAYERS = {"Ann", "Bob", "Cat"};
+
+	@Test public void precomputeAndReopenTest() throws IOException {
+		Path path = Files.createTempFile("openings", ".mloc");
+		Files.delete(path);
+		Position position = Position.of(new Game(PLAYERS, 4));
+		OpeningCache.Opening opening;
+		try (OpeningCache cache = new OpeningCache(path, new LinearEvaluator(), 100)) {
+			assertNull(cache.get(position));
+			opening = cache.precompute(position).join();
+			assertSame(opening, cache.get(Position.of(new Game(PLAYERS, 4))));
+			assertSame(opening, cache.precompute(position).join());
+			assertNull(cache.get(Position.of(new Game(PLAYERS, 5))));
+			assertNull(cache.get(Position.of(new Game(new String[] {"Ann", "Bob"}, 4))));
+		}
+		try (OpeningCache cache = new OpeningCache(path, new LinearEvaluator(), 100)) {
+			assertEquals(1, cache.size());
+			OpeningCache.Opening read = cache.get(position);
+			assertEquals(opening.getAction(), read.getAction());
+			assertEquals(opening.getValue(), read.getValue());
+			assertEquals(opening.getDepth(), read.getDepth());
+		}
+		Files.delete(path);
+	}
+
+	@Test public void searcherTest() throws IOException {
+		Path path = Files.createTempFile("openings", ".mloc");
+		Files.delete(path);
+		Position position = Position.of(new Game(PLAYERS, 6));
+		try (OpeningCache cache = new OpeningCache(path, new LinearEvaluator(), 100)) {
+			int action = cache.precompute(position).join().getAction();
+			Searcher searcher = new Searcher(new LinearEvaluator());
+			searcher.setOpenings(cache);
+			assertEquals(action, searcher.search(position, 10000));
+			assertEquals(0, searcher.getNodes());
+			assertTrue(searcher.getElapsedMillis() < 100);
+			// after the first turn the searcher searches again
+			ActionGenerator.play(position, action);
+			assertFalse(OpeningCache.isOpening(position));
+			searcher.search(position, 10);
+			assertTrue(searcher.getNodes() > 0);
+		}
+		Files.delete(path);
+	}
+
+	@Test public void maxNTest() throws IOException {
+		Path path = Files.createTempFile("openings", ".mloc");
+		Files.delete(path);
+		Position position = Position.of(new Game(PLAYERS, 6));
+		try (OpeningCache cache = new OpeningCache(path, new LinearEvaluator(), 100)) {
+			cache.precompute(position).join();
+			// the openings are paranoid, so a max-n searcher searches for itself
+			Searcher searcher = new Searcher(new LinearEvaluator(), Searcher.MAX_N);
+			searcher.setOpenings(cache);
+			searcher.search(position, 100, 1);
+			assertTrue(searcher.getNodes() > 0);
+			assertTrue(searcher.getValue() >= 0 && searcher.getValue() <= Searcher.SHARE);
+		}
+		Files.delete(path);
+	}
+
+	@Test(expected = IOException.class) public void notCacheTest() throws IOException {
+		Path path = Files.createTempFile("openings", ".mloc");
+		try {
+			Files.write(path, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+			new OpeningCache(path, new LinearEvaluator(), 100).close();
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class) public void notOpeningTest() throws IOException {
+		Path path = Files.createTempFile("openings", ".mloc");
+		Files.delete(path);
+		Position position = Position.of(new Game(PLAYERS, 4));
+		position.setCurrentSeat(1);
+		try (OpeningCache cache = new OpeningCache(path, new LinearEvaluator(), 100)) {
+			cache.precompute(position);
+		}
+	}
+}
@@ -0,0 +1,336 @@
+package code;
+
+import java.io.Closeable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * <h1>ParallelSearcher</h1>
+ * The iterative deepening {@code PARANOID} search of {@code Searcher}, with the root actions of
+ * every depth split across the threads of a {@code ForkJoinPool}.
+ * <p>
+ * The root actions are grouped by their rotation and shift (up to 4 x 12 groups, each holding the
+ * destinations reachable after that shift). At each depth the group holding the best action of the
+ * depth before is searched first, on its own, so that the workers start with a good bound; the
+ * other groups are then split in halves until each task holds one group, and idle workers steal
+ * the halves still waiting. The workers share the best value found so far (and its action) in one
+ * {@code AtomicLong}: each root action is searched with that value as its lower bound, so an action
+ * which cannot beat it is cut off as soon as that is certain, whichever worker found the bound.
+ * <p>
+ * Every worker thread searches with a {@code Searcher} of its own, with an evaluator of its own
+ * from the supplier given, so the workers share nothing else. The value of a completed depth is
+ * that of the sequential search, though among equally good actions the one chosen may differ.
+ * Like {@code Searcher}, it first probes the endgame with an {@code EndgameSolver} once the game
+ * reaches its last tokens, playing a proven win and otherwise dropping the root actions proven to
+ * lose; the solver runs on the calling thread, for the short probe only. It also plays cached
+ * openings without searching (see {@code setOpenings()}).
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code ForkJoinPool}: _pool - the worker threads
+ * {@code ThreadLocal<Searcher>}: _searchers - the searcher of each worker thread
+ * {@code EndgameSolver}: _endgame - proves the outcome once the last tokens are reached, created on first use
+ * {@code OpeningCache}: _openings - the openings played without searching, or null
+ * {@code int[]}: _actions - the root actions
+ * {@code int[]}: _groups - the index in {@code _actions} of the first action of each group, then the count
+ * {@code Position}: _root - the position searched
+ * {@code AtomicLong}: _best - the best value found at the depth being searched, in the high 32
+ * bits, and the index of its action, in the low 32 bits
+ * {@code LongAdder}: _nodes - the number of positions searched
+ * {@code LongAdder}: _pruned - the number of actions skipped as equivalent to one searched
+ * {@code volatile boolean}: _stopped - whether the deadline has passed
+ * {@code long}: _deadline - the {@code System.nanoTime()} at which the search stops
+ * {@code int}: _depth - the depth of the last completed search
+ * {@code int}: _value - the value of the best action at that depth
+ * {@code long}: _elapsed - how long the last search took, in nanoseconds
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class ParallelSearcher implements Closeable {
+
+	/**
+	 * The most threads a searcher may have.
+	 */
+	public static final int MAX_THREADS = 64;
+
+	private final ForkJoinPool _pool;
+	private final ThreadLocal<Searcher> _searchers;
+	private EndgameSolver _endgame;
+	private OpeningCache _openings;
+	private final int[] _actions;
+	private final int[] _groups;
+	private final AtomicLong _best;
+	private final LongAdder _nodes;
+	private final LongAdder _pruned;
+	private Position _root;
+	private volatile boolean _stopped;
+	private long _deadline;
+	private int _depth;
+	private int _value;
+	private long _elapsed;
+
+	/**
+	 * Creates a searcher with the specified number of threads.
+	 *
+	 * @param evaluators	supplies the evaluator of each thread (evaluators need not be thread-safe)
+	 * @param threads		the number of threads (1 to {@code MAX_THREADS})
+	 */
+	public ParallelSearcher(Supplier<Evaluator> evaluators, int threads) {
+		if (threads < 1 || threads > MAX_THREADS) {
+			throw new IllegalArgumentException("The threads must be between 1 and " + MAX_THREADS + ".");
+		}
+		_pool = new ForkJoinPool(threads);
+		_searchers = ThreadLocal.withInitial(() -> new Searcher(evaluators.get()));
+		_actions = new int[ActionGenerator.MAX_ACTIONS];
+		_groups = new int[ActionGenerator.ROTATIONS * Board.SHIFTS + 1];
+		_best = new AtomicLong();
+		_nodes = new LongAdder();
+		_pruned = new LongAdder();
+	}
+
+	/**
+	 * Sets the cache of openings to play at the start of a game instead of searching.
+	 * @param openings - the cache, which may be shared with other searchers, or null for none
+	 */
+	public void setOpenings(OpeningCache openings) {
+		_openings = openings;
+	}
+
+	/**
+	 * Returns the number of threads searching.
+	 * @return the thread count
+	 */
+	public int getThreads() {
+		return _pool.getParallelism();
+	}
+
+	/**
+	 * Chooses an action for the current seat of the specified position, searching as deep as the
+	 * specified budget allows.
+	 *
+	 * @param position		the position, which is left unchanged
+	 * @param budgetMillis	the time the search may take
+	 * @return				the action (see {@code ActionGenerator})
+	 */
+	public int search(Position position, long budgetMillis) {
+		return search(position, budgetMillis, Searcher.MAX_DEPTH);
+	}
+
+	/**
+	 * Chooses an action for the current seat of the specified position, searching as deep as the
+	 * specified budget allows but no deeper than the specified depth.
+	 *
+	 * @param position		the position, which is left unchanged
+	 * @param budgetMillis	the time the search may take
+	 * @param maxDepth		the deepest search, in turns (1 to {@code Searcher.MAX_DEPTH})
+	 * @return				the action (see {@code ActionGenerator})
+	 */
+	public int search(Position position, long budgetMillis, int maxDepth) {
+		if (maxDepth < 1 || maxDepth > Searcher.MAX_DEPTH) {
+			throw new IllegalArgumentException("The depth must be between 1 and " + Searcher.MAX_DEPTH + ".");
+		}
+		if (position.getNextToken() > 25) {
+			throw new IllegalArgumentException("The game is over.");
+		}
+		long start = System.nanoTime();
+		_deadline = start + budgetMillis * 1000000;
+		_stopped = false;
+		_nodes.reset();
+		_pruned.reset();
+		_depth = 0;
+		OpeningCache.Opening opening = _openings == null ? null : _openings.get(position);
+		if (opening != null) {
+			_depth = opening.getDepth();
+			_value = opening.getValue();
+			_elapsed = System.nanoTime() - start;
+			return opening.getAction();
+		}
+		_root = new Position(position);
+		ActionGenerator generator = new ActionGenerator();
+		int count = generator.generate(position, _actions);
+		_pruned.add(generator.getPruned());
+		if (EndgameSolver.isEndgame(position)) {
+			if (_endgame == null) {
+				_endgame = new EndgameSolver();
+			}
+			int outcome = Searcher.solve(_endgame, position, budgetMillis, _endgame.getGeneration());
+			if (outcome == EndgameSolver.WIN) {
+				_depth = _endgame.getTurns();
+				_value = Searcher.WIN;
+				_nodes.add(_endgame.getNodes());
+				_elapsed = System.nanoTime() - start;
+				return _endgame.getAction();
+			}
+			if (outcome == EndgameSolver.UNKNOWN) {
+				count = _endgame.prune(_actions, count);
+			}
+		}
+		int groups = group(count);
+		int best = 0;
+		for (int depth = 1; depth <= maxDepth && !_stopped; depth++) {
+			int first = groupOf(best, groups);
+			_best.set(pack(-Searcher.INFINITY, best));
+			_pool.invoke(new SplitTask(first, first + 1, -1, depth));
+			if (!_stopped) {
+				_pool.invoke(new SplitTask(0, groups, first, depth));
+			}
+			long found = _best.get();
+			if (!_stopped || _depth == 0) {
+				best = (int) found;
+			}
+			if (!_stopped) {
+				_value = (int) (found >> 32);
+				_depth = depth;
+			}
+		}
+		_elapsed = System.nanoTime() - start;
+		return _actions[best];
+	}
+
+	/**
+	 * Divides the root actions into groups of the same rotation and shift.
+	 *
+	 * @return the number of groups
+	 */
+	private int group(int count) {
+		int groups = 0;
+		for (int index = 0; index < count; index++) {
+			if (index == 0 || _actions[index] >>> 6 != _actions[index - 1] >>> 6) {
+				_groups[groups++] = index;
+			}
+		}
+		_groups[groups] = count;
+		return groups;
+	}
+
+	private int groupOf(int index, int groups) {
+		int group = 0;
+		while (group + 1 < groups && _groups[group + 1] <= index) {
+			group++;
+		}
+		return group;
+	}
+
+	/**
+	 * Packs a value and an action index into a {@code long} which orders by value.
+	 */
+	private static long pack(int value, int index) {
+		return (long) value << 32 | index;
+	}
+
+	/**
+	 * Searches the root actions of the specified group to the specified depth on the current thread,
+	 * raising the shared best value whenever one beats it.
+	 */
+	private void searchGroup(int group, int depth) {
+		Searcher searcher = _searchers.get();
+		Position child = new Position(_root);
+		for (int index = _groups[group]; index < _groups[group + 1] && !_stopped; index++) {
+			child.copyFrom(_root);
+			ActionGenerator.play(child, _actions[index]);
+			int alpha = (int) (_best.get() >> 32);
+			int value = searcher.searchFrom(child, _root.getCurrentSeat(), depth - 1, alpha, Searcher.INFINITY, _deadline);
+			_nodes.add(searcher.getNodes());
+			_pruned.add(searcher.getPruned());
+			if (searcher.isStopped()) {
+				_stopped = true;
+				return;
+			}
+			long found;
+			do {
+				found = _best.get();
+			} while (value > (int) (found >> 32) && !_best.compareAndSet(found, pack(value, index)));
+		}
+	}
+
+	/**
+	 * The task searching a range of groups, split in halves until each task holds one group; the
+	 * group already searched first at this depth, if any, is skipped.
+	 */
+	private class SplitTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int _from;
+		private final int _to;
+		private final int _skip;
+		private final int _depth;
+
+		SplitTask(int from, int to, int skip, int depth) {
+			_from = from;
+			_to = to;
+			_skip = skip;
+			_depth = depth;
+		}
+
+		@Override
+		protected void compute() {
+			if (_to - _from > 1) {
+				int middle = (_from + _to) >>> 1;
+				invokeAll(new SplitTask(_from, middle, _skip, _depth), new SplitTask(middle, _to, _skip, _depth));
+			} else if (_from != _skip && !_stopped) {
+				searchGroup(_from, _depth);
+			}
+		}
+	}
+
+	/**
+	 * Returns the depth of the last completed search of the last call to {@code search()}.
+	 * @return the depth in turns, or 0 if not even one turn could be searched
+	 */
+	public int getDepth() {
+		return _depth;
+	}
+
+	/**
+	 * Returns the value of the action chosen by the last call to {@code search()}.
+	 * @return the value for the seat which searched
+	 */
+	public int getValue() {
+		return _value;
+	}
+
+	/**
+	 * Returns the number of positions the last call to {@code search()} searched, over every thread.
+	 * @return the node count
+	 */
+	public long getNodes() {
+		return _nodes.sum();
+	}
+
+	/**
+	 * Returns the number of actions the last call to {@code search()} skipped as equivalent to one
+	 * it searched, over every thread (see {@code ActionGenerator.getPruned()}).
+	 * @return the pruned action count
+	 */
+	public long getPruned() {
+		return _pruned.sum();
+	}
+
+	/**
+	 * Returns how long the last call to {@code search()} took.
+	 * @return the time in milliseconds
+	 */
+	public double getElapsedMillis() {
+		return _elapsed / 1e6;
+	}
+
+	/**
+	 * Returns the search speed of the last call to {@code search()}, over every thread.
+	 * @return the positions searched per second
+	 */
+	public long getNodesPerSecond() {
+		return _elapsed == 0 ? 0 : getNodes() * 1000000000L / _elapsed;
+	}
+
+	/**
+	 * Stops the worker threads.
+	 */
+	@Override
+	public void close() {
+		_pool.shutdownNow();
+	}
+}
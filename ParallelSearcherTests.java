@@ -0,0 +1,60 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import code.ActionGenerator;
+import code.Game;
+import code.LinearEvaluator;
+import code.ParallelSearcher;
+import code.Position;
+import code.Searcher;
+
+public class ParallelSearcherTests {
+
+	private static final String[] PLAYERS = {"Ann", "Bob", "Cat"};
+
+	@Test public void matchesSequentialTest() {
+		Searcher sequential = new Searcher(new LinearEvaluator());
+		for (int threads : new int[] {1, 4}) {
+			try (ParallelSearcher parallel = new ParallelSearcher(LinearEvaluator::new, threads)) {
+				assertEquals(threads, parallel.getThreads());
+				for (long seed = 0; seed < 3; seed++) {
+					Position position = Position.of(new Game(PLAYERS, seed));
+					sequential.search(position, 60000, 2);
+					int action = parallel.search(position, 60000, 2);
+					assertEquals(2, parallel.getDepth());
+					assertEquals(sequential.getValue(), parallel.getValue());
+					assertTrue(parallel.getNodes() > 0);
+
+					Position played = new Position(position);
+					ActionGenerator.play(played, action);
+					assertEquals(position, Position.of(new Game(PLAYERS, seed)));
+					assertTrue(position.isLegalShift(ActionGenerator.shiftOf(action)));
+				}
+			}
+		}
+	}
+
+	@Test public void budgetTest() {
+		try (ParallelSearcher parallel = new ParallelSearcher(LinearEvaluator::new, 4)) {
+			Position position = Position.of(new Game(new String[] {"Ann", "Bob", "Cat", "Dan"}, 7));
+			long start = System.nanoTime();
+			parallel.search(position, 200);
+			long millis = (System.nanoTime() - start) / 1000000;
+			assertTrue("took " + millis + " ms", millis < 400);
+			assertTrue(parallel.getDepth() >= 1);
+			assertTrue(parallel.getNodesPerSecond() > 0);
+			long pruned = parallel.getPruned();
+			assertTrue(pruned > 0);
+			parallel.search(position, 1, 1);
+			assertTrue(parallel.getPruned() < pruned);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class) public void threadsTest() {
+		new ParallelSearcher(LinearEvaluator::new, ParallelSearcher.MAX_THREADS + 1);
+	}
+}
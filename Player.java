@@ -74,12 +74,25 @@ public class Player {
 //		if (_currentTile.hasToken()) {
 //			_currentTile.getToken().makeVisible();
 //		}
-		if (_currentTile.hasToken() && _currentTile.getToken().getNumber() == Token.getNextToken()) {
-			_tokens.add(_currentTile.takeToken());
+		if (takeToken(Token.getNextToken())) {
 			Token.incrementNextToken();
 			return true;
 		} else return false;
 	}
+	
+	/**
+	 * Attempts to collect the token on currentTile if it is the specified next token, without touching
+	 * the shared next token in {@code Token}; used by {@code Game}, which keeps its own next token so that
+	 * several games can be played at once.
+	 * @param nextToken - the number of the token which may currently be collected
+	 * @return true if the player collected the token, false if token is uncollectable
+	 */
+	public boolean takeToken(int nextToken) {
+		if (_currentTile.hasToken() && _currentTile.getToken().getNumber() == nextToken) {
+			_tokens.add(_currentTile.takeToken());
+			return true;
+		} else return false;
+	}
 	/**
 	 * Tells if the player object has at least one token.
 	 * Returns true if the player has at least 1 token, false if the player has no tokens
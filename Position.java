@@ -0,0 +1,480 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * <h1>Position</h1>
+ * A compact, primitive snapshot of a Master Labyrinth game: the paths of every tile on the board
+ * and of the free tile, where every token and player is, whose turn it is and which token may be
+ * collected next. Unlike {@code Board} it holds no {@code Tile} or {@code Player} objects, so it
+ * is cheap to copy, compare, encode and search.
+ * <p>
+ * Cells are numbered <code> row * 7 + column </code>; the free tile is stored as cell
+ * {@code FREE}. A tile's paths are stored as a mask with one bit per direction, bit
+ * <code> 1 << Tile.NORTH </code> for a path up and so on.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code byte[]}: _masks - the path mask of every cell, and of the free tile at index {@code FREE}
+ * {@code byte[]}: _tokens - the number of the token on every cell (and the free tile), or 0 for none
+ * {@code byte[]}: _players - the cell each seat's player is on
+ * {@code int[]}: _scores - the total value of the tokens each seat has collected
+ * {@code int}: _playerCount - the number of players in the game
+ * {@code int}: _currentSeat - the seat whose turn it is
+ * {@code int}: _nextToken - the number of the token which may be collected next (26 once the game is over)
+ * {@code int}: _lastShift - the shift code of the previous turn's shift, or -1 if there was none
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class Position {
+
+	/**
+	 * The number of cells on the board.
+	 */
+	public static final int CELLS = 49;
+	/**
+	 * The cell index used for the free tile.
+	 */
+	public static final int FREE = 49;
+	/**
+	 * The cell each seat starts on, as placed by {@code Board}.
+	 */
+	public static final int[] START_CELLS = { 2 * 7 + 2, 4 * 7 + 4, 2 * 7 + 4, 4 * 7 + 2 };
+
+	private final byte[] _masks;
+	private final byte[] _tokens;
+	private final byte[] _players;
+	private final int[] _scores;
+	private int _playerCount;
+	private int _currentSeat;
+	private int _nextToken;
+	private int _lastShift;
+
+	/**
+	 * Creates an empty position (no paths, no tokens) for the specified number of players, each
+	 * on their starting cell, at the start of the first player's first turn.
+	 *
+	 * @param playerCount	the number of players (1-4)
+	 */
+	public Position(int playerCount) {
+		_masks = new byte[CELLS + 1];
+		_tokens = new byte[CELLS + 1];
+		_players = new byte[4];
+		_scores = new int[4];
+		_playerCount = playerCount;
+		for (int seat = 0; seat < 4; seat++) {
+			_players[seat] = (byte) START_CELLS[seat];
+		}
+		_currentSeat = 0;
+		_nextToken = 1;
+		_lastShift = -1;
+	}
+
+	/**
+	 * Creates a copy of the specified position.
+	 *
+	 * @param other	the position to be copied
+	 */
+	public Position(Position other) {
+		this(other._playerCount);
+		copyFrom(other);
+	}
+
+	/**
+	 * Overwrites this position with the specified position, without allocating.
+	 *
+	 * @param other	the position to be copied
+	 */
+	public void copyFrom(Position other) {
+		System.arraycopy(other._masks, 0, _masks, 0, _masks.length);
+		System.arraycopy(other._tokens, 0, _tokens, 0, _tokens.length);
+		System.arraycopy(other._players, 0, _players, 0, _players.length);
+		System.arraycopy(other._scores, 0, _scores, 0, _scores.length);
+		_playerCount = other._playerCount;
+		_currentSeat = other._currentSeat;
+		_nextToken = other._nextToken;
+		_lastShift = other._lastShift;
+	}
+
+	/**
+	 * Creates the starting position of a game on the specified (unplayed) board.
+	 *
+	 * @param board			the board
+	 * @param playerCount	the number of players
+	 * @return				the position
+	 */
+	public static Position of(Board board, int playerCount) {
+		Position position = new Position(playerCount);
+		position.readBoard(board);
+		return position;
+	}
+
+	/**
+	 * Creates a snapshot of the current state of the specified game.
+	 *
+	 * @param game	the game
+	 * @return		the position
+	 */
+	public static Position of(Game game) {
+		ArrayList<Player> players = game.getPlayerList();
+		Position position = new Position(players.size());
+		position.readBoard(game.getBoard());
+		for (Player player : players) {
+			Tile tile = player.getTile();
+			position._players[player.getNumber()] = (byte) cell(tile.getRow(), tile.getColumn());
+			position._scores[player.getNumber()] = player.calculateScore();
+		}
+		position._currentSeat = game.getCurrentPlayer().getNumber();
+		position._nextToken = game.getNextToken();
+		position._lastShift = game.getLastShift();
+		return position;
+	}
+
+	/**
+	 * Copies the paths and tokens of every tile on the specified board (and of its free tile).
+	 */
+	private void readBoard(Board board) {
+		for (int cell = 0; cell < CELLS; cell++) {
+			readTile(cell, board.getTile(cell / 7, cell % 7));
+		}
+		readTile(FREE, board.getFreeTile());
+	}
+
+	private void readTile(int cell, Tile tile) {
+		_masks[cell] = (byte) maskOf(tile);
+		_tokens[cell] = (byte) (tile.hasToken() ? tile.getToken().getNumber() : 0);
+	}
+
+	/**
+	 * Returns the path mask of the specified tile.
+	 *
+	 * @param tile	the tile
+	 * @return		a mask with bit <code> 1 << Tile.NORTH </code> set if the tile has a path up, and so on
+	 */
+	public static int maskOf(Tile tile) {
+		int mask = 0;
+		if (tile.getNorth()) {
+			mask |= 1 << Tile.NORTH;
+		}
+		if (tile.getWest()) {
+			mask |= 1 << Tile.WEST;
+		}
+		if (tile.getSouth()) {
+			mask |= 1 << Tile.SOUTH;
+		}
+		if (tile.getEast()) {
+			mask |= 1 << Tile.EAST;
+		}
+		return mask;
+	}
+
+	/**
+	 * Returns the path mask of a tile after it is rotated clockwise once, exactly like
+	 * {@code Tile.rotateClockwise()}: the path up becomes a path right, and so on.
+	 *
+	 * @param mask	the path mask
+	 * @return		the rotated path mask
+	 */
+	public static int rotateMask(int mask) {
+		return ((mask >> 1) | (mask << 3)) & 0xF;
+	}
+
+	/**
+	 * Returns the number of distinct orientations of a tile: 2 for a straight tile, which looks
+	 * the same turned upside down, 4 for an L or T tile. Rotating a tile clockwise fewer times than
+	 * this gives every orientation it has exactly once.
+	 *
+	 * @param mask	the path mask of the tile
+	 * @return		the number of distinct orientations (1, 2 or 4)
+	 */
+	public static int orientations(int mask) {
+		int once = rotateMask(mask);
+		if (once == mask) {
+			return 1;
+		}
+		return rotateMask(once) == mask ? 2 : 4;
+	}
+
+	/**
+	 * Returns the index of the cell at the specified row and column.
+	 *
+	 * @param row		the row (0-6)
+	 * @param column	the column (0-6)
+	 * @return			the cell index
+	 */
+	public static int cell(int row, int column) {
+		return row * 7 + column;
+	}
+
+	/**
+	 * Returns the cell next to the specified cell in the specified direction.
+	 *
+	 * @param cell		the cell
+	 * @param direction	{@code Tile.NORTH}, {@code Tile.WEST}, {@code Tile.SOUTH} or {@code Tile.EAST}
+	 * @return			the neighbouring cell, or -1 if it would be off the board
+	 */
+	public static int neighbour(int cell, int direction) {
+		switch (direction) {
+		case Tile.NORTH:
+			return cell >= 7 ? cell - 7 : -1;
+		case Tile.SOUTH:
+			return cell < CELLS - 7 ? cell + 7 : -1;
+		case Tile.WEST:
+			return cell % 7 != 0 ? cell - 1 : -1;
+		case Tile.EAST:
+			return cell % 7 != 6 ? cell + 1 : -1;
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns whether a player on the specified cell may step to its neighbour in the specified
+	 * direction, ie. the neighbour exists and both tiles have matching paths (see
+	 * {@code Tile.checkAdjTile()}).
+	 *
+	 * @param cell		the cell the player is on
+	 * @param direction	the direction of the step
+	 * @return			true if the step is possible
+	 */
+	public boolean canStep(int cell, int direction) {
+		int next = neighbour(cell, direction);
+		return next >= 0 && (_masks[cell] & (1 << direction)) != 0 && (_masks[next] & (1 << ((direction + 2) & 3))) != 0;
+	}
+
+	/**
+	 * Rotates the free tile clockwise once.
+	 */
+	public void rotateFreeTile() {
+		_masks[FREE] = (byte) rotateMask(_masks[FREE]);
+	}
+
+	/**
+	 * Returns whether the rules allow the shift with the specified code, ie. it does not undo the
+	 * previous turn's shift.
+	 *
+	 * @param code	the shift code
+	 * @return		true if the shift is allowed
+	 */
+	public boolean isLegalShift(int code) {
+		return _lastShift < 0 || code != Board.reverseShift(_lastShift);
+	}
+
+	/**
+	 * Shifts the board with the specified shift code exactly like {@code Board.shift()}: the tile
+	 * pushed off becomes the free tile, the free tile is inserted at the other end, players on the
+	 * tile pushed off wrap around onto the inserted tile, and so does a token. The shift becomes
+	 * {@code _lastShift}; legality is not checked.
+	 *
+	 * @param code	the shift code
+	 */
+	public void shift(int code) {
+		int direction = Board.shiftDirection(code);
+		int index = Board.shiftIndex(code);
+		int first;
+		int stride;
+		switch (direction) {
+		case Tile.NORTH:
+			first = cell(0, index);
+			stride = 7;
+			break;
+		case Tile.SOUTH:
+			first = cell(6, index);
+			stride = -7;
+			break;
+		case Tile.WEST:
+			first = cell(index, 0);
+			stride = 1;
+			break;
+		default:
+			first = cell(index, 6);
+			stride = -1;
+			break;
+		}
+		int last = first + 6 * stride;
+
+		byte pushedMask = _masks[first];
+		byte pushedToken = _tokens[first];
+		for (int cell = first; cell != last; cell += stride) {
+			_masks[cell] = _masks[cell + stride];
+			_tokens[cell] = _tokens[cell + stride];
+		}
+		_masks[last] = _masks[FREE];
+		_tokens[last] = pushedToken != 0 ? pushedToken : _tokens[FREE];
+		_masks[FREE] = pushedMask;
+		_tokens[FREE] = 0;
+
+		for (int seat = 0; seat < _playerCount; seat++) {
+			int cell = _players[seat];
+			_players[seat] = (byte) Board.shiftCell(code, cell / 7, cell % 7);
+		}
+		_lastShift = code;
+	}
+
+	/**
+	 * Returns the path mask of the specified cell.
+	 * @param cell - the cell, or {@code FREE} for the free tile
+	 * @return the path mask
+	 */
+	public int getMask(int cell) {
+		return _masks[cell];
+	}
+
+	/**
+	 * Sets the path mask of the specified cell.
+	 * @param cell - the cell, or {@code FREE} for the free tile
+	 * @param mask - the path mask
+	 */
+	public void setMask(int cell, int mask) {
+		_masks[cell] = (byte) mask;
+	}
+
+	/**
+	 * Returns the number of the token on the specified cell.
+	 * @param cell - the cell, or {@code FREE} for the free tile
+	 * @return the token number, or 0 if there is none
+	 */
+	public int getToken(int cell) {
+		return _tokens[cell];
+	}
+
+	/**
+	 * Sets the number of the token on the specified cell.
+	 * @param cell - the cell, or {@code FREE} for the free tile
+	 * @param token - the token number, or 0 for none
+	 */
+	public void setToken(int cell, int token) {
+		_tokens[cell] = (byte) token;
+	}
+
+	/**
+	 * Returns the cell the specified token is on.
+	 * @param token - the token number
+	 * @return the cell, {@code FREE} if it is on the free tile, or -1 if it has been collected
+	 */
+	public int findToken(int token) {
+		for (int cell = 0; cell <= FREE; cell++) {
+			if (_tokens[cell] == token) {
+				return cell;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the cell the specified seat's player is on.
+	 * @param seat - the seat
+	 * @return the cell
+	 */
+	public int getPlayerCell(int seat) {
+		return _players[seat];
+	}
+
+	/**
+	 * Sets the cell the specified seat's player is on.
+	 * @param seat - the seat
+	 * @param cell - the cell
+	 */
+	public void setPlayerCell(int seat, int cell) {
+		_players[seat] = (byte) cell;
+	}
+
+	/**
+	 * Returns the total value of the tokens the specified seat has collected.
+	 * @param seat - the seat
+	 * @return the score
+	 */
+	public int getScore(int seat) {
+		return _scores[seat];
+	}
+
+	/**
+	 * Sets the total value of the tokens the specified seat has collected.
+	 * @param seat - the seat
+	 * @param score - the score
+	 */
+	public void setScore(int seat, int score) {
+		_scores[seat] = score;
+	}
+
+	/**
+	 * Returns the number of players in the game.
+	 * @return the number of players
+	 */
+	public int getPlayerCount() {
+		return _playerCount;
+	}
+
+	/**
+	 * Returns the seat whose turn it is.
+	 * @return the current seat
+	 */
+	public int getCurrentSeat() {
+		return _currentSeat;
+	}
+
+	/**
+	 * Sets the seat whose turn it is.
+	 * @param seat - the current seat
+	 */
+	public void setCurrentSeat(int seat) {
+		_currentSeat = seat;
+	}
+
+	/**
+	 * Returns the number of the token which may be collected next.
+	 * @return the next token (26 once the game is over)
+	 */
+	public int getNextToken() {
+		return _nextToken;
+	}
+
+	/**
+	 * Sets the number of the token which may be collected next.
+	 * @param token - the next token
+	 */
+	public void setNextToken(int token) {
+		_nextToken = token;
+	}
+
+	/**
+	 * Returns the shift code of the previous turn's shift.
+	 * @return the shift code, or -1 if there was none
+	 */
+	public int getLastShift() {
+		return _lastShift;
+	}
+
+	/**
+	 * Sets the shift code of the previous turn's shift.
+	 * @param code - the shift code, or -1 for none
+	 */
+	public void setLastShift(int code) {
+		_lastShift = code;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof Position)) {
+			return false;
+		}
+		Position position = (Position) other;
+		return _playerCount == position._playerCount && _currentSeat == position._currentSeat
+				&& _nextToken == position._nextToken && _lastShift == position._lastShift
+				&& Arrays.equals(_masks, position._masks) && Arrays.equals(_tokens, position._tokens)
+				&& Arrays.equals(Arrays.copyOf(_players, _playerCount), Arrays.copyOf(position._players, _playerCount))
+				&& Arrays.equals(_scores, position._scores);
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = Arrays.hashCode(_masks);
+		hash = hash * 31 + Arrays.hashCode(_tokens);
+		for (int seat = 0; seat < _playerCount; seat++) {
+			hash = hash * 31 + _players[seat];
+		}
+		return ((hash * 31 + _currentSeat) * 31 + _nextToken) * 31 + _lastShift;
+	}
+}
@@ -0,0 +1,382 @@
+package code;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * <h1>PositionCodec</h1>
+ * A canonical, bit-packed binary encoding of a {@code Position} in {@code BYTES} bytes, plus bulk
+ * writers and readers for long sequences of positions.
+ * <p>
+ * The 16 fixed tiles never move or turn, so only the 33 shiftable cells and the free tile are
+ * stored, 4 bits of path mask each. Every one of the 21 tokens is stored as the 6 bit cell it is
+ * on ({@code Position.FREE} for the free tile, 63 once collected), followed by the player count,
+ * the 6 bit cell of every seat, the current seat, the next token, the last shift (15 for none) and
+ * an 8 bit score per seat: 331 bits in all. Positions which are {@code equals()} always encode to
+ * the same bytes, so encodings can be compared, hashed and deduplicated directly.
+ * <p>
+ * A position is rebuilt into a playable {@code Board} with {@code new Board(Position, ArrayList)}.
+ * <p>
+ * A bulk stream starts with a 6 byte header (the magic number and a format version). Each position
+ * is then stored as a 6 byte bitmap of the encoded bytes which differ from the previous position's
+ * encoding, followed by just those bytes, so runs of similar positions (consecutive positions of a
+ * game, or siblings in a search) usually cost a handful of bytes each.
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class PositionCodec {
+
+	/**
+	 * The length in bytes of an encoded position.
+	 */
+	public static final int BYTES = 42;
+	/**
+	 * The magic number ("MLPS") at the start of a bulk position stream.
+	 */
+	public static final int MAGIC = 0x4D4C5053;
+	/**
+	 * The bulk stream format version written by this class.
+	 */
+	public static final int VERSION = 1;
+
+	private static final int[] TOKENS = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 25 };
+	private static final int COLLECTED = 63;
+	private static final int NO_SHIFT = 15;
+	private static final int BITMAP_BYTES = (BYTES + 7) / 8;
+	private static final Position FIXED = Position.of(new Board(null, 0L), 1);
+
+	private PositionCodec() {
+	}
+
+	/**
+	 * Returns whether the specified cell holds one of the fixed tiles.
+	 */
+	private static boolean isFixed(int cell) {
+		return (cell / 7) % 2 == 0 && (cell % 7) % 2 == 0;
+	}
+
+	/**
+	 * Encodes the specified position into a new array.
+	 *
+	 * @param position	the position to be encoded
+	 * @return			the {@code BYTES} long encoding
+	 */
+	public static byte[] encode(Position position) {
+		byte[] bytes = new byte[BYTES];
+		encode(position, bytes, 0);
+		return bytes;
+	}
+
+	/**
+	 * Encodes the specified position into {@code BYTES} bytes of the specified array.
+	 *
+	 * @param position	the position to be encoded
+	 * @param bytes		the array the encoding is written to
+	 * @param offset	the index of the first byte to be written
+	 */
+	public static void encode(Position position, byte[] bytes, int offset) {
+		Arrays.fill(bytes, offset, offset + BYTES, (byte) 0);
+		int bit = 0;
+		for (int cell = 0; cell <= Position.FREE; cell++) {
+			if (cell == Position.FREE || !isFixed(cell)) {
+				bit = put(bytes, offset, bit, position.getMask(cell), 4);
+			}
+		}
+		for (int token : TOKENS) {
+			int cell = position.findToken(token);
+			bit = put(bytes, offset, bit, cell < 0 ? COLLECTED : cell, 6);
+		}
+		int playerCount = position.getPlayerCount();
+		bit = put(bytes, offset, bit, playerCount - 1, 2);
+		for (int seat = 0; seat < 4; seat++) {
+			bit = put(bytes, offset, bit, seat < playerCount ? position.getPlayerCell(seat) : Position.START_CELLS[seat], 6);
+		}
+		bit = put(bytes, offset, bit, position.getCurrentSeat(), 2);
+		bit = put(bytes, offset, bit, position.getNextToken(), 5);
+		bit = put(bytes, offset, bit, position.getLastShift() < 0 ? NO_SHIFT : position.getLastShift(), 4);
+		for (int seat = 0; seat < 4; seat++) {
+			bit = put(bytes, offset, bit, position.getScore(seat), 8);
+		}
+	}
+
+	/**
+	 * Decodes the position encoded in {@code BYTES} bytes of the specified array.
+	 *
+	 * @param bytes		the array holding the encoding
+	 * @param offset	the index of the first byte of the encoding
+	 * @return			the position
+	 * @throws IllegalArgumentException if the bytes are not a valid encoding
+	 */
+	public static Position decode(byte[] bytes, int offset) {
+		int playerCountBit = 34 * 4 + TOKENS.length * 6;
+		Position position = new Position(get(bytes, offset, playerCountBit, 2) + 1);
+		int bit = 0;
+		for (int cell = 0; cell <= Position.FREE; cell++) {
+			if (cell == Position.FREE || !isFixed(cell)) {
+				position.setMask(cell, get(bytes, offset, bit, 4));
+				bit += 4;
+			} else {
+				position.setMask(cell, FIXED.getMask(cell));
+			}
+		}
+		for (int token : TOKENS) {
+			int cell = get(bytes, offset, bit, 6);
+			bit += 6;
+			if (cell <= Position.FREE) {
+				position.setToken(cell, token);
+			} else if (cell != COLLECTED) {
+				throw new IllegalArgumentException("Invalid cell for token " + token + ".");
+			}
+		}
+		bit += 2;
+		for (int seat = 0; seat < 4; seat++) {
+			int cell = get(bytes, offset, bit, 6);
+			bit += 6;
+			if (cell >= Position.CELLS) {
+				throw new IllegalArgumentException("Invalid cell for seat " + seat + ".");
+			}
+			position.setPlayerCell(seat, cell);
+		}
+		position.setCurrentSeat(get(bytes, offset, bit, 2));
+		position.setNextToken(get(bytes, offset, bit + 2, 5));
+		int lastShift = get(bytes, offset, bit + 7, 4);
+		position.setLastShift(lastShift == NO_SHIFT ? -1 : lastShift);
+		bit += 11;
+		for (int seat = 0; seat < 4; seat++) {
+			position.setScore(seat, get(bytes, offset, bit, 8));
+			bit += 8;
+		}
+		return position;
+	}
+
+	/**
+	 * Returns a 64 bit hash of the encoding in {@code BYTES} bytes of the specified array, suitable
+	 * as a key for tables of positions.
+	 *
+	 * @param bytes		the array holding the encoding
+	 * @param offset	the index of the first byte of the encoding
+	 * @return			the hash
+	 */
+	public static long hash(byte[] bytes, int offset) {
+		long hash = 0xCBF29CE484222325L;
+		for (int index = offset; index < offset + BYTES; index++) {
+			hash = (hash ^ (bytes[index] & 0xFF)) * 0x100000001B3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		return hash ^ (hash >>> 33);
+	}
+
+	/**
+	 * Writes the low {@code width} bits of a value, least significant first, at the specified bit
+	 * of an encoding whose bytes are zero.
+	 *
+	 * @return the bit after the last one written
+	 */
+	private static int put(byte[] bytes, int offset, int bit, int value, int width) {
+		for (int done = 0; done < width;) {
+			int shift = bit & 7;
+			int count = Math.min(8 - shift, width - done);
+			bytes[offset + (bit >> 3)] |= ((value >>> done) & ((1 << count) - 1)) << shift;
+			bit += count;
+			done += count;
+		}
+		return bit;
+	}
+
+	/**
+	 * Reads a {@code width} bit value written by {@code put()} at the specified bit of an encoding.
+	 */
+	private static int get(byte[] bytes, int offset, int bit, int width) {
+		int value = 0;
+		for (int done = 0; done < width;) {
+			int shift = bit & 7;
+			int count = Math.min(8 - shift, width - done);
+			value |= ((bytes[offset + (bit >> 3)] & 0xFF) >>> shift & ((1 << count) - 1)) << done;
+			bit += count;
+			done += count;
+		}
+		return value;
+	}
+
+	/**
+	 * <h1>Writer</h1>
+	 * Writes a bulk stream of positions, each stored as the bytes of its encoding which differ
+	 * from the previous position's.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code DataOutputStream}: _out - the stream written to
+	 * {@code byte[]}: _previous - the encoding of the previous position (all zero at the start)
+	 * {@code byte[]}: _current - the encoding of the position being written
+	 * {@code byte[]}: _bitmap - the bitmap of changed bytes of the position being written
+	 */
+	public static class Writer implements Closeable {
+
+		private final DataOutputStream _out;
+		private byte[] _previous;
+		private byte[] _current;
+		private final byte[] _bitmap;
+
+		/**
+		 * Starts a bulk stream on the specified stream by writing the header.
+		 *
+		 * @param out	the stream the positions are written to
+		 * @throws IOException if the stream cannot be written
+		 */
+		public Writer(OutputStream out) throws IOException {
+			_out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+			_previous = new byte[BYTES];
+			_current = new byte[BYTES];
+			_bitmap = new byte[BITMAP_BYTES];
+			_out.writeInt(MAGIC);
+			_out.writeShort(VERSION);
+		}
+
+		/**
+		 * Appends a position to the stream.
+		 *
+		 * @param position	the position to be written
+		 * @throws IOException if the stream cannot be written
+		 */
+		public void write(Position position) throws IOException {
+			encode(position, _current, 0);
+			writeCurrent();
+		}
+
+		/**
+		 * Appends an already encoded position to the stream.
+		 *
+		 * @param bytes		the array holding the encoding
+		 * @param offset	the index of the first byte of the encoding
+		 * @throws IOException if the stream cannot be written
+		 */
+		public void write(byte[] bytes, int offset) throws IOException {
+			System.arraycopy(bytes, offset, _current, 0, BYTES);
+			writeCurrent();
+		}
+
+		private void writeCurrent() throws IOException {
+			Arrays.fill(_bitmap, (byte) 0);
+			for (int index = 0; index < BYTES; index++) {
+				if (_current[index] != _previous[index]) {
+					_bitmap[index >> 3] |= 1 << (index & 7);
+				}
+			}
+			_out.write(_bitmap);
+			for (int index = 0; index < BYTES; index++) {
+				if (_current[index] != _previous[index]) {
+					_out.write(_current[index]);
+				}
+			}
+			byte[] swap = _previous;
+			_previous = _current;
+			_current = swap;
+		}
+
+		/**
+		 * Writes any buffered positions to the underlying stream.
+		 * @throws IOException if the stream cannot be written
+		 */
+		public void flush() throws IOException {
+			_out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			_out.close();
+		}
+	}
+
+	/**
+	 * <h1>Reader</h1>
+	 * Reads a bulk stream of positions written by a {@code Writer}.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code DataInputStream}: _in - the stream read from
+	 * {@code byte[]}: _current - the encoding of the last position read
+	 * {@code byte[]}: _bitmap - the bitmap of changed bytes of the position being read
+	 */
+	public static class Reader implements Closeable {
+
+		private final DataInputStream _in;
+		private final byte[] _current;
+		private final byte[] _bitmap;
+
+		/**
+		 * Opens a bulk stream on the specified stream by checking the header.
+		 *
+		 * @param in	the stream the positions are read from
+		 * @throws IOException if the stream cannot be read or is not a bulk position stream
+		 */
+		public Reader(InputStream in) throws IOException {
+			_in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+			_current = new byte[BYTES];
+			_bitmap = new byte[BITMAP_BYTES];
+			if (_in.readInt() != MAGIC || _in.readShort() != VERSION) {
+				throw new IOException("Not a version " + VERSION + " position stream.");
+			}
+		}
+
+		/**
+		 * Reads the encoding of the next position into the specified array.
+		 *
+		 * @param bytes		the array the encoding is copied to
+		 * @param offset	the index of the first byte to be written
+		 * @return			false if the stream has no more positions
+		 * @throws IOException if the stream cannot be read or ends part-way through a position
+		 */
+		public boolean read(byte[] bytes, int offset) throws IOException {
+			int first = _in.read();
+			if (first < 0) {
+				return false;
+			}
+			_bitmap[0] = (byte) first;
+			_in.readFully(_bitmap, 1, BITMAP_BYTES - 1);
+			for (int index = 0; index < BYTES; index++) {
+				if ((_bitmap[index >> 3] & (1 << (index & 7))) != 0) {
+					int value = _in.read();
+					if (value < 0) {
+						throw new EOFException("Truncated position stream.");
+					}
+					_current[index] = (byte) value;
+				}
+			}
+			System.arraycopy(_current, 0, bytes, offset, BYTES);
+			return true;
+		}
+
+		/**
+		 * Reads the next position.
+		 *
+		 * @return the position, or null if the stream has no more positions
+		 * @throws IOException if the stream cannot be read or holds an invalid position
+		 */
+		public Position read() throws IOException {
+			byte[] bytes = new byte[BYTES];
+			if (!read(bytes, 0)) {
+				return null;
+			}
+			try {
+				return decode(bytes, 0);
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage(), e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			_in.close();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import code.Board;
+import code.Game;
+import code.Player;
+import code.Position;
+import code.PositionCodec;
+
+public class PositionCodecTests {
+
+	private static final String[] PLAYERS = {"p1", "p2", "p3"};
+
+	private Position playedPosition() {
+		Game game = new Game(PLAYERS, 5);
+		game.rotateFreeTileClockWise();
+		game.shiftBoard(Board.shiftCode(2, 3));
+		game.nextTurn();
+		return Position.of(game);
+	}
+
+	@Test public void roundTripTest() {
+		Position position = playedPosition();
+		byte[] bytes = PositionCodec.encode(position);
+		assertTrue(bytes.length < 64);
+		assertEquals(position, PositionCodec.decode(bytes, 0));
+		assertArrayEquals(bytes, PositionCodec.encode(PositionCodec.decode(bytes, 0)));
+	}
+
+	@Test public void boardTest() {
+		Position position = playedPosition();
+		ArrayList<Player> players = new ArrayList<Player>();
+		for (int seat = 0; seat < PLAYERS.length; seat++) {
+			players.add(new Player(PLAYERS[seat], seat, null));
+		}
+		Board board = new Board(position, players);
+		Position rebuilt = Position.of(board, PLAYERS.length);
+		for (int cell = 0; cell <= Position.FREE; cell++) {
+			assertEquals(position.getMask(cell), rebuilt.getMask(cell));
+			assertEquals(position.getToken(cell), rebuilt.getToken(cell));
+		}
+		assertEquals(Position.cell(players.get(1).getTile().getRow(), players.get(1).getTile().getColumn()), position.getPlayerCell(1));
+	}
+
+	@Test public void bulkTest() throws IOException {
+		Game game = new Game(PLAYERS, 9);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Position[] positions = new Position[20];
+		try (PositionCodec.Writer writer = new PositionCodec.Writer(bytes)) {
+			for (int index = 0; index < positions.length; index++) {
+				positions[index] = Position.of(game);
+				writer.write(positions[index]);
+				assertTrue(game.shiftBoard(index % Board.SHIFTS));
+				assertTrue(game.nextTurn());
+			}
+		}
+		assertTrue(bytes.size() < positions.length * PositionCodec.BYTES / 2);
+		try (PositionCodec.Reader reader = new PositionCodec.Reader(new ByteArrayInputStream(bytes.toByteArray()))) {
+			for (Position position : positions) {
+				assertEquals(position, reader.read());
+			}
+			assertTrue(reader.read() == null);
+		}
+	}
+}
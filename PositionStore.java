@@ -0,0 +1,409 @@
+package code;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * <h1>PositionStore</h1>
+ * A persistent table from position hashes (see {@code PositionCodec.hash()}) to evaluation data:
+ * a score, a visit count, the best shift and the search depth the score came from. It lets bots
+ * and analysis tools reuse work across threads, processes and restarts.
+ * <p>
+ * The table is a memory-mapped file of fixed capacity, using open addressing with linear probing.
+ * After a 16 byte header (magic number, format version, capacity and entry count) every slot is
+ * 16 bytes: the 64 bit key (0 for an empty slot) and the entry packed into one 64 bit value. Keys
+ * are only ever published with a release write after their value, and values are replaced with a
+ * single release write, so any number of threads can look entries up without locking and never
+ * see a torn entry. Inserts are applied in {@code Batch}es under a lock, which is also a file lock
+ * so that several processes can share one store.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code FileChannel}: _channel - the open table file
+ * {@code MappedByteBuffer}: _table - the whole file, mapped read-write
+ * {@code int}: _mask - the capacity of the table minus one
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class PositionStore implements Closeable {
+
+	/**
+	 * The magic number ("MLPD") at the start of a store file.
+	 */
+	public static final int MAGIC = 0x4D4C5044;
+	/**
+	 * The store format version written by this class.
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * The largest capacity a store can have, so that the file can be mapped as a single buffer.
+	 */
+	public static final int MAX_CAPACITY = 1 << 26;
+	/**
+	 * The fraction of slots which may be filled before inserts are refused.
+	 */
+	public static final double MAX_LOAD = 0.75;
+
+	private static final int HEADER_BYTES = 16;
+	private static final int SLOT_BYTES = 16;
+	private static final int CAPACITY_OFFSET = 8;
+	private static final int COUNT_OFFSET = 12;
+	private static final int MAX_VISITS = (1 << 20) - 1;
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private final FileChannel _channel;
+	private final MappedByteBuffer _table;
+	private final int _mask;
+
+	/**
+	 * Opens the store at the specified path.
+	 *
+	 * @param path	the store file
+	 * @throws IOException if the file cannot be read or is not a store
+	 */
+	public PositionStore(Path path) throws IOException {
+		_channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (_channel.size() < HEADER_BYTES) {
+				throw new IOException("Not a version " + VERSION + " position store.");
+			}
+			_table = _channel.map(FileChannel.MapMode.READ_WRITE, 0, _channel.size());
+			_table.order(ByteOrder.LITTLE_ENDIAN);
+			int capacity = _table.getInt(CAPACITY_OFFSET);
+			if (_table.getInt(0) != MAGIC || _table.getShort(4) != VERSION || Integer.bitCount(capacity) != 1
+					|| capacity > MAX_CAPACITY || _channel.size() != HEADER_BYTES + (long) capacity * SLOT_BYTES) {
+				throw new IOException("Not a version " + VERSION + " position store.");
+			}
+			_mask = capacity - 1;
+		} catch (IOException e) {
+			_channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates an empty store at the specified path, replacing any existing file, and opens it.
+	 *
+	 * @param path		the store file
+	 * @param capacity	the number of slots, a power of two no greater than {@code MAX_CAPACITY}
+	 * @return			the open store
+	 * @throws IOException if the file cannot be written
+	 */
+	public static PositionStore create(Path path, int capacity) throws IOException {
+		if (Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("Capacity must be a power of two no greater than " + MAX_CAPACITY + ".");
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putShort((short) VERSION).putShort((short) 0).putInt(capacity).putInt(0).flip();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			channel.truncate(HEADER_BYTES);
+			channel.write(ByteBuffer.allocate(1), HEADER_BYTES + (long) capacity * SLOT_BYTES - 1);
+		}
+		return new PositionStore(path);
+	}
+
+	/**
+	 * Opens the store at the specified path, creating an empty one with the specified capacity if
+	 * there is no file there yet.
+	 *
+	 * @param path		the store file
+	 * @param capacity	the number of slots of a new store
+	 * @return			the open store
+	 * @throws IOException if the file cannot be read or written, or is not a store
+	 */
+	public static PositionStore open(Path path, int capacity) throws IOException {
+		return Files.exists(path) ? new PositionStore(path) : create(path, capacity);
+	}
+
+	/**
+	 * Returns the number of slots in the table.
+	 * @return the capacity
+	 */
+	public int capacity() {
+		return _mask + 1;
+	}
+
+	/**
+	 * Returns the number of entries in the table.
+	 * @return the entry count
+	 */
+	public int size() {
+		return _table.getInt(COUNT_OFFSET);
+	}
+
+	/**
+	 * Returns the key under which the specified position is stored.
+	 *
+	 * @param position	the position
+	 * @return			the key, which is never 0
+	 */
+	public static long key(Position position) {
+		long hash = PositionCodec.hash(PositionCodec.encode(position), 0);
+		return hash == 0 ? 1 : hash;
+	}
+
+	/**
+	 * Looks up the entry stored for the specified position.
+	 *
+	 * @param position	the position
+	 * @return			the entry, or null if there is none
+	 */
+	public Entry get(Position position) {
+		return get(key(position));
+	}
+
+	/**
+	 * Looks up the entry stored under the specified key. Safe to call from any number of threads,
+	 * concurrently with inserts.
+	 *
+	 * @param key	the key (not 0)
+	 * @return		the entry, or null if there is none
+	 */
+	public Entry get(long key) {
+		int slot = (int) key & _mask;
+		while (true) {
+			int offset = HEADER_BYTES + slot * SLOT_BYTES;
+			long stored = (long) LONGS.getAcquire(_table, offset);
+			if (stored == 0) {
+				return null;
+			}
+			if (stored == key) {
+				return new Entry((long) LONGS.getAcquire(_table, offset + 8));
+			}
+			slot = (slot + 1) & _mask;
+		}
+	}
+
+	/**
+	 * Applies every insert in the specified batch to the table and empties the batch. When the
+	 * key is already present the visit counts are added, and the score, best shift and depth are
+	 * replaced unless the stored entry came from a deeper search.
+	 *
+	 * @param batch	the inserts to be applied
+	 * @throws IOException if the file cannot be locked
+	 * @throws IllegalStateException if the table could become more than {@code MAX_LOAD} full, in
+	 *         which case nothing is inserted
+	 */
+	public synchronized void insert(Batch batch) throws IOException {
+		FileLock lock = _channel.lock();
+		try {
+			int count = size();
+			if (count + batch._size > MAX_LOAD * capacity()) {
+				throw new IllegalStateException("Position store is full.");
+			}
+			for (int index = 0; index < batch._size; index++) {
+				long key = batch._keys[index];
+				long value = batch._values[index];
+				int slot = (int) key & _mask;
+				while (true) {
+					int offset = HEADER_BYTES + slot * SLOT_BYTES;
+					long stored = (long) LONGS.getAcquire(_table, offset);
+					if (stored == 0) {
+						LONGS.setRelease(_table, offset + 8, value);
+						LONGS.setRelease(_table, offset, key);
+						count++;
+						break;
+					}
+					if (stored == key) {
+						long old = (long) LONGS.getAcquire(_table, offset + 8);
+						LONGS.setRelease(_table, offset + 8, merge(old, value));
+						break;
+					}
+					slot = (slot + 1) & _mask;
+				}
+			}
+			_table.putInt(COUNT_OFFSET, count);
+		} finally {
+			lock.release();
+		}
+		batch.clear();
+	}
+
+	/**
+	 * Returns the packed entry stored when the packed entry {@code value} is inserted over {@code old}.
+	 */
+	private static long merge(long old, long value) {
+		int visits = Math.min(MAX_VISITS, visits(old) + visits(value));
+		long kept = depth(value) >= depth(old) ? value : old;
+		return (kept & ~((long) MAX_VISITS << 32)) | ((long) visits << 32);
+	}
+
+	private static int visits(long value) {
+		return (int) (value >>> 32) & MAX_VISITS;
+	}
+
+	private static int depth(long value) {
+		return (int) (value >>> 56);
+	}
+
+	/**
+	 * Packs an entry into the 64 bit value stored in a slot.
+	 */
+	private static long pack(int score, int visits, int bestShift, int depth) {
+		if (depth < 0 || depth > 255 || bestShift < -1 || bestShift >= Board.SHIFTS) {
+			throw new IllegalArgumentException("Depth must be 0-255 and the best shift a shift code or -1.");
+		}
+		return (score & 0xFFFFFFFFL) | ((long) Math.min(MAX_VISITS, Math.max(0, visits)) << 32)
+				| ((long) (bestShift & 0xF) << 52) | ((long) depth << 56);
+	}
+
+	/**
+	 * Writes every change to the table through to the file.
+	 */
+	public void force() {
+		_table.force();
+	}
+
+	/**
+	 * Writes every change to the table through to the file and closes it. Entries returned before
+	 * closing remain valid.
+	 */
+	@Override
+	public void close() throws IOException {
+		force();
+		_channel.close();
+	}
+
+	/**
+	 * <h1>Entry</h1>
+	 * An immutable copy of the evaluation data stored for one position.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code long}: _value - the packed entry: score, visits, best shift (15 for none) and depth
+	 */
+	public static class Entry {
+
+		private final long _value;
+
+		private Entry(long value) {
+			_value = value;
+		}
+
+		/**
+		 * Returns the score of the position, from the point of view of the seat to move.
+		 * @return the score
+		 */
+		public int getScore() {
+			return (int) _value;
+		}
+
+		/**
+		 * Returns the number of times the position was visited, saturating at about a million.
+		 * @return the visit count
+		 */
+		public int getVisits() {
+			return visits(_value);
+		}
+
+		/**
+		 * Returns the best shift found for the position.
+		 * @return the shift code, or -1 if none was recorded
+		 */
+		public int getBestShift() {
+			int shift = (int) (_value >>> 52) & 0xF;
+			return shift == 0xF ? -1 : shift;
+		}
+
+		/**
+		 * Returns the depth of the search the score came from.
+		 * @return the depth
+		 */
+		public int getDepth() {
+			return depth(_value);
+		}
+	}
+
+	/**
+	 * <h1>Batch</h1>
+	 * A buffer of inserts to be applied to a store at once by {@code PositionStore.insert()}. Not
+	 * thread-safe; each thread should fill its own batch.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code long[]}: _keys - the key of every insert
+	 * {@code long[]}: _values - the packed entry of every insert
+	 * {@code int}: _size - the number of inserts in the batch
+	 */
+	public static class Batch {
+
+		private long[] _keys;
+		private long[] _values;
+		private int _size;
+
+		/**
+		 * Creates an empty batch.
+		 */
+		public Batch() {
+			_keys = new long[64];
+			_values = new long[64];
+			_size = 0;
+		}
+
+		/**
+		 * Adds an insert for the specified position.
+		 *
+		 * @param position	the position
+		 * @param score		the score of the position
+		 * @param visits	the number of visits to be added
+		 * @param bestShift	the best shift code, or -1 for none
+		 * @param depth		the search depth (0-255)
+		 */
+		public void add(Position position, int score, int visits, int bestShift, int depth) {
+			add(key(position), score, visits, bestShift, depth);
+		}
+
+		/**
+		 * Adds an insert under the specified key.
+		 *
+		 * @param key		the key (not 0)
+		 * @param score		the score of the position
+		 * @param visits	the number of visits to be added
+		 * @param bestShift	the best shift code, or -1 for none
+		 * @param depth		the search depth (0-255)
+		 */
+		public void add(long key, int score, int visits, int bestShift, int depth) {
+			if (key == 0) {
+				throw new IllegalArgumentException("Key 0 is reserved for empty slots.");
+			}
+			if (_size == _keys.length) {
+				_keys = Arrays.copyOf(_keys, _size * 2);
+				_values = Arrays.copyOf(_values, _size * 2);
+			}
+			_keys[_size] = key;
+			_values[_size] = pack(score, visits, bestShift, depth);
+			_size++;
+		}
+
+		/**
+		 * Returns the number of inserts in the batch.
+		 * @return the size
+		 */
+		public int size() {
+			return _size;
+		}
+
+		/**
+		 * Removes every insert from the batch.
+		 */
+		public void clear() {
+			_size = 0;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import code.Board;
+import code.Position;
+import code.PositionStore;
+
+public class PositionStoreTests {
+
+	@Test public void insertAndReopenTest() throws IOException {
+		Path path = Files.createTempFile("positions", ".mlpd");
+		Position position = Position.of(new Board(null, 3), 2);
+		try (PositionStore store = PositionStore.create(path, 1 << 10)) {
+			assertTrue(store.get(position) == null);
+			PositionStore.Batch batch = new PositionStore.Batch();
+			batch.add(position, -12, 3, 7, 4);
+			store.insert(batch);
+			assertEquals(0, batch.size());
+			batch.add(position, 5, 2, 1, 2);
+			store.insert(batch);
+			assertEquals(1, store.size());
+		}
+		try (PositionStore store = PositionStore.open(path, 1 << 4)) {
+			assertEquals(1 << 10, store.capacity());
+			PositionStore.Entry entry = store.get(position);
+			assertEquals(-12, entry.getScore());
+			assertEquals(5, entry.getVisits());
+			assertEquals(7, entry.getBestShift());
+			assertEquals(4, entry.getDepth());
+		}
+		Files.delete(path);
+	}
+
+	@Test public void concurrentLookupTest() throws IOException {
+		Path path = Files.createTempFile("positions", ".mlpd");
+		try (PositionStore store = PositionStore.create(path, 1 << 12)) {
+			PositionStore.Batch batch = new PositionStore.Batch();
+			for (long key = 1; key <= 2000; key++) {
+				batch.add(key * 0x9E3779B97F4A7C15L, (int) key, 1, -1, 1);
+			}
+			store.insert(batch);
+			assertEquals(2000, store.size());
+			assertTrue(IntStream.rangeClosed(1, 2000).parallel()
+					.allMatch(key -> store.get(key * 0x9E3779B97F4A7C15L).getScore() == key));
+			assertEquals(-1, store.get(0x9E3779B97F4A7C15L).getBestShift());
+		}
+		Files.delete(path);
+	}
+
+	@Test(expected = IllegalStateException.class) public void fullTest() throws IOException {
+		Path path = Files.createTempFile("positions", ".mlpd");
+		try (PositionStore store = PositionStore.create(path, 4)) {
+			PositionStore.Batch batch = new PositionStore.Batch();
+			for (long key = 1; key <= 4; key++) {
+				batch.add(key, 0, 1, -1, 0);
+			}
+			store.insert(batch);
+		} finally {
+			Files.delete(path);
+		}
+	}
+}
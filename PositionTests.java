@@ -0,0 +1,56 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import code.Board;
+import code.Game;
+import code.Position;
+import code.Tile;
+
+public class PositionTests {
+
+	private static final String[] PLAYERS = {"p1", "p2", "p3", "p4"};
+
+	@Test public void shiftMatchesBoardTest() {
+		for (int code = 0; code < Board.SHIFTS; code++) {
+			Game game = new Game(PLAYERS, code);
+			Position position = Position.of(game);
+			game.rotateFreeTileClockWise();
+			position.rotateFreeTile();
+			assertTrue(game.shiftBoard(code));
+			position.shift(code);
+			assertEquals(Position.of(game), position);
+		}
+	}
+
+	@Test public void rotateMaskTest() {
+		Tile tile = new Tile(true, false, true, false, 0, 0);
+		int mask = Position.maskOf(tile);
+		for (int turn = 0; turn < 4; turn++) {
+			tile.rotateClockwise();
+			mask = Position.rotateMask(mask);
+			assertEquals(Position.maskOf(tile), mask);
+		}
+	}
+
+	@Test public void canStepTest() {
+		Position position = new Position(1);
+		position.setMask(Position.cell(2, 2), 1 << Tile.SOUTH);
+		position.setMask(Position.cell(3, 2), 1 << Tile.NORTH);
+		assertTrue(position.canStep(Position.cell(2, 2), Tile.SOUTH));
+		assertTrue(position.canStep(Position.cell(3, 2), Tile.NORTH));
+		assertTrue(!position.canStep(Position.cell(2, 2), Tile.EAST));
+		assertTrue(!position.canStep(Position.cell(0, 0), Tile.NORTH));
+	}
+
+	@Test public void reverseShiftTest() {
+		Position position = new Position(2);
+		position.shift(Board.shiftCode(Tile.EAST, 3));
+		assertTrue(!position.isLegalShift(Board.shiftCode(Tile.WEST, 3)));
+		assertTrue(position.isLegalShift(Board.shiftCode(Tile.EAST, 3)));
+		assertTrue(position.isLegalShift(Board.shiftCode(Tile.WEST, 1)));
+	}
+}
@@ -0,0 +1,321 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <h1>Protocol</h1>
+ * The binary protocol spoken between game clients and a {@code GameServer}.
+ * <p>
+ * Every message is a frame of a 2 byte unsigned payload length, a 1 byte message type and the
+ * payload, all big-endian. Client requests map directly onto {@code Game} methods, and every
+ * request is answered, in order, by a {@code RESULT} frame holding the request type, a status
+ * and a value (the session id for {@code OPEN}, {@code JOIN} and {@code WATCH}, the game's turn
+ * number otherwise):
+ * <p>
+ * {@code OPEN}: long seed, byte player count, then a byte length and UTF-8 bytes per name - starts
+ * a session with a new seeded {@code Game}, whose seats all belong to the opening connection
+ * {@code JOIN}: int session id, byte seat - takes over a seat of an open session, unless another
+ * member has joined it ({@code REJECTED})
+ * {@code SHIFT}: byte shift code - {@code Game.shiftBoard()}, ie. {@code shiftBoardColumnUp()} etc.
+ * {@code ROTATE}: byte 1 for clockwise, 0 for counter-clockwise - {@code Game.rotateFreeTileClockWise()} etc.
+ * {@code MOVE}: byte row, byte column - {@code Game.move()}
+ * {@code COLLECT}: no payload - {@code Game.collectToken()}
+ * {@code END_TURN}: no payload - {@code Game.nextTurn()}
+ * {@code RESYNC}: no payload - asks for a {@code SYNC_SNAPSHOT} of the session's game
+ * {@code WATCH}: int session id - follows a session as a spectator, leaving any session played in;
+ * spectators are sent the same {@code SYNC_*} frames as members (see {@code SpectatorChannel})
+ * {@code QUEUE}: byte game size (2-4, or 0 for any), then a byte length and UTF-8 bytes of the
+ * player's name - waits in the {@code MatchmakingLobby} for a game, leaving any session played in;
+ * answered at once with the number of players waiting, then by {@code MATCHED} once placed
+ * <p>
+ * Every member of a session is also kept in sync with its game by {@code SYNC_*} frames, each
+ * starting with a 2 byte sequence number, which carry only what changed (see {@code SyncEncoder}
+ * and {@code BoardReplica}). They are sent before the {@code RESULT} of the request causing them:
+ * <p>
+ * {@code SYNC_SHIFT}: byte shift code, byte path mask of the new free tile
+ * {@code SYNC_ROTATE}: byte path mask of the rotated free tile
+ * {@code SYNC_MOVE}: byte seat, byte cell moved to
+ * {@code SYNC_TOKEN}: byte seat, byte token taken from the seat's cell, byte next token
+ * {@code SYNC_TURN}: byte seat whose turn it now is
+ * {@code SYNC_CHECKSUM}: int CRC-32 of the {@code PositionCodec} encoding of the game, sent every
+ * {@code SyncEncoder.CHECKSUM_INTERVAL} frames
+ * {@code SYNC_SNAPSHOT}: the {@code PositionCodec} encoding of the game, sent on {@code OPEN},
+ * {@code JOIN}, {@code WATCH} and {@code RESYNC}, and to spectators which fell behind; its
+ * sequence number is that of the next frame
+ * <p>
+ * {@code MATCHED}: int session id, byte seat - sent to a queued player when the lobby has placed
+ * them in a game, whose seat they now hold; a snapshot of the game follows
+ *
+ * @version S.3
+ * @since S.3
+ */
+public final class Protocol {
+
+	/**
+	 * The length in bytes of a frame header.
+	 */
+	public static final int HEADER_BYTES = 3;
+	/**
+	 * The largest payload a frame may have.
+	 */
+	public static final int MAX_PAYLOAD = 1 << 9;
+	/**
+	 * The largest length in bytes of a player name.
+	 */
+	public static final int MAX_NAME = 64;
+
+	public static final byte OPEN = 1;
+	public static final byte JOIN = 2;
+	public static final byte SHIFT = 3;
+	public static final byte ROTATE = 4;
+	public static final byte MOVE = 5;
+	public static final byte COLLECT = 6;
+	public static final byte END_TURN = 7;
+	public static final byte RESYNC = 8;
+	public static final byte WATCH = 9;
+	public static final byte QUEUE = 10;
+	public static final byte RESULT = 64;
+	public static final byte SYNC_SHIFT = 65;
+	public static final byte SYNC_ROTATE = 66;
+	public static final byte SYNC_MOVE = 67;
+	public static final byte SYNC_TOKEN = 68;
+	public static final byte SYNC_TURN = 69;
+	public static final byte SYNC_CHECKSUM = 70;
+	public static final byte SYNC_SNAPSHOT = 71;
+	public static final byte MATCHED = 72;
+
+	/**
+	 * The request was carried out.
+	 */
+	public static final byte OK = 0;
+	/**
+	 * The rules of the game did not allow the request.
+	 */
+	public static final byte REJECTED = 1;
+	/**
+	 * The request was for a seat the connection does not hold, or it is not that seat's turn.
+	 */
+	public static final byte NOT_YOUR_TURN = 2;
+	/**
+	 * There is no such session, or the connection has not opened or joined one.
+	 */
+	public static final byte NO_SESSION = 3;
+	/**
+	 * The request could not be parsed.
+	 */
+	public static final byte BAD_MESSAGE = 4;
+	/**
+	 * The request was not carried out because the client is sending requests too fast.
+	 */
+	public static final byte RATE_LIMITED = 5;
+
+	private Protocol() {
+	}
+
+	/**
+	 * Writes the header of a frame; the payload must follow and be exactly {@code length} bytes.
+	 *
+	 * @param out		the buffer the frame is written to
+	 * @param type		the message type
+	 * @param length	the length of the payload
+	 */
+	public static void putHeader(ByteBuffer out, byte type, int length) {
+		if (length > MAX_PAYLOAD) {
+			throw new IllegalArgumentException("Payload of " + length + " bytes is too long.");
+		}
+		out.putShort((short) length).put(type);
+	}
+
+	/**
+	 * Writes an {@code OPEN} request.
+	 *
+	 * @param out	the buffer the frame is written to
+	 * @param seed	the seed of the new game's board
+	 * @param names	the names of the players (1-4)
+	 */
+	public static void putOpen(ByteBuffer out, long seed, String[] names) {
+		if (names.length < 1 || names.length > 4) {
+			throw new IllegalArgumentException("A game has 1-4 players.");
+		}
+		byte[][] bytes = new byte[names.length][];
+		int length = 9;
+		for (int index = 0; index < names.length; index++) {
+			bytes[index] = nameBytes(names[index]);
+			length += 1 + bytes[index].length;
+		}
+		putHeader(out, OPEN, length);
+		out.putLong(seed).put((byte) names.length);
+		for (byte[] name : bytes) {
+			out.put((byte) name.length).put(name);
+		}
+	}
+
+	/**
+	 * Reads the player names of an {@code OPEN} payload positioned after the seed.
+	 *
+	 * @param payload	the payload
+	 * @return			the names
+	 * @throws IllegalArgumentException if the names are malformed
+	 */
+	public static String[] getNames(ByteBuffer payload) {
+		int count = payload.get();
+		if (count < 1 || count > 4) {
+			throw new IllegalArgumentException("A game has 1-4 players.");
+		}
+		String[] names = new String[count];
+		for (int index = 0; index < count; index++) {
+			names[index] = getName(payload);
+		}
+		return names;
+	}
+
+	/**
+	 * Reads a player name (a byte length and UTF-8 bytes).
+	 *
+	 * @param payload	the payload, positioned at the name
+	 * @return			the name
+	 * @throws IllegalArgumentException if the name is malformed
+	 */
+	public static String getName(ByteBuffer payload) {
+		int length = payload.get() & 0xFF;
+		if (length > MAX_NAME || length > payload.remaining()) {
+			throw new IllegalArgumentException("Invalid player name.");
+		}
+		String name = new String(payload.array(), payload.arrayOffset() + payload.position(), length, StandardCharsets.UTF_8);
+		payload.position(payload.position() + length);
+		return name;
+	}
+
+	private static byte[] nameBytes(String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > MAX_NAME) {
+			throw new IllegalArgumentException("Player name is too long.");
+		}
+		return bytes;
+	}
+
+	/**
+	 * Writes a {@code QUEUE} request.
+	 *
+	 * @param out		the buffer the frame is written to
+	 * @param players	the size of game wanted (2-4), or 0 for any
+	 * @param name		the player's name
+	 */
+	public static void putQueue(ByteBuffer out, int players, String name) {
+		byte[] bytes = nameBytes(name);
+		putHeader(out, QUEUE, 2 + bytes.length);
+		out.put((byte) players).put((byte) bytes.length).put(bytes);
+	}
+
+	/**
+	 * Writes a {@code MATCHED} frame.
+	 *
+	 * @param out		the buffer the frame is written to
+	 * @param session	the session id of the game
+	 * @param seat		the seat of the player
+	 */
+	public static void putMatched(ByteBuffer out, int session, int seat) {
+		putHeader(out, MATCHED, 5);
+		out.putInt(session).put((byte) seat);
+	}
+
+	/**
+	 * Writes a {@code JOIN} request.
+	 *
+	 * @param out		the buffer the frame is written to
+	 * @param session	the session id
+	 * @param seat		the seat to be taken over
+	 */
+	public static void putJoin(ByteBuffer out, int session, int seat) {
+		putHeader(out, JOIN, 5);
+		out.putInt(session).put((byte) seat);
+	}
+
+	/**
+	 * Writes a {@code WATCH} request.
+	 *
+	 * @param out		the buffer the frame is written to
+	 * @param session	the session id
+	 */
+	public static void putWatch(ByteBuffer out, int session) {
+		putHeader(out, WATCH, 4);
+		out.putInt(session);
+	}
+
+	/**
+	 * Writes a {@code SHIFT} request.
+	 *
+	 * @param out	the buffer the frame is written to
+	 * @param code	the shift code
+	 */
+	public static void putShift(ByteBuffer out, int code) {
+		putHeader(out, SHIFT, 1);
+		out.put((byte) code);
+	}
+
+	/**
+	 * Writes a {@code ROTATE} request.
+	 *
+	 * @param out		the buffer the frame is written to
+	 * @param clockwise	whether the free tile is rotated clockwise
+	 */
+	public static void putRotate(ByteBuffer out, boolean clockwise) {
+		putHeader(out, ROTATE, 1);
+		out.put((byte) (clockwise ? 1 : 0));
+	}
+
+	/**
+	 * Writes a {@code MOVE} request.
+	 *
+	 * @param out		the buffer the frame is written to
+	 * @param row		the row of the destination tile
+	 * @param column	the column of the destination tile
+	 */
+	public static void putMove(ByteBuffer out, int row, int column) {
+		putHeader(out, MOVE, 2);
+		out.put((byte) row).put((byte) column);
+	}
+
+	/**
+	 * Writes a request without a payload ({@code COLLECT}, {@code END_TURN} or {@code RESYNC}).
+	 *
+	 * @param out	the buffer the frame is written to
+	 * @param type	the message type
+	 */
+	public static void putEmpty(ByteBuffer out, byte type) {
+		putHeader(out, type, 0);
+	}
+
+	/**
+	 * Writes a {@code RESULT} frame.
+	 *
+	 * @param out		the buffer the frame is written to
+	 * @param request	the type of the request answered
+	 * @param status	the status of the request
+	 * @param value		the session id or turn number
+	 */
+	public static void putResult(ByteBuffer out, byte request, byte status, int value) {
+		putHeader(out, RESULT, 6);
+		out.put(request).put(status).putInt(value);
+	}
+
+	/**
+	 * Returns the total length of the frame at the start of the specified buffer (in read mode),
+	 * if the whole frame is in the buffer.
+	 *
+	 * @param in	the buffer, positioned at a frame header
+	 * @return		the frame length including its header, or -1 if the frame is incomplete
+	 * @throws IllegalArgumentException if the header declares a payload longer than {@code MAX_PAYLOAD}
+	 */
+	public static int frameLength(ByteBuffer in) {
+		if (in.remaining() < HEADER_BYTES) {
+			return -1;
+		}
+		int length = in.getShort(in.position()) & 0xFFFF;
+		if (length > MAX_PAYLOAD) {
+			throw new IllegalArgumentException("Payload of " + length + " bytes is too long.");
+		}
+		return in.remaining() < HEADER_BYTES + length ? -1 : HEADER_BYTES + length;
+	}
+}
@@ -0,0 +1,211 @@
+package code;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * <h1>ReplayVerifier</h1>
+ * Checks recorded games against the real rules. A record is verified by rebuilding its starting
+ * board from the recorded starting position, or regenerating it from the recorded seed if it has
+ * none, replaying every turn through a headless {@code Game} (so every
+ * rotation, shift, step, token pickup and end of turn goes through the same checks as in the GUI)
+ * and finally comparing the recorded winner and scores with {@code Player.calculateScore()}.
+ * <p>
+ * Each record is replayed on its own {@code Game}, which keeps its own next token, so whole
+ * archives are verified in parallel by {@link #rejected(GameArchive)}.
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class ReplayVerifier {
+
+	/**
+	 * Replays the specified record and reports the first rule it breaks, if any.
+	 *
+	 * @param record	the record to be verified
+	 * @return			the result of the verification
+	 */
+	public static Result verify(GameRecord record) {
+		if (record.getPlayerCount() < 1 || record.getPlayerCount() > 4) {
+			return new Result(record, -1, "Unsupported number of players: " + record.getPlayerCount());
+		}
+		Game game = record.getStart() != null ? new Game(record.getPlayers(), record.getStart())
+				: new Game(record.getPlayers(), record.getSeed());
+
+		int turnNumber = 0;
+		for (GameRecord.Turn turn : record.getTurns()) {
+			String error = replay(game, turn);
+			if (error != null) {
+				return new Result(record, turnNumber, error);
+			}
+			turnNumber++;
+		}
+
+		if (record.getWinner() >= 0 && !game.isGameOver()) {
+			return new Result(record, -1, "A winner is recorded but the game did not finish.");
+		}
+		int largestScore = 0;
+		int winner = -1;
+		for (Player player : game.getPlayerList()) {
+			int score = player.calculateScore();
+			if (score != record.getScores()[player.getNumber()]) {
+				return new Result(record, -1, "Seat " + player.getNumber() + " scored " + score + ", not " + record.getScores()[player.getNumber()] + ".");
+			}
+			if (score > largestScore) {
+				largestScore = score;
+				winner = player.getNumber();
+			}
+		}
+		if (game.isGameOver() && winner != record.getWinner()) {
+			return new Result(record, -1, "Seat " + winner + " won, not seat " + record.getWinner() + ".");
+		}
+		return new Result(record, -1, null);
+	}
+
+	/**
+	 * Plays one recorded turn on the specified game.
+	 *
+	 * @return a description of the broken rule, or null if the turn was legal
+	 */
+	private static String replay(Game game, GameRecord.Turn turn) {
+		if (game.isGameOver()) {
+			return "Turn played after the game ended.";
+		}
+		if (turn.getSeat() != game.getCurrentPlayer().getNumber()) {
+			return "Seat " + turn.getSeat() + " played out of turn.";
+		}
+		if (turn.getShift() < 0 || turn.getShift() >= Board.SHIFTS) {
+			return "Unknown shift " + turn.getShift() + ".";
+		}
+		for (int rotation = 0; rotation < turn.getRotation(); rotation++) {
+			game.rotateFreeTileClockWise();
+		}
+		if (!game.shiftBoard(turn.getShift())) {
+			return "Illegal shift " + turn.getShift() + ".";
+		}
+		for (byte step : turn.getPath()) {
+			Tile tile = game.getCurrentPlayer().getTile();
+			int row = tile.getRow();
+			int column = tile.getColumn();
+			switch (step) {
+			case Tile.NORTH:
+				row--;
+				break;
+			case Tile.SOUTH:
+				row++;
+				break;
+			case Tile.WEST:
+				column--;
+				break;
+			case Tile.EAST:
+				column++;
+				break;
+			}
+			if (row < 0 || row > 6 || column < 0 || column > 6 || !game.move(game.getTile(row, column))) {
+				return "Illegal step to (" + row + "," + column + ").";
+			}
+		}
+		int turnNumber = game.getTurnNumber();
+		if (turn.getToken() > 0) {
+			if (turn.getToken() != game.getNextToken() || !game.collectToken()) {
+				return "Token " + turn.getToken() + " could not be collected.";
+			}
+		} else {
+			game.nextTurn();
+		}
+		if (game.getTurnNumber() == turnNumber) {
+			return "The turn could not be ended.";
+		}
+		return null;
+	}
+
+	/**
+	 * Verifies every record in the specified archive in parallel and returns the ones which
+	 * fail verification.
+	 *
+	 * @param archive	the archive to be verified
+	 * @return			the results of the rejected records, in archive order
+	 */
+	public static List<Result> rejected(GameArchive archive) {
+		return archive.records(true).map(ReplayVerifier::verify).filter(result -> !result.isValid()).collect(Collectors.toList());
+	}
+
+	/**
+	 * Verifies the archive named by the first argument and prints every rejected record.
+	 * @param args - the path of the archive
+	 */
+	public static void main(String[] args) throws IOException {
+		try (GameArchive archive = new GameArchive(Paths.get(args[0]))) {
+			List<Result> rejected = rejected(archive);
+			for (Result result : rejected) {
+				System.out.println(result);
+			}
+			System.out.println(rejected.size() + " of " + archive.size() + " games rejected.");
+		}
+	}
+
+	/**
+	 * <h1>Result</h1>
+	 * The outcome of verifying one record.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code GameRecord}: _record - the record which was verified
+	 * {@code int}: _turn - the index of the first illegal turn, or -1 if the turns were legal
+	 * {@code String}: _reason - a description of the broken rule, or null if the record is valid
+	 */
+	public static class Result {
+
+		private GameRecord _record;
+		private int _turn;
+		private String _reason;
+
+		Result(GameRecord record, int turn, String reason) {
+			_record = record;
+			_turn = turn;
+			_reason = reason;
+		}
+
+		/**
+		 * Returns whether or not the record passed verification.
+		 * @return true if the record is valid
+		 */
+		public boolean isValid() {
+			return _reason == null;
+		}
+
+		/**
+		 * Returns the record which was verified.
+		 * @return the record
+		 */
+		public GameRecord getRecord() {
+			return _record;
+		}
+
+		/**
+		 * Returns the index of the first illegal turn.
+		 * @return the turn index, or -1 if every turn was legal
+		 */
+		public int getTurn() {
+			return _turn;
+		}
+
+		/**
+		 * Returns a description of the rule the record broke.
+		 * @return the reason, or null if the record is valid
+		 */
+		public String getReason() {
+			return _reason;
+		}
+
+		@Override
+		public String toString() {
+			if (isValid()) {
+				return "Game " + _record.getSeed() + ": valid";
+			}
+			return "Game " + _record.getSeed() + (_turn >= 0 ? ", turn " + _turn : "") + ": " + _reason;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import code.Board;
+import code.Game;
+import code.GameRecord;
+import code.Player;
+import code.Position;
+import code.ReplayVerifier;
+import code.Tile;
+
+public class ReplayVerifierTests {
+
+	private static final String[] PLAYERS = {"p1", "p2", "p3"};
+
+	/**
+	 * Plays some legal turns on a seeded headless game, stepping one tile in the first open
+	 * direction after each shift, and records them.
+	 */
+	private GameRecord playGame(long seed, int turns) {
+		Game game = new Game(PLAYERS, seed);
+		GameRecord record = new GameRecord(seed, PLAYERS);
+		for (int turn = 0; turn < turns; turn++) {
+			int seat = game.getCurrentPlayer().getNumber();
+			int shift = Board.shiftCode(Tile.WEST, 3);
+			game.rotateFreeTileClockWise();
+			assertTrue(game.shiftBoard(shift));
+			byte[] path = new byte[0];
+			Tile tile = game.getCurrentPlayer().getTile();
+			if (tile.getRow() < 6 && game.move(game.getTile(tile.getRow() + 1, tile.getColumn()))) {
+				path = new byte[] {Tile.SOUTH};
+			}
+			int token = 0;
+			if (game.collectToken()) {
+				token = game.getNextToken() - 1;
+			} else {
+				assertTrue(game.nextTurn());
+			}
+			record.addTurn(new GameRecord.Turn(seat, shift, 1, path, token));
+		}
+		for (Player player : game.getPlayerList()) {
+			record.setScore(player.getNumber(), player.calculateScore());
+		}
+		return record;
+	}
+
+	@Test public void seededBoardTest() {
+		Game first = new Game(PLAYERS, 42);
+		Game second = new Game(PLAYERS, 42);
+		for (int row = 0; row < 7; row++) {
+			for (int column = 0; column < 7; column++) {
+				Tile a = first.getTile(row, column);
+				Tile b = second.getTile(row, column);
+				assertTrue(a.getNorth() == b.getNorth() && a.getEast() == b.getEast() && a.getSouth() == b.getSouth() && a.getWest() == b.getWest());
+				assertTrue(a.hasToken() == b.hasToken());
+				if (a.hasToken()) {
+					assertEquals(a.getToken().getNumber(), b.getToken().getNumber());
+				}
+			}
+		}
+	}
+
+	@Test public void validRecordTest() {
+		GameRecord record = playGame(7, 12);
+		assertTrue(ReplayVerifier.verify(record).toString(), ReplayVerifier.verify(record).isValid());
+	}
+
+	@Test public void startTest() {
+		// a record whose board is only known by its starting position, not by its seed
+		GameRecord played = playGame(7, 12);
+		GameRecord record = new GameRecord(-1, PLAYERS);
+		for (GameRecord.Turn turn : played.getTurns()) {
+			record.addTurn(turn);
+		}
+		for (int seat = 0; seat < PLAYERS.length; seat++) {
+			record.setScore(seat, played.getScores()[seat]);
+		}
+		record.setStart(Position.of(new Game(PLAYERS, 7)));
+		assertTrue(ReplayVerifier.verify(record).toString(), ReplayVerifier.verify(record).isValid());
+	}
+
+	@Test public void reverseShiftTest() {
+		GameRecord record = new GameRecord(7, PLAYERS);
+		record.addTurn(new GameRecord.Turn(0, Board.shiftCode(Tile.NORTH, 1), 0, new byte[0], 0));
+		record.addTurn(new GameRecord.Turn(1, Board.shiftCode(Tile.SOUTH, 1), 0, new byte[0], 0));
+		ReplayVerifier.Result result = ReplayVerifier.verify(record);
+		assertFalse(result.isValid());
+		assertEquals(1, result.getTurn());
+	}
+
+	@Test public void wrongSeatTest() {
+		GameRecord record = new GameRecord(7, PLAYERS);
+		record.addTurn(new GameRecord.Turn(1, Board.shiftCode(Tile.NORTH, 1), 0, new byte[0], 0));
+		assertFalse(ReplayVerifier.verify(record).isValid());
+	}
+
+	@Test public void tamperedScoreTest() {
+		GameRecord record = playGame(7, 6);
+		record.setScore(2, 25);
+		assertFalse(ReplayVerifier.verify(record).isValid());
+	}
+}
@@ -0,0 +1,224 @@
+package code;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * <h1>SearchBenchmark</h1>
+ * Plays {@code Searcher.MAX_N} against {@code Searcher.PARANOID} in three and four player games
+ * and reports, for each strategy, how strong it played and how fast it searched.
+ * <p>
+ * Each game starts from a seeded board and is played for a fixed number of turns, every seat
+ * searching for the same budget per move; half the seats play each strategy, swapping from one
+ * game to the next so that neither keeps the better seats. Strength is the mean score per seat
+ * and the share of games in which one of the strategy's seats led (ties count for both); speed is
+ * the mean depth reached and nodes searched per second.
+ * <p>
+ * It then times {@code ParallelSearcher} searching the same four player positions to a fixed
+ * depth with 1, 2, 4 and so on up to {@code ParallelSearcher.MAX_THREADS} threads, and reports the
+ * speedup of each over one thread; the speedup cannot exceed the number of cores. Last it times
+ * {@code BatchEvaluator} evaluating every shift of those positions, all lanes together and one
+ * variant at a time, and {@code EndgameSolver} solving them with only the last two tokens left.
+ * Finally it times the first turn of seeded games searched for the budget per move and played
+ * from an {@code OpeningCache} filled beforehand, reopened from its file as in a later tournament.
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class SearchBenchmark {
+
+	private static final String[] NAMES = {"paranoid", "max-n"};
+	private static final long UNLIMITED_MILLIS = 24 * 60 * 60 * 1000;
+	private static final long ENDGAME_MILLIS = 5000;
+
+	private SearchBenchmark() {
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * @param args - the games per player count (default 6), the budget per move in milliseconds (default 50), the turns per game (default 24) and the depth of the speedup searches (default 2)
+	 * @throws IOException if the opening cache file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		long budget = args.length > 1 ? Long.parseLong(args[1]) : 50;
+		int turns = args.length > 2 ? Integer.parseInt(args[2]) : 24;
+		int depth = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+		for (int players = 3; players <= 4; players++) {
+			run(players, games, budget, turns);
+		}
+		speedup(depth);
+		batch();
+		endgame();
+		openings(budget);
+	}
+
+	private static void openings(long budget) throws IOException {
+		Position[] positions = new Position[8];
+		for (int game = 0; game < positions.length; game++) {
+			positions[game] = Position.of(new Game(new String[] {"Bot 0", "Bot 1", "Bot 2", "Bot 3"}, game));
+		}
+		Path file = Files.createTempFile("openings", ".cache");
+		Files.delete(file);
+		try {
+			try (OpeningCache cache = new OpeningCache(file, new LinearEvaluator(), budget)) {
+				for (Position position : positions) {
+					cache.precompute(position).join();
+				}
+			}
+			Searcher searcher = new Searcher(new LinearEvaluator());
+			double searched = 0;
+			for (Position position : positions) {
+				searcher.search(position, budget);
+				searched += searcher.getElapsedMillis();
+			}
+			try (OpeningCache cache = new OpeningCache(file, new LinearEvaluator(), budget)) {
+				searcher.setOpenings(cache);
+				double cached = 0;
+				for (Position position : positions) {
+					searcher.search(position, budget);
+					cached += searcher.getElapsedMillis();
+				}
+				System.out.printf("opening first turn %8.3f ms searched, %8.3f ms cached (%d openings)%n",
+						searched / positions.length, cached / positions.length, cache.size());
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static void endgame() {
+		String[] outcomes = {"loss", "unknown", "win"};
+		EndgameSolver solver = new EndgameSolver();
+		for (int players = 2; players <= 4; players++) {
+			for (int game = 0; game < 4; game++) {
+				String[] names = new String[players];
+				for (int seat = 0; seat < players; seat++) {
+					names[seat] = "Bot " + seat;
+				}
+				Position position = Position.of(new Game(names, game));
+				for (int cell = 0; cell <= Position.FREE; cell++) {
+					if (position.getToken(cell) < EndgameSolver.FIRST_TOKEN) {
+						position.setToken(cell, 0);
+					}
+				}
+				position.setNextToken(EndgameSolver.FIRST_TOKEN);
+				int outcome = solver.solve(position, ENDGAME_MILLIS);
+				System.out.printf("endgame %d players game %d %-7s in %d turns %,d nodes %8.1f ms%n", players, game,
+						outcomes[outcome - EndgameSolver.LOSS], solver.getTurns(), solver.getNodes(), solver.getElapsedMillis());
+			}
+		}
+	}
+
+	private static void batch() {
+		Position[] positions = new Position[4];
+		for (int game = 0; game < positions.length; game++) {
+			positions[game] = Position.of(new Game(new String[] {"Bot 0", "Bot 1", "Bot 2", "Bot 3"}, game));
+		}
+		BatchEvaluator evaluator = new BatchEvaluator();
+		long sum = 0;
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			for (int run = 0; run < 100000; run++) {
+				sum += evaluator.evaluate(positions[run & 3]);
+			}
+			long lanes = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int run = 0; run < 100000; run++) {
+				sum += evaluator.evaluateScalar(positions[run & 3]);
+			}
+			long scalar = System.nanoTime() - start;
+			System.out.printf("batch evaluation %,d ns per turn in lanes, %,d ns scalar, speedup %.2f%n", lanes / 100000,
+					scalar / 100000, (double) scalar / lanes);
+		}
+		if (sum == 0) {
+			System.out.println();
+		}
+	}
+
+	private static void speedup(int depth) {
+		Position[] positions = new Position[4];
+		for (int game = 0; game < positions.length; game++) {
+			positions[game] = Position.of(new Game(new String[] {"Bot 0", "Bot 1", "Bot 2", "Bot 3"}, game));
+		}
+		System.out.printf("speedup to depth %d on %d cores%n", depth, Runtime.getRuntime().availableProcessors());
+		double single = 0;
+		for (int threads = 1; threads <= ParallelSearcher.MAX_THREADS; threads *= 2) {
+			try (ParallelSearcher searcher = new ParallelSearcher(LinearEvaluator::new, threads)) {
+				for (Position position : positions) {
+					searcher.search(position, UNLIMITED_MILLIS, depth);
+				}
+				double millis = 0;
+				long nodes = 0;
+				for (Position position : positions) {
+					searcher.search(position, UNLIMITED_MILLIS, depth);
+					millis += searcher.getElapsedMillis();
+					nodes += searcher.getNodes();
+				}
+				if (threads == 1) {
+					single = millis;
+				}
+				System.out.printf("%2d threads %8.1f ms speedup %5.2f nodes/s %,d%n", threads, millis, single / millis,
+						(long) (nodes / (millis / 1000)));
+			}
+		}
+	}
+
+	private static void run(int players, int games, long budget, int turns) {
+		Searcher[] searchers = {new Searcher(new LinearEvaluator(), Searcher.PARANOID),
+				new Searcher(new LinearEvaluator(), Searcher.MAX_N)};
+		long[] score = new long[2];
+		int[] seats = new int[2];
+		int[] leads = new int[2];
+		long[] nodes = new long[2];
+		double[] millis = new double[2];
+		long[] depth = new long[2];
+		int[] moves = new int[2];
+		String[] names = new String[players];
+		for (int seat = 0; seat < players; seat++) {
+			names[seat] = "Bot " + seat;
+		}
+		for (int game = 0; game < games; game++) {
+			Position position = Position.of(new Game(names, game));
+			for (int turn = 0; turn < turns && position.getNextToken() <= 25; turn++) {
+				int strategy = strategyOf(position.getCurrentSeat(), game);
+				Searcher searcher = searchers[strategy];
+				int action = searcher.search(position, budget);
+				nodes[strategy] += searcher.getNodes();
+				millis[strategy] += searcher.getElapsedMillis();
+				depth[strategy] += searcher.getDepth();
+				moves[strategy]++;
+				ActionGenerator.play(position, action);
+			}
+			int best = 0;
+			for (int seat = 0; seat < players; seat++) {
+				best = Math.max(best, position.getScore(seat));
+			}
+			boolean[] led = new boolean[2];
+			for (int seat = 0; seat < players; seat++) {
+				int strategy = strategyOf(seat, game);
+				score[strategy] += position.getScore(seat);
+				seats[strategy]++;
+				led[strategy] |= position.getScore(seat) == best;
+			}
+			for (int strategy = 0; strategy < 2; strategy++) {
+				leads[strategy] += led[strategy] ? 1 : 0;
+			}
+		}
+		for (int strategy = 0; strategy < 2; strategy++) {
+			System.out.printf("%d players %-8s score/seat %5.1f led %3.0f%% depth %4.2f nodes/s %,d%n", players,
+					NAMES[strategy], (double) score[strategy] / Math.max(1, seats[strategy]),
+					100.0 * leads[strategy] / Math.max(1, games), (double) depth[strategy] / Math.max(1, moves[strategy]),
+					(long) (nodes[strategy] / Math.max(1e-9, millis[strategy] / 1000)));
+		}
+	}
+
+	/**
+	 * Returns the strategy of the specified seat in the specified game: max-n on even seats in even
+	 * games and on odd seats in odd games.
+	 */
+	private static int strategyOf(int seat, int game) {
+		return (seat + game) % 2 == 0 ? 1 : 0;
+	}
+}
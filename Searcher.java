@@ -0,0 +1,653 @@
+package code;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <h1>Searcher</h1>
+ * Chooses the current player's action in a {@code Position} within a fixed time budget, by
+ * iterative deepening: an alpha-beta search one turn deep, then two, and so on until the budget
+ * runs out, keeping the best action of the last depth searched to the end. A search cut short by
+ * the deadline is thrown away, so the answer is always that of a completed depth (or, if not even
+ * one turn could be searched, the best action found so far).
+ * <p>
+ * Turns follow the rules of {@code ActionGenerator.play()}. With three or four players there is
+ * no single right model of the opponents, so the searcher has two strategies:
+ * <ul>
+ * <li>{@code PARANOID} - leaves are scored by an {@code Evaluator} for the seat searching, which
+ * picks the action best for it while every other seat is taken to pick the action worst for it,
+ * as if they had all ganged up on it. This is a two-sided search, so alpha-beta pruning applies in
+ * full, and it is exact with two players</li>
+ * <li>{@code MAX_N} - every seat picks the action best for itself. Leaves are scored for every
+ * seat, and the values are turned into shares of {@code SHARE} (see {@code share()}); since the
+ * shares sum to at most {@code SHARE}, once the seat to move has found a share which leaves the
+ * seat before it no more than that seat already has, the rest of its actions are skipped (shallow
+ * pruning). Deeper pruning is not sound for max-n, so it searches far more nodes per depth</li>
+ * </ul>
+ * <p>
+ * With {@code PARANOID}, each depth after the first is searched with an aspiration window of
+ * {@code ASPIRATION_WINDOW} around the value of the depth before, which cuts off more of the tree
+ * when the value barely changes; a search falling outside the window is repeated with the window
+ * widened fourfold on that side. The action found best at the depth before is searched first. The clock is read once every
+ * {@code CHECK_INTERVAL} nodes, so stopping costs a few hundred nanoseconds at most.
+ * <p>
+ * Once the game reaches its last tokens (see {@code EndgameSolver.isEndgame()}), the searcher
+ * first probes the endgame with an {@code EndgameSolver} for one {@code ENDGAME_PROBE}th of its
+ * budget, or for up to half of it when only the last token is left and a proof is most likely. If
+ * the solver proves a win, its action is played with the value {@code WIN}; otherwise the root
+ * actions it proved to lose are dropped (unless every action loses) and the search proper runs for
+ * the rest of the budget. At the start of a game a {@code PARANOID} searcher plays the cached
+ * opening instead of searching, if it has been given an {@code OpeningCache} holding one (see
+ * {@code setOpenings()}); the cache is searched paranoid, so a {@code MAX_N} searcher ignores it.
+ * <p>
+ * A searcher keeps its own positions and action buffers, one per turn of depth, and allocates
+ * nothing once they exist; it is not thread-safe, and each thread should have its own.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code Evaluator}: _evaluator - scores the positions at the leaves
+ * {@code ActionGenerator}: _generator - lists the actions of every turn searched
+ * {@code Position[]}: _positions - the position at each turn of depth, the root at index 0
+ * {@code int[][]}: _actions - the actions of the position at each turn of depth
+ * {@code int}: _strategy - {@code PARANOID} or {@code MAX_N}
+ * {@code int[][]}: _vectors - the value of the position at each turn of depth for every seat, for max-n
+ * {@code int[]}: _leaf - the evaluations of a leaf for every seat, for max-n
+ * {@code volatile EndgameSolver}: _endgame - proves the outcome once the last tokens are reached, created on first use
+ * {@code OpeningCache}: _openings - the openings played without searching, or null
+ * {@code int}: _root - the seat searching
+ * {@code long}: _deadline - the {@code System.nanoTime()} at which the search stops
+ * {@code boolean}: _stopped - whether the deadline has passed
+ * {@code AtomicInteger}: _generation - the number of times another thread asked the search to stop
+ * {@code int}: _searchGeneration - the generation the search running was made in
+ * {@code long}: _nodes - the number of positions searched
+ * {@code long}: _prunedBefore - the count of the generator's pruned actions when the last search started
+ * {@code int}: _depth - the depth of the last completed search
+ * {@code int}: _value - the value of the best action at that depth
+ * {@code long}: _elapsed - how long the last search took, in nanoseconds
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class Searcher {
+
+	/**
+	 * The deepest search, in turns.
+	 */
+	public static final int MAX_DEPTH = 32;
+	/**
+	 * The half-width of the aspiration window around the value of the depth before.
+	 */
+	public static final int ASPIRATION_WINDOW = 40;
+	/**
+	 * The value of a finished game won outright; a lost game is worth its negation and a drawn one 0.
+	 */
+	public static final int WIN = 1 << 24;
+	/**
+	 * The number of nodes searched between two readings of the clock, a power of two.
+	 */
+	public static final int CHECK_INTERVAL = 1 << 10;
+	/**
+	 * The strategy taking every other seat to play against the seat searching.
+	 */
+	public static final int PARANOID = 0;
+	/**
+	 * The strategy taking every seat to play for itself.
+	 */
+	public static final int MAX_N = 1;
+	/**
+	 * The total of the shares of a position among the seats, for max-n.
+	 */
+	public static final int SHARE = 1 << 16;
+	/**
+	 * The part of the budget the {@code EndgameSolver} may take to probe an endgame, as a divisor.
+	 */
+	public static final int ENDGAME_PROBE = 16;
+
+	static final int INFINITY = Integer.MAX_VALUE / 2;
+
+	private final Evaluator _evaluator;
+	private final ActionGenerator _generator;
+	private final Position[] _positions;
+	private final int[][] _actions;
+	private final int _strategy;
+	private final int[][] _vectors;
+	private final int[] _leaf;
+	private volatile EndgameSolver _endgame;
+	private OpeningCache _openings;
+	private int _root;
+	private long _deadline;
+	private boolean _stopped;
+	private final AtomicInteger _generation;
+	private int _searchGeneration;
+	private long _nodes;
+	private long _prunedBefore;
+	private int _depth;
+	private int _value;
+	private long _elapsed;
+
+	/**
+	 * Creates a paranoid searcher.
+	 *
+	 * @param evaluator	scores the positions at the leaves
+	 */
+	public Searcher(Evaluator evaluator) {
+		this(evaluator, PARANOID);
+	}
+
+	/**
+	 * Creates a searcher.
+	 *
+	 * @param evaluator	scores the positions at the leaves
+	 * @param strategy	{@code PARANOID} or {@code MAX_N}
+	 */
+	public Searcher(Evaluator evaluator, int strategy) {
+		if (strategy != PARANOID && strategy != MAX_N) {
+			throw new IllegalArgumentException("Unknown strategy: " + strategy + ".");
+		}
+		_evaluator = evaluator;
+		_generation = new AtomicInteger();
+		_strategy = strategy;
+		_generator = new ActionGenerator();
+		_positions = new Position[MAX_DEPTH + 1];
+		_actions = new int[MAX_DEPTH + 1][];
+		_vectors = new int[MAX_DEPTH + 1][4];
+		_leaf = new int[4];
+	}
+
+	/**
+	 * Returns the strategy of this searcher.
+	 * @return {@code PARANOID} or {@code MAX_N}
+	 */
+	public int getStrategy() {
+		return _strategy;
+	}
+
+	/**
+	 * Sets the cache of openings to play at the start of a game instead of searching. Only a
+	 * {@code PARANOID} searcher plays them, as they were found by a paranoid search.
+	 * @param openings - the cache, which may be shared with other searchers, or null for none
+	 */
+	public void setOpenings(OpeningCache openings) {
+		_openings = openings;
+	}
+
+	/**
+	 * Chooses an action for the current seat of the specified position, searching as deep as the
+	 * specified budget allows.
+	 *
+	 * @param position		the position, which is left unchanged
+	 * @param budgetMillis	the time the search may take
+	 * @return				the action (see {@code ActionGenerator})
+	 */
+	public int search(Position position, long budgetMillis) {
+		return search(position, budgetMillis, MAX_DEPTH);
+	}
+
+	/**
+	 * Chooses an action for the current seat of the specified position, searching as deep as the
+	 * specified budget allows but no deeper than the specified depth.
+	 *
+	 * @param position		the position, which is left unchanged
+	 * @param budgetMillis	the time the search may take
+	 * @param maxDepth		the deepest search, in turns (1 to {@code MAX_DEPTH})
+	 * @return				the action (see {@code ActionGenerator})
+	 */
+	public int search(Position position, long budgetMillis, int maxDepth) {
+		return search(position, budgetMillis, maxDepth, getGeneration());
+	}
+
+	/**
+	 * Chooses an action for the current seat of the specified position as {@code search()} does,
+	 * but stops at once if {@code cancel()} has been called since {@code getGeneration()} returned
+	 * the specified generation, so that a cancellation made before the search starts is not lost.
+	 *
+	 * @param position		the position, which is left unchanged
+	 * @param budgetMillis	the time the search may take
+	 * @param maxDepth		the deepest search, in turns (1 to {@code MAX_DEPTH})
+	 * @param generation	the generation the request to search was made in
+	 * @return				the action (see {@code ActionGenerator})
+	 */
+	public int search(Position position, long budgetMillis, int maxDepth, int generation) {
+		if (maxDepth < 1 || maxDepth > MAX_DEPTH) {
+			throw new IllegalArgumentException("The depth must be between 1 and " + MAX_DEPTH + ".");
+		}
+		if (isOver(position)) {
+			throw new IllegalArgumentException("The game is over.");
+		}
+		long start = System.nanoTime();
+		_deadline = start + budgetMillis * 1000000;
+		_stopped = _generation.get() != generation;
+		_searchGeneration = generation;
+		_nodes = 0;
+		_prunedBefore = _generator.getPruned();
+		_depth = 0;
+		OpeningCache.Opening opening = _openings == null || _strategy != PARANOID ? null : _openings.get(position);
+		if (opening != null) {
+			_depth = opening.getDepth();
+			_value = opening.getValue();
+			_elapsed = System.nanoTime() - start;
+			return opening.getAction();
+		}
+		_root = position.getCurrentSeat();
+		position(0).copyFrom(position);
+		int[] actions = actions(0);
+		int count = _generator.generate(position, actions);
+		if (EndgameSolver.isEndgame(position)) {
+			EndgameSolver endgame = endgame();
+			// read before this searcher's generation: cancel() moves that one first, so one shows it
+			int solving = endgame.getGeneration();
+			_stopped = _generation.get() != generation;
+			int outcome = _stopped ? EndgameSolver.UNKNOWN : solve(endgame, position, budgetMillis, solving);
+			if (outcome == EndgameSolver.WIN) {
+				_depth = endgame.getTurns();
+				_value = WIN;
+				_nodes = endgame.getNodes();
+				_elapsed = System.nanoTime() - start;
+				return endgame.getAction();
+			}
+			if (outcome == EndgameSolver.UNKNOWN && !_stopped) {
+				count = endgame.prune(actions, count);
+			}
+		}
+		int best = actions[0];
+		int value = 0;
+		for (int depth = 1; depth <= maxDepth && !_stopped; depth++) {
+			if (_strategy == MAX_N) {
+				int found = searchRootMaxN(count, depth);
+				if (!_stopped) {
+					value = found;
+					best = actions[0];
+					_depth = depth;
+				}
+				continue;
+			}
+			int window = ASPIRATION_WINDOW;
+			int alpha = depth == 1 ? -INFINITY : value - window;
+			int beta = depth == 1 ? INFINITY : value + window;
+			while (true) {
+				int found = searchRoot(count, depth, alpha, beta);
+				if (_stopped) {
+					break;
+				}
+				if (found <= alpha) {
+					window *= 4;
+					alpha = Math.max(-INFINITY, value - window);
+				} else if (found >= beta) {
+					window *= 4;
+					beta = Math.min(INFINITY, value + window);
+				} else {
+					value = found;
+					best = actions[0];
+					_depth = depth;
+					break;
+				}
+			}
+		}
+		if (_depth == 0) {
+			best = actions[0];
+		}
+		_value = value;
+		_elapsed = System.nanoTime() - start;
+		return best;
+	}
+
+	/**
+	 * Asks the search running on another thread to stop as if its deadline had passed. It stops
+	 * within {@code CHECK_INTERVAL} nodes and returns the best action of the last completed depth.
+	 * A search started after this call is not affected, unless it was made with an earlier
+	 * generation.
+	 */
+	public void cancel() {
+		_generation.incrementAndGet();
+		EndgameSolver endgame = _endgame;
+		if (endgame != null) {
+			endgame.cancel();
+		}
+	}
+
+	/**
+	 * Returns the number of times {@code cancel()} has been called, to pass to {@code search()}.
+	 * @return the generation
+	 */
+	public int getGeneration() {
+		return _generation.get();
+	}
+
+	/**
+	 * Probes the endgame of the specified position with the specified solver for the share of the
+	 * specified budget given by {@code ENDGAME_PROBE}, and if only the last token is left and that
+	 * proved nothing, goes on solving for up to half the budget (the table keeps the probe's work).
+	 * Both stop if the solver is cancelled after the specified generation. Also used by
+	 * {@code ParallelSearcher}.
+	 *
+	 * @return the outcome, as {@code EndgameSolver.solve()}
+	 */
+	static int solve(EndgameSolver endgame, Position position, long budgetMillis, int generation) {
+		int outcome = endgame.solve(position, budgetMillis / ENDGAME_PROBE, EndgameSolver.MAX_TURNS, generation);
+		if (outcome == EndgameSolver.UNKNOWN && EndgameSolver.remaining(position) == 1) {
+			outcome = endgame.solve(position, budgetMillis / 2, EndgameSolver.MAX_TURNS, generation);
+		}
+		return outcome;
+	}
+
+	/**
+	 * Searches every root action to the specified depth, moving the best to the front of the root's
+	 * action list.
+	 *
+	 * @return the value of the best action, or a value outside the window if none is inside it
+	 */
+	private int searchRoot(int count, int depth, int alpha, int beta) {
+		int[] actions = _actions[0];
+		Position child = position(1);
+		int best = -INFINITY;
+		for (int index = 0; index < count; index++) {
+			child.copyFrom(_positions[0]);
+			ActionGenerator.play(child, actions[index]);
+			int value = alphaBeta(1, depth - 1, Math.max(alpha, best), beta);
+			if (_stopped) {
+				return best;
+			}
+			if (value > best) {
+				best = value;
+				int action = actions[index];
+				System.arraycopy(actions, 0, actions, 1, index);
+				actions[0] = action;
+				if (best >= beta) {
+					break;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Searches every root action to the specified depth with max-n, moving the best for the seat
+	 * searching to the front of the root's action list.
+	 *
+	 * @return the share of the best action for the seat searching
+	 */
+	private int searchRootMaxN(int count, int depth) {
+		int[] actions = _actions[0];
+		Position child = position(1);
+		int best = -1;
+		for (int index = 0; index < count; index++) {
+			child.copyFrom(_positions[0]);
+			ActionGenerator.play(child, actions[index]);
+			maxN(1, depth - 1, INFINITY);
+			if (_stopped) {
+				return best;
+			}
+			int value = _vectors[1][_root];
+			if (value > best) {
+				best = value;
+				int action = actions[index];
+				System.arraycopy(actions, 0, actions, 1, index);
+				actions[0] = action;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Searches the position at the specified ply to the specified depth with max-n, leaving the
+	 * shares of every seat in {@code _vectors[ply]}. The search stops early, with a vector no
+	 * better for the seat before than the one it already has, once the seat to move reaches the
+	 * specified bound.
+	 */
+	private void maxN(int ply, int depth, int bound) {
+		Position position = _positions[ply];
+		int[] vector = _vectors[ply];
+		if ((++_nodes & (CHECK_INTERVAL - 1)) == 0
+				&& (System.nanoTime() - _deadline > 0 || _generation.get() != _searchGeneration)) {
+			_stopped = true;
+		}
+		if (_stopped) {
+			return;
+		}
+		int players = position.getPlayerCount();
+		if (isOver(position)) {
+			for (int seat = 0; seat < players; seat++) {
+				_leaf[seat] = position.getScore(seat);
+			}
+			winners(_leaf, players, vector);
+			return;
+		}
+		if (depth == 0) {
+			_evaluator.evaluateAll(position, _leaf);
+			share(_leaf, players, vector);
+			return;
+		}
+		int[] actions = actions(ply);
+		int count = _generator.generate(position, actions);
+		Position child = position(ply + 1);
+		int[] result = _vectors[ply + 1];
+		int mover = position.getCurrentSeat();
+		int best = -1;
+		for (int index = 0; index < count; index++) {
+			child.copyFrom(position);
+			ActionGenerator.play(child, actions[index]);
+			maxN(ply + 1, depth - 1, players > 1 && best >= 0 ? SHARE - best : INFINITY);
+			if (_stopped) {
+				return;
+			}
+			if (result[mover] > best) {
+				best = result[mover];
+				System.arraycopy(result, 0, vector, 0, players);
+				if (best >= bound) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Turns the evaluations of a position for every seat into shares of {@code SHARE}: each seat's
+	 * share is its lead over the worst evaluated seat, in proportion to the total lead of every
+	 * seat. Every share is between 0 and {@code SHARE}, and they sum to at most {@code SHARE}; if
+	 * every seat is evaluated alike, every share is equal.
+	 *
+	 * @param values	the evaluation of every seat
+	 * @param players	the number of seats
+	 * @param shares	the array the shares are written to
+	 */
+	public static void share(int[] values, int players, int[] shares) {
+		int worst = Integer.MAX_VALUE;
+		for (int seat = 0; seat < players; seat++) {
+			worst = Math.min(worst, values[seat]);
+		}
+		long total = 0;
+		for (int seat = 0; seat < players; seat++) {
+			total += values[seat] - worst;
+		}
+		for (int seat = 0; seat < players; seat++) {
+			shares[seat] = total == 0 ? SHARE / players : (int) ((values[seat] - worst) * (long) SHARE / total);
+		}
+	}
+
+	/**
+	 * Turns the final scores of a finished game into shares of {@code SHARE}: split evenly among
+	 * the seats with the highest score, and 0 for the rest.
+	 */
+	private static void winners(int[] scores, int players, int[] shares) {
+		int best = Integer.MIN_VALUE;
+		int winners = 0;
+		for (int seat = 0; seat < players; seat++) {
+			if (scores[seat] > best) {
+				best = scores[seat];
+				winners = 1;
+			} else if (scores[seat] == best) {
+				winners++;
+			}
+		}
+		for (int seat = 0; seat < players; seat++) {
+			shares[seat] = scores[seat] == best ? SHARE / winners : 0;
+		}
+	}
+
+	/**
+	 * Searches the specified position to the specified depth for the specified seat with
+	 * {@code PARANOID}, stopping at the specified deadline; used by {@code ParallelSearcher} to
+	 * search one root action. The nodes searched are counted afresh.
+	 *
+	 * @return the value of the position for the seat, exact if it lies between alpha and beta and
+	 *         otherwise a bound on the side it fell; meaningless if {@code isStopped()}
+	 */
+	int searchFrom(Position position, int root, int depth, int alpha, int beta, long deadline) {
+		_root = root;
+		_deadline = deadline;
+		_stopped = false;
+		_searchGeneration = _generation.get();
+		_prunedBefore = _generator.getPruned();
+		_nodes = 0;
+		position(0).copyFrom(position);
+		return alphaBeta(0, depth, alpha, beta);
+	}
+
+	/**
+	 * Returns whether the last search was stopped by its deadline.
+	 */
+	boolean isStopped() {
+		return _stopped;
+	}
+
+	/**
+	 * Searches the position at the specified ply to the specified depth.
+	 *
+	 * @return the value of the position for the seat searching, exact if it lies between alpha and
+	 *         beta and otherwise a bound on the side it fell
+	 */
+	private int alphaBeta(int ply, int depth, int alpha, int beta) {
+		Position position = _positions[ply];
+		if ((++_nodes & (CHECK_INTERVAL - 1)) == 0
+				&& (System.nanoTime() - _deadline > 0 || _generation.get() != _searchGeneration)) {
+			_stopped = true;
+		}
+		if (_stopped) {
+			return 0;
+		}
+		if (isOver(position)) {
+			return outcome(position);
+		}
+		if (depth == 0) {
+			return _evaluator.evaluate(position, _root);
+		}
+		int[] actions = actions(ply);
+		int count = _generator.generate(position, actions);
+		Position child = position(ply + 1);
+		boolean maximizing = position.getCurrentSeat() == _root;
+		int best = maximizing ? -INFINITY : INFINITY;
+		for (int index = 0; index < count; index++) {
+			child.copyFrom(position);
+			ActionGenerator.play(child, actions[index]);
+			int value = alphaBeta(ply + 1, depth - 1, alpha, beta);
+			if (_stopped) {
+				return 0;
+			}
+			if (maximizing) {
+				best = Math.max(best, value);
+				alpha = Math.max(alpha, value);
+			} else {
+				best = Math.min(best, value);
+				beta = Math.min(beta, value);
+			}
+			if (alpha >= beta) {
+				break;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns whether every token of the specified position has been collected.
+	 */
+	private static boolean isOver(Position position) {
+		return position.getNextToken() > 25;
+	}
+
+	/**
+	 * Returns the value of a finished game for the seat searching: {@code WIN} if it has the highest
+	 * score alone, its negation if another seat has a higher score, and 0 for a tie.
+	 */
+	private int outcome(Position position) {
+		int own = position.getScore(_root);
+		int best = Integer.MIN_VALUE;
+		for (int seat = 0; seat < position.getPlayerCount(); seat++) {
+			if (seat != _root) {
+				best = Math.max(best, position.getScore(seat));
+			}
+		}
+		return own > best ? WIN : own < best ? -WIN : 0;
+	}
+
+	private EndgameSolver endgame() {
+		if (_endgame == null) {
+			_endgame = new EndgameSolver();
+		}
+		return _endgame;
+	}
+
+	private Position position(int ply) {
+		if (_positions[ply] == null) {
+			_positions[ply] = new Position(4);
+		}
+		return _positions[ply];
+	}
+
+	private int[] actions(int ply) {
+		if (_actions[ply] == null) {
+			_actions[ply] = new int[ActionGenerator.MAX_ACTIONS];
+		}
+		return _actions[ply];
+	}
+
+	/**
+	 * Returns the depth of the last completed search of the last call to {@code search()}.
+	 * @return the depth in turns, or 0 if not even one turn could be searched; the turns the
+	 *         {@code EndgameSolver} looked ahead if it proved a win, or those of the cached opening
+	 */
+	public int getDepth() {
+		return _depth;
+	}
+
+	/**
+	 * Returns the value of the action chosen by the last call to {@code search()}.
+	 * @return the value for the seat which searched: an evaluation with {@code PARANOID}, a share of
+	 *         {@code SHARE} with {@code MAX_N}, or {@code WIN} if the {@code EndgameSolver} proved a win;
+	 *         the value of the cached opening if one was played
+	 */
+	public int getValue() {
+		return _value;
+	}
+
+	/**
+	 * Returns the number of positions the last call to {@code search()} searched.
+	 * @return the node count
+	 */
+	public long getNodes() {
+		return _nodes;
+	}
+
+	/**
+	 * Returns the number of actions the last call to {@code search()} skipped as equivalent to one
+	 * it searched (see {@code ActionGenerator.getPruned()}).
+	 * @return the pruned action count
+	 */
+	public long getPruned() {
+		return _generator.getPruned() - _prunedBefore;
+	}
+
+	/**
+	 * Returns how long the last call to {@code search()} took.
+	 * @return the time in milliseconds
+	 */
+	public double getElapsedMillis() {
+		return _elapsed / 1e6;
+	}
+
+	/**
+	 * Returns the search speed of the last call to {@code search()}.
+	 * @return the positions searched per second
+	 */
+	public long getNodesPerSecond() {
+		return _elapsed == 0 ? 0 : _nodes * 1000000000L / _elapsed;
+	}
+}
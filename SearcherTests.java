@@ -0,0 +1,163 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import code.ActionGenerator;
+import code.Evaluator;
+import code.Game;
+import code.LinearEvaluator;
+import code.Position;
+import code.Searcher;
+
+public class SearcherTests {
+
+	private static final String[] PLAYERS = {"Ann", "Bob"};
+
+	/**
+	 * Returns the value of the specified position to the specified depth by a plain minimax search
+	 * over every action, for the specified seat.
+	 */
+	private static int minimax(Evaluator evaluator, Position position, int depth, int seat) {
+		if (depth == 0) {
+			return evaluator.evaluate(position, seat);
+		}
+		int[] actions = new int[ActionGenerator.MAX_ACTIONS];
+		int count = new ActionGenerator(false).generate(position, actions);
+		boolean maximizing = position.getCurrentSeat() == seat;
+		int best = maximizing ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+		for (int index = 0; index < count; index++) {
+			Position child = new Position(position);
+			ActionGenerator.play(child, actions[index]);
+			int value = minimax(evaluator, child, depth - 1, seat);
+			best = maximizing ? Math.max(best, value) : Math.min(best, value);
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the shares of the specified position to the specified depth by a plain max-n search
+	 * over every action, without pruning.
+	 */
+	private static int[] maxN(Evaluator evaluator, Position position, int depth) {
+		int players = position.getPlayerCount();
+		int[] shares = new int[4];
+		if (depth == 0) {
+			int[] values = new int[4];
+			evaluator.evaluateAll(position, values);
+			Searcher.share(values, players, shares);
+			return shares;
+		}
+		int[] actions = new int[ActionGenerator.MAX_ACTIONS];
+		int count = new ActionGenerator(false).generate(position, actions);
+		int mover = position.getCurrentSeat();
+		int[] best = null;
+		for (int index = 0; index < count; index++) {
+			Position child = new Position(position);
+			ActionGenerator.play(child, actions[index]);
+			int[] values = maxN(evaluator, child, depth - 1);
+			if (best == null || values[mover] > best[mover]) {
+				best = values;
+			}
+		}
+		return best;
+	}
+
+	@Test public void matchesMinimaxTest() {
+		Evaluator evaluator = new LinearEvaluator(new int[] {-3, 1, 0, 20});
+		Searcher searcher = new Searcher(evaluator);
+		for (long seed = 0; seed < 3; seed++) {
+			Position position = Position.of(new Game(PLAYERS, seed));
+			int action = searcher.search(position, 60000, 2);
+			assertEquals(2, searcher.getDepth());
+			assertEquals(minimax(evaluator, position, 2, 0), searcher.getValue());
+
+			Position played = new Position(position);
+			ActionGenerator.play(played, action);
+			assertEquals(searcher.getValue(), minimax(evaluator, played, 1, 0));
+		}
+	}
+
+	@Test public void matchesMaxNTest() {
+		Evaluator evaluator = new LinearEvaluator(new int[] {-3, 1, 0, 20});
+		Searcher searcher = new Searcher(evaluator, Searcher.MAX_N);
+		for (long seed = 0; seed < 2; seed++) {
+			Position position = Position.of(new Game(new String[] {"Ann", "Bob", "Cat"}, seed));
+			searcher.search(position, 60000, 2);
+			assertEquals(2, searcher.getDepth());
+			assertEquals(maxN(evaluator, position, 2)[0], searcher.getValue());
+		}
+	}
+
+	@Test public void shareTest() {
+		int[] shares = new int[4];
+		Searcher.share(new int[] {-10, 30, 10, -10}, 4, shares);
+		assertEquals(0, shares[0]);
+		assertEquals(Searcher.SHARE * 2 / 3, shares[1]);
+		assertEquals(Searcher.SHARE / 3, shares[2]);
+		Searcher.share(new int[] {5, 5, 5}, 3, shares);
+		assertEquals(Searcher.SHARE / 3, shares[1]);
+	}
+
+	@Test(expected = IllegalArgumentException.class) public void strategyTest() {
+		new Searcher(new LinearEvaluator(), 2);
+	}
+
+	@Test public void collectTest() {
+		Position position = Position.of(new Game(PLAYERS, 4));
+		int[] actions = new int[ActionGenerator.MAX_ACTIONS];
+		int count = new ActionGenerator().generate(position, actions);
+		int token = position.getNextToken();
+		boolean collectable = false;
+		for (int index = 0; index < count && !collectable; index++) {
+			Position played = new Position(position);
+			ActionGenerator.play(played, actions[index]);
+			collectable = played.getNextToken() != token;
+		}
+		Position played = new Position(position);
+		ActionGenerator.play(played, new Searcher(new LinearEvaluator()).search(position, 60000, 1));
+		assertEquals(collectable, played.getScore(0) == token);
+		assertEquals(1, played.getCurrentSeat());
+	}
+
+	@Test public void budgetTest() {
+		Searcher searcher = new Searcher(new LinearEvaluator());
+		Position position = Position.of(new Game(new String[] {"Ann", "Bob", "Cat", "Dan"}, 7));
+		long start = System.nanoTime();
+		int action = searcher.search(position, 200);
+		long millis = (System.nanoTime() - start) / 1000000;
+		assertTrue("took " + millis + " ms", millis < 400);
+		assertTrue(searcher.getDepth() >= 1);
+		assertTrue(searcher.getDepth() < Searcher.MAX_DEPTH);
+		assertTrue(searcher.getNodes() > 0);
+		assertTrue(searcher.getNodesPerSecond() > 0);
+		long pruned = searcher.getPruned();
+		assertTrue(pruned > 0);
+		searcher.search(position, 1, 1);
+		assertTrue(searcher.getPruned() < pruned);
+		assertTrue(position.isLegalShift(ActionGenerator.shiftOf(action)));
+	}
+
+	@Test public void cancelTest() {
+		Searcher searcher = new Searcher(new LinearEvaluator());
+		Position position = Position.of(new Game(new String[] {"Ann", "Bob", "Cat", "Dan"}, 7));
+		int generation = searcher.getGeneration();
+		searcher.cancel();
+		long start = System.nanoTime();
+		int action = searcher.search(position, 60000, Searcher.MAX_DEPTH, generation);
+		long millis = (System.nanoTime() - start) / 1000000;
+		assertTrue("took " + millis + " ms", millis < 1000);
+		assertEquals(0, searcher.getDepth());
+		assertTrue(position.isLegalShift(ActionGenerator.shiftOf(action)));
+		searcher.search(position, 60000, 1);
+		assertEquals(1, searcher.getDepth());
+	}
+
+	@Test(expected = IllegalArgumentException.class) public void overTest() {
+		Position position = Position.of(new Game(PLAYERS, 1));
+		position.setNextToken(26);
+		new Searcher(new LinearEvaluator()).search(position, 100);
+	}
+}
@@ -0,0 +1,66 @@
+package server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <h1>SerialExecutor</h1>
+ * An actor-style mailbox: runs the tasks given to it one at a time, in order, on an underlying
+ * executor, so that whatever the tasks touch has a single writer at any time. An idle mailbox
+ * holds no thread, only an empty queue, which keeps the cost of idle sessions down.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code Executor}: _executor - the executor the tasks are run on
+ * {@code Queue<Runnable>}: _tasks - the tasks not yet run
+ * {@code AtomicBoolean}: _scheduled - whether a drain of the queue is scheduled or running
+ *
+ * @version S.3
+ * @since S.3
+ */
+final class SerialExecutor implements Executor {
+
+	private final Executor _executor;
+	private final Queue<Runnable> _tasks;
+	private final AtomicBoolean _scheduled;
+
+	/**
+	 * Creates a mailbox running its tasks on the specified executor.
+	 */
+	SerialExecutor(Executor executor) {
+		_executor = executor;
+		_tasks = new ConcurrentLinkedQueue<Runnable>();
+		_scheduled = new AtomicBoolean(false);
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		_tasks.add(task);
+		if (_scheduled.compareAndSet(false, true)) {
+			_executor.execute(this::drain);
+		}
+	}
+
+	/**
+	 * Runs queued tasks until the queue is empty, then reschedules itself if a task arrived
+	 * after the last check.
+	 */
+	private void drain() {
+		Runnable task;
+		while ((task = _tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				// a failed task must not stop the tasks behind it
+				Thread thread = Thread.currentThread();
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+			}
+		}
+		_scheduled.set(false);
+		if (!_tasks.isEmpty() && _scheduled.compareAndSet(false, true)) {
+			_executor.execute(this::drain);
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package server;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import code.Board;
+
+/**
+ * <h1>ServerLoadTest</h1>
+ * A side-by-side load test of {@code BlockingGameServer} on virtual threads against the same
+ * server on a pool of platform threads, for idle-heavy workloads.
+ * <p>
+ * For each mode it opens the requested number of connections, each opening a two player session,
+ * and reports the heap, resident memory and thread count per session while they sit idle. A small
+ * fraction of the sessions then play turns while the rest stay idle, and the request latencies are
+ * reported. The platform pool is sized to the number of sessions, since every open connection holds
+ * a pool thread; a mode which cannot start that many threads is reported as failed, as is one
+ * leaving a session unopened for {@code OPEN_TIMEOUT_MILLIS}.
+ * <p>
+ * Clients run in the same JVM, so the figures include their buffers (a few KB per session).
+ * Testing 100k sessions needs a file descriptor limit above 200k ({@code ulimit -n}), and the
+ * virtual thread mode needs Java 21 or later.
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class ServerLoadTest {
+
+	private static final int ACTIVE_TURNS = 20;
+	private static final long OPEN_TIMEOUT_MILLIS = 10000;
+
+	private ServerLoadTest() {
+	}
+
+	/**
+	 * Runs the load test.
+	 * @param args - the number of sessions (default 10000) and the fraction of them which play (default 0.01)
+	 */
+	public static void main(String[] args) throws Exception {
+		int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		double active = args.length > 1 ? Double.parseDouble(args[1]) : 0.01;
+		InetSocketAddress any = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+		if (BlockingGameServer.hasVirtualThreads()) {
+			run("virtual threads", () -> BlockingGameServer.withVirtualThreads(any), sessions, active);
+		} else {
+			System.out.println("virtual threads: skipped, this JVM has none (Java 21 or later is needed)");
+		}
+		run("platform thread pool", () -> BlockingGameServer.withThreadPool(any, sessions), sessions, active);
+	}
+
+	private interface ServerFactory {
+		BlockingGameServer start() throws IOException;
+	}
+
+	/**
+	 * Runs the test against one server mode and prints its results.
+	 */
+	private static void run(String mode, ServerFactory factory, int sessions, double active) throws Exception {
+		System.gc();
+		long heapBefore = usedHeap();
+		long residentBefore = residentMemory();
+		int threadsBefore = Thread.activeCount();
+		GameClient[] clients = new GameClient[sessions];
+		try (BlockingGameServer server = factory.start()) {
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+			long start = System.nanoTime();
+			int opened = 0;
+			ExecutorService opener = Executors.newSingleThreadExecutor();
+			try {
+				for (; opened < sessions; opened++) {
+					clients[opened] = new GameClient(address);
+					if (open(opener, clients[opened], opened) != Protocol.OK) {
+						throw new IOException("Session was not opened.");
+					}
+				}
+			} catch (IOException | OutOfMemoryError e) {
+				System.out.printf("%s: failed after %d sessions (%s)%n", mode, opened, e);
+				closeAll(clients);
+				return;
+			} finally {
+				opener.shutdownNow();
+			}
+			long openNanos = System.nanoTime() - start;
+
+			System.gc();
+			System.out.printf("%s: %d idle sessions opened in %.1f s%n", mode, sessions, openNanos / 1e9);
+			System.out.printf("  heap per session: %.0f bytes%n", (double) (usedHeap() - heapBefore) / sessions);
+			if (residentBefore > 0) {
+				System.out.printf("  resident memory per session: %.0f bytes%n", (double) (residentMemory() - residentBefore) / sessions);
+			}
+			System.out.printf("  platform threads: %d%n", Thread.activeCount() - threadsBefore);
+
+			long[] latencies = play(clients, Math.max(1, (int) (sessions * active)));
+			Arrays.sort(latencies);
+			System.out.printf("  %d active sessions, request latency p50 %.1f us, p99 %.1f us, max %.1f us%n",
+					Math.max(1, (int) (sessions * active)), latencies[latencies.length / 2] / 1e3,
+					latencies[latencies.length * 99 / 100] / 1e3, latencies[latencies.length - 1] / 1e3);
+		} finally {
+			closeAll(clients);
+		}
+	}
+
+	/**
+	 * Opens a session with the specified client on the opener thread, closing the client if the
+	 * server has not answered within {@code OPEN_TIMEOUT_MILLIS}, so that a server which dropped the
+	 * connection without closing it fails the test instead of hanging it.
+	 */
+	private static byte open(ExecutorService opener, GameClient client, long seed) throws IOException {
+		Future<Byte> status = opener.submit(() -> client.open(seed, "a", "b"));
+		try {
+			return status.get(OPEN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			client.close();
+			throw new IOException("No answer to open within " + OPEN_TIMEOUT_MILLIS + " ms.");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while opening a session.");
+		}
+	}
+
+	/**
+	 * Plays {@code ACTIVE_TURNS} turns in each of the first {@code count} sessions, spread over one
+	 * client thread per core, and returns the latency of every request.
+	 */
+	private static long[] play(GameClient[] clients, int count) throws Exception {
+		int threads = Math.min(count, Runtime.getRuntime().availableProcessors());
+		ExecutorService players = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<long[]>> results = new ArrayList<Future<long[]>>(threads);
+			for (int thread = 0; thread < threads; thread++) {
+				int first = thread;
+				results.add(players.submit(() -> {
+					long[] latencies = new long[((count - first + threads - 1) / threads) * ACTIVE_TURNS * 2];
+					int index = 0;
+					for (int session = first; session < count; session += threads) {
+						for (int turn = 0; turn < ACTIVE_TURNS; turn++) {
+							long start = System.nanoTime();
+							clients[session].shift(turn % 2 == 0 ? Board.shiftCode(0, 1) : Board.shiftCode(0, 3));
+							long middle = System.nanoTime();
+							clients[session].endTurn();
+							latencies[index++] = middle - start;
+							latencies[index++] = System.nanoTime() - middle;
+						}
+					}
+					return latencies;
+				}));
+			}
+			long[] all = new long[0];
+			for (Future<long[]> result : results) {
+				long[] latencies = result.get();
+				int length = all.length;
+				all = Arrays.copyOf(all, length + latencies.length);
+				System.arraycopy(latencies, 0, all, length, latencies.length);
+			}
+			return all;
+		} finally {
+			players.shutdown();
+		}
+	}
+
+	private static void closeAll(GameClient[] clients) {
+		for (int index = 0; index < clients.length; index++) {
+			if (clients[index] != null) {
+				try {
+					clients[index].close();
+				} catch (IOException e) {
+					// nothing more can be done
+				}
+				clients[index] = null;
+			}
+		}
+	}
+
+	private static long usedHeap() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Returns the resident memory of the process in bytes, or 0 where it cannot be read.
+	 */
+	private static long residentMemory() {
+		try {
+			for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+				if (line.startsWith("VmRSS:")) {
+					return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			// not available on this platform
+		}
+		return 0;
+	}
+}
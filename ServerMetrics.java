@@ -0,0 +1,164 @@
+package server;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h1>ServerMetrics</h1>
+ * The counters of a {@code GameServer}: how many requests of each type it has carried out, how
+ * long the game actions took, and how far behind each event loop is running. Read by a
+ * {@code MetricsEndpoint}, which adds the session counts and garbage collection figures.
+ * <p>
+ * Recording is on every request's path, so it is kept to a few uncontended writes: the request
+ * counts are {@code LongAdder}s, striped over cells so that the loops never wait on each other,
+ * and the latencies of each loop go into histograms of its own, merged only when read.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code LongAdder[]}: _requests - the number of requests carried out, by request type
+ * {@code LatencyHistogram[][]}: _latencies - the time taken by each game action, by loop then action
+ * {@code AtomicLongArray}: _lags - the last measured lag of each loop, in nanoseconds
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class ServerMetrics {
+
+	/**
+	 * The request types (game actions) whose latency is recorded.
+	 */
+	public static final byte[] ACTIONS = {Protocol.SHIFT, Protocol.ROTATE, Protocol.MOVE, Protocol.COLLECT, Protocol.END_TURN};
+
+	private static final String[] NAMES = {null, "open", "join", "shift", "rotate", "move", "collect", "end_turn",
+			"resync", "watch", "queue"};
+
+	private final LongAdder[] _requests;
+	private final LatencyHistogram[][] _latencies;
+	private final AtomicLongArray _lags;
+
+	/**
+	 * Creates the metrics of a server with the specified number of event loops.
+	 *
+	 * @param loops	the number of loops
+	 */
+	ServerMetrics(int loops) {
+		_requests = new LongAdder[NAMES.length];
+		for (int type = 1; type < NAMES.length; type++) {
+			_requests[type] = new LongAdder();
+		}
+		_latencies = new LatencyHistogram[loops][ACTIONS.length];
+		for (LatencyHistogram[] loop : _latencies) {
+			for (int action = 0; action < ACTIONS.length; action++) {
+				loop[action] = new LatencyHistogram();
+			}
+		}
+		_lags = new AtomicLongArray(loops);
+	}
+
+	/**
+	 * Returns the name of the specified request type, as used in metrics.
+	 *
+	 * @param type	the request type
+	 * @return		the name, eg. "end_turn", or null if the type is not a request
+	 */
+	public static String nameOf(byte type) {
+		return type > 0 && type < NAMES.length ? NAMES[type] : null;
+	}
+
+	/**
+	 * Records a request carried out on the specified loop; requests of unknown types are ignored.
+	 *
+	 * @param loop	the index of the loop
+	 * @param type	the request type
+	 * @param nanos	the time taken
+	 */
+	void recordRequest(int loop, byte type, long nanos) {
+		if (type <= 0 || type >= NAMES.length) {
+			return;
+		}
+		_requests[type].increment();
+		if (type >= Protocol.SHIFT && type <= Protocol.END_TURN) {
+			_latencies[loop][type - Protocol.SHIFT].record(nanos);
+		}
+	}
+
+	/**
+	 * Records how long a task handed to the specified loop waited to be run.
+	 */
+	void recordLag(int loop, long nanos) {
+		_lags.set(loop, nanos);
+	}
+
+	/**
+	 * Returns the number of requests of the specified type carried out.
+	 *
+	 * @param type	the request type
+	 * @return		the count, 0 for an unknown type
+	 */
+	public long getRequests(byte type) {
+		return type > 0 && type < NAMES.length ? _requests[type].sum() : 0;
+	}
+
+	/**
+	 * Returns the latencies of every game action of the specified type, over every loop.
+	 *
+	 * @param type	one of {@code ACTIONS}
+	 * @return		a new histogram of the latencies in nanoseconds
+	 */
+	public LatencyHistogram getLatencies(byte type) {
+		if (type < Protocol.SHIFT || type > Protocol.END_TURN) {
+			throw new IllegalArgumentException("Not a game action: " + type + ".");
+		}
+		LatencyHistogram merged = new LatencyHistogram();
+		for (LatencyHistogram[] loop : _latencies) {
+			merged.add(loop[type - Protocol.SHIFT]);
+		}
+		return merged;
+	}
+
+	/**
+	 * Returns the number of event loops.
+	 * @return the loop count
+	 */
+	public int getLoops() {
+		return _lags.length();
+	}
+
+	/**
+	 * Returns the last measured lag of the specified loop, ie. how long a task handed to it waited
+	 * before it was run.
+	 *
+	 * @param loop	the index of the loop
+	 * @return		the lag in nanoseconds
+	 */
+	public long getLag(int loop) {
+		return _lags.get(loop);
+	}
+
+	/**
+	 * Returns the number of garbage collections since the JVM started.
+	 * @return the collection count
+	 */
+	public static long getCollections() {
+		long count = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, collector.getCollectionCount());
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the time spent collecting garbage since the JVM started; for the usual collectors,
+	 * the total of the pauses.
+	 * @return the time in milliseconds
+	 */
+	public static long getCollectionMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, collector.getCollectionTime());
+		}
+		return millis;
+	}
+}
@@ -0,0 +1,469 @@
+package server;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+import code.Board;
+import code.Game;
+import code.GameState;
+import code.Position;
+import code.Tile;
+
+/**
+ * <h1>Session</h1>
+ * One {@code Game} hosted by a server, together with the members (connections) playing it and
+ * which member holds each seat. Every change to the game is encoded by a {@code SyncEncoder} and
+ * sent to every member as soon as the request causing it has been carried out, and to every
+ * spectator through the session's {@code SpectatorChannel}.
+ * <p>
+ * A session is not thread-safe: it is confined to its executor, and every method must be called
+ * from it (for a {@code GameServer}, the event loop thread the session was opened on). This keeps
+ * every game single-writer without any locking.
+ * <p>
+ * A session given a {@code SessionHibernator} may have its game written to disk and dropped from
+ * the heap while idle; it is read back as soon as the session next needs it, so hibernation is
+ * invisible to members and spectators.
+ * <p>
+ * A session given a turn clock (a {@code TimingWheel}) gives each player a fixed time for their
+ * turn. A player who runs out of time has the board shifted for them, if they had not shifted it,
+ * and their turn ended, exactly as if they had asked for it, so members see the usual sync frames.
+ * Once every player in a row has run out of time the game is taken as abandoned: the clock stops,
+ * so that the session can be hibernated, and starts again with the next request of a member.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code int}: _id - the session id clients join with
+ * {@code Game}: _game - the game being played, or null while hibernated
+ * {@code Executor}: _executor - the executor the session is confined to
+ * {@code Member[]}: _seats - the member holding each seat, or null
+ * {@code boolean[]}: _placeholders - whether each seat is only held by the member which opened the session, for anyone to take over
+ * {@code SyncEncoder}: _sync - the encoder of the changes to the game
+ * {@code SpectatorChannel}: _spectators - the channel the changes are fanned out to spectators on
+ * {@code boolean}: _closed - whether every member has left
+ * {@code SessionHibernator}: _hibernator - the hibernator tracking the session's use, or null
+ * {@code TimingWheel}: _clock - the wheel the turn deadlines are scheduled on, or null
+ * {@code long}: _turnMillis - the time each player has for a turn
+ * {@code TimingWheel.Timeout}: _deadline - the deadline of the current turn, or null
+ * {@code int}: _clockTurn - the turn number {@code _deadline} is for
+ * {@code int}: _timeouts - the number of turns in a row ended by the clock
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class Session {
+
+	private final int _id;
+	private Game _game;
+	private final Executor _executor;
+	private final Member[] _seats;
+	private final boolean[] _placeholders;
+	private final SyncEncoder _sync;
+	private final SpectatorChannel _spectators;
+	private boolean _closed;
+	private SessionHibernator _hibernator;
+	private TimingWheel _clock;
+	private long _turnMillis;
+	private TimingWheel.Timeout _deadline;
+	private int _clockTurn;
+	private int _timeouts;
+
+	/**
+	 * <h1>Member</h1>
+	 * Anything which can be sent a session's sync frames, ie. a connection.
+	 */
+	public interface Member {
+
+		/**
+		 * Sends the specified frames, which must be consumed or copied before returning.
+		 *
+		 * @param frames	the frames (in read mode)
+		 */
+		void send(ByteBuffer frames);
+	}
+
+	/**
+	 * Creates a session whose seats all belong to the member which opened it, and sends the member
+	 * a snapshot of the game. A session without an owner (one formed by the lobby) starts with
+	 * every seat empty, to be joined.
+	 *
+	 * @param id		the session id
+	 * @param game		the game to be played
+	 * @param executor	the executor the session is confined to
+	 * @param owner		the member opening the session, or null
+	 */
+	public Session(int id, Game game, Executor executor, Member owner) {
+		_id = id;
+		_game = game;
+		_executor = executor;
+		_seats = new Member[game.getPlayers()];
+		_placeholders = new boolean[_seats.length];
+		for (int seat = 0; seat < _seats.length; seat++) {
+			_seats[seat] = owner;
+			_placeholders[seat] = owner != null;
+		}
+		_sync = new SyncEncoder(game);
+		_spectators = new SpectatorChannel(() -> {
+			awake();
+			return _sync.snapshot();
+		}, SpectatorChannel.DEFAULT_MAX_QUEUED_BYTES);
+		_closed = false;
+		if (owner != null) {
+			owner.send(_sync.snapshot());
+		}
+	}
+
+	/**
+	 * Returns the session id.
+	 * @return the id
+	 */
+	public int getId() {
+		return _id;
+	}
+
+	/**
+	 * Returns the game being played, bringing it back from hibernation if need be.
+	 * @return the game, or null if it was hibernated and cannot be brought back
+	 */
+	public Game getGame() {
+		awake();
+		return _game;
+	}
+
+	/**
+	 * Has the specified hibernator track the session's use from now on.
+	 */
+	void setHibernator(SessionHibernator hibernator) {
+		_hibernator = hibernator;
+		hibernator.touch(this);
+	}
+
+	/**
+	 * Gives each player the specified time for each turn from now on, the current turn included.
+	 */
+	void setTurnClock(TimingWheel clock, long turnMillis) {
+		_clock = clock;
+		_turnMillis = turnMillis;
+		_timeouts = 0;
+		if (awake()) {
+			restartClock();
+		}
+	}
+
+	/**
+	 * Starts the clock for the current turn if it is not already running and the game has not been
+	 * abandoned. The session must be awake.
+	 */
+	private void restartClock() {
+		int turn = _game.getTurnNumber();
+		if (_clock == null || _deadline != null && _clockTurn == turn || _timeouts >= _seats.length) {
+			return;
+		}
+		if (_deadline != null) {
+			_deadline.cancel();
+			_deadline = null;
+		}
+		if (!_game.isGameOver()) {
+			_clockTurn = turn;
+			_deadline = _clock.schedule(() -> _executor.execute(() -> timeUp(turn)), _turnMillis);
+		}
+	}
+
+	/**
+	 * Ends the specified turn, if it has not ended yet, shifting the board first if need be: with
+	 * the first shift the rules allow, and then, if the player has walked back to the tile they
+	 * started from, a step to any tile they can reach. The clock is not started for the next turn
+	 * once every player in a row has run out of time.
+	 */
+	private void timeUp(int turn) {
+		if (!awake() || _game.getTurnNumber() != turn || _game.isGameOver()) {
+			return;
+		}
+		for (int code = 0; code < Board.SHIFTS && !_game.boardHasShifted(); code++) {
+			_game.shiftBoard(code);
+		}
+		// checked first, as nextTurn() prints why it refuses
+		if (_game.currentPlayerHasMoved() && _game.getCurrentPlayer().getTile() == _game.getStartingTile()) {
+			Tile tile = _game.getCurrentPlayer().getTile();
+			int cell = Position.cell(tile.getRow(), tile.getColumn());
+			for (int direction = 0; direction < 4; direction++) {
+				int next = Position.neighbour(cell, direction);
+				if (next >= 0 && _game.move(_game.getTile(next / 7, next % 7))) {
+					break;
+				}
+			}
+		}
+		_game.nextTurn();
+		_timeouts++;
+		_deadline = null;
+		broadcast();
+		restartClock();
+	}
+
+	/**
+	 * Returns whether the session's game is hibernated.
+	 */
+	boolean isHibernated() {
+		return _game == null;
+	}
+
+	/**
+	 * Captures the state of the session's game, to be hibernated. The session must be awake.
+	 */
+	GameState capture() {
+		return GameState.of(_game);
+	}
+
+	/**
+	 * Drops the session's game from the heap once its state has been hibernated, detaching the
+	 * encoder which listens to it.
+	 */
+	void evict() {
+		_sync.detach();
+		_game = null;
+	}
+
+	/**
+	 * Brings the game back from hibernation if need be, and marks the session as just used.
+	 *
+	 * @return false if the session is closed, or its game could not be brought back (which closes it)
+	 */
+	private boolean awake() {
+		if (_closed) {
+			return false;
+		}
+		if (_hibernator == null) {
+			return true;
+		}
+		if (_game == null) {
+			_game = _hibernator.restore(this);
+			if (_game == null) {
+				_closed = true;
+				return false;
+			}
+			_sync.attach(_game);
+		}
+		_hibernator.touch(this);
+		return true;
+	}
+
+	/**
+	 * Returns the executor the session is confined to.
+	 * @return the executor
+	 */
+	public Executor getExecutor() {
+		return _executor;
+	}
+
+	/**
+	 * Returns whether every member has left the session.
+	 * @return true if the session is closed
+	 */
+	public boolean isClosed() {
+		return _closed;
+	}
+
+	/**
+	 * Returns whether any seat is held.
+	 * @return true if the session has a member
+	 */
+	public boolean hasMembers() {
+		for (Member member : _seats) {
+			if (member != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Hands the specified seat to the specified member, and sends the member a snapshot of the
+	 * game; members are whoever holds a seat. Only an empty seat, one the member already holds or
+	 * one the member which opened the session still holds from opening it can be taken; a seat
+	 * once joined stays with its member until it leaves.
+	 *
+	 * @param member	the joining member
+	 * @param seat		the seat to be taken over
+	 * @return			the status of the request, as defined by {@code Protocol}: {@code REJECTED}
+	 *                  if another member holds the seat
+	 */
+	public byte join(Member member, int seat) {
+		if (!awake()) {
+			return Protocol.NO_SESSION;
+		}
+		if (seat < 0 || seat >= _seats.length) {
+			return Protocol.BAD_MESSAGE;
+		}
+		if (_seats[seat] != null && _seats[seat] != member && !_placeholders[seat]) {
+			return Protocol.REJECTED;
+		}
+		_seats[seat] = member;
+		_placeholders[seat] = false;
+		member.send(_sync.snapshot());
+		return Protocol.OK;
+	}
+
+	/**
+	 * Sends the specified member a snapshot of the game, so that its replica can resync.
+	 *
+	 * @param member	the member
+	 * @return			the status of the request, as defined by {@code Protocol}
+	 */
+	public byte resync(Member member) {
+		if (!awake()) {
+			return Protocol.NO_SESSION;
+		}
+		member.send(_sync.snapshot());
+		return Protocol.OK;
+	}
+
+	/**
+	 * Adds a spectator watching through the specified viewer, and sends it a snapshot of the game.
+	 *
+	 * @param viewer	the viewer
+	 * @return			the spectator, or null if the session is closed
+	 */
+	public SpectatorChannel.Spectator watch(SpectatorChannel.Viewer viewer) {
+		if (!awake()) {
+			return null;
+		}
+		return _spectators.watch(viewer);
+	}
+
+	/**
+	 * Stops sending the changes to the game to the specified spectator.
+	 *
+	 * @param spectator	the spectator
+	 */
+	public void unwatch(SpectatorChannel.Spectator spectator) {
+		_spectators.remove(spectator);
+	}
+
+	/**
+	 * Returns the number of spectators watching the session.
+	 * @return the spectator count
+	 */
+	public int getSpectatorCount() {
+		return _spectators.size();
+	}
+
+	/**
+	 * Removes the specified member from the session, leaving its seats empty. The session closes
+	 * once no seat is held, dropping its spectators.
+	 *
+	 * @param member	the leaving member
+	 * @return			true if the session has closed
+	 */
+	public boolean leave(Member member) {
+		boolean empty = true;
+		for (int seat = 0; seat < _seats.length; seat++) {
+			if (_seats[seat] == member) {
+				_seats[seat] = null;
+			}
+			empty &= _seats[seat] == null;
+		}
+		_closed = empty;
+		if (_closed) {
+			_spectators.closeAll();
+			if (_deadline != null) {
+				_deadline.cancel();
+				_deadline = null;
+			}
+		}
+		return _closed;
+	}
+
+	/**
+	 * Carries out a game request ({@code SHIFT}, {@code ROTATE}, {@code MOVE}, {@code COLLECT} or
+	 * {@code END_TURN}) for the current player, if the specified member holds their seat, and sends
+	 * the resulting changes to every member.
+	 *
+	 * @param member	the member making the request
+	 * @param type		the message type
+	 * @param payload	the payload of the request
+	 * @return			the status of the request, as defined by {@code Protocol}
+	 */
+	public byte execute(Member member, byte type, ByteBuffer payload) {
+		if (!awake()) {
+			return Protocol.NO_SESSION;
+		}
+		if (_seats[_game.getCurrentPlayer().getNumber()] != member) {
+			return Protocol.NOT_YOUR_TURN;
+		}
+		_timeouts = 0;
+		try {
+			return apply(type, payload);
+		} catch (BufferUnderflowException e) {
+			return Protocol.BAD_MESSAGE;
+		} finally {
+			broadcast();
+			restartClock();
+		}
+	}
+
+	/**
+	 * Carries out a game request on the game.
+	 */
+	private byte apply(byte type, ByteBuffer payload) {
+		switch (type) {
+		case Protocol.SHIFT:
+			int code = payload.get();
+			if (code < 0 || code >= Board.SHIFTS) {
+				return Protocol.BAD_MESSAGE;
+			}
+			return status(_game.shiftBoard(code));
+		case Protocol.ROTATE:
+			if (payload.get() != 0) {
+				_game.rotateFreeTileClockWise();
+			} else {
+				_game.rotateFreeTileCounterClockWise();
+			}
+			return Protocol.OK;
+		case Protocol.MOVE:
+			int row = payload.get();
+			int column = payload.get();
+			if (row < 0 || row >= 7 || column < 0 || column >= 7) {
+				return Protocol.BAD_MESSAGE;
+			}
+			return status(_game.move(_game.getTile(row, column)));
+		case Protocol.COLLECT:
+			return status(_game.collectToken());
+		case Protocol.END_TURN:
+			return status(_game.nextTurn());
+		default:
+			return Protocol.BAD_MESSAGE;
+		}
+	}
+
+	/**
+	 * Sends the changes made since the last broadcast to every member and spectator.
+	 */
+	private void broadcast() {
+		if (!_sync.hasFrames()) {
+			return;
+		}
+		for (int seat = 0; seat < _seats.length; seat++) {
+			Member member = _seats[seat];
+			if (member != null && firstSeatOf(member) == seat) {
+				member.send(_sync.frames());
+			}
+		}
+		_spectators.publish(_sync.frames());
+		_sync.clear();
+	}
+
+	/**
+	 * Returns the first seat the specified member holds.
+	 */
+	private int firstSeatOf(Member member) {
+		int seat = 0;
+		while (_seats[seat] != member) {
+			seat++;
+		}
+		return seat;
+	}
+
+	private static byte status(boolean done) {
+		return done ? Protocol.OK : Protocol.REJECTED;
+	}
+}
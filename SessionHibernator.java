@@ -0,0 +1,174 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import code.Game;
+import code.GameState;
+
+/**
+ * <h1>SessionHibernator</h1>
+ * Keeps the games of one event loop's sessions within a bounded heap by hibernating idle ones to
+ * disk. The hibernator tracks the sessions whose game is in the heap (the resident sessions) in
+ * least recently used order; a session is hibernated once it has been idle for longer than the
+ * idle timeout (checked by {@code sweep()}), or as soon as there are more than {@code maxResident}
+ * resident sessions, least recently used first. Hibernating writes the game's {@code GameState} to
+ * a small file and drops the game, with its 50 tiles, players and icons, from the heap; the session
+ * itself, its members and its sync state stay, so that the game is read back transparently the next
+ * time the session needs it.
+ * <p>
+ * A hibernator is confined to its loop, like the sessions it hibernates. Files are written to a
+ * temporary name and moved into place, so a crash never leaves a half-written state behind.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code Path}: _directory - the directory hibernated games are written to
+ * {@code long}: _idleNanos - how long a session may go unused before it is hibernated
+ * {@code int}: _maxResident - the most sessions whose game may be in the heap
+ * {@code LinkedHashMap<Session, Long>}: _resident - the resident sessions in least recently used order, with when each was last used
+ * {@code int}: _hibernated - the number of sessions hibernated
+ *
+ * @version S.3
+ * @since S.3
+ */
+class SessionHibernator {
+
+	private final Path _directory;
+	private final long _idleNanos;
+	private final int _maxResident;
+	private final LinkedHashMap<Session, Long> _resident;
+	private volatile int _hibernated;
+
+	/**
+	 * Creates a hibernator writing to the specified (existing) directory, which must not be shared
+	 * with another server.
+	 */
+	SessionHibernator(Path directory, long idleNanos, int maxResident) {
+		_directory = directory;
+		_idleNanos = idleNanos;
+		_maxResident = maxResident;
+		_resident = new LinkedHashMap<Session, Long>(16, 0.75f, true);
+		_hibernated = 0;
+	}
+
+	/**
+	 * Marks the specified (resident) session as just used, and hibernates the least recently used
+	 * sessions if there are too many resident.
+	 */
+	void touch(Session session) {
+		_resident.put(session, System.nanoTime());
+		Iterator<Session> eldest = _resident.keySet().iterator();
+		while (_resident.size() > _maxResident) {
+			Session victim = eldest.next();
+			if (victim == session) {
+				break;
+			}
+			if (hibernate(victim)) {
+				eldest.remove();
+			}
+		}
+	}
+
+	/**
+	 * Hibernates every session idle for longer than the idle timeout.
+	 */
+	void sweep() {
+		long now = System.nanoTime();
+		Iterator<Map.Entry<Session, Long>> eldest = _resident.entrySet().iterator();
+		while (eldest.hasNext()) {
+			Map.Entry<Session, Long> entry = eldest.next();
+			if (now - entry.getValue() < _idleNanos) {
+				break;
+			}
+			if (hibernate(entry.getKey())) {
+				eldest.remove();
+			}
+		}
+	}
+
+	/**
+	 * Writes the game of the specified session to disk and drops it from the heap. A game which
+	 * cannot be written stays resident.
+	 */
+	private boolean hibernate(Session session) {
+		Path file = fileOf(session);
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+			session.capture().write(out);
+		} catch (IOException e) {
+			return false;
+		}
+		try {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			return false;
+		}
+		session.evict();
+		_hibernated++;
+		return true;
+	}
+
+	/**
+	 * Reads the game of the specified hibernated session back and deletes its file; the session
+	 * must then {@code touch()} itself. A file which cannot be read is kept, renamed with a
+	 * {@code .failed} suffix, so that the game can still be recovered by hand.
+	 *
+	 * @return the game, or null if it cannot be read
+	 */
+	Game restore(Session session) {
+		Path file = fileOf(session);
+		Game game;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			game = GameState.read(in).toGame();
+		} catch (IOException e) {
+			try {
+				Files.move(file, file.resolveSibling(file.getFileName() + ".failed"), StandardCopyOption.REPLACE_EXISTING);
+				_hibernated--;
+			} catch (IOException kept) {
+				// the file stays under its own name, and is deleted when the session is removed
+			}
+			return null;
+		}
+		delete(file);
+		return game;
+	}
+
+	/**
+	 * Forgets a closed session, deleting its file if it was hibernated.
+	 */
+	void remove(Session session) {
+		if (_resident.remove(session) == null && session.isHibernated()) {
+			delete(fileOf(session));
+		}
+	}
+
+	/**
+	 * Returns the number of sessions hibernated.
+	 */
+	int hibernated() {
+		return _hibernated;
+	}
+
+	private void delete(Path file) {
+		try {
+			if (Files.deleteIfExists(file)) {
+				_hibernated--;
+			}
+		} catch (IOException e) {
+			// the file is overwritten if the session id is ever hibernated again
+		}
+	}
+
+	private Path fileOf(Session session) {
+		return _directory.resolve("session-" + session.getId() + ".state");
+	}
+}
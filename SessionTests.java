@@ -0,0 +1,66 @@
+package server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import code.Game;
+import code.Position;
+
+/**
+ * Tests of {@code Session}, among them of its package-private hibernation hooks, which is why they
+ * live in the server package.
+ */
+public class SessionTests {
+
+	private static final String[] PLAYERS = {"Ann", "Bob", "Cat"};
+
+	@Test public void evictTest() throws IOException, InterruptedException {
+		Path directory = Files.createTempDirectory("hibernate");
+		SessionHibernator hibernator = new SessionHibernator(directory, Long.MAX_VALUE, 1);
+		Game game = new Game(PLAYERS, 1);
+		game.rotateFreeTileClockWise();
+		Position position = Position.of(game);
+		WeakReference<Game> reference = new WeakReference<Game>(game);
+		Session first = new Session(1, game, Runnable::run, null);
+		game = null;
+		first.setHibernator(hibernator);
+		Session second = new Session(2, new Game(PLAYERS, 2), Runnable::run, null);
+		second.setHibernator(hibernator);
+		assertTrue(first.isHibernated());
+		for (int attempt = 0; attempt < 50 && reference.get() != null; attempt++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(reference.get());
+
+		// the game comes back, and the other session makes way for it
+		assertEquals(position, Position.of(first.getGame()));
+		assertTrue(second.isHibernated());
+	}
+
+	@Test public void joinTest() {
+		Session.Member owner = frames -> frames.position(frames.limit());
+		Session.Member guest = frames -> frames.position(frames.limit());
+		Session.Member other = frames -> frames.position(frames.limit());
+		Session session = new Session(1, new Game(PLAYERS, 3), Runnable::run, owner);
+		// the seats the owner holds from opening the session are for anyone to take
+		assertEquals(Protocol.OK, session.join(guest, 1));
+		assertEquals(Protocol.REJECTED, session.join(other, 1));
+		assertEquals(Protocol.REJECTED, session.join(owner, 1));
+		assertEquals(Protocol.OK, session.join(guest, 1));
+		// once the owner joins a seat of its own, it keeps it too
+		assertEquals(Protocol.OK, session.join(owner, 0));
+		assertEquals(Protocol.REJECTED, session.join(other, 0));
+		assertEquals(Protocol.OK, session.join(other, 2));
+		session.leave(guest);
+		assertEquals(Protocol.OK, session.join(owner, 1));
+	}
+}
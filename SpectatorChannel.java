@@ -0,0 +1,333 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * <h1>SpectatorChannel</h1>
+ * Fans a session's sync frames out to its spectators. Each batch of frames is copied once into a
+ * direct buffer shared by every spectator: each spectator only queues a read-only duplicate of it
+ * (a view with its own position), and writes everything it has queued to its socket with a single
+ * gathering write. However many spectators watch, an event is encoded and copied once.
+ * <p>
+ * A spectator which cannot keep up never holds up the game: writes are non-blocking, and once a
+ * spectator has more than {@code maxQueuedBytes} queued it is downgraded: every frame it has not
+ * started writing is dropped, and when its socket has drained it is sent a fresh snapshot instead,
+ * which its {@code BoardReplica} resyncs from. A spectator which misses more than
+ * {@code MAX_MISSED} batches waiting to drain is dropped altogether.
+ * <p>
+ * The arena is only allocated when the first spectator starts watching, and released when the
+ * last one stops, so a session nobody watches holds no direct memory.
+ * <p>
+ * A channel is confined to its session's executor, like the session.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code Supplier<ByteBuffer>}: _snapshots - the source of snapshot frames of the session's game
+ * {@code int}: _maxQueuedBytes - the most bytes a spectator may have queued before it is downgraded
+ * {@code ArrayList<Spectator>}: _spectators - every spectator watching
+ * {@code ByteBuffer}: _arena - the direct buffer shared frames are currently copied into, or null without spectators
+ * {@code ByteBuffer[]}: _gather - the buffers of the gathering write being made
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class SpectatorChannel {
+
+	/**
+	 * The default number of bytes a spectator may have queued before it is downgraded.
+	 */
+	public static final int DEFAULT_MAX_QUEUED_BYTES = 1 << 16;
+
+	/**
+	 * The number of batches a downgraded spectator may miss before it is dropped.
+	 */
+	public static final int MAX_MISSED = 256;
+
+	private static final int ARENA_BYTES = 1 << 16;
+	private static final int GATHER = 16;
+
+	private final Supplier<ByteBuffer> _snapshots;
+	private final int _maxQueuedBytes;
+	private final ArrayList<Spectator> _spectators;
+	private ByteBuffer _arena;
+	private final ByteBuffer[] _gather;
+
+	/**
+	 * <h1>Viewer</h1>
+	 * The socket a spectator is watching through, ie. a connection.
+	 */
+	public interface Viewer {
+
+		/**
+		 * Writes as much of the specified buffers as can be written without blocking.
+		 *
+		 * @param buffers	the buffers (in read mode)
+		 * @param offset	the first buffer to write
+		 * @param length	the number of buffers to write
+		 * @return			the number of bytes written
+		 * @throws IOException if the socket is broken
+		 */
+		long write(ByteBuffer[] buffers, int offset, int length) throws IOException;
+
+		/**
+		 * Asks to be told when the socket can be written to again (by {@code Spectator.flush()}),
+		 * or stops asking.
+		 *
+		 * @param blocked	whether there is something left to write
+		 */
+		void setBlocked(boolean blocked);
+
+		/**
+		 * Closes the socket; the spectator has been dropped.
+		 */
+		void close();
+	}
+
+	/**
+	 * Creates a channel without spectators.
+	 *
+	 * @param snapshots			the source of {@code SYNC_SNAPSHOT} frames of the session's game
+	 * @param maxQueuedBytes	the most bytes a spectator may have queued before it is downgraded
+	 */
+	public SpectatorChannel(Supplier<ByteBuffer> snapshots, int maxQueuedBytes) {
+		if (maxQueuedBytes <= 0) {
+			throw new IllegalArgumentException("The queue limit must be positive.");
+		}
+		_snapshots = snapshots;
+		_maxQueuedBytes = maxQueuedBytes;
+		_spectators = new ArrayList<Spectator>();
+		_arena = null;
+		_gather = new ByteBuffer[GATHER];
+	}
+
+	/**
+	 * Adds a spectator watching through the specified viewer, and sends it a snapshot.
+	 *
+	 * @param viewer	the viewer
+	 * @return			the spectator
+	 */
+	public Spectator watch(Viewer viewer) {
+		Spectator spectator = new Spectator(viewer);
+		_spectators.add(spectator);
+		spectator.enqueue(share(_snapshots.get()));
+		spectator.flush();
+		return spectator;
+	}
+
+	/**
+	 * Returns the number of spectators watching.
+	 * @return the spectator count
+	 */
+	public int size() {
+		return _spectators.size();
+	}
+
+	/**
+	 * Returns the size of the arena shared frames are currently copied into.
+	 * @return the bytes of direct memory allocated, or 0 while nobody watches
+	 */
+	public int getArenaBytes() {
+		return _arena == null ? 0 : _arena.capacity();
+	}
+
+	/**
+	 * Sends the specified frames to every spectator, downgrading or dropping those which have
+	 * fallen behind.
+	 *
+	 * @param frames	the frames (in read mode), which are consumed
+	 */
+	public void publish(ByteBuffer frames) {
+		if (_spectators.isEmpty()) {
+			frames.position(frames.limit());
+			return;
+		}
+		ByteBuffer shared = share(frames);
+		for (int index = _spectators.size() - 1; index >= 0; index--) {
+			Spectator spectator = _spectators.get(index);
+			if (spectator._downgraded) {
+				if (++spectator._missed > MAX_MISSED) {
+					drop(spectator);
+				}
+				continue;
+			}
+			spectator.enqueue(shared.duplicate());
+			if (spectator._queuedBytes > _maxQueuedBytes) {
+				spectator.downgrade();
+			} else {
+				spectator.flush();
+			}
+		}
+	}
+
+	/**
+	 * Drops every spectator, closing their viewers.
+	 */
+	public void closeAll() {
+		while (!_spectators.isEmpty()) {
+			drop(_spectators.get(_spectators.size() - 1));
+		}
+	}
+
+	/**
+	 * Removes the specified spectator, without closing its viewer; the arena is released with the
+	 * last spectator.
+	 *
+	 * @param spectator	the spectator
+	 */
+	public void remove(Spectator spectator) {
+		_spectators.remove(spectator);
+		spectator._queue.clear();
+		spectator._queuedBytes = 0;
+		if (_spectators.isEmpty()) {
+			_arena = null;
+		}
+	}
+
+	private void drop(Spectator spectator) {
+		remove(spectator);
+		spectator._viewer.close();
+	}
+
+	/**
+	 * Returns a read-only copy of the specified frames in the current arena, starting a new arena
+	 * if there is none or they do not fit. Old arenas are freed once no spectator refers to them.
+	 */
+	private ByteBuffer share(ByteBuffer frames) {
+		if (_arena == null || _arena.remaining() < frames.remaining()) {
+			_arena = ByteBuffer.allocateDirect(Math.max(ARENA_BYTES, frames.remaining()));
+		}
+		int start = _arena.position();
+		_arena.put(frames);
+		ByteBuffer shared = _arena.duplicate();
+		shared.position(start).limit(_arena.position());
+		return shared.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * <h1>Spectator</h1>
+	 * One spectator of a session and the frames queued for it. Replies to the spectator's own
+	 * requests are queued alongside the shared frames, so that everything reaches the socket in
+	 * order.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code Viewer}: _viewer - the viewer the spectator watches through
+	 * {@code ArrayDeque<ByteBuffer>}: _queue - the buffers not yet written, in order
+	 * {@code long}: _queuedBytes - the number of bytes left in {@code _queue}
+	 * {@code boolean}: _downgraded - whether the spectator is waiting to drain before its snapshot
+	 * {@code int}: _missed - the number of batches missed since being downgraded
+	 */
+	public class Spectator {
+
+		private final Viewer _viewer;
+		private final ArrayDeque<ByteBuffer> _queue;
+		private long _queuedBytes;
+		private boolean _downgraded;
+		private int _missed;
+
+		private Spectator(Viewer viewer) {
+			_viewer = viewer;
+			_queue = new ArrayDeque<ByteBuffer>();
+			_queuedBytes = 0;
+			_downgraded = false;
+			_missed = 0;
+		}
+
+		/**
+		 * Queues the specified frames after everything already queued; they are written on the
+		 * next {@code flush()}.
+		 *
+		 * @param frames	the frames (in read mode), which must not change afterwards
+		 */
+		public void enqueue(ByteBuffer frames) {
+			if (frames.hasRemaining()) {
+				_queue.add(frames);
+				_queuedBytes += frames.remaining();
+			}
+		}
+
+		/**
+		 * Returns whether the spectator has been downgraded and not yet sent its snapshot.
+		 * @return true if downgraded
+		 */
+		public boolean isDowngraded() {
+			return _downgraded;
+		}
+
+		/**
+		 * Returns the number of bytes queued and not yet written.
+		 * @return the byte count
+		 */
+		public long getQueuedBytes() {
+			return _queuedBytes;
+		}
+
+		/**
+		 * Writes as much of the queue as the viewer takes, in gathering writes, then queues the
+		 * snapshot of a downgraded spectator once its queue has drained.
+		 */
+		public void flush() {
+			try {
+				while (true) {
+					if (_queue.isEmpty()) {
+						if (!_downgraded) {
+							break;
+						}
+						_downgraded = false;
+						_missed = 0;
+						enqueue(share(_snapshots.get()));
+					}
+					int count = 0;
+					for (ByteBuffer buffer : _queue) {
+						_gather[count++] = buffer;
+						if (count == GATHER) {
+							break;
+						}
+					}
+					long written = _viewer.write(_gather, 0, count);
+					_queuedBytes -= written;
+					while (!_queue.isEmpty() && !_queue.peek().hasRemaining()) {
+						_queue.poll();
+					}
+					if (written == 0 || !_queue.isEmpty() && count < GATHER) {
+						break;
+					}
+				}
+			} catch (IOException e) {
+				drop(this);
+				return;
+			} finally {
+				Arrays.fill(_gather, null);
+			}
+			_viewer.setBlocked(!_queue.isEmpty());
+		}
+
+		/**
+		 * Drops every shared frame the spectator has not started writing, keeping only replies to
+		 * its own requests; it is sent a snapshot by the first {@code flush()} which drains the
+		 * rest, once its viewer is writable again.
+		 */
+		private void downgrade() {
+			ByteBuffer started = _queue.peek();
+			ArrayDeque<ByteBuffer> kept = new ArrayDeque<ByteBuffer>();
+			for (ByteBuffer buffer : _queue) {
+				if (buffer == started && buffer.position() > 0 || !buffer.isReadOnly()) {
+					kept.add(buffer);
+				}
+			}
+			_queue.clear();
+			_queuedBytes = 0;
+			for (ByteBuffer buffer : kept) {
+				enqueue(buffer);
+			}
+			_downgraded = true;
+			_missed = 0;
+			_viewer.setBlocked(true);
+		}
+	}
+}
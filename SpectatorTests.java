@@ -0,0 +1,161 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import code.Board;
+import code.Game;
+import code.Position;
+import code.Tile;
+import server.GameClient;
+import server.GameServer;
+import server.Protocol;
+import server.SpectatorChannel;
+
+public class SpectatorTests {
+
+	private static final String[] PLAYERS = {"Ann", "Bob"};
+
+	/**
+	 * A viewer taking at most {@code _budget} more bytes, and recording them.
+	 */
+	private static class TestViewer implements SpectatorChannel.Viewer {
+
+		private final ByteArrayOutputStream _received = new ByteArrayOutputStream();
+		private long _budget;
+		private boolean _blocked;
+		private boolean _closed;
+		private boolean _shared = true;
+
+		TestViewer(long budget) {
+			_budget = budget;
+		}
+
+		@Override
+		public long write(ByteBuffer[] buffers, int offset, int length) {
+			long written = 0;
+			for (int index = offset; index < offset + length && _budget > 0; index++) {
+				ByteBuffer buffer = buffers[index];
+				_shared &= buffer.isReadOnly() && buffer.isDirect();
+				while (buffer.hasRemaining() && _budget > 0) {
+					_received.write(buffer.get());
+					_budget--;
+					written++;
+				}
+			}
+			return written;
+		}
+
+		@Override
+		public void setBlocked(boolean blocked) {
+			_blocked = blocked;
+		}
+
+		@Override
+		public void close() {
+			_closed = true;
+		}
+	}
+
+	private static ByteBuffer frame(byte type, int value) {
+		ByteBuffer frame = ByteBuffer.allocate(Protocol.HEADER_BYTES + 4);
+		Protocol.putHeader(frame, type, 4);
+		frame.putInt(value);
+		return frame.flip();
+	}
+
+	@Test public void fanOutTest() {
+		SpectatorChannel channel = new SpectatorChannel(() -> frame(Protocol.SYNC_SNAPSHOT, -1), 256);
+		TestViewer fast = new TestViewer(Long.MAX_VALUE);
+		TestViewer other = new TestViewer(Long.MAX_VALUE);
+		TestViewer stuck = new TestViewer(0);
+		channel.watch(fast);
+		channel.watch(other);
+		SpectatorChannel.Spectator slow = channel.watch(stuck);
+		for (int batch = 0; batch < 100; batch++) {
+			channel.publish(frame(Protocol.SYNC_TURN, batch));
+		}
+		assertTrue(slow.isDowngraded());
+		assertTrue(slow.getQueuedBytes() == 0);
+		assertTrue(stuck._blocked);
+
+		ByteBuffer expected = ByteBuffer.allocate(101 * 7);
+		expected.put(frame(Protocol.SYNC_SNAPSHOT, -1));
+		for (int batch = 0; batch < 100; batch++) {
+			expected.put(frame(Protocol.SYNC_TURN, batch));
+		}
+		assertTrue(java.util.Arrays.equals(expected.array(), fast._received.toByteArray()));
+		assertTrue(java.util.Arrays.equals(expected.array(), other._received.toByteArray()));
+		assertTrue(fast._shared && !fast._blocked);
+
+		stuck._budget = Long.MAX_VALUE;
+		slow.flush();
+		assertTrue(!slow.isDowngraded());
+		assertTrue(!stuck._blocked);
+		assertTrue(java.util.Arrays.equals(frame(Protocol.SYNC_SNAPSHOT, -1).array(), stuck._received.toByteArray()));
+		assertEquals(3, channel.size());
+	}
+
+	@Test public void dropTest() {
+		SpectatorChannel channel = new SpectatorChannel(() -> frame(Protocol.SYNC_SNAPSHOT, -1), 64);
+		TestViewer stuck = new TestViewer(0);
+		channel.watch(stuck);
+		channel.watch(new TestViewer(Long.MAX_VALUE));
+		for (int batch = 0; batch < SpectatorChannel.MAX_MISSED + 20; batch++) {
+			channel.publish(frame(Protocol.SYNC_TURN, batch));
+		}
+		assertTrue(stuck._closed);
+		assertEquals(1, channel.size());
+	}
+
+	@Test public void arenaTest() {
+		SpectatorChannel channel = new SpectatorChannel(() -> frame(Protocol.SYNC_SNAPSHOT, -1), 256);
+		channel.publish(frame(Protocol.SYNC_TURN, 0));
+		assertEquals(0, channel.getArenaBytes());
+		SpectatorChannel.Spectator first = channel.watch(new TestViewer(Long.MAX_VALUE));
+		SpectatorChannel.Spectator second = channel.watch(new TestViewer(Long.MAX_VALUE));
+		assertTrue(channel.getArenaBytes() > 0);
+		channel.remove(first);
+		assertTrue(channel.getArenaBytes() > 0);
+		channel.remove(second);
+		assertEquals(0, channel.getArenaBytes());
+		channel.watch(new TestViewer(Long.MAX_VALUE));
+		channel.publish(frame(Protocol.SYNC_TURN, 1));
+		assertTrue(channel.getArenaBytes() > 0);
+		channel.closeAll();
+		assertEquals(0, channel.getArenaBytes());
+	}
+
+	@Test public void watchTest() throws IOException {
+		try (GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2)) {
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+			try (GameClient player = new GameClient(address); GameClient spectator = new GameClient(address)) {
+				Game game = new Game(PLAYERS, 8);
+				assertEquals(Protocol.OK, player.open(8, PLAYERS));
+				assertEquals(Protocol.NO_SESSION, spectator.watch(player.getValue() + 1));
+				assertEquals(Protocol.OK, spectator.watch(player.getValue()));
+				assertEquals(Position.of(game), spectator.getReplica().getPosition());
+				for (int turn = 0; turn < 20; turn++) {
+					int code = Board.shiftCode(turn % 2 == 0 ? Tile.SOUTH : Tile.WEST, 1 + 2 * (turn % 3));
+					assertTrue(game.shiftBoard(code));
+					assertEquals(Protocol.OK, player.shift(code));
+					assertTrue(game.nextTurn());
+					assertEquals(Protocol.OK, player.endTurn());
+					while (!Position.of(game).equals(spectator.getReplica().getPosition())) {
+						spectator.readSync();
+						assertTrue(spectator.getReplica().isSynced());
+					}
+				}
+				assertEquals(Protocol.NO_SESSION, spectator.endTurn());
+			}
+		}
+	}
+}
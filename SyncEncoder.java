@@ -0,0 +1,176 @@
+package server;
+
+import java.nio.ByteBuffer;
+
+import code.Game;
+import code.GameListener;
+import code.Player;
+import code.Position;
+import code.PositionCodec;
+import code.Tile;
+
+/**
+ * <h1>SyncEncoder</h1>
+ * Listens to a {@code Game} and encodes every change as the smallest {@code Protocol} sync frame
+ * that lets a {@code BoardReplica} follow it. A shift is sent as its code plus the new free tile,
+ * since the replica can shift its own copy of the line; a full board is only sent as a snapshot
+ * when a client joins or asks to resync. Every {@code CHECKSUM_INTERVAL} frames a checksum of the
+ * whole position follows, so a replica which has drifted finds out and asks for a snapshot.
+ * <p>
+ * Frames accumulate until the session takes them with {@code frames()} and {@code clear()}.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code Game}: _game - the game being encoded, or null while detached
+ * {@code ByteBuffer}: _frames - the frames not yet taken (in write mode)
+ * {@code int}: _sequence - the sequence number of the next frame
+ * {@code int}: _sinceChecksum - the number of frames since the last checksum
+ *
+ * @version S.3
+ * @since S.3
+ */
+class SyncEncoder implements GameListener {
+
+	/**
+	 * The number of change frames between checksums.
+	 */
+	public static final int CHECKSUM_INTERVAL = 16;
+
+	private Game _game;
+	private ByteBuffer _frames;
+	private int _sequence;
+	private int _sinceChecksum;
+
+	/**
+	 * Starts encoding the changes to the specified game.
+	 */
+	SyncEncoder(Game game) {
+		_game = game;
+		_frames = ByteBuffer.allocate(64);
+		_sequence = 0;
+		_sinceChecksum = 0;
+		game.addListener(this);
+	}
+
+	@Override
+	public void boardShifted(int code) {
+		start(Protocol.SYNC_SHIFT, 2);
+		_frames.put((byte) code).put((byte) Position.maskOf(_game.getBoard().getFreeTile()));
+		finish();
+	}
+
+	@Override
+	public void freeTileRotated(boolean clockwise) {
+		start(Protocol.SYNC_ROTATE, 1);
+		_frames.put((byte) Position.maskOf(_game.getBoard().getFreeTile()));
+		finish();
+	}
+
+	@Override
+	public void playerMoved(Player player) {
+		Tile tile = player.getTile();
+		start(Protocol.SYNC_MOVE, 2);
+		_frames.put((byte) player.getNumber()).put((byte) Position.cell(tile.getRow(), tile.getColumn()));
+		finish();
+	}
+
+	@Override
+	public void tokenCollected(Player player, int token) {
+		start(Protocol.SYNC_TOKEN, 3);
+		_frames.put((byte) player.getNumber()).put((byte) token).put((byte) _game.getNextToken());
+		finish();
+	}
+
+	@Override
+	public void turnEnded(Player next) {
+		start(Protocol.SYNC_TURN, 1);
+		_frames.put((byte) next.getNumber());
+		finish();
+	}
+
+	/**
+	 * Writes the header and sequence number of a frame with the specified payload length, not
+	 * counting the sequence number.
+	 */
+	private void start(byte type, int length) {
+		ensureCapacity(Protocol.HEADER_BYTES + 2 + length);
+		Protocol.putHeader(_frames, type, 2 + length);
+		_frames.putShort((short) _sequence);
+		_sequence = (_sequence + 1) & 0xFFFF;
+	}
+
+	/**
+	 * Follows a change frame with a checksum frame if one is due.
+	 */
+	private void finish() {
+		if (++_sinceChecksum == CHECKSUM_INTERVAL) {
+			_sinceChecksum = 0;
+			start(Protocol.SYNC_CHECKSUM, 4);
+			_frames.putInt(BoardReplica.checksum(Position.of(_game)));
+		}
+	}
+
+	private void ensureCapacity(int bytes) {
+		if (_frames.remaining() < bytes) {
+			ByteBuffer bigger = ByteBuffer.allocate(Math.max(_frames.capacity() * 2, _frames.position() + bytes));
+			_frames.flip();
+			bigger.put(_frames);
+			_frames = bigger;
+		}
+	}
+
+	/**
+	 * Starts encoding the changes to the specified game instead, such as the same game rebuilt
+	 * after hibernation; the sequence numbers carry on.
+	 */
+	void attach(Game game) {
+		_game = game;
+		game.addListener(this);
+	}
+
+	/**
+	 * Stops encoding the changes to the game and drops the reference to it, such as when it is
+	 * hibernated, so that nothing keeps it in the heap; {@code attach()} resumes encoding.
+	 */
+	void detach() {
+		_game.removeListener(this);
+		_game = null;
+	}
+
+	/**
+	 * Returns whether there are frames not yet taken.
+	 */
+	boolean hasFrames() {
+		return _frames.position() > 0;
+	}
+
+	/**
+	 * Returns a read-only view (in read mode) of the frames not yet taken; it is only valid
+	 * until the next change or {@code clear()}.
+	 */
+	ByteBuffer frames() {
+		ByteBuffer frames = _frames.asReadOnlyBuffer();
+		frames.flip();
+		return frames;
+	}
+
+	/**
+	 * Discards the frames taken with {@code frames()}.
+	 */
+	void clear() {
+		_frames.clear();
+	}
+
+	/**
+	 * Returns a new {@code SYNC_SNAPSHOT} frame (in read mode) of the game as it is now.
+	 */
+	ByteBuffer snapshot() {
+		ByteBuffer snapshot = ByteBuffer.allocate(Protocol.HEADER_BYTES + 2 + PositionCodec.BYTES);
+		Protocol.putHeader(snapshot, Protocol.SYNC_SNAPSHOT, 2 + PositionCodec.BYTES);
+		snapshot.putShort((short) _sequence);
+		PositionCodec.encode(Position.of(_game), snapshot.array(), snapshot.position());
+		snapshot.position(snapshot.limit());
+		snapshot.flip();
+		return snapshot;
+	}
+}
@@ -0,0 +1,90 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import code.Board;
+import code.Game;
+import code.Position;
+import code.PositionCodec;
+import code.Tile;
+import server.BoardReplica;
+import server.GameClient;
+import server.GameServer;
+import server.Protocol;
+
+public class SyncTests {
+
+	private static final String[] PLAYERS = {"Ann", "Bob"};
+
+	/**
+	 * Plays the same turn on a local game and through a client: a shift, then a step wherever the
+	 * current player can go.
+	 */
+	private void playTurn(Game game, GameClient client, int turn) throws IOException {
+		int code = Board.shiftCode(turn % 2 == 0 ? Tile.NORTH : Tile.EAST, 1 + 2 * (turn % 3));
+		assertTrue(game.shiftBoard(code));
+		assertEquals(Protocol.OK, client.shift(code));
+		Position position = Position.of(game);
+		int cell = position.getPlayerCell(position.getCurrentSeat());
+		for (int direction = 0; direction < 4; direction++) {
+			int next = Position.neighbour(cell, direction);
+			if (position.canStep(cell, direction)) {
+				assertTrue(game.move(game.getTile(next / 7, next % 7)));
+				assertEquals(Protocol.OK, client.move(next / 7, next % 7));
+				break;
+			}
+		}
+		if (game.nextTurn()) {
+			assertEquals(Protocol.OK, client.endTurn());
+		}
+	}
+
+	@Test public void replicaTest() throws IOException {
+		try (GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2)) {
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+			try (GameClient player = new GameClient(address); GameClient watcher = new GameClient(address)) {
+				Game game = new Game(PLAYERS, 21);
+				assertEquals(Protocol.OK, player.open(21, PLAYERS));
+				assertEquals(Protocol.OK, watcher.watch(player.getValue()));
+				game.rotateFreeTileClockWise();
+				assertEquals(Protocol.OK, player.rotate(true));
+				for (int turn = 0; turn < 30; turn++) {
+					playTurn(game, player, turn);
+					assertTrue(player.getReplica().isSynced());
+					assertEquals(Position.of(game), player.getReplica().getPosition());
+				}
+				assertEquals(Protocol.OK, watcher.resync());
+				assertEquals(Position.of(game), watcher.getReplica().getPosition());
+			}
+		}
+	}
+
+	@Test public void checksumTest() {
+		Position position = Position.of(new Game(PLAYERS, 4));
+		ByteBuffer frames = ByteBuffer.allocate(64);
+		frames.putShort((short) 7);
+		frames.put(PositionCodec.encode(position));
+		frames.flip();
+		BoardReplica replica = new BoardReplica();
+		assertTrue(replica.apply(Protocol.SYNC_SNAPSHOT, frames));
+
+		int cell = position.getPlayerCell(0);
+		position.setToken(cell, 0);
+		position.setScore(0, 1);
+		position.setNextToken(2);
+		assertTrue(replica.apply(Protocol.SYNC_TOKEN, ByteBuffer.wrap(new byte[] {0, 7, 0, 1, 2})));
+		assertTrue(replica.apply(Protocol.SYNC_CHECKSUM, ByteBuffer.allocate(6).putShort((short) 8).putInt(BoardReplica.checksum(position)).flip()));
+		assertEquals(position, replica.getPosition());
+
+		assertTrue(!replica.apply(Protocol.SYNC_CHECKSUM, ByteBuffer.allocate(6).putShort((short) 9).putInt(0).flip()));
+		assertTrue(!replica.apply(Protocol.SYNC_TURN, ByteBuffer.wrap(new byte[] {0, 10, 1})));
+	}
+}
@@ -94,22 +94,39 @@ public class Tile {
 	 *            straight across, 'T' for T-shaped, and 'L' for L-shaped
 	 */
 	public Tile(int row, int column, char tileShape) {
+		this(row, column, tileShape, rand);
+	}
+
+	/**
+	 * Generates a new Tile with the specified knowledge of its position and a
+	 * specified path orientation, drawing the random orientation from the specified
+	 * Random object (so that seeded boards can be regenerated exactly).
+	 * 
+	 * @param row
+	 *            the vertical position (ie. row) of the Tile
+	 * @param column
+	 *            the horizontal position (ie. column) of the Tile
+	 * @param tileShape
+	 *            specifies the orientation of paths on the Tile; 'S' for
+	 *            straight across, 'T' for T-shaped, and 'L' for L-shaped
+	 * @param random
+	 *            the source of randomness for the orientation
+	 */
+	public Tile(int row, int column, char tileShape, Random random) {
 		this();
 
 		_row = row;
 		_column = column;
 
 		if (tileShape == 'S') {
-			randStraightPath();
+			randStraightPath(random);
 		}
 		if (tileShape == 'L') {
-			randLShapePath();
+			randLShapePath(random);
 		}
 		if (tileShape == 'T') {
-			randTShapePath();
+			randTShapePath(random);
 		}
-
-		_icon = new TileIcon(this);
 	}
 
 	public Tile(boolean north, boolean south, boolean east, boolean west, int row, int column) {
@@ -131,8 +148,6 @@ public class Tile {
 			_pathNumber++;
 		if (west)
 			_pathNumber++;
-
-		_icon = new TileIcon(this);
 	}
 
 	/**
@@ -173,7 +188,6 @@ public class Tile {
 			_pathNumber++;
 
 		_pathSource = icon;
-		_icon = new TileIcon(this);
 	}
 
 	/**
@@ -270,7 +284,9 @@ public class Tile {
 	 */
 	public boolean clear() {
 		_playerList.clear();
-		_icon.update();
+		if (_icon != null) {
+			_icon.update();
+		}
 		return true;
 	}
 
@@ -296,7 +312,9 @@ public class Tile {
 	 */
 	public void setPlayerList(HashSet<Player> p) {
 		_playerList = p;
-		_icon.update();
+		if (_icon != null) {
+			_icon.update();
+		}
 	}
 
 	/**
@@ -566,8 +584,8 @@ public class Tile {
 	 * tile's path options subject to that constraint by considering all
 	 * possibilities.
 	 */
-	private void randTShapePath() {
-		int randInt = rand.nextInt(4) + 1;
+	private void randTShapePath(Random random) {
+		int randInt = random.nextInt(4) + 1;
 		switch (randInt) {
 		case 1:
 			_north = false;
@@ -610,8 +628,8 @@ public class Tile {
 	 * tile's path options subject to that constraint by considering all
 	 * possibilities.
 	 */
-	private void randLShapePath() {
-		int randInt = rand.nextInt(4) + 1;
+	private void randLShapePath(Random random) {
+		int randInt = random.nextInt(4) + 1;
 		switch (randInt) {
 		case 1:
 			_north = true;
@@ -652,8 +670,8 @@ public class Tile {
 	 * randomizes this tile's path options subject to that constraint by
 	 * considering all possibilities.
 	 */
-	private void randStraightPath() {
-		int randInt = rand.nextInt(2) + 1;
+	private void randStraightPath(Random random) {
+		int randInt = random.nextInt(2) + 1;
 		switch (randInt) {
 		case 1:
 			_north = true;
@@ -673,6 +691,46 @@ public class Tile {
 		_pathNumber = 2;
 	}
 
+	/**
+	 * Returns the <code> _pathSource </code> of the texture which shows the
+	 * specified path options, eg. for rebuilding a tile from its paths alone.
+	 *
+	 * @param north
+	 *            whether the tile has a path up
+	 * @param south
+	 *            whether the tile has a path down
+	 * @param east
+	 *            whether the tile has a path right
+	 * @param west
+	 *            whether the tile has a path left
+	 * @return the path of the texture, or <code> null </code> if there is no
+	 *         texture for that combination of paths
+	 */
+	public static String iconPath(boolean north, boolean south, boolean east, boolean west) {
+		if (north && south && !east && !west) {
+			return "/resources/Tile_S_up.png";
+		} else if (!north && !south && east && west) {
+			return "/resources/Tile_S_rt.png";
+		} else if (north && !south && east && !west) {
+			return "/resources/Tile_L_up_rt.png";
+		} else if (north && !south && !east && west) {
+			return "/resources/Tile_L_up_lf.png";
+		} else if (!north && south && east && !west) {
+			return "/resources/Tile_L_dn_rt.png";
+		} else if (!north && south && !east && west) {
+			return "/resources/Tile_L_dn_lf.png";
+		} else if (!north && south && east && west) {
+			return "/resources/Tile_T_dn.png";
+		} else if (north && !south && east && west) {
+			return "/resources/Tile_T_up.png";
+		} else if (north && south && !east && west) {
+			return "/resources/Tile_T_lf.png";
+		} else if (north && south && east && !west) {
+			return "/resources/Tile_T_rt.png";
+		}
+		return null;
+	}
+
 	/**
 	 * A private helper method used to rotate the Tile's
 	 * <code> _pathSource </code>.
@@ -789,13 +847,20 @@ public class Tile {
 			}
 			break;
 		}
-		_icon.updatePath();
+		if (_icon != null) {
+			_icon.updatePath();
+		}
 	}
 	/**
-	 * Returns the icon associated with the tile
+	 * Returns the icon associated with the tile. The icon is only created the first time it is
+	 * asked for, so that tiles used without a GUI (eg. when replaying or hosting games headless)
+	 * never load any images.
 	 * @return TileIcon that the Tile is showing
 	 */
 	public TileIcon getIcon() {
+		if (_icon == null) {
+			_icon = new TileIcon(this);
+		}
 		return _icon;
 	}
 }
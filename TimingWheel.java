@@ -0,0 +1,279 @@
+package server;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * <h1>TimingWheel</h1>
+ * A hashed hierarchical timing wheel: one ticker thread running any number of timeouts, each
+ * scheduled and cancelled in constant time, for a few dozen bytes of heap apiece. Used for turn
+ * clocks, where a server may have 100,000 deadlines pending at once and replaces one every turn;
+ * a {@code ScheduledExecutorService} would keep them all in one locked heap.
+ * <p>
+ * Time is counted in ticks. The wheel has {@code LEVELS} levels of {@code SLOTS} slots, each slot
+ * a doubly linked list of timeouts: a slot of level 0 holds the timeouts due in one tick, a slot of
+ * level 1 those due in a span of {@code SLOTS} ticks, and so on, so the levels together span
+ * <code> SLOTS ^ LEVELS </code> ticks (nearly two days, at the default 10 ms tick), and a timeout
+ * due later than that waits in the last level until it comes within reach. Each tick the ticker
+ * runs the timeouts in the current slot of level 0; each time a level comes round, the next slot
+ * of the level above is cascaded into the levels below.
+ * <p>
+ * Only the ticker thread touches the slots. Other threads hand new timeouts, and cancelled ones to
+ * be unlinked, to the ticker through lock-free queues, which it drains every tick. A timeout runs
+ * on the ticker thread, no earlier than its deadline and usually within a tick of it, so it should
+ * only hand work on, eg. to the event loop its session is confined to.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code long}: _tickNanos - the length of a tick in nanoseconds
+ * {@code long}: _start - the time (in {@code System.nanoTime()} terms) the wheel started
+ * {@code Timeout[]}: _slots - the head of the list of every slot, level by level
+ * {@code long}: _tick - the last tick run
+ * {@code Queue<Timeout>}: _scheduled - the timeouts scheduled since the last tick
+ * {@code Queue<Timeout>}: _cancelled - the timeouts cancelled since the last tick
+ * {@code Thread}: _ticker - the ticker thread
+ * {@code boolean}: _running - whether the ticker should keep running
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class TimingWheel implements Closeable {
+
+	/**
+	 * The number of bits of a tick count each level covers.
+	 */
+	private static final int SLOT_BITS = 6;
+	/**
+	 * The number of slots in each level.
+	 */
+	public static final int SLOTS = 1 << SLOT_BITS;
+	/**
+	 * The number of levels.
+	 */
+	public static final int LEVELS = 4;
+
+	private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+	private final long _tickNanos;
+	private final long _start;
+	private final Timeout[] _slots;
+	private long _tick;
+	private final Queue<Timeout> _scheduled;
+	private final Queue<Timeout> _cancelled;
+	private final Thread _ticker;
+	private volatile boolean _running;
+
+	/**
+	 * Starts a timing wheel.
+	 *
+	 * @param tickMillis	the length of a tick, ie. the precision of the timeouts
+	 * @param name			the name of the ticker thread
+	 */
+	public TimingWheel(long tickMillis, String name) {
+		if (tickMillis < 1) {
+			throw new IllegalArgumentException("The tick must be at least a millisecond.");
+		}
+		_tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		_start = System.nanoTime();
+		_slots = new Timeout[SLOTS * LEVELS];
+		_tick = 0;
+		_scheduled = new ConcurrentLinkedQueue<Timeout>();
+		_cancelled = new ConcurrentLinkedQueue<Timeout>();
+		_running = true;
+		_ticker = new Thread(this::run, name);
+		_ticker.setDaemon(true);
+		_ticker.start();
+	}
+
+	/**
+	 * Schedules the specified task to run on the ticker thread once the specified delay has passed.
+	 *
+	 * @param task			the task
+	 * @param delayMillis	the delay
+	 * @return				the timeout, which may be cancelled
+	 */
+	public Timeout schedule(Runnable task, long delayMillis) {
+		long now = System.nanoTime() - _start;
+		long deadline = (now + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)) + _tickNanos - 1) / _tickNanos;
+		Timeout timeout = new Timeout(task, deadline);
+		_scheduled.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Returns the number of the tick the ticker is on.
+	 */
+	private long currentTick() {
+		return (System.nanoTime() - _start) / _tickNanos;
+	}
+
+	private void run() {
+		while (_running) {
+			long due = currentTick();
+			while (_tick < due) {
+				tick();
+			}
+			long wait = (_tick + 1) * _tickNanos - (System.nanoTime() - _start);
+			if (wait > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the next tick: cascades whichever levels have come round, takes in the timeouts
+	 * scheduled and cancelled since the last tick, and runs the timeouts now due.
+	 */
+	private void tick() {
+		long tick = ++_tick;
+		for (int level = LEVELS - 1; level > 0; level--) {
+			if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+				cascade(level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) % SLOTS));
+			}
+		}
+		Timeout timeout;
+		while ((timeout = _cancelled.poll()) != null) {
+			if (timeout._slot >= 0) {
+				unlink(timeout);
+			}
+		}
+		while ((timeout = _scheduled.poll()) != null) {
+			if (timeout._state == Timeout.PENDING) {
+				insert(timeout);
+			}
+		}
+		int slot = (int) (tick % SLOTS);
+		while ((timeout = _slots[slot]) != null) {
+			unlink(timeout);
+			if (Timeout.STATE.compareAndSet(timeout, Timeout.PENDING, Timeout.EXPIRED)) {
+				try {
+					timeout._task.run();
+				} catch (RuntimeException e) {
+					// one failing task must not stop the clock for every other
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves every timeout of the specified slot to the slot it now belongs in.
+	 */
+	private void cascade(int slot) {
+		Timeout timeout;
+		while ((timeout = _slots[slot]) != null) {
+			unlink(timeout);
+			insert(timeout);
+		}
+	}
+
+	/**
+	 * Adds the specified timeout to the slot of the lowest level whose span reaches its deadline;
+	 * a timeout already due goes in the current slot of level 0.
+	 */
+	private void insert(Timeout timeout) {
+		long deadline = Math.max(timeout._deadline, _tick);
+		long remaining = deadline - _tick;
+		int level = 0;
+		while (level < LEVELS - 1 && remaining >= 1L << (SLOT_BITS * (level + 1))) {
+			level++;
+		}
+		if (remaining >= SPAN) {
+			deadline = _tick + SPAN - 1;
+		}
+		int slot = level * SLOTS + (int) ((deadline >>> (SLOT_BITS * level)) % SLOTS);
+		timeout._slot = slot;
+		timeout._prev = null;
+		timeout._next = _slots[slot];
+		if (_slots[slot] != null) {
+			_slots[slot]._prev = timeout;
+		}
+		_slots[slot] = timeout;
+	}
+
+	private void unlink(Timeout timeout) {
+		if (timeout._prev != null) {
+			timeout._prev._next = timeout._next;
+		} else {
+			_slots[timeout._slot] = timeout._next;
+		}
+		if (timeout._next != null) {
+			timeout._next._prev = timeout._prev;
+		}
+		timeout._prev = null;
+		timeout._next = null;
+		timeout._slot = -1;
+	}
+
+	/**
+	 * Stops the ticker thread; timeouts pending never run.
+	 */
+	@Override
+	public void close() {
+		_running = false;
+		_ticker.interrupt();
+	}
+
+	/**
+	 * <h1>Timeout</h1>
+	 * A task scheduled on a {@code TimingWheel}, which runs once unless cancelled first.
+	 * <p>
+	 * <b>Variables:</b>
+	 * <p>
+	 * {@code Runnable}: _task - the task
+	 * {@code long}: _deadline - the tick the task is due on
+	 * {@code int}: _state - {@code PENDING}, {@code EXPIRED} once run or {@code CANCELLED}
+	 * {@code int}: _slot - the slot the timeout is in, or -1 (ticker thread only)
+	 * {@code Timeout}: _prev - the timeout before it in its slot (ticker thread only)
+	 * {@code Timeout}: _next - the timeout after it in its slot (ticker thread only)
+	 */
+	public final class Timeout {
+
+		private static final int PENDING = 0;
+		private static final int EXPIRED = 1;
+		private static final int CANCELLED = 2;
+		private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+				AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "_state");
+
+		private final Runnable _task;
+		private final long _deadline;
+		private volatile int _state;
+		private int _slot;
+		private Timeout _prev;
+		private Timeout _next;
+
+		private Timeout(Runnable task, long deadline) {
+			_task = task;
+			_deadline = deadline;
+			_state = PENDING;
+			_slot = -1;
+		}
+
+		/**
+		 * Cancels the timeout, which is dropped from the wheel on its next tick.
+		 *
+		 * @return true if the task had not run and now never will
+		 */
+		public boolean cancel() {
+			if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+				return false;
+			}
+			_cancelled.add(this);
+			return true;
+		}
+
+		/**
+		 * Returns whether the task has run.
+		 * @return true if expired
+		 */
+		public boolean isExpired() {
+			return _state == EXPIRED;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import code.Board;
+import code.Tile;
+import server.GameClient;
+import server.GameServer;
+import server.Protocol;
+import server.TimingWheel;
+
+public class TimingWheelTests {
+
+	/**
+	 * Schedules timeouts over the first two levels of a 1 ms wheel, and checks none runs early and
+	 * every one runs soon after its deadline.
+	 */
+	@Test public void deadlineTest() throws InterruptedException {
+		try (TimingWheel wheel = new TimingWheel(1, "test-wheel")) {
+			int count = 2000;
+			CountDownLatch done = new CountDownLatch(count);
+			AtomicInteger early = new AtomicInteger();
+			AtomicLong latest = new AtomicLong();
+			Random random = new Random(3);
+			for (int index = 0; index < count; index++) {
+				long delay = random.nextInt(300);
+				long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+				wheel.schedule(() -> {
+					long late = System.nanoTime() - due;
+					if (late < 0) {
+						early.incrementAndGet();
+					}
+					latest.accumulateAndGet(late, Math::max);
+					done.countDown();
+				}, delay);
+			}
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertEquals(0, early.get());
+			assertTrue(latest.get() < TimeUnit.MILLISECONDS.toNanos(200));
+		}
+	}
+
+	@Test public void cancelTest() throws InterruptedException {
+		try (TimingWheel wheel = new TimingWheel(1, "test-wheel")) {
+			AtomicInteger runs = new AtomicInteger();
+			TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[100];
+			for (int index = 0; index < timeouts.length; index++) {
+				timeouts[index] = wheel.schedule(runs::incrementAndGet, 20 + index);
+			}
+			for (int index = 0; index < timeouts.length; index += 2) {
+				assertTrue(timeouts[index].cancel());
+				assertTrue(!timeouts[index].cancel());
+			}
+			CountDownLatch last = new CountDownLatch(1);
+			wheel.schedule(last::countDown, 200);
+			assertTrue(last.await(5, TimeUnit.SECONDS));
+			assertEquals(timeouts.length / 2, runs.get());
+			assertTrue(timeouts[1].isExpired());
+			assertTrue(!timeouts[1].cancel());
+			assertTrue(!timeouts[0].isExpired());
+		}
+	}
+
+	/**
+	 * Schedules a timeout beyond the span of the first two levels, so that it is cascaded twice.
+	 */
+	@Test public void cascadeTest() throws InterruptedException {
+		try (TimingWheel wheel = new TimingWheel(1, "test-wheel")) {
+			long start = System.nanoTime();
+			CountDownLatch done = new CountDownLatch(1);
+			wheel.schedule(done::countDown, TimingWheel.SLOTS * TimingWheel.SLOTS + 100);
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			assertTrue(elapsed >= TimingWheel.SLOTS * TimingWheel.SLOTS + 100);
+		}
+	}
+
+	@Test public void turnClockTest() throws IOException {
+		try (GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1)) {
+			server.enableTurnClock(100);
+			try (GameClient client = new GameClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()))) {
+				long start = System.nanoTime();
+				assertEquals(Protocol.OK, client.open(8, "Ann", "Bob"));
+				while (client.readSync() != Protocol.SYNC_TURN) {
+					// the server shifts the board for the first player
+				}
+				assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+				assertEquals(1, client.getReplica().getPosition().getCurrentSeat());
+				assertTrue(client.getReplica().getPosition().getLastShift() >= 0);
+
+				// a turn played in time is not cut short
+				int code = Board.shiftCode(Tile.WEST, 5);
+				if (!client.getReplica().getPosition().isLegalShift(code)) {
+					code = Board.shiftCode(Tile.EAST, 5);
+				}
+				assertEquals(Protocol.OK, client.shift(code));
+				assertEquals(Protocol.OK, client.endTurn());
+				assertEquals(2, client.getValue());
+				assertEquals(Protocol.OK, client.resync());
+				assertEquals(2, client.getValue());
+				assertTrue(client.getReplica().isSynced());
+			}
+		}
+	}
+}
@@ -53,10 +53,19 @@ public class Token {
 	 * at which point the next available token is 25, as per the game rules.
 	 */
 	public static void incrementNextToken() {
-		if(_nextToken == 20) {
-			_nextToken = 25;
-			}
-		else _nextToken++;
+		_nextToken = following(_nextToken);
+	}
+	/**
+	 * Returns the token which becomes available after the specified token has been collected:
+	 * the next number up, except that 25 follows 20, as per the game rules.
+	 * @param token - the number of the token just collected
+	 * @return the number of the token available after it (26 once 25 has been collected)
+	 */
+	public static int following(int token) {
+		if (token == 20) {
+			return 25;
+		}
+		else return token + 1;
 	}
 	/**
 	 * Returns the value of the token instance
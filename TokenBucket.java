@@ -0,0 +1,61 @@
+package server;
+
+/**
+ * <h1>TokenBucket</h1>
+ * A token bucket rate limiter: tokens accrue at a steady rate up to the bucket's capacity, and
+ * each action takes one, so a client may make a burst of up to {@code capacity} actions at once
+ * but no more than {@code rate} per second on average. The bucket is refilled from the time passed
+ * to {@code tryTake()}, so an idle bucket costs nothing.
+ * <p>
+ * A bucket is not thread-safe; each belongs to one connection.
+ * <p>
+ * <b>Variables:</b>
+ * <p>
+ * {@code double}: _perNano - the number of tokens accrued per nanosecond
+ * {@code double}: _capacity - the most tokens the bucket holds
+ * {@code double}: _tokens - the tokens in the bucket as of {@code _last}
+ * {@code long}: _last - the time (in {@code System.nanoTime()} terms) the bucket was last refilled
+ *
+ * @version S.3
+ * @since S.3
+ */
+public class TokenBucket {
+
+	private final double _perNano;
+	private final double _capacity;
+	private double _tokens;
+	private long _last;
+
+	/**
+	 * Creates a full bucket.
+	 *
+	 * @param rate		the number of tokens accrued per second
+	 * @param capacity	the most tokens the bucket holds, ie. the largest burst allowed
+	 * @param now		the current time in nanoseconds
+	 */
+	public TokenBucket(double rate, int capacity, long now) {
+		if (rate <= 0 || capacity < 1) {
+			throw new IllegalArgumentException("The rate and capacity must be positive.");
+		}
+		_perNano = rate / 1e9;
+		_capacity = capacity;
+		_tokens = capacity;
+		_last = now;
+	}
+
+	/**
+	 * Takes a token if there is one.
+	 *
+	 * @param now	the current time in nanoseconds
+	 * @return		true if a token was taken, false if the action is over the limit
+	 */
+	public boolean tryTake(long now) {
+		_tokens = Math.min(_capacity, _tokens + (now - _last) * _perNano);
+		_last = now;
+		if (_tokens < 1) {
+			return false;
+		}
+		_tokens--;
+		return true;
+	}
+}
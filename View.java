@@ -1,14 +1,21 @@
 package gui;
 
+import java.awt.Color;
 import java.awt.GridLayout;
+import java.util.ArrayList;
+import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.SwingConstants;
+import javax.swing.UIManager;
 
+import code.Board;
 import code.Game;
+import code.MoveHint;
 import code.Player;
+import code.Tile;
 
 /**
  * <h1>View</h1>
@@ -28,6 +35,7 @@ import code.Player;
  * {@code JPanel}: _infoPanel - a {@code JPanel} grouping all other non-board panels to be displayed next to the game board
  * {@code JLabel}: _currentPlayer - a {@code JLabel} containing text that displays the current player number
  * {@code JLabel[]}: _tokenLists - an array of {@code JLabel}s, each containing text displaying the list of tokens the corresponding player (by index) has picked up
+ * {@code ArrayList<JButton>}: _hinted - the buttons highlighted to show a hint
  * 
  * @author Daniel Palacio
  * @author Michael Langaman
@@ -49,6 +57,7 @@ public class View implements Runnable {
 	private JPanel _infoPanel;
 	private JLabel _currentPlayer;
 	private JLabel[] _tokenLists;
+	private ArrayList<JButton> _hinted;
 	
 	/**
 	 * Initializes the {@code View} with a reference to the {@code Game} being played and
@@ -67,6 +76,7 @@ public class View implements Runnable {
 		_freeTilePanel = new JPanel();
 		_currentPlayerInfo = new JPanel();
 		_tokenLists = new JLabel[_game.getPlayers()];
+		_hinted = new ArrayList<JButton>();
 		_currentPlayerInfo.add(_currentPlayer);
 		for (int index = 0; index < _tokenLists.length; index++) {
 			_tokenLists[index] = new JLabel();
@@ -195,6 +205,73 @@ public class View implements Runnable {
 		_currentPlayerInfo.revalidate();
 	}
 
+	/**
+	 * Highlights a hint over the board: the shift button to press, and the tiles, as they lie
+	 * before the shift, which the path to walk will run along once the board is shifted (the free
+	 * tile, if it is inserted into the path). Any hint shown before is cleared first.
+	 *
+	 * @param hint	the hint
+	 */
+	public void showHint(MoveHint hint) {
+		showHint(hint, hint.getRotation());
+	}
+
+	/**
+	 * Highlights a hint over the board as {@code showHint()} does, once the free tile has been
+	 * rotated part of the way: the free tile is highlighted only while some rotation is left.
+	 *
+	 * @param hint		the hint
+	 * @param rotation	the number of clockwise rotations of the free tile left (0-3)
+	 */
+	public void showHint(MoveHint hint, int rotation) {
+		clearHint();
+		int shift = hint.getShift();
+		int index = Board.shiftIndex(shift) + 1;
+		switch (Board.shiftDirection(shift)) {
+		case Tile.NORTH:
+			highlight(_edgeBoard[8][index]);
+			break;
+		case Tile.SOUTH:
+			highlight(_edgeBoard[0][index]);
+			break;
+		case Tile.WEST:
+			highlight(_edgeBoard[index][8]);
+			break;
+		default:
+			highlight(_edgeBoard[index][0]);
+			break;
+		}
+		if (rotation != 0) {
+			highlight(_freeTile);
+		}
+		int reverse = Board.reverseShift(shift);
+		for (int cell : hint.getPath()) {
+			if (cell == Board.insertedCell(shift)) {
+				highlight(_freeTile);
+			} else {
+				int before = Board.shiftCell(reverse, cell / 7, cell % 7);
+				highlight(_tileBoard[before / 7 + 1][before % 7 + 1]);
+			}
+		}
+		refresh();
+	}
+
+	private void highlight(JButton button) {
+		button.setBorder(BorderFactory.createLineBorder(Color.YELLOW, 3));
+		_hinted.add(button);
+	}
+
+	/**
+	 * Removes the hint shown over the board, if there is one.
+	 */
+	public void clearHint() {
+		for (JButton button : _hinted) {
+			button.setBorder(UIManager.getBorder("Button.border"));
+		}
+		_hinted.clear();
+		refresh();
+	}
+
 	/**
 	 * Sets up and displays all of the GUI components: initializes the main window, sets the layouts of the main window
 	 * and sub-panels, and adds components like control buttons to the their containing sub-panels (eg. adding rotation buttons 
@@ -229,6 +306,7 @@ public class View implements Runnable {
 		_infoPanel.add(_freeTilePanel);
 		_infoPanel.add(new CollectTokenButton(_game));
 		_infoPanel.add(new EndTurnButton(_game));
+		_infoPanel.add(new HintButton(_game, this));
 		_infoPanel.add(_currentPlayerInfo);
 		
 		_window.add(_boardPanel);